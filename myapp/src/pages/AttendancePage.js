@@ -59,6 +59,7 @@ const { TextArea } = Input;
 
 function AttendancePage() {
   const [attendanceData, setAttendanceData] = useState([]);
+  const [dayStats, setDayStats] = useState(null);
   const [users, setUsers] = useState([]);
   const [groups, setGroups] = useState([]);
   const [userAttendanceList, setUserAttendanceList] = useState([]);
@@ -243,41 +244,18 @@ function AttendancePage() {
       .map((item) => item.user?.userID ?? item.userId)
   );
 
-  // Tính toán thống kê
-  const calculateStats = () => {
-    const stats = {
-      present: 0,
-      halfDay: 0,
-      absent: 0,
-      leave: 0,
-      weekendLeave: 0,
-    };
-
-    const isActiveRecord = (record) => {
-      const uid = record.user?.userID || record.userId;
-      return activeTrackedUserIds.has(uid);
-    };
-
-    attendanceData.filter(isActiveRecord).forEach((record) => {
-      const status = record.status || "";
-      if (status.includes("Có mặt") || status.includes("出勤")) {
-        stats.present++;
-      } else if (status.includes("Nửa ngày") || status.includes("半天")) {
-        stats.halfDay++;
-      } else if (status.includes("Vắng") || status.includes("Vắng mặt") || status.includes("缺勤")) {
-        stats.absent++;
-      } else if (status.includes("Nghỉ CN") || status.includes("周日休")) {
-        stats.weekendLeave++;
-      } else if (status.includes("Nghỉ phép") || status.includes("请假")) {
-        stats.leave++;
-      }
-    });
-
-    return stats;
+  // Thống kê theo ngày lấy từ server (/api/attendance/stats)
+  const stats = dayStats || {
+    totalEmployees: 0,
+    present: 0,
+    halfDay: 0,
+    absent: 0,
+    leave: 0,
+    weekendLeave: 0,
+    overallRate: 0,
+    groupStats: [],
   };
 
-  const stats = calculateStats();
-
   const activeAttendanceData = attendanceData.filter(
     (record) => activeTrackedUserIds.has(record.user?.userID || record.userId)
   );
@@ -488,14 +466,19 @@ function AttendancePage() {
     setLoading(true);
     try {
       const dateStr = selectedDate.format("YYYY-MM-DD");
-      const data = await attendanceService.getAttendanceByDate(dateStr);
+      const [data, statsData] = await Promise.all([
+        attendanceService.getAttendanceByDate(dateStr),
+        attendanceService.getAttendanceStats(dateStr),
+      ]);
       setAttendanceData(Array.isArray(data) ? data : []);
+      setDayStats(statsData || null);
     } catch (error) {
       message.error({
         content: t.loadError,
         placement: "bottomRight",
       });
       setAttendanceData([]);
+      setDayStats(null);
     } finally {
       setLoading(false);
     }
@@ -1446,7 +1429,7 @@ function AttendancePage() {
               <Card>
                 <Statistic
                   title={lang === "vi" ? "Tổng nhân viên" : "总员工数"}
-                  value={activeTrackedUserIds.size}
+                  value={stats.totalEmployees}
                   prefix={<TeamOutlined style={{ color: "#1890ff" }} />}
                   valueStyle={{ color: "#1890ff" }}
                 />
@@ -1505,11 +1488,7 @@ function AttendancePage() {
                   </h4>
                   <div style={{ position: "relative", display: "inline-block", width: 160, height: 160 }}>
                     {(() => {
-                      const effectivePresent = stats.present + stats.halfDay * 0.5;
-                      const totalActive = activeTrackedUserIds.size;
-                      const overallRate = totalActive > 0
-                        ? Math.round((effectivePresent / totalActive) * 100)
-                        : 0;
+                      const overallRate = stats.overallRate;
                       const color = overallRate >= 80 ? "#52c41a" : overallRate >= 50 ? "#ff7a45" : "#ff4d4f";
                       const circumference = 2 * Math.PI * 40; // radius = 40
                       const offset = circumference - (overallRate / 100) * circumference;
@@ -1560,65 +1539,23 @@ function AttendancePage() {
             <Col xs={24} lg={16}>
               <Card>
                 <div style={{ display: "flex", flexDirection: "column", gap: 16 }}>
-                  {groups.map((group) => {
-                    const groupUsers = users.filter((u) => {
-                      if (!activeTrackedUserIds.has(u.userID)) return false;
-                      if (!u.groups) return false;
-                      let userGroups = [];
-                      if (Array.isArray(u.groups)) {
-                        userGroups = u.groups;
-                      } else if (u.groups instanceof Set) {
-                        userGroups = Array.from(u.groups);
-                      } else if (u.groups.size !== undefined) {
-                        userGroups = Array.from(u.groups);
-                      }
-                      return userGroups.some((g) => g.id === group.id);
-                    });
-
-                    const groupAttendance = attendanceData.filter((record) => {
-                      const userId = record.user?.userID || record.userId;
-                      return groupUsers.some((u) => u.userID === userId);
-                    });
-
-                    const groupPresent = groupAttendance.filter((record) => {
-                      const status = record.status || "";
-                      return status.includes("Có mặt") || status.includes("出勤");
-                    }).length;
-
-                    const groupHalfDay = groupAttendance.filter((record) => {
-                      const status = record.status || "";
-                      return status.includes("Nửa ngày") || status.includes("半天");
-                    }).length;
-
-                    const groupAbsent = groupAttendance.filter((record) => {
-                      const status = record.status || "";
-                      return status.includes("Vắng") || status.includes("Vắng mặt") || status.includes("缺勤");
-                    }).length;
-
-                    const groupLeave = groupAttendance.filter((record) => {
-                      const status = record.status || "";
-                      return status.includes("Nghỉ phép") || status.includes("请假");
-                    }).length;
-
-                    const groupWeekendLeave = groupAttendance.filter((record) => {
-                      const status = record.status || "";
-                      return status.includes("Nghỉ CN") || status.includes("周日休");
-                    }).length;
-
-                    const effectivePresent = groupPresent + groupHalfDay * 0.5;
-                    const groupRate = groupUsers.length > 0 
-                      ? Math.round((effectivePresent / groupUsers.length) * 100) 
-                      : 0;
+                  {(stats.groupStats || []).map((group) => {
+                    const groupRate = group.rate;
+                    const groupPresent = group.present;
+                    const groupHalfDay = group.halfDay;
+                    const groupAbsent = group.absent;
+                    const groupLeave = group.leave;
+                    const groupWeekendLeave = group.weekendLeave;
 
                     return (
-                      <div key={group.id} style={{ marginBottom: 16 }}>
+                      <div key={group.name} style={{ marginBottom: 16 }}>
                         <div style={{ display: "flex", justifyContent: "space-between", marginBottom: 8 }}>
                           <div>
                             <span style={{ fontWeight: 500 }}>
                               {lang === "vi" ? "Nhóm" : "组"} {group.name}
                             </span>
                             <span style={{ color: "#666", marginLeft: 8 }}>
-                              ({groupUsers.length} {lang === "vi" ? "người" : "人"})
+                              ({group.totalEmployees} {lang === "vi" ? "người" : "人"})
                             </span>
                           </div>
                           <span
@@ -49,6 +49,32 @@ export const attendanceService = {
     }
   },
 
+  // Thống kê điểm danh theo ngày (tổng và theo nhóm), tính trên server
+  getAttendanceStats: async (date) => {
+    try {
+      const response = await axios.get(`${API_BASE_URL}/stats`, {
+        params: { date }
+      });
+      return response.data;
+    } catch (error) {
+      console.error('Error fetching attendance stats:', error);
+      throw error;
+    }
+  },
+
+  // Thống kê điểm danh từng ngày trong khoảng thời gian (tối đa 366 ngày)
+  getAttendanceStatsRange: async (startDate, endDate) => {
+    try {
+      const response = await axios.get(`${API_BASE_URL}/stats/range`, {
+        params: { startDate, endDate }
+      });
+      return response.data;
+    } catch (error) {
+      console.error('Error fetching attendance stats range:', error);
+      throw error;
+    }
+  },
+
   // Tạo mới bản ghi điểm danh
   createAttendance: async (attendanceData) => {
     try {
@@ -0,0 +1,101 @@
+package com.foxconn.sopchecklist.config;
+
+import com.foxconn.sopchecklist.entity.Users;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of verified principals, keyed by token id (jti), so repeat requests with the same access
+ * token skip the user lookup. Entries never outlive the token and are dropped when the user's roles, groups or
+ * status change, on role or group edits and on logout.
+ */
+@Component
+public class AuthenticatedUserCache {
+
+    @Value("${security.principal-cache.ttl-ms:60000}")
+    private long ttlMs;
+
+    @Value("${security.principal-cache.max-entries:10000}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * A verified principal and the user it was built from.
+     */
+    public static final class Entry {
+        private final UserPrincipal principal;
+        private final Users user;
+        private final long cachedAt;
+        private final long expiresAt;
+
+        private Entry(UserPrincipal principal, Users user, long cachedAt, long expiresAt) {
+            this.principal = principal;
+            this.user = user;
+            this.cachedAt = cachedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        public UserPrincipal getPrincipal() { return principal; }
+        public Users getUser() { return user; }
+    }
+
+    public Entry get(String tokenId) {
+        if (tokenId == null) return null;
+        Entry entry = entries.get(tokenId);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(tokenId, entry);
+            entry = null;
+        }
+        return entry;
+    }
+
+    /**
+     * Cache a principal until the cache TTL or the token expiry, whichever comes first.
+     * Returns the entry, which is not retained when caching is disabled (TTL 0).
+     */
+    public Entry put(String tokenId, UserPrincipal principal, Users user, long tokenExpiresAt) {
+        long now = System.currentTimeMillis();
+        long expiresAt = tokenExpiresAt > 0 ? Math.min(now + ttlMs, tokenExpiresAt) : now + ttlMs;
+        Entry entry = new Entry(principal, user, now, expiresAt);
+        if (tokenId == null || ttlMs <= 0) return entry;
+        entries.put(tokenId, entry);
+        if (entries.size() > maxEntries) {
+            trim(now);
+        }
+        return entry;
+    }
+
+    public void evictToken(String tokenId) {
+        if (tokenId != null) entries.remove(tokenId);
+    }
+
+    public void evictUser(Integer userId) {
+        if (userId == null) return;
+        entries.values().removeIf(e -> userId.equals(e.principal.getUserId()));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Drop expired entries, then the oldest ones until the cache is back under its bound.
+     */
+    private synchronized void trim(long now) {
+        entries.entrySet().removeIf(e -> e.getValue().expiresAt <= now);
+        int excess = entries.size() - maxEntries;
+        if (excess <= 0) return;
+        List<Map.Entry<String, Entry>> oldest = new ArrayList<>(entries.entrySet());
+        oldest.sort(Comparator.comparingLong(e -> e.getValue().cachedAt));
+        for (int i = 0; i < excess && i < oldest.size(); i++) {
+            entries.remove(oldest.get(i).getKey(), oldest.get(i).getValue());
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.foxconn.sopchecklist.config;
 
+import com.foxconn.sopchecklist.entity.Users;
+import com.foxconn.sopchecklist.entity.UserStatus;
+import com.foxconn.sopchecklist.service.UsersService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -18,32 +21,50 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
+/**
+ * Authenticates requests carrying a Bearer access token.
+ * The token is verified once; the principal for its jti comes from {@link AuthenticatedUserCache} when present,
+ * otherwise the user is loaded and must be ACTIVE. The resolved {@link Users} is exposed to the rest of the
+ * request as the {@link #CURRENT_USER_ATTRIBUTE} attribute.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    public static final String CURRENT_USER_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".CURRENT_USER";
+
     @Autowired
     private JwtTokenProvider tokenProvider;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    @Lazy
+    private UsersService usersService;
+
+    @Autowired
+    private AuthenticatedUserCache principalCache;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
         try {
             String token = getTokenFromRequest(request);
+            Claims claims = token != null ? tokenProvider.parseClaims(token) : null;
 
-            if (token != null && tokenProvider.validateToken(token)) {
-                String username = tokenProvider.getUsernameFromToken(token);
-                logger.debug("Processing authentication for user: {}", username);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            if (claims != null) {
+                String tokenId = tokenProvider.getTokenId(claims, token);
+                AuthenticatedUserCache.Entry entry = principalCache.get(tokenId);
+                if (entry == null) {
+                    entry = load(claims, tokenId);
+                }
+                if (entry != null) {
+                    UserPrincipal principal = entry.getPrincipal();
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-                logger.debug("Successfully authenticated user: {}", username);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    request.setAttribute(CURRENT_USER_ATTRIBUTE, entry.getUser());
+                    logger.debug("Successfully authenticated user: {}", principal.getUsername());
+                }
             } else if (token != null) {
                 logger.debug("Invalid JWT token provided");
             }
@@ -55,6 +76,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Look up the token's user and cache the principal; null if the user is gone or not ACTIVE.
+     */
+    private AuthenticatedUserCache.Entry load(Claims claims, String tokenId) {
+        String username = claims.getSubject();
+        if (username == null || username.isEmpty()) {
+            logger.debug("Token validation failed: username is null or empty");
+            return null;
+        }
+        logger.debug("Processing authentication for user: {}", username);
+
+        Users user = usersService.findByManv(username);
+        if (user == null) {
+            user = usersService.findByEmail(username);
+        }
+        if (user == null) {
+            logger.debug("Token validation failed: user not found for username: {}", username);
+            return null;
+        }
+        if (user.getStatus() != UserStatus.ACTIVE) {
+            logger.debug("Token validation failed: user status is not ACTIVE for username: {}", username);
+            return null;
+        }
+
+        long expiresAt = claims.getExpiration() != null ? claims.getExpiration().getTime() : 0;
+        return principalCache.put(tokenId, UserPrincipal.create(user), user, expiresAt);
+    }
+
     private String getTokenFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
@@ -63,4 +112,3 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         return null;
     }
 }
-
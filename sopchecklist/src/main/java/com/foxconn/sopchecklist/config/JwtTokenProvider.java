@@ -4,6 +4,7 @@ import com.foxconn.sopchecklist.entity.Users;
 import com.foxconn.sopchecklist.entity.UserStatus;
 import com.foxconn.sopchecklist.service.UsersService;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -16,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import java.security.Key;
 import java.util.Date;
 import java.util.Base64;
+import java.util.UUID;
 import java.nio.charset.StandardCharsets;
 
 @Component
@@ -30,8 +32,11 @@ public class JwtTokenProvider {
     private static final String SECRET_KEY = "mySecretKey123456789012345678901234567890123456789012345678901234567890123456789012345678901234567890";
     private static final long EXPIRATION_TIME = 3600000; // 1 hour 
     
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
     private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET_KEY.getBytes());
+        return signingKey;
     }
     
     public String taoToken(UserPrincipal userPrincipal) {
@@ -43,6 +48,7 @@ public class JwtTokenProvider {
                 Base64.getEncoder().encodeToString(userPrincipal.getFullName().getBytes(StandardCharsets.UTF_8)) : null;
             
             return Jwts.builder()
+                    .setId(UUID.randomUUID().toString())
                     .setSubject(userPrincipal.getUsername())
                     .setIssuedAt(now)
                     .setExpiration(expiryDate)
@@ -58,6 +64,26 @@ public class JwtTokenProvider {
         }
     }
     
+    /**
+     * Verify the token and return its claims, or null if it is malformed, tampered with or expired.
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return parser.parseClaimsJws(token).getBody();
+        } catch (Exception e) {
+            logger.debug("JWT token rejected: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cache key for a verified token: its jti, or the token itself for tokens issued without one.
+     */
+    public String getTokenId(Claims claims, String token) {
+        String id = claims.getId();
+        return id != null && !id.isEmpty() ? id : token;
+    }
+
     public String getUsernameFromToken(String token) {
         Claims claims = Jwts.parserBuilder()
                 .setSigningKey(getSigningKey())
@@ -0,0 +1,65 @@
+package com.foxconn.sopchecklist.config;
+
+import com.foxconn.sopchecklist.service.FtpConnectionPool;
+import com.foxconn.sopchecklist.service.FtpDownloadService;
+import com.foxconn.sopchecklist.service.StorageBackend;
+import com.foxconn.sopchecklist.service.serviceImpl.FtpStorageBackend;
+import com.foxconn.sopchecklist.service.serviceImpl.InMemoryStorageBackend;
+import com.foxconn.sopchecklist.service.serviceImpl.LocalStorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+public class StorageConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(StorageConfig.class);
+
+    @Value("${storage.backend:}")
+    private String backendName;
+
+    @Value("${storage.use-ftp:false}")
+    private boolean useFtp;
+
+    @Value("${file.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${ftp.upload-dir:uploads_fitsops}")
+    private String sopRoot;
+
+    @Value("${ftp.checklist-upload-dir:upload_fitchecklist}")
+    private String checklistRoot;
+
+    /**
+     * storage.backend=ftp|local|memory; when unset, storage.use-ftp picks between FTP and local disk.
+     */
+    @Bean
+    public StorageBackend storageBackend(FtpConnectionPool ftpPool, FtpDownloadService ftpDownloadService) {
+        String name = backendName == null || backendName.trim().isEmpty()
+                ? (useFtp ? "ftp" : "local")
+                : backendName.trim().toLowerCase();
+        logger.info("File storage backend: {}", name);
+        switch (name) {
+            case "ftp":
+                return new FtpStorageBackend(ftpPool, ftpDownloadService);
+            case "memory":
+                return new InMemoryStorageBackend();
+            case "local":
+                Path base = Paths.get(uploadDir).toAbsolutePath().normalize();
+                // SOP and checklist files keep the flat layout served by WebMvcConfig under /files/**
+                Map<String, Path> roots = new HashMap<>();
+                roots.put(sopRoot, base);
+                roots.put(checklistRoot, base);
+                return new LocalStorageBackend(base, roots);
+            default:
+                throw new IllegalStateException("Unknown storage.backend: " + backendName);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.foxconn.sopchecklist.controller;
 import com.foxconn.sopchecklist.entity.AttendanceReport;
 import com.foxconn.sopchecklist.entity.Users;
 import com.foxconn.sopchecklist.repository.UsersRepository;
+import com.foxconn.sopchecklist.service.AttendanceEmailService;
 import com.foxconn.sopchecklist.service.AttendanceReportService;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
@@ -23,10 +24,13 @@ public class AttendanceReportController {
 
     private final AttendanceReportService service;
     private final UsersRepository usersRepository;
+    private final AttendanceEmailService attendanceStatsService;
 
-    public AttendanceReportController(AttendanceReportService service, UsersRepository usersRepository) {
+    public AttendanceReportController(AttendanceReportService service, UsersRepository usersRepository,
+                                      AttendanceEmailService attendanceStatsService) {
         this.service = service;
         this.usersRepository = usersRepository;
+        this.attendanceStatsService = attendanceStatsService;
     }
 
     @GetMapping
@@ -71,6 +75,22 @@ public class AttendanceReportController {
         return service.findByDateRange(startDate, endDate);
     }
 
+    @GetMapping("/stats")
+    public AttendanceEmailService.AttendanceStats stats(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        return attendanceStatsService.calculateAttendanceStats(date);
+    }
+
+    @GetMapping("/stats/range")
+    public ResponseEntity<?> statsRange(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        if (endDate.isBefore(startDate) || startDate.plusDays(366).isBefore(endDate)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Khoảng ngày không hợp lệ (tối đa 366 ngày)"));
+        }
+        return ResponseEntity.ok(attendanceStatsService.calculateDailyStats(startDate, endDate));
+    }
+
     @GetMapping("/user/{userId}/range")
     public List<AttendanceReport> findByUserIdAndDateRange(
             @PathVariable Integer userId,
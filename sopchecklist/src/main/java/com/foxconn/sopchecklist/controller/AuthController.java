@@ -1,5 +1,6 @@
 package com.foxconn.sopchecklist.controller;
 
+import com.foxconn.sopchecklist.config.AuthenticatedUserCache;
 import com.foxconn.sopchecklist.config.JwtTokenProvider;
 import com.foxconn.sopchecklist.config.LoginRequest;
 import com.foxconn.sopchecklist.config.RegisterRequest;
@@ -10,6 +11,7 @@ import com.foxconn.sopchecklist.entity.Role;
 import com.foxconn.sopchecklist.entity.UserStatus;
 import com.foxconn.sopchecklist.service.UsersService;
 import com.foxconn.sopchecklist.service.RoleService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
@@ -52,6 +54,9 @@ public class AuthController {
     
     @Autowired
     private RoleService roleService;
+
+    @Autowired
+    private AuthenticatedUserCache principalCache;
     
     @Autowired
     private CronMailAllSendService cronMailAllSendService;
@@ -202,7 +207,7 @@ public class AuthController {
         }
 
         UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        Users user = usersService.findByManv(userPrincipal.getUsername());
+        Users user = usersService.getCurrentAuthenticatedUser();
         if (user == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unauthorized");
         }
@@ -218,6 +223,28 @@ public class AuthController {
         return ResponseEntity.ok(new UserData(user, null, roles));
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                    @RequestBody(required = false) Map<String, String> request) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            String token = authorization.substring(7);
+            Claims claims = jwtTokenProvider.parseClaims(token);
+            if (claims != null) {
+                principalCache.evictToken(jwtTokenProvider.getTokenId(claims, token));
+            }
+        }
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String refreshToken = request != null ? request.get("refreshToken") : null;
+        // Chỉ thu hồi refresh token của phiên này; các thiết bị khác vẫn đăng nhập
+        if (refreshToken != null && !refreshToken.trim().isEmpty()
+                && authentication != null && authentication.getPrincipal() instanceof UserPrincipal) {
+            refreshTokenService.revoke(refreshToken, ((UserPrincipal) authentication.getPrincipal()).getUserId());
+        }
+        SecurityContextHolder.clearContext();
+        return ResponseEntity.ok(Map.of("message", "Đăng xuất thành công"));
+    }
+
     @PostMapping("/refresh")
     public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> request) {
         try {
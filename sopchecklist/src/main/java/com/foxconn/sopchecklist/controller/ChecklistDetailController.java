@@ -7,21 +7,30 @@ import com.foxconn.sopchecklist.entity.Improvements;
 import com.foxconn.sopchecklist.repository.ChecklistDetailRepository;
 import com.foxconn.sopchecklist.repository.ChecklistsRepository;
 import com.foxconn.sopchecklist.repository.ImprovementsRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
 import com.foxconn.sopchecklist.repository.CronMailAllRepository;
 import com.foxconn.sopchecklist.entity.CronMailAll;
 import com.foxconn.sopchecklist.service.ChecklistDetailFileStorageService;
 import com.foxconn.sopchecklist.service.MailChecklistDetailCompletionService;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
 import com.foxconn.sopchecklist.service.TimeService;
 import com.foxconn.sopchecklist.service.MailImprovementCreationService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
@@ -44,7 +53,7 @@ public class ChecklistDetailController {
     private com.foxconn.sopchecklist.service.serviceImpl.ChecklistReminderScheduler reminderScheduler;
 
     @Autowired
-    private TypeCronMailRepository typeCronMailRepository;
+    private MailTypeRegistry mailTypeRegistry;
 
     @Autowired
     private CronMailAllRepository cronMailAllRepository;
@@ -59,24 +68,39 @@ public class ChecklistDetailController {
         this.mailImprovementCreationService = mailImprovementCreationService;
     }
 
-    private boolean isImprovementCompleted(ChecklistDetail detail) {
-        String checklistDetailId = String.valueOf(detail.getId());
-        Improvements relatedImprovement = improvementsRepository
-                .findFirstByChecklistDetailId(checklistDetailId)
-                .orElse(null);
-        
-        if (relatedImprovement != null) {
-            String status = relatedImprovement.getStatus();
-            return "DONE".equalsIgnoreCase(status) || "COMPLETED".equalsIgnoreCase(status) || "Hoàn thành".equals(status);
-        }
-        return false;
+    /** Cap on page size and on the ids bound into one IN list (SQL Server allows 2100 parameters). */
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int ID_CHUNK_SIZE = 1000;
+    private static final Set<String> SORTABLE = Set.of("createdAt", "scheduledAt", "deadlineAt", "lastEditedAt", "status", "taskName", "id");
+
+    private static boolean isCompletedStatus(String status) {
+        return "DONE".equalsIgnoreCase(status) || "COMPLETED".equalsIgnoreCase(status) || "Hoàn thành".equals(status);
     }
 
     private ChecklistDetail enrichWithImprovementStatus(ChecklistDetail detail) {
-        detail.setHasCompletedImprovement(isImprovementCompleted(detail));
+        enrichWithImprovementStatus(List.of(detail));
         return detail;
     }
 
+    /**
+     * Set hasCompletedImprovement on every detail from one lookup per chunk of ids. As before, the first
+     * improvement linked to a detail decides.
+     */
+    private List<ChecklistDetail> enrichWithImprovementStatus(List<ChecklistDetail> details) {
+        List<String> ids = details.stream().map(d -> String.valueOf(d.getId())).distinct().collect(Collectors.toList());
+        Map<String, Boolean> completed = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+            for (Object[] row : improvementsRepository.findStatusesByChecklistDetailIds(chunk)) {
+                completed.putIfAbsent((String) row[0], isCompletedStatus((String) row[1]));
+            }
+        }
+        for (ChecklistDetail detail : details) {
+            detail.setHasCompletedImprovement(completed.getOrDefault(String.valueOf(detail.getId()), false));
+        }
+        return details;
+    }
+
     private void updateAbnormalInfoAndImprovement(ChecklistDetail existed, String newAbnormalInfo) {
         existed.setAbnormalInfo(newAbnormalInfo);
 
@@ -104,47 +128,63 @@ public class ChecklistDetailController {
         }
     }
 
+    /**
+     * Lists checklist details, newest first by default, filtered in the database.
+     * With parentId and no paging parameters the whole checklist is returned as a plain list (the checklist page);
+     * otherwise a page is returned. Passing afterCreatedAt + afterId (the last row of the previous page) switches to
+     * keyset paging in (createdAt DESC, id DESC) order. fromDate / toDate bound the scheduled date, inclusive.
+     */
     @GetMapping
-    public List<ChecklistDetail> findAll(
+    public ResponseEntity<?> findAll(
             @RequestParam(value = "parentId", required = false) Long parentId,
             @RequestParam(value = "status", required = false) String status,
             @RequestParam(value = "groupId", required = false) Long groupId,
-            @RequestParam(value = "q", required = false) String q
+            @RequestParam(value = "implementer", required = false) String implementer,
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "fromDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(value = "toDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate toDate,
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "sort", defaultValue = "createdAt") String sort,
+            @RequestParam(value = "direction", defaultValue = "desc") String direction,
+            @RequestParam(value = "afterCreatedAt", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedAt,
+            @RequestParam(value = "afterId", required = false) Long afterId
     ) {
-        List<ChecklistDetail> details;
-        if (parentId != null) {
-            details = checklistsRepository.findById(parentId)
-                    .map(cl -> {
-                        String implementer = (groupId != null) ? ("group:" + groupId) : null;
-                        if (q != null && !q.isEmpty()) {
-                            if (status != null && implementer != null) {
-                                return repository.searchByChecklistAndStatusAndImplementerAndQOrderByCreatedAtDesc(cl, status, implementer, q);
-                            } else if (status != null) {
-                                return repository.searchByChecklistAndStatusAndQOrderByCreatedAtDesc(cl, status, q);
-                            } else if (implementer != null) {
-                                return repository.searchByChecklistAndImplementerAndQOrderByCreatedAtDesc(cl, implementer, q);
-                            } else {
-                                return repository.searchByChecklistAndQOrderByCreatedAtDesc(cl, q);
-                            }
-                        } else {
-                            if (status != null && implementer != null) {
-                                return repository.findByChecklistAndStatusAndImplementerOrderByCreatedAtDesc(cl, status, implementer);
-                            } else if (status != null) {
-                                return repository.findByChecklistAndStatusOrderByCreatedAtDesc(cl, status);
-                            } else if (implementer != null) {
-                                return repository.findByChecklistAndImplementerOrderByCreatedAtDesc(cl, implementer);
-                            }
-                            return repository.findByChecklistOrderByCreatedAtDesc(cl);
-                        }
-                    })
-                    .orElseGet(List::of);
+        if (!SORTABLE.contains(sort)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unsupported sort field: " + sort));
+        }
+        String implementerFilter = groupId != null ? "group:" + groupId : blankToNull(implementer);
+        String statusFilter = blankToNull(status);
+        String qFilter = blankToNull(q);
+        LocalDateTime from = fromDate != null ? fromDate.atStartOfDay() : null;
+        LocalDateTime to = toDate != null ? toDate.plusDays(1).atStartOfDay() : null;
+        Sort.Direction dir = "asc".equalsIgnoreCase(direction) ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort order = "id".equals(sort) ? Sort.by(dir, "id") : Sort.by(dir, sort).and(Sort.by(dir, "id"));
+
+        boolean keyset = afterCreatedAt != null && afterId != null;
+        if (parentId != null && page == null && size == null && !keyset) {
+            List<ChecklistDetail> details = repository.searchAll(parentId, statusFilter, implementerFilter, from, to, qFilter, order);
+            return ResponseEntity.ok(enrichWithImprovementStatus(details));
+        }
+
+        int pageSize = Math.min(Math.max(size != null ? size : 50, 1), MAX_PAGE_SIZE);
+        Page<ChecklistDetail> result;
+        if (keyset) {
+            Pageable pageable = PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")));
+            List<ChecklistDetail> content = repository.searchAfter(parentId, statusFilter, implementerFilter, from, to, qFilter,
+                    afterCreatedAt, afterId, PageRequest.of(0, pageSize));
+            result = new PageImpl<>(content, pageable,
+                    repository.countSearch(parentId, statusFilter, implementerFilter, from, to, qFilter));
         } else {
-            details = repository.findAll();
+            Pageable pageable = PageRequest.of(Math.max(page != null ? page : 0, 0), pageSize, order);
+            result = repository.search(parentId, statusFilter, implementerFilter, from, to, qFilter, pageable);
         }
-        
-        return details.stream()
-                .map(this::enrichWithImprovementStatus)
-                .collect(Collectors.toList());
+        enrichWithImprovementStatus(result.getContent());
+        return ResponseEntity.ok(result);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
     }
 
     @PostMapping("/create-improvements-for-existing")
@@ -242,9 +282,7 @@ public class ChecklistDetailController {
                         }
                     }
                     
-                    return details.stream()
-                            .map(this::enrichWithImprovementStatus)
-                            .collect(Collectors.toList());
+                    return enrichWithImprovementStatus(details);
                 })
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
@@ -449,7 +487,7 @@ public class ChecklistDetailController {
             LocalDateTime now = timeService.nowVietnam();
             result.put("currentTime", now.toString());
             
-            com.foxconn.sopchecklist.entity.TypeCronMail checklistType = typeCronMailRepository.findByTypeName("CHECKLIST");
+            com.foxconn.sopchecklist.entity.TypeCronMail checklistType = mailTypeRegistry.find("CHECKLIST");
             result.put("checklistTypeExists", checklistType != null);
             if (checklistType != null) {
                 result.put("checklistTypeId", checklistType.getId());
@@ -1,6 +1,7 @@
 package com.foxconn.sopchecklist.controller;
 
 import com.foxconn.sopchecklist.service.ChecklistDetailFileStorageService;
+import com.foxconn.sopchecklist.service.UploadTask;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -34,10 +35,12 @@ public class ChecklistDetailUploadController {
             String preferredFolder = (sopDocumentName != null && !sopDocumentName.isEmpty())
                     ? sopDocumentName
                     : sopName;
-            String url = storageService.storeInFolder(file, preferredFolder);
+            UploadTask task = storageService.submitInFolder(file, preferredFolder);
             Map<String, Object> body = new HashMap<>();
-            body.put("url", url);
+            body.put("url", task.getUrl());
             body.put("name", file.getOriginalFilename());
+            body.put("uploadId", task.getId());
+            body.put("status", task.getStatus());
             
             return ResponseEntity.ok(body);
         } catch (Exception e) {
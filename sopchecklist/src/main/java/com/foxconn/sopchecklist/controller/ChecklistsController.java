@@ -2,8 +2,7 @@ package com.foxconn.sopchecklist.controller;
 
 import com.foxconn.sopchecklist.entity.Checklists;
 import com.foxconn.sopchecklist.repository.ChecklistsRepository;
-import com.foxconn.sopchecklist.repository.TimeRepeatChecklistRepository;
-import com.foxconn.sopchecklist.entity.TimeRepeatChecklist;
+import com.foxconn.sopchecklist.service.RecurrenceEngine;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -18,12 +17,12 @@ public class ChecklistsController {
 
     private final ChecklistsRepository repository;
     private final TimeService timeService;
-    private final TimeRepeatChecklistRepository timeRepeatRepo;
+    private final RecurrenceEngine recurrenceEngine;
 
-    public ChecklistsController(ChecklistsRepository repository, TimeService timeService, TimeRepeatChecklistRepository timeRepeatRepo) {
+    public ChecklistsController(ChecklistsRepository repository, TimeService timeService, RecurrenceEngine recurrenceEngine) {
         this.repository = repository;
         this.timeService = timeService;
-        this.timeRepeatRepo = timeRepeatRepo;
+        this.recurrenceEngine = recurrenceEngine;
     }
 
     @GetMapping
@@ -51,6 +50,7 @@ public class ChecklistsController {
         body.setId(null);
         body.setCreatedAt(timeService.nowVietnam());
         body.setScheduleUpdatedAt(timeService.nowVietnam());
+        body.setNextOccurrenceAt(body.getStartAt());
         Checklists created = repository.save(body);
         computeNextSchedule(java.util.Arrays.asList(created));
         return ResponseEntity.created(URI.create("/api/checklists/" + created.getId())).body(created);
@@ -72,7 +72,14 @@ public class ChecklistsController {
                 existed.setStartAt(incoming.getStartAt());
             }
             
-            if (incoming.getImplementers() != null) existed.setImplementers(incoming.getImplementers());
+            boolean implementersChanged = false;
+            if (incoming.getImplementers() != null) {
+                if (existed.getImplementers() == null
+                        || !new java.util.HashSet<>(existed.getImplementers()).equals(new java.util.HashSet<>(incoming.getImplementers()))) {
+                    implementersChanged = true;
+                }
+                existed.setImplementers(incoming.getImplementers());
+            }
             if (incoming.getSopDocumentId() != null) existed.setSopDocumentId(incoming.getSopDocumentId());
             
             if (incoming.getRepeatId() != null) {
@@ -91,38 +98,33 @@ public class ChecklistsController {
             
             if (scheduleChanged) {
                 existed.setScheduleUpdatedAt(timeService.nowVietnam());
+                existed.setNextOccurrenceAt(existed.getStartAt());
+            } else if (implementersChanged && existed.getRepeatId() == null) {
+                // Checklist không lặp: lập lại lịch tại startAt để người thực hiện mới cũng có bản ghi
+                // (checklist có lặp đã có lần kế tiếp cho mọi người thực hiện)
+                existed.setNextOccurrenceAt(existed.getStartAt());
             }
-            
+
             Checklists saved = repository.save(existed);
             computeNextSchedule(java.util.Arrays.asList(saved));
             return ResponseEntity.ok(saved);
         }).orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Next and next three occurrences after now. The stored next occurrence is used while it is still ahead;
+     * once it has passed (the generator has not caught up yet) it is computed from startAt.
+     */
     private void computeNextSchedule(java.util.List<Checklists> list) {
-        java.time.ZoneId vn = java.time.ZoneId.of("Asia/Ho_Chi_Minh");
-        java.time.ZonedDateTime now = java.time.ZonedDateTime.now(vn);
+        java.time.LocalDateTime now = timeService.nowVietnam();
         for (Checklists c : list) {
             if (c.getStartAt() == null || c.getRepeatId() == null) continue;
-            TimeRepeatChecklist tr = timeRepeatRepo.findById(c.getRepeatId()).orElse(null);
-            if (tr == null || tr.getNumber() == null || tr.getUnit() == null) continue;
-            java.time.ZonedDateTime next = c.getStartAt().atZone(vn);
-            java.util.List<java.time.LocalDateTime> next3 = new java.util.ArrayList<>();
-            java.time.temporal.ChronoUnit unit;
-            switch (tr.getUnit().toLowerCase()) {
-                case "week": unit = java.time.temporal.ChronoUnit.WEEKS; break;
-                case "month": unit = java.time.temporal.ChronoUnit.MONTHS; break;
-                case "year": unit = java.time.temporal.ChronoUnit.YEARS; break;
-                default: unit = java.time.temporal.ChronoUnit.DAYS; break;
-            }
-            int step = Math.max(1, tr.getNumber());
-            while (!next.isAfter(now)) {
-                next = next.plus(step, unit);
-            }
-            c.setNextScheduledAt(next.toLocalDateTime());
-            for (int i = 0; i < 3; i++) {
-                next3.add(next.plus((long) i * step, unit).toLocalDateTime());
-            }
+            RecurrenceEngine.Rule rule = recurrenceEngine.rule(c.getRepeatId());
+            if (rule == null) continue;
+            java.time.LocalDateTime after = c.getNextOccurrenceAt() != null && c.getNextOccurrenceAt().isAfter(now)
+                    ? c.getNextOccurrenceAt().minusNanos(1) : now;
+            java.util.List<java.time.LocalDateTime> next3 = RecurrenceEngine.nextAfter(c.getStartAt(), rule, after, 3);
+            c.setNextScheduledAt(next3.get(0));
             c.setNextThreeScheduled(next3);
         }
     }
@@ -70,6 +70,11 @@ public class CronMailAllController {
         return scheduler.dispatchOnce();
     }
 
+    @GetMapping("/dispatch/stats")
+    public Map<String, Object> dispatchStats() {
+        return scheduler.getStats();
+    }
+
     /**
      * Test endpoint: Tạo mail với danh sách email dài và trigger gửi ngay
      * POST /api/cron-mail-all/test-send
@@ -106,7 +111,7 @@ public class CronMailAllController {
             if (mail != null) {
                 result.put("mailId", mail.getId());
                 result.put("status", "created");
-                result.put("message", "Mail record created successfully. Use /dispatch to send it.");
+                result.put("message", "Mail record created successfully. It is dispatched right away.");
             } else {
                 result.put("status", "failed");
                 result.put("message", "Failed to create mail record");
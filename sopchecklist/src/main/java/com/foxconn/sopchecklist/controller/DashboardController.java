@@ -0,0 +1,58 @@
+package com.foxconn.sopchecklist.controller;
+
+import com.foxconn.sopchecklist.entity.Users;
+import com.foxconn.sopchecklist.service.DashboardService;
+import com.foxconn.sopchecklist.service.SOPPermissionMatrix;
+import com.foxconn.sopchecklist.service.UsersService;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@CrossOrigin
+public class DashboardController {
+
+    private static final int RECENT_SHOWN = 5;
+
+    private final DashboardService dashboardService;
+    private final UsersService usersService;
+    private final SOPPermissionMatrix permissionMatrix;
+
+    public DashboardController(DashboardService dashboardService, UsersService usersService,
+                               SOPPermissionMatrix permissionMatrix) {
+        this.dashboardService = dashboardService;
+        this.usersService = usersService;
+        this.permissionMatrix = permissionMatrix;
+    }
+
+    /**
+     * Dashboard figures in one response. Totals are global; recent SOPs and documents are limited to those the
+     * caller may view. days (1-31) sets the checklist completion window.
+     */
+    @GetMapping("/summary")
+    public Map<String, Object> summary(@RequestParam(defaultValue = "7") int days) {
+        Map<String, Object> summary = new LinkedHashMap<>(dashboardService.summary(Math.min(Math.max(days, 1), 31)));
+
+        Users me = usersService.getCurrentAuthenticatedUser();
+        SOPPermissionMatrix.UserGrants grants = permissionMatrix.forUser(me);
+        summary.put("recentSops", recent(summary.get("recentSops"),
+                row -> grants.canView((Long) row.get("id"))));
+        summary.put("recentDocuments", recent(summary.get("recentDocuments"),
+                row -> grants.canViewDocument((Long) row.get("sopId"), (Integer) row.get("id"))));
+        summary.put("recentChecklists", recent(summary.get("recentChecklists"), row -> true));
+        return summary;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> recent(Object rows, Predicate<Map<String, Object>> visible) {
+        return ((List<Map<String, Object>>) rows).stream()
+                .filter(visible)
+                .limit(RECENT_SHOWN)
+                .collect(Collectors.toList());
+    }
+}
@@ -1,11 +1,15 @@
 package com.foxconn.sopchecklist.controller;
 
-import org.apache.commons.net.ftp.FTP;
-import org.apache.commons.net.ftp.FTPClient;
+import com.foxconn.sopchecklist.service.ByteRange;
+import com.foxconn.sopchecklist.service.ContentAddressedStore;
+import com.foxconn.sopchecklist.service.FileLocationService;
+import com.foxconn.sopchecklist.service.FtpContentCache;
+import com.foxconn.sopchecklist.service.FtpDownloadService;
+import com.foxconn.sopchecklist.service.FtpFileResource;
+import com.foxconn.sopchecklist.service.UploadSpoolService;
+import com.foxconn.sopchecklist.service.UploadTask;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,7 +17,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 
 @RestController
 @CrossOrigin
@@ -21,18 +26,17 @@ public class FilesController {
 
     private static final Logger logger = LoggerFactory.getLogger(FilesController.class);
     
-    @Value("${ftp.host:}")
-    private String ftpHost;
-    
-    @Value("${ftp.port:21}")
-    private int ftpPort;
-    
-    @Value("${ftp.username:}")
-    private String ftpUsername;
-    
-    @Value("${ftp.password:}")
-    private String ftpPassword;
+    // Tomcat request attributes for handing a file to the connector's sendfile support
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
     
+    private final FtpDownloadService ftpDownloadService;
+    private final FtpContentCache contentCache;
+    private final FileLocationService fileLocationService;
+    private final UploadSpoolService uploadSpool;
+
     @Value("${ftp.checklist-upload-dir:upload_fitchecklist}")
     private String ftpChecklistUploadDir;
 
@@ -42,6 +46,14 @@ public class FilesController {
     @Value("${ftp.improvement-upload-dir:upload_fitimprovement}")
     private String ftpImprovementUploadDir;
 
+    public FilesController(FtpDownloadService ftpDownloadService, FtpContentCache contentCache,
+                           FileLocationService fileLocationService, UploadSpoolService uploadSpool) {
+        this.ftpDownloadService = ftpDownloadService;
+        this.contentCache = contentCache;
+        this.fileLocationService = fileLocationService;
+        this.uploadSpool = uploadSpool;
+    }
+
     @GetMapping("/files/**")
     public ResponseEntity<Resource> serveFile(HttpServletRequest request) {
         try {
@@ -59,48 +71,21 @@ public class FilesController {
             
             logger.info("Serving file request. Original URI: {}, Decoded path: {}", requestURI, filePath);
             
-            return serveFileFromFtp(filePath);
+            return serveFileFromFtp(filePath, request);
         } catch (Exception e) {
             logger.error("File serving error. URI: {}, Error: {}", request.getRequestURI(), e.getMessage(), e);
             return ResponseEntity.badRequest().build();
         }
     }
     
-    private ResponseEntity<Resource> serveFileFromFtp(String filePath) {
-        FTPClient ftp = new FTPClient();
+    private ResponseEntity<Resource> serveFileFromFtp(String filePath, HttpServletRequest request) {
+        FtpFileResource resource = null;
         try {
-            ftp.setConnectTimeout(30000);
-            ftp.setControlEncoding("UTF-8");
-            ftp.connect(ftpHost, ftpPort);
-            
-            if (!ftp.login(ftpUsername, ftpPassword)) {
-                logger.error("FTP login failed");
-                return ResponseEntity.notFound().build();
-            }
-            
-            ftp.enterLocalPassiveMode();
-            ftp.setFileType(FTP.BINARY_FILE_TYPE);
-            
-            ByteArrayResource resource = tryFetchFromRoot(ftp, ftpImprovementUploadDir, filePath);
-            if (resource == null) {
-                resource = tryFetchFromRoot(ftp, ftpSopUploadDir, filePath);
-            }
-            if (resource == null) {
-                resource = tryFetchFromRoot(ftp, ftpChecklistUploadDir, filePath);
-            }
-            
-            if (resource == null) {
-                logger.error("Cannot retrieve file from FTP (not found in all roots): {}", filePath);
-                return ResponseEntity.notFound().build();
-            }
-            
             String fileName = filePath.substring(filePath.lastIndexOf('/') + 1);
             String contentType = getContentType(fileName);
             String encodedFileName = java.net.URLEncoder.encode(fileName, "UTF-8")
                 .replaceAll("\\+", "%20");
             
-            logger.info("Successfully retrieved file from FTP: {}", filePath);
-            
             // Determine if file should be displayed inline (PDF, images) or downloaded (other files)
             boolean isDisplayable = contentType.startsWith("image/") || 
                                    contentType.equals("application/pdf") ||
@@ -115,83 +100,125 @@ public class FilesController {
                 contentDisposition = "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName;
             }
             
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition)
-                    .body(resource);
-                    
-        } catch (Exception e) {
-            logger.error("FTP file serving error: {}", e.getMessage(), e);
-            return ResponseEntity.notFound().build();
-        } finally {
-            if (ftp.isConnected()) {
-                try { ftp.logout(); } catch (Exception ignored) {}
-                try { ftp.disconnect(); } catch (Exception ignored) {}
-            }
-        }
-    }
-    
-    private ByteArrayResource tryFetchFromRoot(FTPClient ftp, String rootDir, String filePath) {
-        try {
-            if (rootDir == null || rootDir.isEmpty()) return null;
-            if (!ftp.changeWorkingDirectory(rootDir)) {
-                logger.warn("Cannot change to FTP root dir: {}", rootDir);
-                return null;
-            }
-            
-            // Remove rootDir prefix from filePath if it exists
-            String relativePath = filePath;
-            if (filePath.startsWith(rootDir + "/")) {
-                relativePath = filePath.substring(rootDir.length() + 1);
-            } else if (filePath.startsWith(rootDir)) {
-                relativePath = filePath.substring(rootDir.length());
+            // Uploads still being replicated are served from the local spool (no sendfile: the spool file goes away)
+            UploadTask pending = uploadSpool.findPending(filePath);
+            if (pending != null) {
+                logger.info("Serving file from upload spool: {} ({} bytes)", filePath, pending.getSize());
+                return RangeDownloadSupport.serveFile(pending.getSpoolFile(), pending.getSize(), pending.getCreatedAt(),
+                        request, MediaType.parseMediaType(contentType), contentDisposition);
             }
             
-            String[] pathParts = relativePath.split("/");
-            if (pathParts.length < 1) {
-                logger.error("Invalid file path after removing root: {}", filePath);
-                return null;
+            FtpContentCache.Entry cached = contentCache.get(filePath);
+            if (cached != null) {
+                logger.info("Serving file from local cache: {} ({} bytes)", filePath, cached.getSize());
+                return serveFromCache(cached, request, MediaType.parseMediaType(contentType), contentDisposition);
             }
             
-            // Navigate through each directory in the path (excluding the filename)
-            for (int i = 0; i < pathParts.length - 1; i++) {
-                String dirName = pathParts[i];
-                if (dirName == null || dirName.trim().isEmpty()) {
-                    continue; // Skip empty path parts
+            FtpDownloadService.RangeSelector rangeSelector = RangeDownloadSupport.ftpSelector(request);
+            // One lookup when the upload recorded its root; otherwise probe every root and remember the hit
+            String foundRoot = fileLocationService.findRoot(filePath);
+            if (foundRoot != null) {
+                resource = tryOpenFromRoot(foundRoot, filePath, rangeSelector);
+                if (resource == null) {
+                    fileLocationService.remove(filePath);
+                    foundRoot = null;
                 }
-                
-                // Set UTF-8 encoding for directory names with Vietnamese characters
-                try {
-                    if (!ftp.changeWorkingDirectory(dirName)) {
-                        logger.warn("Subdir not found under {}: {} (trying to access path: {})", rootDir, dirName, relativePath);
-                        return null; 
+            }
+            if (resource == null) {
+                for (String rootDir : new String[]{ftpImprovementUploadDir, ftpSopUploadDir, ftpChecklistUploadDir}) {
+                    resource = tryOpenFromRoot(rootDir, filePath, rangeSelector);
+                    if (resource != null) {
+                        foundRoot = rootDir;
+                        fileLocationService.record(filePath, rootDir);
+                        break;
                     }
-                } catch (Exception dirEx) {
-                    logger.warn("Error changing to subdir {}: {}", dirName, dirEx.getMessage());
-                    return null;
                 }
             }
             
-            String fileName = pathParts[pathParts.length - 1];
-            if (fileName == null || fileName.trim().isEmpty()) {
-                logger.error("Empty filename in path: {}", filePath);
-                return null;
+            if (resource == null) {
+                logger.error("Cannot retrieve file from FTP (not found in all roots): {}", filePath);
+                return ResponseEntity.notFound().build();
             }
             
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            boolean success = ftp.retrieveFile(fileName, outputStream);
-            if (!success) {
-                logger.warn("File not found. Root: {}, FileName: {}, Relative path: {}", rootDir, fileName, relativePath);
-                return null;
+            if (resource.isNotModified()) {
+                return RangeDownloadSupport.checkNotModified(request, resource.getTotalLength(), resource.lastModified());
             }
-            
-            logger.debug("Successfully retrieved file from {}: {}", rootDir, relativePath);
-            return new ByteArrayResource(outputStream.toByteArray());
+            logger.info("Streaming file from FTP: {} ({} bytes, range {})", filePath, resource.getTotalLength(), resource.getRange());
+            
+            // Content-Length comes from the FTP SIZE reply; the body is piped from the data connection
+            InputStream body = null;
+            if (!resource.isRangeUnsatisfiable()) {
+                body = resource.getInputStream();
+                if (resource.getRange() == null) {
+                    // Whole-file downloads are copied into the local cache while they stream
+                    body = contentCache.tee(filePath, foundRoot,
+                            ContentAddressedStore.storagePath(relativeTo(foundRoot, filePath)),
+                            resource.getTotalLength(), resource.lastModified(), body);
+                }
+            }
+            return RangeDownloadSupport.respond(body, resource.getTotalLength(), resource.getRange(),
+                    resource.lastModified(), MediaType.parseMediaType(contentType), contentDisposition);
+                    
+        } catch (Exception e) {
+            logger.error("FTP file serving error: {}", e.getMessage(), e);
+            if (resource != null) {
+                resource.discard();
+            }
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Serve a cache hit. Under Tomcat the file is handed to the connector's sendfile (FileChannel.transferTo),
+     * otherwise it is streamed from a FileChannel positioned at the range start.
+     */
+    private ResponseEntity<Resource> serveFromCache(FtpContentCache.Entry cached, HttpServletRequest request,
+                                                    MediaType contentType, String contentDisposition) throws IOException {
+        long size = cached.getSize();
+        ResponseEntity<Resource> notModified = RangeDownloadSupport.checkNotModified(request, size, cached.getLastModified());
+        if (notModified != null) return notModified;
+        ByteRange range = RangeDownloadSupport.resolve(request, size, cached.getLastModified());
+        if (range != null && !range.isSatisfiable()) {
+            return RangeDownloadSupport.respond(null, size, range, cached.getLastModified(), contentType, contentDisposition);
+        }
+        long start = range != null ? range.getStart() : 0;
+        long length = range != null ? range.getLength() : size;
+        contentCache.recordServed(length);
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            request.setAttribute(SENDFILE_FILENAME_ATTR, cached.getFile().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + length);
+            return RangeDownloadSupport.respond(null, size, range, cached.getLastModified(), contentType, contentDisposition);
+        }
+        return RangeDownloadSupport.serveFile(cached.getFile(), size, cached.getLastModified(), request,
+                contentType, contentDisposition);
+    }
+    
+    private String relativeTo(String rootDir, String filePath) {
+        // Remove rootDir prefix from filePath if it exists
+        if (filePath.startsWith(rootDir + "/")) {
+            return filePath.substring(rootDir.length() + 1);
+        } else if (filePath.startsWith(rootDir)) {
+            return filePath.substring(rootDir.length());
+        }
+        return filePath;
+    }
+    
+    private FtpFileResource tryOpenFromRoot(String rootDir, String filePath, FtpDownloadService.RangeSelector rangeSelector) {
+        if (rootDir == null || rootDir.isEmpty()) return null;
+        
+        // Content-addressed URLs (_cas/<sha256>/<name>) resolve to their shared blob
+        String relativePath = ContentAddressedStore.storagePath(relativeTo(rootDir, filePath));
+        try {
+            FtpFileResource resource = ftpDownloadService.open(rootDir, relativePath, rangeSelector);
+            if (resource == null) {
+                logger.warn("File not found. Root: {}, Relative path: {}", rootDir, relativePath);
+            }
+            return resource;
         } catch (Exception e) {
             logger.warn("Error fetching from root {} with path {}: {}", rootDir, filePath, e.getMessage(), e);
             return null;
-        } finally {
-            try { ftp.changeWorkingDirectory("/"); } catch (Exception ignored) {}
         }
     }
     
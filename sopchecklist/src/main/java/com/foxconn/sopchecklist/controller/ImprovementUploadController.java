@@ -1,9 +1,12 @@
 package com.foxconn.sopchecklist.controller;
 
-import org.apache.commons.net.ftp.FTP;
-import org.apache.commons.net.ftp.FTPClient;
+import com.foxconn.sopchecklist.service.ContentAddressedStore;
+import com.foxconn.sopchecklist.service.FileStorageEngine;
+import com.foxconn.sopchecklist.service.FtpDownloadService;
+import com.foxconn.sopchecklist.service.FtpFileResource;
+import com.foxconn.sopchecklist.service.StorageBucket;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -14,7 +17,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -28,21 +31,20 @@ public class ImprovementUploadController {
     @Value("${storage.use-ftp:false}")
     private boolean useFtp;
 
-    @Value("${ftp.host:}")
-    private String ftpHost;
-
-    @Value("${ftp.port:21}")
-    private int ftpPort;
-
-    @Value("${ftp.username:}")
-    private String ftpUsername;
-
-    @Value("${ftp.password:}")
-    private String ftpPassword;
-
     @Value("${ftp.improvement-upload-dir:upload_fitimprovement}")
     private String ftpImprovementUploadDir;
 
+    private final FileStorageEngine storageEngine;
+    private final FtpDownloadService ftpDownloadService;
+    private final ContentAddressedStore contentStore;
+
+    public ImprovementUploadController(FileStorageEngine storageEngine, FtpDownloadService ftpDownloadService,
+                                       ContentAddressedStore contentStore) {
+        this.storageEngine = storageEngine;
+        this.ftpDownloadService = ftpDownloadService;
+        this.contentStore = contentStore;
+    }
+
     @PostMapping
     public ResponseEntity<?> upload(@RequestParam("file") MultipartFile file,
                                     @RequestParam(value = "improvementName", required = false) String improvementName) {
@@ -51,7 +53,10 @@ public class ImprovementUploadController {
                     ? improvementName
                     : "General";
             
-            String url = storeFileInFtp(file, preferredFolder);
+            String url = contentStore.isEnabled(StorageBucket.IMPROVEMENT)
+                    ? contentStore.store(StorageBucket.IMPROVEMENT, file).getUrl()
+                    : storageEngine.store(StorageBucket.IMPROVEMENT, file, preferredFolder).getUrl();
+            logger.info("Successfully uploaded improvement file: {}", url);
             Map<String, Object> body = new HashMap<>();
             body.put("url", url);
             body.put("name", file.getOriginalFilename());
@@ -76,125 +81,50 @@ public class ImprovementUploadController {
                 return serveFileFromFtp(filePath);
             }
 
-            return ResponseEntity.notFound().build();
+            InputStream in = storageEngine.open(StorageBucket.IMPROVEMENT,
+                    "/files/" + storageEngine.getRootDir(StorageBucket.IMPROVEMENT) + "/" + filePath);
+            if (in == null) {
+                return ResponseEntity.notFound().build();
+            }
+            String fileName = filePath.substring(filePath.lastIndexOf('/') + 1);
+            String encodedFileName = java.net.URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(guessContentType(fileName)))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName)
+                    .body(new InputStreamResource(in));
         } catch (Exception e) {
             logger.error("Improvement download error: {}", e.getMessage(), e);
             return ResponseEntity.badRequest().build();
         }
     }
 
-    private String storeFileInFtp(MultipartFile file, String folderName) throws Exception {
-        FTPClient ftp = new FTPClient();
-        try {
-            ftp.setConnectTimeout(30000);
-            ftp.setControlEncoding("UTF-8");
-            ftp.connect(ftpHost, ftpPort);
-            
-            if (!ftp.login(ftpUsername, ftpPassword)) {
-                throw new Exception("FTP login failed");
-            }
-            
-            ftp.enterLocalPassiveMode();
-            ftp.setFileType(FTP.BINARY_FILE_TYPE);
-            
-            if (!ftp.changeWorkingDirectory(ftpImprovementUploadDir)) {
-                logger.warn("Cannot change to improvement upload directory: {}, creating it", ftpImprovementUploadDir);
-                if (!ftp.makeDirectory(ftpImprovementUploadDir)) {
-                    throw new Exception("Cannot create improvement upload directory: " + ftpImprovementUploadDir);
-                }
-                if (!ftp.changeWorkingDirectory(ftpImprovementUploadDir)) {
-                    throw new Exception("Cannot change to improvement upload directory: " + ftpImprovementUploadDir);
-                }
-            }
-            
-            if (!ftp.changeWorkingDirectory(folderName)) {
-                if (!ftp.makeDirectory(folderName)) {
-                    throw new Exception("Cannot create folder: " + folderName);
-                }
-                if (!ftp.changeWorkingDirectory(folderName)) {
-                    throw new Exception("Cannot change to folder: " + folderName);
-                }
-            }
-            
-            boolean success = ftp.storeFile(file.getOriginalFilename(), file.getInputStream());
-            if (!success) {
-                throw new Exception("Cannot store file: " + file.getOriginalFilename());
-            }
-            
-            String url = "/files/" + ftpImprovementUploadDir + "/" + folderName + "/" + file.getOriginalFilename();
-            logger.info("Successfully uploaded improvement file: {}", url);
-            
-            return url;
-            
-        } finally {
-            if (ftp.isConnected()) {
-                try { ftp.logout(); } catch (Exception ignored) {}
-                try { ftp.disconnect(); } catch (Exception ignored) {}
-            }
-        }
-    }
-
     private ResponseEntity<Resource> serveFileFromFtp(String filePath) {
-        FTPClient ftp = new FTPClient();
         try {
-            ftp.setConnectTimeout(30000);
-            ftp.setControlEncoding("UTF-8");
-            ftp.connect(ftpHost, ftpPort);
-            
-            if (!ftp.login(ftpUsername, ftpPassword)) {
-                logger.error("FTP login failed");
-                return ResponseEntity.notFound().build();
-            }
-            
-            ftp.enterLocalPassiveMode();
-            ftp.setFileType(FTP.BINARY_FILE_TYPE);
-            
-            if (!ftp.changeWorkingDirectory(ftpImprovementUploadDir)) {
-                logger.error("Cannot change to improvement upload directory: {}", ftpImprovementUploadDir);
-                return ResponseEntity.notFound().build();
-            }
-            
             String[] parts = filePath.split("/");
             if (parts.length < 2) {
                 logger.error("Invalid file path: {}", filePath);
                 return ResponseEntity.notFound().build();
             }
-            
-            for (int i = 0; i < parts.length - 1; i++) {
-                if (!ftp.changeWorkingDirectory(parts[i])) {
-                    logger.error("Cannot change to FTP subdirectory: {}", parts[i]);
-                    return ResponseEntity.notFound().build();
-                }
-            }
-            
-            String fileName = parts[parts.length - 1];
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            boolean success = ftp.retrieveFile(fileName, outputStream);
-            if (!success) {
-                logger.error("Cannot retrieve file from FTP: {}", fileName);
+
+            FtpFileResource resource = ftpDownloadService.open(ftpImprovementUploadDir,
+                    ContentAddressedStore.storagePath(filePath));
+            if (resource == null) {
+                logger.error("Cannot retrieve file from FTP: {}", filePath);
                 return ResponseEntity.notFound().build();
             }
-            
-            byte[] fileBytes = outputStream.toByteArray();
-            ByteArrayResource resource = new ByteArrayResource(fileBytes);
-            
+
+            String fileName = parts[parts.length - 1];
             String contentType = guessContentType(fileName);
             String encodedFileName = java.net.URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
-            
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName)
                     .body(resource);
-                    
         } catch (Exception e) {
             logger.error("FTP download error: {}", e.getMessage(), e);
             return ResponseEntity.notFound().build();
-        } finally {
-            if (ftp.isConnected()) {
-                try { ftp.logout(); } catch (Exception ignored) {}
-                try { ftp.disconnect(); } catch (Exception ignored) {}
-            }
         }
     }
 
@@ -0,0 +1,195 @@
+package com.foxconn.sopchecklist.controller;
+
+import com.foxconn.sopchecklist.service.ByteRange;
+import com.foxconn.sopchecklist.service.FtpDownloadService;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Range / If-Range handling shared by the file download endpoints.
+ * Only single "bytes=" ranges are honoured; anything else is served as the whole file.
+ */
+final class RangeDownloadSupport {
+
+    private RangeDownloadSupport() {
+    }
+
+    static String etag(long size, long lastModified) {
+        if (size < 0 || lastModified <= 0) return null;
+        return "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+    }
+
+    /**
+     * Evaluate the request's conditional headers (If-None-Match, If-Modified-Since, ...) against the file.
+     * Returns the bodiless 304 / 412 response to send, or null to go on and serve the file. Call it before
+     * opening any stream: Spring answers a matching conditional request without reading or closing the body.
+     */
+    static ResponseEntity<Resource> checkNotModified(HttpServletRequest request, long size, long lastModified) {
+        String etag = etag(size, lastModified);
+        long modified = lastModified > 0 ? lastModified : -1;
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        HttpServletResponse response = attributes instanceof ServletRequestAttributes
+                ? ((ServletRequestAttributes) attributes).getResponse() : null;
+        if (response != null) {
+            // Status and validators are written to the response by the check itself
+            if (!new ServletWebRequest(request, response).checkNotModified(etag, modified)) return null;
+            return ResponseEntity.status(response.getStatus()).build();
+        }
+        if (!new ServletWebRequest(request).checkNotModified(etag, modified)) return null;
+        ResponseEntity.BodyBuilder notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED);
+        if (etag != null) notModified.eTag(etag);
+        if (modified > 0) notModified.lastModified(modified);
+        return notModified.build();
+    }
+
+    /**
+     * Range selector for {@link FtpDownloadService#open} that also answers conditional requests, so a
+     * not-modified file is never retrieved.
+     */
+    static FtpDownloadService.RangeSelector ftpSelector(HttpServletRequest request) {
+        return new FtpDownloadService.RangeSelector() {
+            @Override
+            public ByteRange select(long size, long lastModified) {
+                return resolve(request, size, lastModified);
+            }
+
+            @Override
+            public boolean notModified(long size, long lastModified) {
+                // Evaluated without touching the response; the controller builds the answer with checkNotModified
+                return new ServletWebRequest(request).checkNotModified(etag(size, lastModified),
+                        lastModified > 0 ? lastModified : -1);
+            }
+        };
+    }
+
+    /**
+     * Resolve the request's Range header against a file of {@code size} bytes.
+     * Returns null to send the whole file, or {@link ByteRange#unsatisfiable()} for a 416.
+     */
+    static ByteRange resolve(HttpServletRequest request, long size, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || size < 0) return null;
+        if (!ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), size, lastModified)) return null;
+
+        String spec = rangeHeader.trim();
+        if (!spec.regionMatches(true, 0, "bytes=", 0, 6)) return null;
+        spec = spec.substring(6).trim();
+        if (spec.isEmpty() || spec.indexOf(',') >= 0) return null;
+
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        String first = spec.substring(0, dash).trim();
+        String last = spec.substring(dash + 1).trim();
+        try {
+            if (first.isEmpty()) {
+                // Suffix range: last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) return ByteRange.unsatisfiable();
+                return ByteRange.of(Math.max(0, size - suffix), size - 1);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) return ByteRange.unsatisfiable();
+            if (end < start) return null;
+            return ByteRange.of(start, end);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean ifRangeMatches(String ifRange, long size, long lastModified) {
+        if (ifRange == null || ifRange.trim().isEmpty()) return true;
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // Weak validators never match for ranges
+            String etag = etag(size, lastModified);
+            return etag != null && etag.equals(value);
+        }
+        if (lastModified <= 0) return false;
+        try {
+            long since = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return lastModified / 1000 == since / 1000;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Serve a local file, honouring the request's Range header.
+     * The channel is positioned at the range start instead of skipping bytes.
+     */
+    static ResponseEntity<Resource> serveFile(Path file, long size, long lastModified, HttpServletRequest request,
+                                              MediaType contentType, String contentDisposition) throws IOException {
+        ResponseEntity<Resource> notModified = checkNotModified(request, size, lastModified);
+        if (notModified != null) return notModified;
+        ByteRange range = resolve(request, size, lastModified);
+        InputStream body = null;
+        if (range == null || range.isSatisfiable()) {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            long start = range != null ? range.getStart() : 0;
+            long length = range != null ? range.getLength() : size;
+            channel.position(start);
+            body = new BoundedInputStream(Channels.newInputStream(channel), length);
+        }
+        return respond(body, size, range, lastModified, contentType, contentDisposition);
+    }
+
+    /**
+     * Build a 200 / 206 / 416 response around an already positioned stream.
+     * The body is a plain InputStreamResource so Spring does not try to apply the Range header a second time.
+     * A null body sends headers only, for when the container writes the content itself (sendfile).
+     */
+    static ResponseEntity<Resource> respond(InputStream body, long size, ByteRange range, long lastModified,
+                                            MediaType contentType, String contentDisposition) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (lastModified > 0) {
+            headers.setLastModified(lastModified);
+        }
+        String etag = etag(size, lastModified);
+        if (etag != null) {
+            headers.setETag(etag);
+        }
+
+        if (range != null && !range.isSatisfiable()) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).build();
+        }
+
+        headers.setContentType(contentType);
+        if (contentDisposition != null) {
+            headers.set(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+        if (range != null) {
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + range.getStart() + "-" + range.getEnd() + "/" + size);
+            headers.setContentLength(range.getLength());
+            ResponseEntity.BodyBuilder partial = ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers);
+            return body != null ? partial.body(new InputStreamResource(body)) : partial.build();
+        }
+        if (size >= 0) {
+            headers.setContentLength(size);
+        }
+        ResponseEntity.BodyBuilder ok = ResponseEntity.ok().headers(headers);
+        return body != null ? ok.body(new InputStreamResource(body)) : ok.build();
+    }
+}
@@ -3,6 +3,7 @@ package com.foxconn.sopchecklist.controller;
 import com.foxconn.sopchecklist.entity.SOPDocumentPermission;
 import com.foxconn.sopchecklist.entity.Users;
 import com.foxconn.sopchecklist.repository.SOPDocumentPermissionRepository;
+import com.foxconn.sopchecklist.service.SOPPermissionMatrix;
 import com.foxconn.sopchecklist.service.UsersService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,10 +18,12 @@ public class SOPDocumentPermissionsController {
 
     private final SOPDocumentPermissionRepository repo;
     private final UsersService usersService;
+    private final SOPPermissionMatrix permissionMatrix;
 
-    public SOPDocumentPermissionsController(SOPDocumentPermissionRepository repo, UsersService usersService) {
+    public SOPDocumentPermissionsController(SOPDocumentPermissionRepository repo, UsersService usersService, SOPPermissionMatrix permissionMatrix) {
         this.repo = repo;
         this.usersService = usersService;
+        this.permissionMatrix = permissionMatrix;
     }
 
     @GetMapping("/{id}/permissions")
@@ -94,6 +97,7 @@ public class SOPDocumentPermissionsController {
             }
             
             if (!toSave.isEmpty()) repo.saveAll(toSave);
+            permissionMatrix.invalidateAll();
             return ResponseEntity.ok().build();
         } catch (Exception e) {
             e.printStackTrace();
@@ -143,117 +147,34 @@ public class SOPDocumentPermissionsController {
             toSave.add(p);
         }
         if (!toSave.isEmpty()) repo.saveAll(toSave);
+        permissionMatrix.invalidateAll();
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/{id}/permissions/check")
     public boolean canViewSop(@PathVariable Long id) {
         Users me = usersService.getCurrentAuthenticatedUser();
-        if (me == null) return false;
-        List<SOPDocumentPermission> userPerms = repo.findBySopIdAndUserId(id, me.getUserID().longValue());
-        boolean userView = userPerms.stream().anyMatch(SOPDocumentPermission::isView);
-        List<Long> groupIds = (me.getGroups() == null) ? Collections.emptyList() : me.getGroups().stream().map(g -> g.getId()).collect(Collectors.toList());
-        boolean groupView = groupIds.isEmpty() ? false : repo.findBySopIdAndGroupIdIn(id, groupIds).stream().anyMatch(SOPDocumentPermission::isView);
-        return userView || groupView;
+        return (permissionMatrix.forUser(me).sopRights(id) & SOPPermissionMatrix.VIEW) != 0;
     }
 
     @GetMapping("/documents/{documentId}/permissions/check")
     public boolean canViewDoc(@PathVariable Integer documentId) {
         Users me = usersService.getCurrentAuthenticatedUser();
-        if (me == null) return false;
-        List<SOPDocumentPermission> userPerms = repo.findByDocumentIdAndUserId(documentId, me.getUserID().longValue());
-        boolean userView = userPerms.stream().anyMatch(SOPDocumentPermission::isView);
-        List<Long> groupIds = (me.getGroups() == null) ? Collections.emptyList() : me.getGroups().stream().map(g -> g.getId()).collect(Collectors.toList());
-        boolean groupView = groupIds.isEmpty() ? false : repo.findByDocumentIdAndGroupIdIn(documentId, groupIds).stream().anyMatch(SOPDocumentPermission::isView);
-        return userView || groupView;
+        return (permissionMatrix.forUser(me).documentRights(documentId) & SOPPermissionMatrix.VIEW) != 0;
     }
 
     @GetMapping("/{id}/permissions/my")
     public Map<String, Boolean> getMyPermissions(@PathVariable Long id) {
         Users me = usersService.getCurrentAuthenticatedUser();
-        Map<String, Boolean> result = new HashMap<>();
-        if (me == null) {
-            result.put("view", false);
-            result.put("edit", false);
-            result.put("delete", false);
-            result.put("create", false);
-            return result;
-        }
-
-        boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-            String n = r.getName();
-            return "ADMIN".equalsIgnoreCase(n);
-        });
-        if (isAdmin) {
-            result.put("view", true);
-            result.put("edit", true);
-            result.put("delete", true);
-            result.put("create", true);
-            return result;
-        }
-
-        List<SOPDocumentPermission> userPerms = repo.findBySopIdAndUserId(id, me.getUserID().longValue());
-        boolean userView = userPerms.stream().anyMatch(SOPDocumentPermission::isView);
-        boolean userEdit = userPerms.stream().anyMatch(SOPDocumentPermission::isEdit);
-        boolean userDelete = userPerms.stream().anyMatch(SOPDocumentPermission::isDel);
-        boolean userCreate = userPerms.stream().anyMatch(SOPDocumentPermission::isCreate);
-
-        List<Long> groupIds = (me.getGroups() == null) ? Collections.emptyList() : me.getGroups().stream().map(g -> g.getId()).collect(Collectors.toList());
-        List<SOPDocumentPermission> groupPerms = groupIds.isEmpty() ? Collections.emptyList() : repo.findBySopIdAndGroupIdIn(id, groupIds);
-        boolean groupView = groupPerms.stream().anyMatch(SOPDocumentPermission::isView);
-        boolean groupEdit = groupPerms.stream().anyMatch(SOPDocumentPermission::isEdit);
-        boolean groupDelete = groupPerms.stream().anyMatch(SOPDocumentPermission::isDel);
-        boolean groupCreate = groupPerms.stream().anyMatch(SOPDocumentPermission::isCreate);
-
-        result.put("view", userView || groupView);
-        result.put("edit", userEdit || groupEdit);
-        result.put("delete", userDelete || groupDelete);
-        result.put("create", userCreate || groupCreate);
-        return result;
+        SOPPermissionMatrix.UserGrants grants = permissionMatrix.forUser(me);
+        return SOPPermissionMatrix.toMap(grants.isAdmin() ? SOPPermissionMatrix.ALL : grants.sopRights(id));
     }
 
     @GetMapping("/documents/{documentId}/permissions/my")
     public Map<String, Boolean> getMyDocPermissions(@PathVariable Integer documentId) {
         Users me = usersService.getCurrentAuthenticatedUser();
-        Map<String, Boolean> result = new HashMap<>();
-        if (me == null) {
-            result.put("view", false);
-            result.put("edit", false);
-            result.put("delete", false);
-            result.put("create", false);
-            return result;
-        }
-
-        boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-            String n = r.getName();
-            return "ADMIN".equalsIgnoreCase(n);
-        });
-        if (isAdmin) {
-            result.put("view", true);
-            result.put("edit", true);
-            result.put("delete", true);
-            result.put("create", true);
-            return result;
-        }
-
-        List<SOPDocumentPermission> userPerms = repo.findByDocumentIdAndUserId(documentId, me.getUserID().longValue());
-        boolean userView = userPerms.stream().anyMatch(SOPDocumentPermission::isView);
-        boolean userEdit = userPerms.stream().anyMatch(SOPDocumentPermission::isEdit);
-        boolean userDelete = userPerms.stream().anyMatch(SOPDocumentPermission::isDel);
-        boolean userCreate = userPerms.stream().anyMatch(SOPDocumentPermission::isCreate);
-
-        List<Long> groupIds = (me.getGroups() == null) ? Collections.emptyList() : me.getGroups().stream().map(g -> g.getId()).collect(Collectors.toList());
-        List<SOPDocumentPermission> groupPerms = groupIds.isEmpty() ? Collections.emptyList() : repo.findByDocumentIdAndGroupIdIn(documentId, groupIds);
-        boolean groupView = groupPerms.stream().anyMatch(SOPDocumentPermission::isView);
-        boolean groupEdit = groupPerms.stream().anyMatch(SOPDocumentPermission::isEdit);
-        boolean groupDelete = groupPerms.stream().anyMatch(SOPDocumentPermission::isDel);
-        boolean groupCreate = groupPerms.stream().anyMatch(SOPDocumentPermission::isCreate);
-
-        result.put("view", userView || groupView);
-        result.put("edit", userEdit || groupEdit);
-        result.put("delete", userDelete || groupDelete);
-        result.put("create", userCreate || groupCreate);
-        return result;
+        SOPPermissionMatrix.UserGrants grants = permissionMatrix.forUser(me);
+        return SOPPermissionMatrix.toMap(grants.isAdmin() ? SOPPermissionMatrix.ALL : grants.documentRights(documentId));
     }
 
     private Long safeLong(Object v) {
@@ -113,7 +113,7 @@ public class SOPDocumentsController {
         private com.foxconn.sopchecklist.service.CronMailAllSendService cronMailAllSendService;
 
         @Autowired
-        private com.foxconn.sopchecklist.repository.GroupRepository groupRepository;
+        private com.foxconn.sopchecklist.service.RecipientDirectory recipientDirectory;
         
         @Autowired
         private com.foxconn.sopchecklist.repository.SOPDocumentFilesRepository sopDocumentFilesRepository;
@@ -416,9 +416,8 @@ public class SOPDocumentsController {
                 if (userIds instanceof java.util.List<?>) {
                     for (Object o : (java.util.List<?>) userIds) {
                         try {
-                            Integer uid = Integer.valueOf(String.valueOf(o));
-                            Users u = usersService.findById(uid);
-                            if (u != null && u.getEmail() != null) emails.add(u.getEmail());
+                            String email = recipientDirectory.userEmail(Integer.valueOf(String.valueOf(o)));
+                            if (email != null) emails.add(email);
                         } catch (Exception ignored) {}
                     }
                 }
@@ -426,13 +425,7 @@ public class SOPDocumentsController {
                 if (groupIds instanceof java.util.List<?>) {
                     for (Object o : (java.util.List<?>) groupIds) {
                         try {
-                            Long gid = Long.valueOf(String.valueOf(o));
-                            com.foxconn.sopchecklist.entity.Group g = groupRepository.findById(gid).orElse(null);
-                            if (g != null && g.getUsers() != null) {
-                                for (Users u : g.getUsers()) {
-                                    if (u.getEmail() != null) emails.add(u.getEmail());
-                                }
-                            }
+                            emails.addAll(recipientDirectory.groupEmails(Long.valueOf(String.valueOf(o)), false));
                         } catch (Exception ignored) {}
                     }
                 }
@@ -441,9 +434,8 @@ public class SOPDocumentsController {
                 if (ccUserIds instanceof java.util.List<?>) {
                     for (Object o : (java.util.List<?>) ccUserIds) {
                         try {
-                            Integer uid = Integer.valueOf(String.valueOf(o));
-                            Users u = usersService.findById(uid);
-                            if (u != null && u.getEmail() != null) ccEmails.add(u.getEmail());
+                            String email = recipientDirectory.userEmail(Integer.valueOf(String.valueOf(o)));
+                            if (email != null) ccEmails.add(email);
                         } catch (Exception ignored) {}
                     }
                 }
@@ -451,13 +443,7 @@ public class SOPDocumentsController {
                 if (ccGroupIds instanceof java.util.List<?>) {
                     for (Object o : (java.util.List<?>) ccGroupIds) {
                         try {
-                            Long gid = Long.valueOf(String.valueOf(o));
-                            com.foxconn.sopchecklist.entity.Group g = groupRepository.findById(gid).orElse(null);
-                            if (g != null && g.getUsers() != null) {
-                                for (Users u : g.getUsers()) {
-                                    if (u.getEmail() != null) ccEmails.add(u.getEmail());
-                                }
-                            }
+                            ccEmails.addAll(recipientDirectory.groupEmails(Long.valueOf(String.valueOf(o)), false));
                         } catch (Exception ignored) {}
                     }
                 }
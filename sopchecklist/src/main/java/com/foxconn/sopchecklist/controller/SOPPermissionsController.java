@@ -3,6 +3,7 @@ package com.foxconn.sopchecklist.controller;
 import com.foxconn.sopchecklist.entity.SOPPermission;
 import com.foxconn.sopchecklist.entity.Users;
 import com.foxconn.sopchecklist.repository.SOPPermissionRepository;
+import com.foxconn.sopchecklist.service.SOPPermissionMatrix;
 import com.foxconn.sopchecklist.service.UsersService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,10 +18,12 @@ public class SOPPermissionsController {
 
     private final SOPPermissionRepository repo;
     private final UsersService usersService;
+    private final SOPPermissionMatrix permissionMatrix;
 
-    public SOPPermissionsController(SOPPermissionRepository repo, UsersService usersService) {
+    public SOPPermissionsController(SOPPermissionRepository repo, UsersService usersService, SOPPermissionMatrix permissionMatrix) {
         this.repo = repo;
         this.usersService = usersService;
+        this.permissionMatrix = permissionMatrix;
     }
 
     @GetMapping("/permissions")
@@ -91,50 +94,14 @@ public class SOPPermissionsController {
         }
 
         if (!toSave.isEmpty()) repo.saveAll(toSave);
+        permissionMatrix.invalidateAll();
         return ResponseEntity.ok().build();
     }
 
     @GetMapping("/permissions/my")
     public Map<String, Boolean> myGlobalPermissions() {
         Users me = usersService.getCurrentAuthenticatedUser();
-        Map<String, Boolean> result = new HashMap<>();
-        if (me == null) {
-            result.put("view", false);
-            result.put("edit", false);
-            result.put("delete", false);
-            result.put("create", false);
-            return result;
-        }
-
-        boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-            String n = r.getName();
-            return "ADMIN".equalsIgnoreCase(n);
-        });
-        if (isAdmin) {
-            result.put("view", true);
-            result.put("edit", true);
-            result.put("delete", true);
-            result.put("create", true);
-            return result;
-        }
-
-        boolean userView = repo.findByUserId(me.getUserID().longValue()).stream().anyMatch(SOPPermission::isView);
-        boolean userEdit = repo.findByUserId(me.getUserID().longValue()).stream().anyMatch(SOPPermission::isEdit);
-        boolean userDelete = repo.findByUserId(me.getUserID().longValue()).stream().anyMatch(SOPPermission::isDel);
-        boolean userCreate = repo.findByUserId(me.getUserID().longValue()).stream().anyMatch(SOPPermission::isCreate);
-
-        List<Long> groupIds = (me.getGroups() == null) ? Collections.emptyList() : me.getGroups().stream().map(g -> g.getId()).collect(Collectors.toList());
-        List<SOPPermission> groupPerms = groupIds.isEmpty() ? Collections.emptyList() : repo.findByGroupIdIn(groupIds);
-        boolean groupView = groupPerms.stream().anyMatch(SOPPermission::isView);
-        boolean groupEdit = groupPerms.stream().anyMatch(SOPPermission::isEdit);
-        boolean groupDelete = groupPerms.stream().anyMatch(SOPPermission::isDel);
-        boolean groupCreate = groupPerms.stream().anyMatch(SOPPermission::isCreate);
-
-        result.put("view", userView || groupView);
-        result.put("edit", userEdit || groupEdit);
-        result.put("delete", userDelete || groupDelete);
-        result.put("create", userCreate || groupCreate);
-        return result;
+        return SOPPermissionMatrix.toMap(permissionMatrix.forUser(me).globalRights());
     }
 
     private Long safeLong(Object v) {
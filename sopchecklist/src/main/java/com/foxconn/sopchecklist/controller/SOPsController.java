@@ -4,6 +4,7 @@ import com.foxconn.sopchecklist.entity.SOPs;
 import com.foxconn.sopchecklist.entity.Users;
 import com.foxconn.sopchecklist.dto.SOPCreateRequest;
 import com.foxconn.sopchecklist.dto.SOPDTO;
+import com.foxconn.sopchecklist.service.SOPPermissionMatrix;
 import com.foxconn.sopchecklist.service.SOPsService;
 import com.foxconn.sopchecklist.service.UsersService;
 import org.springframework.http.ResponseEntity;
@@ -18,10 +19,12 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.time.LocalDateTime;
 import com.foxconn.sopchecklist.entity.SOPDocuments;
 import com.foxconn.sopchecklist.entity.SOPDocumentPermission;
 import com.foxconn.sopchecklist.repository.SOPDocumentPermissionRepository;
-import com.foxconn.sopchecklist.repository.SOPPermissionRepository;
 import com.foxconn.sopchecklist.repository.SOPDocumentsRepository;
 
 @RestController
@@ -33,7 +36,7 @@ public class SOPsController {
 	private final SOPDocumentsRepository sopDocumentsRepository;
     private final UsersService usersService;
     private final SOPDocumentPermissionRepository permissionRepository;
-    private final SOPPermissionRepository globalPermissionRepository;
+    private final SOPPermissionMatrix permissionMatrix;
 
     @org.springframework.beans.factory.annotation.Value("${sop.edit-delete.limit-days:3}")
     private int editDeleteLimitDays;
@@ -41,12 +44,12 @@ public class SOPsController {
     @org.springframework.beans.factory.annotation.Autowired
     private com.foxconn.sopchecklist.service.TimeService timeService;
 
-    public SOPsController(SOPsService sopsService, SOPDocumentsRepository sopDocumentsRepository, UsersService usersService, SOPDocumentPermissionRepository permissionRepository, SOPPermissionRepository globalPermissionRepository) {
+    public SOPsController(SOPsService sopsService, SOPDocumentsRepository sopDocumentsRepository, UsersService usersService, SOPDocumentPermissionRepository permissionRepository, SOPPermissionMatrix permissionMatrix) {
 		this.sopsService = sopsService;
 		this.sopDocumentsRepository = sopDocumentsRepository;
 		this.usersService = usersService;
         this.permissionRepository = permissionRepository;
-        this.globalPermissionRepository = globalPermissionRepository;
+        this.permissionMatrix = permissionMatrix;
 	}
 
     @GetMapping("/debug")
@@ -79,23 +82,10 @@ public class SOPsController {
         }).collect(java.util.stream.Collectors.toList()));
         
         List<Map<String, Object>> accessibleSops = new ArrayList<>();
-        java.util.Set<Long> groupIds = new java.util.HashSet<>();
-        if (me.getGroups() != null && !me.getGroups().isEmpty()) {
-            me.getGroups().forEach(g -> groupIds.add(g.getId()));
-        }
+        SOPPermissionMatrix.UserGrants grants = permissionMatrix.forUser(me);
         
         for (SOPs sop : allSops) {
-            List<SOPDocumentPermission> permissions = permissionRepository.findBySopId(sop.getId());
-            boolean canView = permissions.stream().anyMatch(p -> {
-                boolean groupPermission = false;
-                if (!groupIds.isEmpty()) {
-                    groupPermission = p.isView() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                }
-                
-                boolean userPermission = p.isView() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                
-                return groupPermission || userPermission;
-            });
+            boolean canView = (grants.sopRights(sop.getId()) & SOPPermissionMatrix.VIEW) != 0;
             
             if (canView) {
                 Map<String, Object> sopInfo = new HashMap<>();
@@ -110,181 +100,62 @@ public class SOPsController {
         return result;
     }
 
+	/**
+	 * Pages in (createdAt, id) order. With visibleOnly the permission filter runs in the database, so pages are
+	 * full and totals exact. Passing afterCreatedAt + afterId (the last row of the previous page) switches to
+	 * keyset paging, which stays cheap on deep lists; page is then ignored.
+	 */
 	@GetMapping
     public Page<SOPDTO> findAll(
 			@RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false, defaultValue = "false") boolean visibleOnly) {
-		Pageable pageable = PageRequest.of(Math.max(page, 0), Math.max(size, 1));
-        Page<SOPs> sops = sopsService.list(pageable);
-        
-
-
-
-        if (!sops.getContent().isEmpty()) {
-
-        } else {
-
-        }
-
+            @RequestParam(required = false, defaultValue = "false") boolean visibleOnly,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterCreatedAt,
+            @RequestParam(required = false) Long afterId) {
+        Sort order = Sort.by("createdAt").and(Sort.by("id"));
+        boolean keyset = afterCreatedAt != null && afterId != null;
+		Pageable pageable = PageRequest.of(keyset ? 0 : Math.max(page, 0), Math.max(size, 1), order);
+
+        Users current = usersService.getCurrentAuthenticatedUser();
+        SOPPermissionMatrix.UserGrants myGrants = current != null ? permissionMatrix.forUser(current) : null;
+
+        // Admins and global viewers see everything; everyone else is filtered by their SOP grants
+        Integer visibleTo = null;
+        List<Long> groupIds = new ArrayList<>();
         if (visibleOnly) {
-            Users me = usersService.getCurrentAuthenticatedUser();
-            if (me == null) {
-
+            if (current == null) {
                 return Page.empty(pageable);
             }
-            
-
-
-            if (me.getRoles() != null) {
-
-            }
-            if (me.getGroups() != null) {
-
-            }
-            
-
-            boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-                String n = r.getName();
-                return "ADMIN".equalsIgnoreCase(n);
-            });
-            
-            if (isAdmin) {
-
-            } else {
-                java.util.Set<Long> groupIds = new java.util.HashSet<>();
-                if (me.getGroups() != null && !me.getGroups().isEmpty()) {
-                    me.getGroups().forEach(g -> groupIds.add(g.getId()));
+            if (!myGrants.isAdmin() && (myGrants.globalRights() & SOPPermissionMatrix.VIEW) == 0) {
+                visibleTo = current.getUserID();
+                if (current.getGroups() != null) {
+                    current.getGroups().forEach(g -> groupIds.add(g.getId()));
                 }
-
-                boolean globalViewUser = globalPermissionRepository.findByUserId(me.getUserID().longValue()).stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isView);
-                java.util.List<com.foxconn.sopchecklist.entity.SOPPermission> globalGroupPerms = groupIds.isEmpty() ? java.util.Collections.emptyList() : globalPermissionRepository.findByGroupIdIn(new java.util.ArrayList<>(groupIds));
-                boolean globalViewGroup = globalGroupPerms.stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isView);
-
-                java.util.List<SOPs> allowed = sops.getContent().stream()
-                    .filter(sop -> {
-                        if (globalViewUser || globalViewGroup) {
-                            return true;
-                        }
-                        
-                        java.util.List<SOPDocumentPermission> sopPermissions = permissionRepository.findBySopId(sop.getId());
-                        return sopPermissions.stream().anyMatch(p -> {
-                            boolean groupPermission = false;
-                            if (!groupIds.isEmpty()) {
-                                groupPermission = p.isView() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                            }
-                            
-                            boolean userPermission = p.isView() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                            
-                            return groupPermission || userPermission;
-                        });
-                    })
-                    .collect(java.util.stream.Collectors.toList());
-                
-
-                sops = new PageImpl<>(allowed, pageable, allowed.size());
             }
         }
-		
 
-        return sops.map(sop -> {
-			SOPDTO dto = new SOPDTO();
-			dto.setId(sop.getId());
-			dto.setName(sop.getName());
-			dto.setCreatedAt(sop.getCreatedAt());
-			dto.setLastEditedAt(sop.getLastEditedAt());
-			
-			if (sop.getCreatedBy() != null) {
-				dto.setCreatedBy(sop.getCreatedBy().getFullName());
-			}
-			if (sop.getLastEditedBy() != null) {
-				dto.setLastEditedBy(sop.getLastEditedBy().getFullName());
-			}
-			
-            try {
-                dto.setDocumentCount(sopDocumentsRepository.countBySopId(sop.getId()));
-            } catch (Exception e) {
-                dto.setDocumentCount(0);
-            }
+        Page<SOPs> sops;
+        if (keyset) {
+            List<SOPs> content = sopsService.listAfter(afterCreatedAt, afterId, visibleTo, groupIds, pageable.getPageSize());
+            sops = new PageImpl<>(content, pageable, sopsService.countVisible(visibleTo, groupIds));
+        } else if (visibleTo != null) {
+            sops = sopsService.listVisible(visibleTo, groupIds, pageable);
+        } else {
+            sops = sopsService.list(pageable);
+        }
 
-            Users me = usersService.getCurrentAuthenticatedUser();
-            if (me != null) {
-                boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-                    String n = r.getName();
-                    return "ADMIN".equalsIgnoreCase(n);
-                });
-                
-                if (isAdmin) {
-                    dto.setUserCanView(true);
-                    dto.setUserCanEdit(true);
-                    dto.setUserCanDelete(true);
-                    dto.setUserCanCreate(true);
-                } else {
-                    java.util.Set<Long> groupIds = new java.util.HashSet<>();
-                    if (me.getGroups() != null && !me.getGroups().isEmpty()) {
-                        me.getGroups().forEach(g -> groupIds.add(g.getId()));
-                    }
-                    
-                    boolean globalView = globalPermissionRepository.findByUserId(me.getUserID().longValue()).stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isView);
-                    boolean globalEdit = globalPermissionRepository.findByUserId(me.getUserID().longValue()).stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isEdit);
-                    boolean globalDelete = globalPermissionRepository.findByUserId(me.getUserID().longValue()).stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isDel);
-                    boolean globalCreate = globalPermissionRepository.findByUserId(me.getUserID().longValue()).stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isCreate);
-
-                    java.util.List<com.foxconn.sopchecklist.entity.SOPPermission> globalGroupPerms = groupIds.isEmpty() ? java.util.Collections.emptyList() : globalPermissionRepository.findByGroupIdIn(new java.util.ArrayList<>(groupIds));
-                    globalView = globalView || globalGroupPerms.stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isView);
-                    globalEdit = globalEdit || globalGroupPerms.stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isEdit);
-                    globalDelete = globalDelete || globalGroupPerms.stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isDel);
-                    globalCreate = globalCreate || globalGroupPerms.stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isCreate);
-                    
-                    boolean sopView = false, sopEdit = false, sopDelete = false, sopCreate = false;
-                    if (!globalView || !globalEdit || !globalDelete || !globalCreate) {
-                        java.util.List<SOPDocumentPermission> sopPermissions = permissionRepository.findBySopId(sop.getId());
-                        sopView = sopPermissions.stream().anyMatch(p -> {
-                            boolean groupPermission = false;
-                            if (!groupIds.isEmpty()) {
-                                groupPermission = p.isView() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                            }
-                            boolean userPermission = p.isView() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                            return groupPermission || userPermission;
-                        });
-                        
-                        sopEdit = sopPermissions.stream().anyMatch(p -> {
-                            boolean groupPermission = false;
-                            if (!groupIds.isEmpty()) {
-                                groupPermission = p.isEdit() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                            }
-                            boolean userPermission = p.isEdit() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                            return groupPermission || userPermission;
-                        });
-                        
-                        sopDelete = sopPermissions.stream().anyMatch(p -> {
-                            boolean groupPermission = false;
-                            if (!groupIds.isEmpty()) {
-                                groupPermission = p.isDel() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                            }
-                            boolean userPermission = p.isDel() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                            return groupPermission || userPermission;
-                        });
-                        
-                        sopCreate = sopPermissions.stream().anyMatch(p -> {
-                            boolean groupPermission = false;
-                            if (!groupIds.isEmpty()) {
-                                groupPermission = p.isCreate() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                            }
-                            boolean userPermission = p.isCreate() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                            return groupPermission || userPermission;
-                        });
-                    }
-                    
-                    dto.setUserCanView(globalView || sopView);
-                    dto.setUserCanEdit(globalEdit || sopEdit);
-                    dto.setUserCanDelete(globalDelete || sopDelete);
-                    dto.setUserCanCreate(globalCreate || sopCreate);
-                }
+        List<Long> ids = sops.getContent().stream().map(SOPs::getId).collect(java.util.stream.Collectors.toList());
+        List<SOPDTO> rows = sopsService.listRows(ids);
+        for (SOPDTO dto : rows) {
+            if (myGrants != null) {
+                int rights = myGrants.effectiveSopRights(dto.getId());
+                dto.setUserCanView((rights & SOPPermissionMatrix.VIEW) != 0);
+                dto.setUserCanEdit((rights & SOPPermissionMatrix.EDIT) != 0);
+                dto.setUserCanDelete((rights & SOPPermissionMatrix.DELETE) != 0);
+                dto.setUserCanCreate((rights & SOPPermissionMatrix.CREATE) != 0);
             }
-
-			return dto;
-		});
+        }
+        return new PageImpl<>(rows, sops.getPageable(), sops.getTotalElements());
 	}
 
 	@GetMapping("/{id}")
@@ -296,43 +167,8 @@ public class SOPsController {
 		
 
 		Users me = usersService.getCurrentAuthenticatedUser();
-		if (me != null) {
-
-			boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-				String n = r.getName();
-				return "ADMIN".equalsIgnoreCase(n);
-			});
-			
-			if (!isAdmin) {
-				java.util.Set<Long> groupIds = new java.util.HashSet<>();
-				if (me.getGroups() != null && !me.getGroups().isEmpty()) {
-					me.getGroups().forEach(g -> groupIds.add(g.getId()));
-				}
-
-				java.util.List<SOPDocumentPermission> permissions = permissionRepository.findBySopId(id);
-				boolean hasPermission = permissions.stream()
-					.anyMatch(p -> {
-						boolean groupPermission = false;
-						if (!groupIds.isEmpty()) {
-							groupPermission = p.isView() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-						}
-						
-						boolean userPermission = p.isView() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-						
-						return groupPermission || userPermission;
-					});
-
-				if (!hasPermission) {
-					boolean globalViewUser = globalPermissionRepository.findByUserId(me.getUserID().longValue()).stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isView);
-					java.util.List<com.foxconn.sopchecklist.entity.SOPPermission> globalGroupPerms = groupIds.isEmpty() ? java.util.Collections.emptyList() : globalPermissionRepository.findByGroupIdIn(new java.util.ArrayList<>(groupIds));
-					boolean globalViewGroup = globalGroupPerms.stream().anyMatch(com.foxconn.sopchecklist.entity.SOPPermission::isView);
-					hasPermission = globalViewUser || globalViewGroup;
-				}
-				
-				if (!hasPermission) {
-					return ResponseEntity.status(403).build();
-				}
-			}
+		if (me != null && !permissionMatrix.forUser(me).canView(id)) {
+			return ResponseEntity.status(403).build();
 		}
 		
 
@@ -366,47 +202,11 @@ public class SOPsController {
                 }
                 
 
-                boolean isAdmin = me.getRoles() != null && me.getRoles().stream().anyMatch(r -> {
-                    String n = r.getName();
-                    return "ADMIN".equalsIgnoreCase(n);
-                });
-                
-                if (!isAdmin) {
-                    java.util.Set<Long> groupIds = new java.util.HashSet<>();
-                    if (me.getGroups() != null && !me.getGroups().isEmpty()) {
-                        me.getGroups().forEach(g -> groupIds.add(g.getId()));
-                    }
-                    
-
-                    documents = documents.stream().filter(doc -> {
-                        boolean hasDocPermission = permissionRepository.findByDocumentId(doc.getDocumentID()).stream()
-                            .anyMatch(p -> {
-                                boolean groupPermission = false;
-                                if (!groupIds.isEmpty()) {
-                                    groupPermission = p.isView() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                                }
-                                
-                                boolean userPermission = p.isView() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                                
-                                return groupPermission || userPermission;
-                            });
-                        
-                        if (!hasDocPermission) {
-                            hasDocPermission = permissionRepository.findBySopId(id).stream()
-                                .anyMatch(p -> {
-                                    boolean groupPermission = false;
-                                    if (!groupIds.isEmpty()) {
-                                        groupPermission = p.isView() && p.getGroupId() != null && groupIds.contains(p.getGroupId());
-                                    }
-                                    
-                                    boolean userPermission = p.isView() && p.getUserId() != null && p.getUserId().equals(me.getUserID().longValue());
-                                    
-                                    return groupPermission || userPermission;
-                                });
-                        }
-                        
-                        return hasDocPermission;
-                    }).toList();
+                SOPPermissionMatrix.UserGrants grants = permissionMatrix.forUser(me);
+                if (!grants.isAdmin()) {
+                    documents = documents.stream()
+                        .filter(doc -> grants.canViewDocument(id, doc.getDocumentID()))
+                        .toList();
                 }
             }
 			
@@ -0,0 +1,62 @@
+package com.foxconn.sopchecklist.controller;
+
+import com.foxconn.sopchecklist.entity.SchedulerLock;
+import com.foxconn.sopchecklist.entity.Users;
+import com.foxconn.sopchecklist.repository.SchedulerLockRepository;
+import com.foxconn.sopchecklist.service.SOPPermissionMatrix;
+import com.foxconn.sopchecklist.service.ScheduledJobRunner;
+import com.foxconn.sopchecklist.service.UsersService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RestController
+@RequestMapping("/api/scheduler")
+@CrossOrigin
+public class SchedulerJobsController {
+
+    private final ScheduledJobRunner jobRunner;
+    private final SchedulerLockRepository lockRepository;
+    private final UsersService usersService;
+    private final SOPPermissionMatrix permissionMatrix;
+
+    public SchedulerJobsController(ScheduledJobRunner jobRunner, SchedulerLockRepository lockRepository,
+                                   UsersService usersService, SOPPermissionMatrix permissionMatrix) {
+        this.jobRunner = jobRunner;
+        this.lockRepository = lockRepository;
+        this.usersService = usersService;
+        this.permissionMatrix = permissionMatrix;
+    }
+
+    /**
+     * Scheduled jobs with their cluster-wide lease and last run (scheduler_lock, UTC) and what this node saw
+     * (Vietnam time). Admin only.
+     */
+    @GetMapping("/jobs")
+    public ResponseEntity<?> jobs() {
+        Users me = usersService.getCurrentAuthenticatedUser();
+        if (!permissionMatrix.forUser(me).isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin only"));
+        }
+
+        Map<String, Map<String, Object>> jobs = new TreeMap<>();
+        for (SchedulerLock lock : lockRepository.findAll()) {
+            jobs.computeIfAbsent(lock.getJobName(), k -> new LinkedHashMap<>()).put("cluster", lock);
+        }
+        for (Map.Entry<String, ScheduledJobRunner.JobState> e : jobRunner.localStates().entrySet()) {
+            jobs.computeIfAbsent(e.getKey(), k -> new LinkedHashMap<>()).put("local", e.getValue());
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("node", jobRunner.getNode());
+        result.put("clusterLock", jobRunner.isClusterLock());
+        result.put("clusterTimeZone", "UTC");
+        result.put("localTimeZone", "Asia/Ho_Chi_Minh");
+        result.put("jobs", jobs);
+        return ResponseEntity.ok(result);
+    }
+}
@@ -0,0 +1,93 @@
+package com.foxconn.sopchecklist.controller;
+
+import com.foxconn.sopchecklist.entity.Users;
+import com.foxconn.sopchecklist.service.SOPPermissionMatrix;
+import com.foxconn.sopchecklist.service.SearchIndex;
+import com.foxconn.sopchecklist.service.SearchIndexer;
+import com.foxconn.sopchecklist.service.UsersService;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/search")
+@CrossOrigin
+public class SearchController {
+
+    private static final Set<String> TYPES = Set.of(SearchIndex.SOP, SearchIndex.SOP_DOCUMENT,
+            SearchIndex.CHECKLIST_DETAIL, SearchIndex.IMPROVEMENT);
+
+    private final SearchIndex searchIndex;
+    private final SearchIndexer searchIndexer;
+    private final UsersService usersService;
+    private final SOPPermissionMatrix permissionMatrix;
+
+    public SearchController(SearchIndex searchIndex, SearchIndexer searchIndexer, UsersService usersService,
+                            SOPPermissionMatrix permissionMatrix) {
+        this.searchIndex = searchIndex;
+        this.searchIndexer = searchIndexer;
+        this.usersService = usersService;
+        this.permissionMatrix = permissionMatrix;
+    }
+
+    /**
+     * Ranked search over SOP names, SOP document titles / descriptions, checklist detail texts and improvement
+     * texts, accent-insensitive. type restricts the kinds (comma-separated); SOPs and documents the caller may
+     * not view are left out.
+     */
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam("q") String q,
+                                    @RequestParam(value = "type", required = false) List<String> type,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size) {
+        Set<String> types = type == null ? Set.of() : type.stream()
+                .map(t -> t.trim().toUpperCase()).filter(t -> !t.isEmpty()).collect(Collectors.toSet());
+        for (String t : types) {
+            if (!TYPES.contains(t)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Unsupported type: " + t));
+            }
+        }
+
+        Users me = usersService.getCurrentAuthenticatedUser();
+        SOPPermissionMatrix.UserGrants grants = permissionMatrix.forUser(me);
+        List<SearchIndex.Hit> hits = new ArrayList<>();
+        for (SearchIndex.Hit hit : searchIndex.search(q, types)) {
+            if (SearchIndex.SOP.equals(hit.getType()) && !grants.canView(hit.getId())) continue;
+            if (SearchIndex.SOP_DOCUMENT.equals(hit.getType())
+                    && !grants.canViewDocument(hit.getParentId(), hit.getId().intValue())) continue;
+            hits.add(hit);
+        }
+
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 200));
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + pageable.getPageSize(), hits.size());
+        return ResponseEntity.ok(new PageImpl<>(hits.subList(from, to), pageable, hits.size()));
+    }
+
+    /**
+     * Re-read every searchable row into the index. Admin only.
+     */
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuild() {
+        Users me = usersService.getCurrentAuthenticatedUser();
+        if (!permissionMatrix.forUser(me).isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error", "Admin only"));
+        }
+        long started = System.currentTimeMillis();
+        Map<String, Object> result = new HashMap<>();
+        result.put("indexed", searchIndexer.rebuild());
+        result.put("documents", searchIndex.size());
+        result.put("tookMs", System.currentTimeMillis() - started);
+        return ResponseEntity.ok(result);
+    }
+}
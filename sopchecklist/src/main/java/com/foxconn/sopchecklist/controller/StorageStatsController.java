@@ -0,0 +1,51 @@
+package com.foxconn.sopchecklist.controller;
+
+import com.foxconn.sopchecklist.service.FtpConnectionPool;
+import com.foxconn.sopchecklist.service.FtpContentCache;
+import com.foxconn.sopchecklist.service.UploadSpoolService;
+import com.foxconn.sopchecklist.service.UploadTask;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/storage")
+@CrossOrigin
+public class StorageStatsController {
+
+    private final FtpConnectionPool ftpPool;
+    private final FtpContentCache contentCache;
+    private final UploadSpoolService uploadSpool;
+
+    public StorageStatsController(FtpConnectionPool ftpPool, FtpContentCache contentCache,
+                                  UploadSpoolService uploadSpool) {
+        this.ftpPool = ftpPool;
+        this.contentCache = contentCache;
+        this.uploadSpool = uploadSpool;
+    }
+
+    @GetMapping("/ftp-pool")
+    public Map<String, Object> ftpPoolStats() {
+        return ftpPool.getStats();
+    }
+
+    @GetMapping("/cache")
+    public Map<String, Object> cacheStats() {
+        return contentCache.getStats();
+    }
+
+    @GetMapping("/uploads")
+    public Map<String, Object> uploadStats() {
+        return uploadSpool.getStats();
+    }
+
+    @GetMapping("/uploads/{id}")
+    public ResponseEntity<Map<String, Object>> uploadStatus(@PathVariable String id) {
+        UploadTask task = uploadSpool.find(id);
+        if (task == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(uploadSpool.describe(task));
+    }
+}
@@ -39,5 +39,10 @@ public class TimeController {
             return ResponseEntity.internalServerError().body(error);
         }
     }
+
+    @GetMapping("/server-time/clock")
+    public Map<String, Object> getClockStats() {
+        return timeService.getStats();
+    }
 }
 
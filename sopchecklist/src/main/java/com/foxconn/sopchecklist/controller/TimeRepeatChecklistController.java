@@ -2,6 +2,7 @@ package com.foxconn.sopchecklist.controller;
 
 import com.foxconn.sopchecklist.entity.TimeRepeatChecklist;
 import com.foxconn.sopchecklist.repository.TimeRepeatChecklistRepository;
+import com.foxconn.sopchecklist.service.RecurrenceEngine;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,9 +15,11 @@ import java.util.List;
 public class TimeRepeatChecklistController {
 
     private final TimeRepeatChecklistRepository repository;
+    private final RecurrenceEngine recurrenceEngine;
 
-    public TimeRepeatChecklistController(TimeRepeatChecklistRepository repository) {
+    public TimeRepeatChecklistController(TimeRepeatChecklistRepository repository, RecurrenceEngine recurrenceEngine) {
         this.repository = repository;
+        this.recurrenceEngine = recurrenceEngine;
     }
 
     @GetMapping
@@ -28,6 +31,7 @@ public class TimeRepeatChecklistController {
     public ResponseEntity<TimeRepeatChecklist> create(@RequestBody TimeRepeatChecklist body) {
         body.setId(null);
         TimeRepeatChecklist created = repository.save(body);
+        recurrenceEngine.reload();
         return ResponseEntity.created(URI.create("/api/time-repeats/" + created.getId())).body(created);
     }
 
@@ -35,6 +39,7 @@ public class TimeRepeatChecklistController {
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         if (!repository.existsById(id)) return ResponseEntity.notFound().build();
         repository.deleteById(id);
+        recurrenceEngine.reload();
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,13 +1,13 @@
 package com.foxconn.sopchecklist.controller;
 
+import com.foxconn.sopchecklist.service.ContentAddressedStore;
 import com.foxconn.sopchecklist.service.FileStorageService;
-import org.apache.commons.net.ftp.FTP;
-import org.apache.commons.net.ftp.FTPClient;
+import com.foxconn.sopchecklist.service.FtpDownloadService;
+import com.foxconn.sopchecklist.service.FtpFileResource;
+import com.foxconn.sopchecklist.service.UploadSpoolService;
+import com.foxconn.sopchecklist.service.UploadTask;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,7 +16,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -31,6 +31,8 @@ public class UploadController {
     private static final Logger logger = LoggerFactory.getLogger(UploadController.class);
     
     private final FileStorageService storageService;
+    private final FtpDownloadService ftpDownloadService;
+    private final UploadSpoolService uploadSpool;
     
     @Value("${file.upload-dir:uploads}")
     private String uploadDir;
@@ -38,23 +40,14 @@ public class UploadController {
     @Value("${storage.use-ftp:false}")
     private boolean useFtp;
 
-    @Value("${ftp.host:}")
-    private String ftpHost;
-
-    @Value("${ftp.port:21}")
-    private int ftpPort;
-
-    @Value("${ftp.username:}")
-    private String ftpUsername;
-
-    @Value("${ftp.password:}")
-    private String ftpPassword;
-
     @Value("${ftp.upload-dir:uploads_fitsops}")
     private String ftpUploadDir;
 
-    public UploadController(FileStorageService storageService) {
+    public UploadController(FileStorageService storageService, FtpDownloadService ftpDownloadService,
+                            UploadSpoolService uploadSpool) {
         this.storageService = storageService;
+        this.ftpDownloadService = ftpDownloadService;
+        this.uploadSpool = uploadSpool;
     }
 
     @PostMapping
@@ -65,10 +58,12 @@ public class UploadController {
             String preferredFolder = (sopDocumentName != null && !sopDocumentName.isEmpty())
                     ? sopDocumentName
                     : sopName;
-            String url = storageService.storeInFolder(file, preferredFolder);
+            UploadTask task = storageService.submitInFolder(file, preferredFolder);
             Map<String, Object> body = new HashMap<>();
-            body.put("url", url);
+            body.put("url", task.getUrl());
             body.put("name", file.getOriginalFilename());
+            body.put("uploadId", task.getId());
+            body.put("status", task.getStatus());
             
             return ResponseEntity.ok(body);
         } catch (Exception e) {
@@ -91,7 +86,7 @@ public class UploadController {
             filePath = java.net.URLDecoder.decode(filePath, "UTF-8");
 
             if (useFtp) {
-                return serveFileFromFtp(filePath);
+                return serveFileFromFtp(filePath, request);
             }
 
             Path uploadDirPath = Paths.get(uploadDir).toAbsolutePath().normalize();
@@ -102,12 +97,9 @@ public class UploadController {
                 return ResponseEntity.badRequest().build();
             }
             
-            Resource resource = new UrlResource(file.toUri());
-            
             logger.info("Trying to download file: {}", file.toString());
-            logger.info("File exists: {}", resource.exists());
             
-            if (resource.exists() && resource.isReadable()) {
+            if (Files.isRegularFile(file) && Files.isReadable(file)) {
                 String contentType = Files.probeContentType(file);
                 if (contentType == null) {
                     contentType = guessContentType(file.getFileName().toString());
@@ -119,11 +111,9 @@ public class UploadController {
                 String encodedFileName = java.net.URLEncoder.encode(fileName, "UTF-8")
                     .replaceAll("\\+", "%20");
                 
-                return ResponseEntity.ok()
-                        .contentType(MediaType.parseMediaType(contentType))
-                        .header(HttpHeaders.CONTENT_DISPOSITION, 
-                            "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName)
-                        .body(resource);
+                return RangeDownloadSupport.serveFile(file, Files.size(file),
+                        Files.getLastModifiedTime(file).toMillis(), request, MediaType.parseMediaType(contentType),
+                        "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName);
             } else {
                 logger.warn("File not found: {}", file.toString());
                 return ResponseEntity.notFound().build();
@@ -134,61 +124,44 @@ public class UploadController {
         }
     }
 
-    private ResponseEntity<Resource> serveFileFromFtp(String filePath) {
-        FTPClient ftp = new FTPClient();
+    private ResponseEntity<Resource> serveFileFromFtp(String filePath, HttpServletRequest request) {
         try {
-            ftp.setConnectTimeout(30000);
-            ftp.setControlEncoding("UTF-8");
-            ftp.connect(ftpHost, ftpPort);
-            if (!ftp.login(ftpUsername, ftpPassword)) {
-                logger.error("FTP login failed");
-                return ResponseEntity.notFound().build();
-            }
-            ftp.enterLocalPassiveMode();
-            ftp.setFileType(FTP.BINARY_FILE_TYPE);
-
-            if (!ftp.changeWorkingDirectory(ftpUploadDir)) {
-                logger.error("Cannot change to FTP directory: {}", ftpUploadDir);
-                return ResponseEntity.notFound().build();
-            }
-
             String[] parts = filePath.split("/");
             if (parts.length < 2) {
                 logger.error("Invalid file path: {}", filePath);
                 return ResponseEntity.notFound().build();
             }
-            for (int i = 0; i < parts.length - 1; i++) {
-                if (!ftp.changeWorkingDirectory(parts[i])) {
-                    logger.error("Cannot change to FTP subdirectory: {}", parts[i]);
-                    return ResponseEntity.notFound().build();
-                }
+
+            // Not yet replicated to FTP: serve the spooled copy
+            UploadTask pending = uploadSpool.findPending(filePath);
+            if (pending != null) {
+                String fileName = parts[parts.length - 1];
+                String encodedFileName = java.net.URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
+                return RangeDownloadSupport.serveFile(pending.getSpoolFile(), pending.getSize(), pending.getCreatedAt(),
+                        request, MediaType.parseMediaType(guessContentType(fileName)),
+                        "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName);
             }
-            String fileName = parts[parts.length - 1];
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            boolean success = ftp.retrieveFile(fileName, outputStream);
-            if (!success) {
-                logger.error("Cannot retrieve file from FTP: {}", fileName);
+            FtpFileResource resource = ftpDownloadService.open(ftpUploadDir, ContentAddressedStore.storagePath(filePath),
+                    RangeDownloadSupport.ftpSelector(request));
+            if (resource == null) {
+                logger.error("Cannot retrieve file from FTP: {}", filePath);
                 return ResponseEntity.notFound().build();
             }
-            byte[] fileBytes = outputStream.toByteArray();
-            ByteArrayResource resource = new ByteArrayResource(fileBytes);
 
+            if (resource.isNotModified()) {
+                return RangeDownloadSupport.checkNotModified(request, resource.getTotalLength(), resource.lastModified());
+            }
+            String fileName = parts[parts.length - 1];
             String contentType = guessContentType(fileName);
             String encodedFileName = java.net.URLEncoder.encode(fileName, "UTF-8").replaceAll("\\+", "%20");
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName)
-                    .body(resource);
+            InputStream body = resource.isRangeUnsatisfiable() ? null : resource.getInputStream();
+            return RangeDownloadSupport.respond(body, resource.getTotalLength(), resource.getRange(),
+                    resource.lastModified(), MediaType.parseMediaType(contentType),
+                    "attachment; filename=\"" + fileName + "\"; filename*=UTF-8''" + encodedFileName);
         } catch (Exception e) {
             logger.error("FTP download error: {}", e.getMessage(), e);
             return ResponseEntity.notFound().build();
-        } finally {
-            if (ftp.isConnected()) {
-                try { ftp.logout(); } catch (Exception ignored) {}
-                try { ftp.disconnect(); } catch (Exception ignored) {}
-            }
         }
     }
 
@@ -196,7 +196,7 @@ public class UsersController {
             try {
                 com.foxconn.sopchecklist.config.UserPrincipal me = (com.foxconn.sopchecklist.config.UserPrincipal) principal;
                 if (me != null) {
-                    Users actingUser = usersService.findByManv(me.getUsername());
+                    Users actingUser = usersService.getCurrentAuthenticatedUser();
                     isAdmin = actingUser != null && actingUser.getRoles() != null && actingUser.getRoles().stream().anyMatch(r ->
                             "ADMIN".equalsIgnoreCase(r.getName()));
                 }
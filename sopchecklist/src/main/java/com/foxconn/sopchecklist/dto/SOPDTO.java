@@ -23,5 +23,19 @@ public class SOPDTO {
     private Boolean userCanEdit;
     private Boolean userCanDelete;
     private Boolean userCanCreate;
+
+    /**
+     * List row built by {@code SOPsRepository.findListRows}; rights are filled in by the caller.
+     */
+    public SOPDTO(Long id, String name, String createdBy, String lastEditedBy,
+                  LocalDateTime createdAt, LocalDateTime lastEditedAt, Long documentCount) {
+        this.id = id;
+        this.name = name;
+        this.createdBy = createdBy;
+        this.lastEditedBy = lastEditedBy;
+        this.createdAt = createdAt;
+        this.lastEditedAt = lastEditedAt;
+        this.documentCount = documentCount != null ? documentCount.intValue() : 0;
+    }
 }
 
@@ -15,7 +15,8 @@ import java.time.LocalTime;
 @Entity
 @Table(name = "Attendance_Report",
        uniqueConstraints = @UniqueConstraint(name = "uk_attendance_user_date",
-               columnNames = {"user_id", "attendance_date"}))
+               columnNames = {"user_id", "attendance_date"}),
+       indexes = @Index(name = "ix_attendance_report_date_status", columnList = "attendance_date, status_code"))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -38,6 +39,10 @@ public class AttendanceReport {
     @Column(name = "status", nullable = false, columnDefinition = "NVARCHAR(50)")
     private String status; // Có mặt, Nửa ngày, Vắng, Đi muộn, Nghỉ phép
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_code", length = 20)
+    private AttendanceStatus statusCode; // Suy ra từ status, dùng cho thống kê
+
     @Column(name = "clock_in_time")
     private LocalTime clockInTime; // Giờ vào
 
@@ -57,5 +62,11 @@ public class AttendanceReport {
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void syncStatusCode() {
+        this.statusCode = AttendanceStatus.of(status);
+    }
 }
 
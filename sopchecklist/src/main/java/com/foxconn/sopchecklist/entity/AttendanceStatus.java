@@ -0,0 +1,24 @@
+package com.foxconn.sopchecklist.entity;
+
+/**
+ * Normalized form of the free-text (Vietnamese / Chinese) {@link AttendanceReport#getStatus()},
+ * kept in status_code so attendance statistics can be aggregated in SQL.
+ */
+public enum AttendanceStatus {
+    PRESENT,
+    HALF_DAY,
+    ABSENT,
+    LEAVE,
+    SUNDAY_OFF,
+    OTHER;
+
+    public static AttendanceStatus of(String status) {
+        if (status == null) return OTHER;
+        if (status.contains("Có mặt") || status.contains("出勤")) return PRESENT;
+        if (status.contains("Nửa ngày") || status.contains("半天")) return HALF_DAY;
+        if (status.contains("Vắng") || status.contains("缺勤")) return ABSENT;
+        if (status.contains("Nghỉ CN") || status.contains("周日休")) return SUNDAY_OFF;
+        if (status.contains("Nghỉ phép") || status.contains("请假")) return LEAVE;
+        return OTHER;
+    }
+}
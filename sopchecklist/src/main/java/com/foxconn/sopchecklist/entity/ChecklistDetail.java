@@ -13,7 +13,11 @@ import java.util.List;
 @Entity
 @Table(name = "Checklist_Details",
        uniqueConstraints = @UniqueConstraint(name = "uk_checklist_implementer_scheduled",
-               columnNames = {"checklist_id", "implementer", "scheduled_at"}))
+               columnNames = {"checklist_id", "implementer", "scheduled_at"}),
+       indexes = {
+               @Index(name = "ix_checklist_details_created_id", columnList = "created_at, id"),
+               @Index(name = "ix_checklist_details_checklist_created", columnList = "checklist_id, created_at")
+       })
 @Getter
 @Setter
 @AllArgsConstructor
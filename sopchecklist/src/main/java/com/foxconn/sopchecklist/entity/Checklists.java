@@ -11,7 +11,9 @@ import java.util.List;
 import javax.persistence.Transient;
 
 @Entity
-@Table(name = "Checklists")
+@Table(name = "Checklists", indexes = {
+        @Index(name = "ix_checklists_status_next_occurrence", columnList = "status, next_occurrence_at")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -57,6 +59,10 @@ public class Checklists {
     @Column(name = "schedule_updated_at")
     private LocalDateTime scheduleUpdatedAt;
 
+    // Next occurrence the generator has not created details for yet; null once a one-off checklist is done
+    @Column(name = "next_occurrence_at")
+    private LocalDateTime nextOccurrenceAt;
+
     @Transient
     private LocalDateTime nextScheduledAt;
 
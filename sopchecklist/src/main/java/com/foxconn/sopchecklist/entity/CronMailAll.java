@@ -10,7 +10,10 @@ import java.time.LocalDateTime;
 
 
 @Entity
-@Table(name = "cron_mail_all")
+@Table(name = "cron_mail_all", indexes = {
+        @Index(name = "ix_cron_mail_all_status_id", columnList = "status, id"),
+        @Index(name = "ix_cron_mail_all_type_ref_created", columnList = "type_id, reference_id, created_at")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -57,5 +60,12 @@ public class CronMailAll {
 
     @Column(name = "reference_id")
     private Long referenceId;
+
+    // Dispatcher node currently sending this row (status SENDING) and until when its claim holds
+    @Column(name = "lease_owner", columnDefinition = "NVARCHAR(64)")
+    private String leaseOwner;
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
 }
 
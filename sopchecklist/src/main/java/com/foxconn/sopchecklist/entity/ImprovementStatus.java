@@ -0,0 +1,21 @@
+package com.foxconn.sopchecklist.entity;
+
+import java.util.Locale;
+
+/**
+ * Normalized form of the free-text {@link Improvements#getStatus()}, kept in status_code for indexed lookups.
+ */
+public enum ImprovementStatus {
+    OPEN,
+    DONE;
+
+    public static ImprovementStatus of(String status) {
+        if (status == null) return OPEN;
+        String upper = status.toUpperCase(Locale.ROOT);
+        if (upper.equals("DONE") || upper.equals("COMPLETED")
+                || upper.contains("HOÀN THÀNH") || upper.contains("HOAN THANH")) {
+            return DONE;
+        }
+        return OPEN;
+    }
+}
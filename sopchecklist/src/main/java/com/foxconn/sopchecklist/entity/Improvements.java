@@ -5,13 +5,17 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.hibernate.annotations.BatchSize;
 
 import javax.persistence.*;
 import java.util.List;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Improvements")
+@Table(name = "Improvements", indexes = {
+        @Index(name = "ix_improvements_status_code_due", columnList = "status_code, plannedDueAt"),
+        @Index(name = "ix_improvements_checklist_detail_id", columnList = "checklistDetailId")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -42,11 +46,13 @@ public class Improvements {
     private String issueDescription;
 
     @ElementCollection
+    @BatchSize(size = 100)
     @CollectionTable(name = "improvement_responsible", joinColumns = @JoinColumn(name = "improvement_id"))
     @Column(name = "responsible", columnDefinition = "NVARCHAR(500)")
     private List<String> responsible; 
 
     @ElementCollection
+    @BatchSize(size = 100)
     @CollectionTable(name = "improvement_collaborators", joinColumns = @JoinColumn(name = "improvement_id"))
     @Column(name = "collaborator", columnDefinition = "NVARCHAR(500)")
     private List<String> collaborators;
@@ -80,6 +86,10 @@ public class Improvements {
     @Column(name = "status", length = 50, columnDefinition = "NVARCHAR(50)")
     private String status;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status_code", length = 20)
+    private ImprovementStatus statusCode;
+
     @Column(name = "lastEditedBy")
     private Integer lastEditedBy;
 
@@ -90,5 +100,11 @@ public class Improvements {
     private Integer createdBy;
 
     private LocalDateTime createdAt = LocalDateTime.now();
+
+    @PrePersist
+    @PreUpdate
+    public void syncStatusCode() {
+        this.statusCode = ImprovementStatus.of(status);
+    }
 }
 
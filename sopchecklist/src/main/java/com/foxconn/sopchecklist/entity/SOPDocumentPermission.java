@@ -8,7 +8,7 @@ import lombok.Setter;
 import javax.persistence.*;
 
 @Entity
-@Table(name = "sopdocument_permissions")
+@Table(name = "sopdocument_permissions", indexes = @Index(name = "ix_sopdocument_permissions_sop_id", columnList = "sop_id"))
 @Getter
 @Setter
 @AllArgsConstructor
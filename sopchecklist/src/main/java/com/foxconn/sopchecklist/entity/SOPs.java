@@ -13,7 +13,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "SOPs")
+@Table(name = "SOPs", indexes = @Index(name = "ix_sops_created_at_id", columnList = "created_at, id"))
 @Getter
 @Setter
 @AllArgsConstructor
@@ -0,0 +1,57 @@
+package com.foxconn.sopchecklist.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Lease and last-run record of one scheduled job, shared by all application nodes.
+ * A node runs the job only while it holds the lease (locked_until in the future).
+ * All times in the row are UTC database time (SYSUTCDATETIME()), unlike the Vietnam local times used elsewhere.
+ */
+@Entity
+@Table(name = "scheduler_lock")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class SchedulerLock {
+
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
+    @Column(name = "locked_by", length = 200)
+    private String lockedBy;
+
+    @Column(name = "last_started_at")
+    private LocalDateTime lastStartedAt;
+
+    @Column(name = "last_finished_at")
+    private LocalDateTime lastFinishedAt;
+
+    @Column(name = "last_duration_ms")
+    private Long lastDurationMs;
+
+    @Column(name = "last_outcome", length = 20)
+    private String lastOutcome;
+
+    @Column(name = "last_error", columnDefinition = "NVARCHAR(1000)")
+    private String lastError;
+
+    @Column(name = "last_node", length = 200)
+    private String lastNode;
+
+    @Column(name = "run_count")
+    private Long runCount;
+}
@@ -0,0 +1,49 @@
+package com.foxconn.sopchecklist.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One physical copy of an uploaded file in content-addressed mode, shared by every attachment with the same bytes.
+ */
+@Entity
+@Table(name = "stored_blob", uniqueConstraints = @UniqueConstraint(
+        name = "uk_stored_blob_root_sha", columnNames = {"root_dir", "sha256"}))
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class StoredBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "root_dir", nullable = false, length = 100)
+    private String rootDir;
+
+    // Path below root_dir, e.g. _cas/ab/ab12...
+    @Column(name = "storage_path", nullable = false, length = 400)
+    private String storagePath;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    // Uploads minus deletes; the collector double-checks the attachment tables before removing a blob
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "released_at")
+    private LocalDateTime releasedAt;
+}
@@ -0,0 +1,37 @@
+package com.foxconn.sopchecklist.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Nationalized;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Which FTP root a stored /files/... path lives under, so downloads do not have to probe every root.
+ */
+@Entity
+@Table(name = "stored_file_location")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class StoredFileLocation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Decoded path after /files/
+    @Nationalized
+    @Column(name = "path", nullable = false, unique = true, length = 400)
+    private String path;
+
+    @Column(name = "root_dir", nullable = false, length = 100)
+    private String rootDir;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -2,6 +2,9 @@ package com.foxconn.sopchecklist.repository;
 
 import com.foxconn.sopchecklist.entity.ChecklistDetail;
 import com.foxconn.sopchecklist.entity.Checklists;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -14,6 +17,17 @@ import java.util.Optional;
 @Repository
 public interface ChecklistDetailRepository extends JpaRepository<ChecklistDetail, Long> {
 
+    /**
+     * Optional list filters; a null parameter disables its condition. Dates bound scheduledAt as [fromDate, toDate).
+     */
+    String LIST_FILTER = "(:checklistId IS NULL OR c.checklist.id = :checklistId) " +
+            "AND (:status IS NULL OR c.status = :status) " +
+            "AND (:implementer IS NULL OR c.implementer = :implementer) " +
+            "AND (:fromDate IS NULL OR c.scheduledAt >= :fromDate) " +
+            "AND (:toDate IS NULL OR c.scheduledAt < :toDate) " +
+            "AND (:q IS NULL OR LOWER(c.taskName) LIKE LOWER(CONCAT('%', :q, '%')) " +
+            "OR LOWER(c.workContent) LIKE LOWER(CONCAT('%', :q, '%')))";
+
     boolean existsByChecklistAndImplementerAndScheduledAt(Checklists checklist, String implementer, LocalDateTime scheduledAt);
 
     List<ChecklistDetail> findByChecklist(Checklists checklist);
@@ -38,8 +52,48 @@ public interface ChecklistDetailRepository extends JpaRepository<ChecklistDetail
     @Query("SELECT c FROM ChecklistDetail c WHERE c.checklist = :checklist AND c.status = :status AND c.implementer = :implementer AND (LOWER(c.taskName) LIKE LOWER(CONCAT('%', :q, '%')) OR LOWER(c.workContent) LIKE LOWER(CONCAT('%', :q, '%'))) ORDER BY c.createdAt DESC")
     List<ChecklistDetail> searchByChecklistAndStatusAndImplementerAndQOrderByCreatedAtDesc(@Param("checklist") Checklists checklist, @Param("status") String status, @Param("implementer") String implementer, @Param("q") String q);
 
+    @Query(value = "SELECT c FROM ChecklistDetail c JOIN FETCH c.checklist WHERE " + LIST_FILTER,
+            countQuery = "SELECT COUNT(c) FROM ChecklistDetail c WHERE " + LIST_FILTER)
+    Page<ChecklistDetail> search(@Param("checklistId") Long checklistId, @Param("status") String status,
+                                 @Param("implementer") String implementer, @Param("fromDate") LocalDateTime fromDate,
+                                 @Param("toDate") LocalDateTime toDate, @Param("q") String q, Pageable pageable);
+
+    @Query("SELECT c FROM ChecklistDetail c JOIN FETCH c.checklist WHERE " + LIST_FILTER)
+    List<ChecklistDetail> searchAll(@Param("checklistId") Long checklistId, @Param("status") String status,
+                                    @Param("implementer") String implementer, @Param("fromDate") LocalDateTime fromDate,
+                                    @Param("toDate") LocalDateTime toDate, @Param("q") String q, Sort sort);
+
+    /**
+     * Next page after (afterCreatedAt, afterId) in (createdAt DESC, id DESC) order; only the page size of the
+     * pageable is used.
+     */
+    @Query("SELECT c FROM ChecklistDetail c JOIN FETCH c.checklist WHERE " + LIST_FILTER + " " +
+            "AND (c.createdAt < :afterCreatedAt OR (c.createdAt = :afterCreatedAt AND c.id < :afterId)) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<ChecklistDetail> searchAfter(@Param("checklistId") Long checklistId, @Param("status") String status,
+                                      @Param("implementer") String implementer, @Param("fromDate") LocalDateTime fromDate,
+                                      @Param("toDate") LocalDateTime toDate, @Param("q") String q,
+                                      @Param("afterCreatedAt") LocalDateTime afterCreatedAt, @Param("afterId") Long afterId,
+                                      Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM ChecklistDetail c WHERE " + LIST_FILTER)
+    long countSearch(@Param("checklistId") Long checklistId, @Param("status") String status,
+                     @Param("implementer") String implementer, @Param("fromDate") LocalDateTime fromDate,
+                     @Param("toDate") LocalDateTime toDate, @Param("q") String q);
+
     Optional<ChecklistDetail> findTopByChecklistOrderByScheduledAtDesc(Checklists checklist);
 
     @Query("SELECT c FROM ChecklistDetail c WHERE c.deadlineAt IS NOT NULL AND c.deadlineAt <= :now AND c.status NOT IN ('COMPLETED', 'DONE')")
     List<ChecklistDetail> findByDeadlineAtBeforeOrEqualAndStatusNotCompleted(@Param("now") LocalDateTime now);
+
+    /**
+     * Overdue, unfinished details with an implementer and no mail of the given type since :since
+     * (NOT EXISTS over ix_cron_mail_all_type_ref_created). The checklist is fetched in the same query.
+     */
+    @Query("SELECT c FROM ChecklistDetail c JOIN FETCH c.checklist " +
+            "WHERE c.deadlineAt IS NOT NULL AND c.deadlineAt <= :now AND c.status NOT IN ('COMPLETED', 'DONE') " +
+            "AND c.implementer IS NOT NULL AND TRIM(c.implementer) <> '' " +
+            "AND NOT EXISTS (SELECT m.id FROM CronMailAll m WHERE m.typeId = :typeId AND m.referenceId = c.id AND m.createdAt >= :since) " +
+            "ORDER BY c.deadlineAt, c.id")
+    List<ChecklistDetail> findDueForReminder(@Param("now") LocalDateTime now, @Param("typeId") Long typeId, @Param("since") LocalDateTime since);
 }
\ No newline at end of file
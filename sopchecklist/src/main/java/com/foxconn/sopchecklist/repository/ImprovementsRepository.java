@@ -1,12 +1,36 @@
 package com.foxconn.sopchecklist.repository;
 
+import com.foxconn.sopchecklist.entity.ImprovementStatus;
 import com.foxconn.sopchecklist.entity.Improvements;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface ImprovementsRepository extends JpaRepository<Improvements, Integer> {
     Optional<Improvements> findFirstByChecklistDetailId(String checklistDetailId);
     Optional<Improvements> findFirstByChecklist_IdAndCategoryOrderByCreatedAtDesc(Long checklistId, String category);
-}
 
+    /**
+     * (checklistDetailId, status) of the improvements linked to the given details, oldest first.
+     */
+    @Query("SELECT i.checklistDetailId, i.status FROM Improvements i WHERE i.checklistDetailId IN :detailIds ORDER BY i.improvementID")
+    List<Object[]> findStatusesByChecklistDetailIds(@Param("detailIds") Collection<String> detailIds);
+
+    /**
+     * Improvements in the given status, due by :now, with a responsible person or collaborator and no mail of the
+     * given type since :since. Uses ix_improvements_status_code_due; assignee lists are batch-fetched.
+     */
+    @Query("SELECT i FROM Improvements i LEFT JOIN FETCH i.checklist LEFT JOIN FETCH i.improvementEvent " +
+            "WHERE i.statusCode = :status AND i.plannedDueAt IS NOT NULL AND i.plannedDueAt <= :now " +
+            "AND (i.responsible IS NOT EMPTY OR i.collaborators IS NOT EMPTY) " +
+            "AND NOT EXISTS (SELECT m.id FROM CronMailAll m WHERE m.typeId = :typeId " +
+            "AND m.referenceId = i.improvementID AND m.createdAt >= :since) " +
+            "ORDER BY i.plannedDueAt, i.improvementID")
+    List<Improvements> findDueForReminder(@Param("status") ImprovementStatus status, @Param("now") LocalDateTime now,
+                                          @Param("typeId") Long typeId, @Param("since") LocalDateTime since);
+}
@@ -22,6 +22,10 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     @Query("UPDATE RefreshToken rt SET rt.isRevoked = true WHERE rt.user.userID = :userId")
     void revokeAllByUserId(@Param("userId") Integer userId);
     
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.isRevoked = true WHERE rt.token = :token AND rt.user.userID = :userId")
+    int revokeByTokenAndUserId(@Param("token") String token, @Param("userId") Integer userId);
+    
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now")
     void deleteExpiredTokens(@Param("now") LocalDateTime now);
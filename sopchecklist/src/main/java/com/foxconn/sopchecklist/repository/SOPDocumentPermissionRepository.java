@@ -15,4 +15,5 @@ public interface SOPDocumentPermissionRepository extends JpaRepository<SOPDocume
     List<SOPDocumentPermission> findBySopIdAndUserId(Long sopId, Long userId);
     List<SOPDocumentPermission> findByDocumentIdAndUserId(Integer documentId, Long userId);
     List<SOPDocumentPermission> findByUserId(Long userId);
+    List<SOPDocumentPermission> findByUserIdOrGroupIdIn(Long userId, List<Long> groupIds);
 }
\ No newline at end of file
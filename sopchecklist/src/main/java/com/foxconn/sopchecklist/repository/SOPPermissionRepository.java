@@ -10,6 +10,7 @@ import java.util.List;
 public interface SOPPermissionRepository extends JpaRepository<SOPPermission, Long> {
     List<SOPPermission> findByGroupIdIn(List<Long> groupIds);
     List<SOPPermission> findByUserId(Long userId);
+    List<SOPPermission> findByUserIdOrGroupIdIn(Long userId, List<Long> groupIds);
 }
 
 
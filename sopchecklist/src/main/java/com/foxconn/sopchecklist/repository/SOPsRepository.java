@@ -1,10 +1,17 @@
 package com.foxconn.sopchecklist.repository;
 
+import com.foxconn.sopchecklist.dto.SOPDTO;
 import com.foxconn.sopchecklist.entity.SOPs;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 public interface SOPsRepository extends JpaRepository<SOPs, Long> {
     Page<SOPs> findByNameContainingIgnoreCase(String name, Pageable pageable);
     
@@ -13,5 +20,40 @@ public interface SOPsRepository extends JpaRepository<SOPs, Long> {
     
 
     boolean existsByNameIgnoreCaseAndIdNot(String name, Long id);
-}
 
+    /**
+     * SOPs with a view grant for the user or one of the groups (pass a dummy id when the user has no group).
+     */
+    @Query(value = "SELECT s FROM SOPs s WHERE EXISTS (SELECT p.id FROM SOPDocumentPermission p " +
+            "WHERE p.sopId = s.id AND p.view = true AND (p.userId = :userId OR p.groupId IN :groupIds))",
+            countQuery = "SELECT COUNT(s) FROM SOPs s WHERE EXISTS (SELECT p.id FROM SOPDocumentPermission p " +
+            "WHERE p.sopId = s.id AND p.view = true AND (p.userId = :userId OR p.groupId IN :groupIds))")
+    Page<SOPs> findVisible(@Param("userId") Long userId, @Param("groupIds") List<Long> groupIds, Pageable pageable);
+
+    @Query("SELECT COUNT(s) FROM SOPs s WHERE EXISTS (SELECT p.id FROM SOPDocumentPermission p " +
+            "WHERE p.sopId = s.id AND p.view = true AND (p.userId = :userId OR p.groupId IN :groupIds))")
+    long countVisible(@Param("userId") Long userId, @Param("groupIds") List<Long> groupIds);
+
+    /**
+     * Keyset page: SOPs after (createdAt, id) in (createdAt, id) order; the pageable only carries the limit.
+     */
+    @Query("SELECT s FROM SOPs s WHERE s.createdAt > :createdAt OR (s.createdAt = :createdAt AND s.id > :id) " +
+            "ORDER BY s.createdAt, s.id")
+    List<SOPs> findAfter(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    @Query("SELECT s FROM SOPs s WHERE (s.createdAt > :createdAt OR (s.createdAt = :createdAt AND s.id > :id)) " +
+            "AND EXISTS (SELECT p.id FROM SOPDocumentPermission p " +
+            "WHERE p.sopId = s.id AND p.view = true AND (p.userId = :userId OR p.groupId IN :groupIds)) " +
+            "ORDER BY s.createdAt, s.id")
+    List<SOPs> findVisibleAfter(@Param("userId") Long userId, @Param("groupIds") List<Long> groupIds,
+                                @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * List rows for the given SOPs: creator / editor names joined in and document counts grouped, in one query.
+     */
+    @Query("SELECT new com.foxconn.sopchecklist.dto.SOPDTO(s.id, s.name, cb.fullName, eb.fullName, s.createdAt, s.lastEditedAt, COUNT(d)) " +
+            "FROM SOPs s LEFT JOIN s.createdBy cb LEFT JOIN s.lastEditedBy eb LEFT JOIN s.documents d " +
+            "WHERE s.id IN :ids " +
+            "GROUP BY s.id, s.name, cb.fullName, eb.fullName, s.createdAt, s.lastEditedAt")
+    List<SOPDTO> findListRows(@Param("ids") Collection<Long> ids);
+}
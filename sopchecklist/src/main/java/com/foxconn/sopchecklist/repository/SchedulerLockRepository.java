@@ -0,0 +1,9 @@
+package com.foxconn.sopchecklist.repository;
+
+import com.foxconn.sopchecklist.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+}
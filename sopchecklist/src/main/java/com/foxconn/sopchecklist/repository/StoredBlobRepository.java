@@ -0,0 +1,71 @@
+package com.foxconn.sopchecklist.repository;
+
+import com.foxconn.sopchecklist.entity.StoredBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, Long> {
+
+    Optional<StoredBlob> findByRootDirAndSha256(String rootDir, String sha256);
+
+    /**
+     * Current ref_count read straight from the table (not from a cached entity); -1 while the collector removes the blob.
+     */
+    @Query("SELECT b.refCount FROM StoredBlob b WHERE b.rootDir = :rootDir AND b.sha256 = :sha256")
+    Optional<Integer> findRefCount(@Param("rootDir") String rootDir, @Param("sha256") String sha256);
+
+    /**
+     * Returns 0 when the blob is gone or claimed by the collector.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount + 1, b.releasedAt = NULL WHERE b.id = :id AND b.refCount >= 0")
+    int addReference(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = b.refCount - 1, b.releasedAt = :now " +
+           "WHERE b.rootDir = :rootDir AND b.sha256 = :sha256 AND b.refCount > 0")
+    int releaseReference(@Param("rootDir") String rootDir, @Param("sha256") String sha256,
+                         @Param("now") LocalDateTime now);
+
+    @Query("SELECT b FROM StoredBlob b WHERE b.refCount <= 0 AND b.releasedAt < :cutoff")
+    List<StoredBlob> findReleasedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = :refCount, b.releasedAt = NULL WHERE b.id = :id")
+    int repairReferences(@Param("id") Long id, @Param("refCount") int refCount);
+
+    /**
+     * Claim an unreferenced blob for removal (ref_count -1) so no upload attaches to it while its file is deleted.
+     * A blob claimed by an earlier run that did not finish is claimed again.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StoredBlob b SET b.refCount = -1 WHERE b.id = :id AND b.refCount <= 0 AND b.releasedAt < :cutoff")
+    int claimForDeletion(@Param("id") Long id, @Param("cutoff") LocalDateTime cutoff);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM StoredBlob b WHERE b.id = :id AND b.refCount = -1")
+    int deleteClaimed(@Param("id") Long id);
+
+    /**
+     * Attachment rows that still point at a blob; {@code pattern} is a LIKE pattern on the /files/ URL.
+     */
+    @Query(value = "SELECT (SELECT COUNT(*) FROM sop_document_files WHERE file_path LIKE :pattern)" +
+                   " + (SELECT COUNT(*) FROM checklist_detail_files WHERE file_path LIKE :pattern)" +
+                   " + (SELECT COUNT(*) FROM improvement_files WHERE url LIKE :pattern)",
+           nativeQuery = true)
+    long countReferences(@Param("pattern") String pattern);
+}
@@ -0,0 +1,22 @@
+package com.foxconn.sopchecklist.repository;
+
+import com.foxconn.sopchecklist.entity.StoredFileLocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredFileLocationRepository extends JpaRepository<StoredFileLocation, Long> {
+
+    Optional<StoredFileLocation> findByPath(String path);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM StoredFileLocation l WHERE l.path = :path")
+    int deleteByPath(@Param("path") String path);
+}
@@ -14,6 +14,8 @@ public interface UserAttendanceRepository extends JpaRepository<UserAttendance,
     
     // Tìm tất cả user đang được theo dõi (isActive = true)
     List<UserAttendance> findByIsActiveTrue();
+
+    long countByIsActiveTrue();
     
     // Kiểm tra user có đang được theo dõi không
     boolean existsByUser_UserIDAndIsActiveTrue(Integer userId);
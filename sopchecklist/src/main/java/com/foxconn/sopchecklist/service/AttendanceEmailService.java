@@ -1,13 +1,12 @@
 package com.foxconn.sopchecklist.service;
 
-import com.foxconn.sopchecklist.entity.AttendanceReport;
-import com.foxconn.sopchecklist.entity.Group;
+import com.foxconn.sopchecklist.entity.AttendanceStatus;
 import com.foxconn.sopchecklist.entity.UserAttendance;
 import com.foxconn.sopchecklist.entity.Users;
-import com.foxconn.sopchecklist.repository.AttendanceReportRepository;
-import com.foxconn.sopchecklist.repository.GroupRepository;
 import com.foxconn.sopchecklist.repository.UserAttendanceRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -21,139 +20,139 @@ import java.util.stream.Collectors;
 @Service
 public class AttendanceEmailService {
 
-    private final AttendanceReportRepository attendanceReportRepository;
     private final UserAttendanceRepository userAttendanceRepository;
-    private final GroupRepository groupRepository;
+    private final JdbcTemplate jdbcTemplate;
 
     @Value("${app.public.url:http://10.228.64.77:3000}")
     private String appPublicUrl;
 
-    public AttendanceEmailService(AttendanceReportRepository attendanceReportRepository,
-                                  UserAttendanceRepository userAttendanceRepository,
-                                  GroupRepository groupRepository) {
-        this.attendanceReportRepository = attendanceReportRepository;
+    public AttendanceEmailService(UserAttendanceRepository userAttendanceRepository,
+                                  @Qualifier("mainJdbcTemplate") JdbcTemplate jdbcTemplate) {
         this.userAttendanceRepository = userAttendanceRepository;
-        this.groupRepository = groupRepository;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
-    
-    public AttendanceStats calculateAttendanceStats(LocalDate date) {
-        List<AttendanceReport> reports = attendanceReportRepository.findByAttendanceDate(date);
-        
-        List<UserAttendance> activeUsers = userAttendanceRepository.findByIsActiveTrue();
-        Set<Integer> activeUserIds = activeUsers.stream()
-            .map(ua -> ua.getUser().getUserID())
-            .collect(Collectors.toSet());
-
-        int totalEmployees = activeUserIds.size();
-        int present = 0;
-        int halfDay = 0;
-        int absent = 0;
-        int leave = 0;
-        int weekendLeave = 0;
-
-        Map<Integer, AttendanceReport> reportMap = reports.stream()
-            .collect(Collectors.toMap(
-                r -> r.getUser().getUserID(),
-                r -> r,
-                (r1, r2) -> r1
-            ));
-
-        for (Integer userId : activeUserIds) {
-            AttendanceReport report = reportMap.get(userId);
-            if (report != null) {
-                String status = report.getStatus();
-                if (status != null) {
-                    if (status.contains("Có mặt") || status.contains("出勤")) {
-                        present++;
-                    } else if (status.contains("Nửa ngày") || status.contains("半天")) {
-                        halfDay++;
-                    } else if (status.contains("Vắng") || status.contains("Vắng mặt") || status.contains("缺勤")) {
-                        absent++;
-                    } else if (status.contains("Nghỉ CN") || status.contains("周日休")) {
-                        weekendLeave++;
-                    } else if (status.contains("Nghỉ phép") || status.contains("请假")) {
-                        leave++;
-                    }
-                }
-            } else {
-                absent++;
-            }
-        }
-
-        double effectivePresent = present + halfDay * 0.5;
-        int overallRate = totalEmployees > 0 ? (int) Math.round((effectivePresent / totalEmployees) * 100) : 0;
-
-        List<GroupStats> groupStatsList = new ArrayList<>();
-        List<Group> allGroups = groupRepository.findAll();
-
-        for (Group group : allGroups) {
-            Set<Integer> groupUserIds = new java.util.HashSet<>();
-            if (group.getUsers() != null && !group.getUsers().isEmpty()) {
-                groupUserIds = group.getUsers().stream()
-                    .map(Users::getUserID)
-                    .filter(activeUserIds::contains)
-                    .collect(Collectors.toSet());
-            }
+    /**
+     * Tracked (active) users with their status code for the day; no report counts as absent.
+     * Rows: overall counts (group_id NULL) then per-group counts, every group listed even without tracked users.
+     */
+    private static final String DAY_STATS_SQL =
+            "WITH tracked AS (" +
+            "  SELECT ua.user_id, COALESCE(ar.status_code, 'ABSENT') AS code" +
+            "  FROM User_Attendance ua" +
+            "  LEFT JOIN Attendance_Report ar ON ar.user_id = ua.user_id AND ar.attendance_date = ?" +
+            "  WHERE ua.is_active = 1" +
+            ") " +
+            "SELECT NULL AS group_id, NULL AS group_name, t.code, COUNT(*) AS cnt FROM tracked t GROUP BY t.code " +
+            "UNION ALL " +
+            "SELECT g.id, g.name, t.code, COUNT(t.user_id) FROM [groups] g" +
+            "  LEFT JOIN user_groups ug ON ug.group_id = g.id" +
+            "  LEFT JOIN tracked t ON t.user_id = ug.user_id" +
+            "  GROUP BY g.id, g.name, t.code";
 
+    /**
+     * Reported status codes of tracked users per day.
+     */
+    private static final String RANGE_STATS_SQL =
+            "SELECT ar.attendance_date, ar.status_code, COUNT(*) AS cnt" +
+            " FROM Attendance_Report ar" +
+            " JOIN User_Attendance ua ON ua.user_id = ar.user_id AND ua.is_active = 1" +
+            " WHERE ar.attendance_date BETWEEN ? AND ?" +
+            " GROUP BY ar.attendance_date, ar.status_code";
 
-            int groupPresent = 0;
-            int groupHalfDay = 0;
-            int groupAbsent = 0;
-            int groupLeave = 0;
-            int groupWeekendLeave = 0;
-
-            for (Integer userId : groupUserIds) {
-                AttendanceReport report = reportMap.get(userId);
-                if (report != null) {
-                    String status = report.getStatus();
-                    if (status != null) {
-                        if (status.contains("Có mặt") || status.contains("出勤")) {
-                            groupPresent++;
-                        } else if (status.contains("Nửa ngày") || status.contains("半天")) {
-                            groupHalfDay++;
-                        } else if (status.contains("Vắng") || status.contains("Vắng mặt") || status.contains("缺勤")) {
-                            groupAbsent++;
-                        } else if (status.contains("Nghỉ CN") || status.contains("周日休")) {
-                            groupWeekendLeave++;
-                        } else if (status.contains("Nghỉ phép") || status.contains("请假")) {
-                            groupLeave++;
-                        }
-                    }
-                } else {
-                    groupAbsent++;
-                }
+    /**
+     * Overall and per-group attendance for one day, aggregated by the database in a single query.
+     */
+    public AttendanceStats calculateAttendanceStats(LocalDate date) {
+        Counts overall = new Counts();
+        Map<Long, String> groupNames = new TreeMap<>();
+        Map<Long, Counts> groupCounts = new HashMap<>();
+
+        jdbcTemplate.query(DAY_STATS_SQL, rs -> {
+            long groupId = rs.getLong("group_id");
+            boolean isGroup = !rs.wasNull();
+            String code = rs.getString("code");
+            int count = rs.getInt("cnt");
+            if (!isGroup) {
+                overall.add(code, count);
+                return;
             }
+            groupNames.put(groupId, rs.getString("group_name"));
+            Counts counts = groupCounts.computeIfAbsent(groupId, k -> new Counts());
+            if (code != null) counts.add(code, count);
+        }, java.sql.Date.valueOf(date));
 
-            double groupEffectivePresent = groupPresent + groupHalfDay * 0.5;
-            int groupRate = groupUserIds.size() > 0 
-                ? (int) Math.round((groupEffectivePresent / groupUserIds.size()) * 100) 
-                : 0;
-
-            groupStatsList.add(new GroupStats(
-                group.getName(),
-                groupUserIds.size(),
-                groupPresent,
-                groupHalfDay,
-                groupAbsent,
-                groupLeave,
-                groupWeekendLeave,
-                groupRate
-            ));
+        List<GroupStats> groupStatsList = new ArrayList<>();
+        for (Map.Entry<Long, String> group : groupNames.entrySet()) {
+            Counts c = groupCounts.get(group.getKey());
+            groupStatsList.add(new GroupStats(group.getValue(), c.total, c.present, c.halfDay, c.absent,
+                    c.leave, c.weekendLeave, c.rate()));
         }
 
         return new AttendanceStats(
-            totalEmployees,
-            present,
-            halfDay,
-            absent,
-            leave,
-            weekendLeave,
-            overallRate,
+            overall.total,
+            overall.present,
+            overall.halfDay,
+            overall.absent,
+            overall.leave,
+            overall.weekendLeave,
+            overall.rate(),
             groupStatsList
         );
     }
 
+    /**
+     * Daily overall attendance between two dates (inclusive), for the dashboard chart.
+     * Tracked users without a report on a day count as absent that day.
+     */
+    public List<DailyStats> calculateDailyStats(LocalDate startDate, LocalDate endDate) {
+        Map<LocalDate, Counts> byDay = new TreeMap<>();
+        jdbcTemplate.query(RANGE_STATS_SQL, rs -> {
+            LocalDate day = rs.getDate("attendance_date").toLocalDate();
+            byDay.computeIfAbsent(day, k -> new Counts()).add(rs.getString("status_code"), rs.getInt("cnt"));
+        }, java.sql.Date.valueOf(startDate), java.sql.Date.valueOf(endDate));
+
+        int totalEmployees = (int) userAttendanceRepository.countByIsActiveTrue();
+        List<DailyStats> series = new ArrayList<>();
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            Counts c = byDay.getOrDefault(day, new Counts());
+            // Tracked users with no report that day
+            c.add(AttendanceStatus.ABSENT.name(), Math.max(totalEmployees - c.total, 0));
+            series.add(new DailyStats(day, c.total, c.present, c.halfDay, c.absent, c.leave, c.weekendLeave, c.rate()));
+        }
+        return series;
+    }
+
+    /**
+     * Running counts per status code; OTHER (e.g. Đi muộn) only counts toward the total.
+     */
+    private static final class Counts {
+        private int total;
+        private int present;
+        private int halfDay;
+        private int absent;
+        private int leave;
+        private int weekendLeave;
+
+        private void add(String code, int count) {
+            total += count;
+            if (code == null) return;
+            switch (AttendanceStatus.valueOf(code)) {
+                case PRESENT: present += count; break;
+                case HALF_DAY: halfDay += count; break;
+                case ABSENT: absent += count; break;
+                case LEAVE: leave += count; break;
+                case SUNDAY_OFF: weekendLeave += count; break;
+                default: break;
+            }
+        }
+
+        private int rate() {
+            double effectivePresent = present + halfDay * 0.5;
+            return total > 0 ? (int) Math.round((effectivePresent / total) * 100) : 0;
+        }
+    }
+
     /**
      * Tạo HTML email với biểu đồ attendance rate
      */
@@ -265,6 +264,28 @@ public class AttendanceEmailService {
         }
     }
 
+    public static class DailyStats {
+        public final LocalDate date;
+        public final int totalEmployees;
+        public final int present;
+        public final int halfDay;
+        public final int absent;
+        public final int leave;
+        public final int weekendLeave;
+        public final int rate;
+
+        public DailyStats(LocalDate date, int totalEmployees, int present, int halfDay, int absent, int leave, int weekendLeave, int rate) {
+            this.date = date;
+            this.totalEmployees = totalEmployees;
+            this.present = present;
+            this.halfDay = halfDay;
+            this.absent = absent;
+            this.leave = leave;
+            this.weekendLeave = weekendLeave;
+            this.rate = rate;
+        }
+    }
+
     public static class GroupStats {
         public final String name;
         public final int totalEmployees;
@@ -0,0 +1,49 @@
+package com.foxconn.sopchecklist.service;
+
+/**
+ * Resolved byte range of a download, inclusive on both ends.
+ */
+public final class ByteRange {
+
+    private static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+    private final long start;
+    private final long end;
+
+    private ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public static ByteRange of(long start, long end) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid byte range " + start + "-" + end);
+        }
+        return new ByteRange(start, end);
+    }
+
+    public static ByteRange unsatisfiable() {
+        return UNSATISFIABLE;
+    }
+
+    public boolean isSatisfiable() {
+        return this != UNSATISFIABLE;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public long getLength() {
+        return end - start + 1;
+    }
+
+    @Override
+    public String toString() {
+        return isSatisfiable() ? start + "-" + end : "unsatisfiable";
+    }
+}
@@ -0,0 +1,272 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.StoredBlob;
+import com.foxconn.sopchecklist.repository.StoredBlobRepository;
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed mode (storage.dedup.enabled): every distinct file is stored once per bucket root under
+ * {@code _cas/<2 hex>/<sha256>} and handed out as {@code /files/.../_cas/<sha256>/<file name>}, so attachments
+ * keep their own download name while sharing the bytes. Re-uploading known content only adds a reference.
+ * Deletes release a reference; blobs left without references are removed by {@link #collect()} after a grace
+ * period, once the attachment tables confirm nothing points at them any more.
+ */
+@Service
+public class ContentAddressedStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContentAddressedStore.class);
+
+    public static final String CAS_DIR = "_cas";
+
+    // ref_count of a blob whose file the collector is deleting; the row goes once the file is gone
+    private static final int DELETING = -1;
+    // How long an upload waits for the collector to finish removing a blob with the same content
+    private static final long COLLECT_WAIT_MS = 30_000;
+    private static final long COLLECT_POLL_MS = 200;
+
+    // "_cas/<sha256>/<name>", either a whole relative path or the tail of a URL
+    private static final Pattern CAS_PATH = Pattern.compile("(?:^|/)" + CAS_DIR + "/([0-9a-f]{64})/[^/]+$");
+
+    @Value("${storage.dedup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.dedup.buckets:SOP,CHECKLIST,IMPROVEMENT}")
+    private String[] bucketNames;
+
+    // Released blobs are kept this long, so a delete followed by a re-attach does not lose the file
+    @Value("${storage.dedup.gc-grace-ms:3600000}")
+    private long gcGraceMs;
+
+    private final FileStorageEngine storageEngine;
+    private final StoredBlobRepository blobRepository;
+    private final FileLocationService fileLocationService;
+
+    private Set<StorageBucket> buckets;
+
+    public ContentAddressedStore(FileStorageEngine storageEngine, StoredBlobRepository blobRepository,
+                                 FileLocationService fileLocationService) {
+        this.storageEngine = storageEngine;
+        this.blobRepository = blobRepository;
+        this.fileLocationService = fileLocationService;
+    }
+
+    public boolean isEnabled(StorageBucket bucket) {
+        if (!enabled) return false;
+        if (buckets == null) {
+            Set<StorageBucket> parsed = EnumSet.noneOf(StorageBucket.class);
+            for (String name : bucketNames) {
+                if (name != null && !name.trim().isEmpty()) {
+                    parsed.add(StorageBucket.valueOf(name.trim().toUpperCase()));
+                }
+            }
+            buckets = parsed;
+        }
+        return buckets.contains(bucket);
+    }
+
+    public static boolean isContentAddressed(String url) {
+        return url != null && CAS_PATH.matcher(url).find();
+    }
+
+    /**
+     * Physical location of a bucket-relative path: {@code _cas/<sha>/<name>} maps to its blob,
+     * anything else is returned unchanged.
+     */
+    public static String storagePath(String relativePath) {
+        if (relativePath == null || !relativePath.startsWith(CAS_DIR + "/")) return relativePath;
+        Matcher matcher = CAS_PATH.matcher(relativePath);
+        return matcher.matches() ? blobPath(matcher.group(1)) : relativePath;
+    }
+
+    public static String blobPath(String sha256) {
+        return CAS_DIR + "/" + sha256.substring(0, 2) + "/" + sha256;
+    }
+
+    public String urlFor(StorageBucket bucket, String sha256, String originalFilename) {
+        return storageEngine.toUrl(bucket, CAS_DIR + "/" + sha256 + "/" + storageEngine.sanitizeFileName(originalFilename));
+    }
+
+    /**
+     * Store synchronously: hash the upload locally, and only transfer it when the content is new.
+     */
+    public StoredFile store(StorageBucket bucket, MultipartFile file) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IOException("Empty file");
+        }
+        MessageDigest digest = FileStorageEngine.sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            size = in.transferTo(OutputStream.nullOutputStream());
+        }
+        String sha256 = Hex.encodeHexString(digest.digest());
+
+        StoredFile existing = attachExisting(bucket, sha256, size, file.getOriginalFilename());
+        if (existing != null) {
+            return existing;
+        }
+        StoredFile written;
+        try (InputStream in = file.getInputStream()) {
+            written = storageEngine.storeAt(bucket, blobPath(sha256), in);
+        }
+        if (!sha256.equals(written.getSha256())) {
+            throw new IOException("Upload content changed while it was being stored");
+        }
+        return registerBlob(bucket, sha256, size, file.getOriginalFilename());
+    }
+
+    /**
+     * Reference an already stored blob with this digest, or return null when the content is new.
+     */
+    public StoredFile attachExisting(StorageBucket bucket, String sha256, long size, String originalFilename)
+            throws IOException {
+        String rootDir = storageEngine.getRootDir(bucket);
+        while (true) {
+            awaitCollection(rootDir, sha256);
+            Optional<StoredBlob> blob = blobRepository.findByRootDirAndSha256(rootDir, sha256);
+            if (!blob.isPresent() || blob.get().getSize() != size) {
+                return null;
+            }
+            if (blobRepository.addReference(blob.get().getId()) == 1) {
+                break;
+            }
+            // Claimed by the collector in between: wait until its file is gone before writing a new copy
+        }
+        logger.info("Deduplicated upload {} onto existing blob {}", originalFilename, sha256);
+        return toStoredFile(bucket, sha256, size, originalFilename);
+    }
+
+    /**
+     * Wait until no blob with this digest is being removed by the collector. Call before writing
+     * {@link #blobPath(String)}, so the collector cannot delete the file after it was written again.
+     */
+    public void awaitCollection(StorageBucket bucket, String sha256) throws IOException {
+        awaitCollection(storageEngine.getRootDir(bucket), sha256);
+    }
+
+    private void awaitCollection(String rootDir, String sha256) throws IOException {
+        long deadline = System.currentTimeMillis() + COLLECT_WAIT_MS;
+        while (blobRepository.findRefCount(rootDir, sha256).orElse(0) == DELETING) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Blob " + sha256 + " is being removed, try again later");
+            }
+            try {
+                Thread.sleep(COLLECT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for blob " + sha256 + " to be removed");
+            }
+        }
+    }
+
+    /**
+     * Record a reference to a blob whose bytes were just written to {@link #blobPath(String)}.
+     * Fails when the collector claimed the blob meanwhile, since it may delete the file just written.
+     */
+    public StoredFile registerBlob(StorageBucket bucket, String sha256, long size, String originalFilename)
+            throws IOException {
+        String rootDir = storageEngine.getRootDir(bucket);
+        Optional<StoredBlob> existing = blobRepository.findByRootDirAndSha256(rootDir, sha256);
+        if (existing.isPresent()) {
+            addReference(existing.get());
+        } else {
+            StoredBlob blob = new StoredBlob();
+            blob.setSha256(sha256);
+            blob.setRootDir(rootDir);
+            blob.setStoragePath(blobPath(sha256));
+            blob.setSize(size);
+            blob.setRefCount(1);
+            try {
+                blobRepository.saveAndFlush(blob);
+            } catch (DataIntegrityViolationException e) {
+                // Same content registered concurrently
+                Optional<StoredBlob> other = blobRepository.findByRootDirAndSha256(rootDir, sha256);
+                if (other.isPresent()) {
+                    addReference(other.get());
+                }
+            }
+        }
+        return toStoredFile(bucket, sha256, size, originalFilename);
+    }
+
+    private void addReference(StoredBlob blob) throws IOException {
+        if (blobRepository.addReference(blob.getId()) == 0) {
+            throw new IOException("Blob " + blob.getSha256() + " was removed while it was being stored, upload it again");
+        }
+    }
+
+    /**
+     * Drop one reference held by {@code url}. The blob itself is removed later by {@link #collect()}.
+     */
+    public void release(StorageBucket bucket, String url) {
+        Matcher matcher = CAS_PATH.matcher(url != null ? url : "");
+        if (!matcher.find()) return;
+        int released = blobRepository.releaseReference(storageEngine.getRootDir(bucket), matcher.group(1),
+                LocalDateTime.now());
+        if (released == 0) {
+            logger.debug("No reference left to release for {}", url);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${storage.dedup.gc-interval-ms:3600000}")
+    public void collect() {
+        if (!enabled) return;
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(gcGraceMs * 1_000_000L);
+        for (StoredBlob blob : blobRepository.findReleasedBefore(cutoff)) {
+            try {
+                // Claim first: uploads of the same content wait for a claimed blob instead of attaching to it
+                // or writing its file while it is being deleted
+                if (blobRepository.claimForDeletion(blob.getId(), cutoff) == 0) {
+                    continue;
+                }
+                long references = blobRepository.countReferences("%/" + likeLiteral(CAS_DIR) + "/" + blob.getSha256() + "/%");
+                if (references > 0) {
+                    // Attachments copied without an upload are not counted; trust the tables over the counter
+                    logger.warn("Blob {} still referenced by {} attachments, repairing its count", blob.getSha256(), references);
+                    blobRepository.repairReferences(blob.getId(), (int) references);
+                    continue;
+                }
+                // File before row: once the row is gone a new upload may write the same path
+                storageEngine.getBackend().delete(blob.getRootDir(), blob.getStoragePath());
+                blobRepository.deleteClaimed(blob.getId());
+                logger.info("Removed unreferenced blob {} ({} bytes)", blob.getSha256(), blob.getSize());
+            } catch (Exception e) {
+                logger.warn("Cannot collect blob {}: {}", blob.getSha256(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Escape LIKE wildcards for SQL Server ("_cas" would otherwise match any character before "cas").
+     */
+    private static String likeLiteral(String text) {
+        return text.replace("[", "[[]").replace("%", "[%]").replace("_", "[_]");
+    }
+
+    private StoredFile toStoredFile(StorageBucket bucket, String sha256, long size, String originalFilename) {
+        String url = urlFor(bucket, sha256, originalFilename);
+        if (storageEngine.isRemote()) {
+            fileLocationService.recordUrl(url, storageEngine.getRootDir(bucket));
+        }
+        String relativePath = CAS_DIR + "/" + sha256 + "/" + storageEngine.sanitizeFileName(originalFilename);
+        return new StoredFile(bucket, url, relativePath, size, sha256);
+    }
+}
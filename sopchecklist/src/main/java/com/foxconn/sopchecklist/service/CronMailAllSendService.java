@@ -5,8 +5,8 @@ import com.foxconn.sopchecklist.entity.MailRecipientAll;
 import com.foxconn.sopchecklist.entity.TypeCronMail;
 import com.foxconn.sopchecklist.repository.CronMailAllRepository;
 import com.foxconn.sopchecklist.repository.MailRecipientAllRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
 import com.foxconn.sopchecklist.service.TimeService;
+import com.foxconn.sopchecklist.service.serviceImpl.CronMailAllDispatchScheduler;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -21,17 +21,20 @@ public class CronMailAllSendService {
 
     private final CronMailAllRepository mailRepository;
     private final MailRecipientAllRepository mailRecipientRepository;
-    private final TypeCronMailRepository typeCronMailRepository;
+    private final MailTypeRegistry mailTypeRegistry;
     private final TimeService timeService;
+    private final CronMailAllDispatchScheduler dispatchScheduler;
 
     public CronMailAllSendService(CronMailAllRepository mailRepository,
                                   MailRecipientAllRepository mailRecipientRepository,
-                                  TypeCronMailRepository typeCronMailRepository,
-                                  TimeService timeService) {
+                                  MailTypeRegistry mailTypeRegistry,
+                                  TimeService timeService,
+                                  CronMailAllDispatchScheduler dispatchScheduler) {
         this.mailRepository = mailRepository;
         this.mailRecipientRepository = mailRecipientRepository;
-        this.typeCronMailRepository = typeCronMailRepository;
+        this.mailTypeRegistry = mailTypeRegistry;
         this.timeService = timeService;
+        this.dispatchScheduler = dispatchScheduler;
     }
 
     /**
@@ -65,16 +68,7 @@ public class CronMailAllSendService {
     private CronMailAll sendMail(String typeName, String subject, String body, Long referenceId) {
         try {
             // Tìm hoặc tạo TypeCronMail
-            TypeCronMail type = typeCronMailRepository.findByTypeName(typeName);
-            if (type == null) {
-                type = new TypeCronMail();
-                type.setTypeName(typeName);
-                type.setDescription("Mail type: " + typeName);
-                type.setEnabled(true);
-                type.setCreatedAt(timeService.nowVietnam());
-                type.setUpdatedAt(timeService.nowVietnam());
-                type = typeCronMailRepository.save(type);
-            }
+            TypeCronMail type = mailTypeRegistry.getOrCreate(typeName, "Mail type: " + typeName);
 
             // Lấy recipients từ mail_recipient_all
             String toCsv = getRecipients(typeName, "TO");
@@ -101,7 +95,10 @@ public class CronMailAllSendService {
             mail.setCreatedAt(timeService.nowVietnam());
             mail.setReferenceId(referenceId);
 
-            return mailRepository.save(mail);
+            CronMailAll saved = mailRepository.save(mail);
+            // Gửi ngay thay vì chờ lượt quét định kỳ
+            dispatchScheduler.wakeUp();
+            return saved;
         } catch (Exception e) {
             System.err.println("Error in sendMail for type " + typeName + ": " + e.getMessage());
             return null;
@@ -113,16 +110,7 @@ public class CronMailAllSendService {
      */
     public CronMailAll sendMailCustom(String typeName, String toCsv, String ccCsv, String bccCsv, String subject, String body, Long referenceId) {
         try {
-            TypeCronMail type = typeCronMailRepository.findByTypeName(typeName);
-            if (type == null) {
-                type = new TypeCronMail();
-                type.setTypeName(typeName);
-                type.setDescription("Mail type: " + typeName);
-                type.setEnabled(true);
-                type.setCreatedAt(timeService.nowVietnam());
-                type.setUpdatedAt(timeService.nowVietnam());
-                type = typeCronMailRepository.save(type);
-            }
+            TypeCronMail type = mailTypeRegistry.getOrCreate(typeName, "Mail type: " + typeName);
 
             if ((toCsv == null || toCsv.trim().isEmpty()) &&
                 (ccCsv == null || ccCsv.trim().isEmpty()) &&
@@ -143,7 +131,10 @@ public class CronMailAllSendService {
             mail.setCreatedAt(timeService.nowVietnam());
             mail.setReferenceId(referenceId);
 
-            return mailRepository.save(mail);
+            CronMailAll saved = mailRepository.save(mail);
+            // Gửi ngay thay vì chờ lượt quét định kỳ
+            dispatchScheduler.wakeUp();
+            return saved;
         } catch (Exception e) {
             return null;
         }
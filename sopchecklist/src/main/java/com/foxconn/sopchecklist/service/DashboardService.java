@@ -0,0 +1,257 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.ChecklistDetail;
+import com.foxconn.sopchecklist.entity.Checklists;
+import com.foxconn.sopchecklist.entity.ImprovementStatus;
+import com.foxconn.sopchecklist.entity.Improvements;
+import com.foxconn.sopchecklist.entity.SOPDocuments;
+import com.foxconn.sopchecklist.entity.SOPs;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aggregates behind the dashboard: totals, improvement counts per category, checklist completion per day and the
+ * most recent SOPs, documents and checklists, each computed by a grouped query. Summaries are cached per day
+ * window for a short TTL and dropped on any committed write to the tables they read.
+ */
+@Service
+public class DashboardService implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    /** Recent rows kept per kind; callers filter them by permission before showing a few. */
+    public static final int RECENT_LIMIT = 20;
+
+    private static final Set<Class<?>> WATCHED = Set.of(SOPs.class, SOPDocuments.class, Checklists.class,
+            ChecklistDetail.class, Improvements.class);
+
+    private static final String TOTALS_SQL =
+            "SELECT (SELECT COUNT(*) FROM SOPs) AS sops," +
+            " (SELECT COUNT(*) FROM SOPDocuments) AS documents," +
+            " (SELECT COUNT(*) FROM Checklists) AS checklists," +
+            " (SELECT COUNT(*) FROM Checklists WHERE status = 'ACTIVE') AS active_checklists," +
+            " (SELECT COUNT(*) FROM Checklist_Details) AS checklist_details";
+
+    private static final String CHECKLIST_BY_DAY_SQL =
+            "SELECT CAST(scheduled_at AS date) AS day, COUNT(*) AS total," +
+            " SUM(CASE WHEN status IN ('COMPLETED', 'DONE') THEN 1 ELSE 0 END) AS completed" +
+            " FROM Checklist_Details WHERE scheduled_at >= ? AND scheduled_at < ?" +
+            " GROUP BY CAST(scheduled_at AS date)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TimeService timeService;
+
+    @Value("${dashboard.summary.ttl-ms:30000}")
+    private long ttlMs;
+
+    private final Map<Integer, Cached> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private static final class Cached {
+        private final Map<String, Object> summary;
+        private final long generation;
+        private final long loadedAt;
+
+        private Cached(Map<String, Object> summary, long generation, long loadedAt) {
+            this.summary = summary;
+            this.generation = generation;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    public DashboardService(@Qualifier("mainJdbcTemplate") JdbcTemplate jdbcTemplate,
+                            EntityManagerFactory entityManagerFactory,
+                            TimeService timeService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.timeService = timeService;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    /**
+     * Summary with checklist completion for the last {@code days} days, today included. Shared and read-only.
+     */
+    public Map<String, Object> summary(int days) {
+        Cached cached = cache.get(days);
+        if (cached != null && cached.generation == generation.get()
+                && System.currentTimeMillis() - cached.loadedAt < ttlMs) {
+            return cached.summary;
+        }
+        long gen = generation.get();
+        Map<String, Object> summary = load(days);
+        if (ttlMs > 0) {
+            cache.put(days, new Cached(summary, gen, System.currentTimeMillis()));
+        }
+        return summary;
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    private Map<String, Object> load(int days) {
+        LocalDateTime now = timeService.nowVietnam();
+        Map<String, Object> summary = new LinkedHashMap<>();
+
+        Map<String, Object> totals = new LinkedHashMap<>(jdbcTemplate.queryForMap(TOTALS_SQL));
+        summary.put("totals", totals);
+
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            // Improvements per category and normalized status, rolled up for the overall figures
+            Map<String, Map<String, Long>> byCategory = new TreeMap<>();
+            long improvementsTotal = 0;
+            long improvementsDone = 0;
+            for (Object[] row : em.createQuery(
+                    "SELECT i.category, i.statusCode, COUNT(i) FROM Improvements i GROUP BY i.category, i.statusCode", Object[].class)
+                    .getResultList()) {
+                String category = row[0] != null && !((String) row[0]).isBlank() ? (String) row[0] : "general";
+                boolean done = row[1] == ImprovementStatus.DONE;
+                long count = (Long) row[2];
+                Map<String, Long> c = byCategory.computeIfAbsent(category, k -> new LinkedHashMap<>());
+                c.merge("total", count, Long::sum);
+                c.merge("done", done ? count : 0L, Long::sum);
+                improvementsTotal += count;
+                if (done) improvementsDone += count;
+            }
+            Long overdue = em.createQuery(
+                    "SELECT COUNT(i) FROM Improvements i WHERE i.statusCode = :open AND i.plannedDueAt < :now", Long.class)
+                    .setParameter("open", ImprovementStatus.OPEN)
+                    .setParameter("now", now)
+                    .getSingleResult();
+
+            Map<String, Object> improvements = new LinkedHashMap<>();
+            improvements.put("total", improvementsTotal);
+            improvements.put("done", improvementsDone);
+            improvements.put("open", improvementsTotal - improvementsDone);
+            improvements.put("overdue", overdue);
+            improvements.put("completionRate", improvementsTotal == 0 ? 0.0
+                    : Math.round(improvementsDone * 1000.0 / improvementsTotal) / 10.0);
+            improvements.put("byCategory", byCategory);
+            summary.put("improvements", improvements);
+
+            summary.put("recentSops", rows(em.createQuery(
+                    "SELECT s.id, s.name, s.createdAt FROM SOPs s ORDER BY s.createdAt DESC, s.id DESC", Object[].class)
+                    .setMaxResults(RECENT_LIMIT).getResultList(), "id", "name", "createdAt"));
+            summary.put("recentDocuments", rows(em.createQuery(
+                    "SELECT d.documentID, d.title, s.id, d.createdAt FROM SOPDocuments d LEFT JOIN d.sop s ORDER BY d.createdAt DESC, d.documentID DESC", Object[].class)
+                    .setMaxResults(RECENT_LIMIT).getResultList(), "id", "title", "sopId", "createdAt"));
+            summary.put("recentChecklists", rows(em.createQuery(
+                    "SELECT c.id, c.taskName, c.status, c.createdAt FROM Checklists c ORDER BY c.createdAt DESC, c.id DESC", Object[].class)
+                    .setMaxResults(RECENT_LIMIT).getResultList(), "id", "taskName", "status", "createdAt"));
+        } finally {
+            em.close();
+        }
+
+        // Checklist completion per scheduled day, days without details included as zeros
+        LocalDate today = now.toLocalDate();
+        LocalDate first = today.minusDays(days - 1L);
+        Map<LocalDate, long[]> byDay = new TreeMap<>();
+        for (LocalDate d = first; !d.isAfter(today); d = d.plusDays(1)) {
+            byDay.put(d, new long[2]);
+        }
+        jdbcTemplate.query(CHECKLIST_BY_DAY_SQL, rs -> {
+            long[] counts = byDay.get(rs.getDate("day").toLocalDate());
+            if (counts != null) {
+                counts[0] = rs.getLong("total");
+                counts[1] = rs.getLong("completed");
+            }
+        }, java.sql.Timestamp.valueOf(first.atStartOfDay()), java.sql.Timestamp.valueOf(today.plusDays(1).atStartOfDay()));
+        List<Map<String, Object>> checklistByDay = new ArrayList<>();
+        for (Map.Entry<LocalDate, long[]> e : byDay.entrySet()) {
+            Map<String, Object> day = new LinkedHashMap<>();
+            day.put("date", e.getKey());
+            day.put("total", e.getValue()[0]);
+            day.put("completed", e.getValue()[1]);
+            checklistByDay.add(day);
+        }
+        summary.put("checklistByDay", checklistByDay);
+        summary.put("generatedAt", now);
+        return summary;
+    }
+
+    private static List<Map<String, Object>> rows(List<Object[]> results, String... names) {
+        List<Map<String, Object>> rows = new ArrayList<>(results.size());
+        for (Object[] result : results) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                row.put(names[i], result[i]);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (WATCHED.contains(event.getEntity().getClass())) invalidate();
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (WATCHED.contains(event.getEntity().getClass())) invalidate();
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (WATCHED.contains(event.getEntity().getClass())) invalidate();
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return WATCHED.contains(persister.getMappedClass());
+    }
+
+    // Still abstract in Hibernate 5.6; only called through requiresPostCommitHandling
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+}
@@ -2,7 +2,9 @@ package com.foxconn.sopchecklist.service;
 
 import com.foxconn.sopchecklist.entity.Role;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -11,9 +13,25 @@ public class DataInitializationService implements CommandLineRunner {
     @Autowired
     private RoleService roleService;
 
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate jdbcTemplate;
+
     @Override
     public void run(String... args) throws Exception {
         initializeRoles();
+        backfillImprovementStatusCodes();
+        backfillAttendanceStatusCodes();
+    }
+
+    /**
+     * Fill status_code for improvements saved before the column existed, with the rule of ImprovementStatus.of.
+     */
+    private void backfillImprovementStatusCodes() {
+        jdbcTemplate.update("UPDATE Improvements SET status_code = CASE " +
+                "WHEN UPPER(status) IN ('DONE', 'COMPLETED') OR status LIKE N'%HOÀN THÀNH%' OR status LIKE N'%HOAN THANH%' " +
+                "THEN 'DONE' ELSE 'OPEN' END " +
+                "WHERE status_code IS NULL");
     }
 
     private void initializeRoles() {
@@ -35,5 +53,18 @@ public class DataInitializationService implements CommandLineRunner {
             roleService.save(userRole);
         }
     }
-}
 
+    /**
+     * Fill status_code for attendance rows saved before the column existed, with the rule of AttendanceStatus.of.
+     */
+    private void backfillAttendanceStatusCodes() {
+        jdbcTemplate.update("UPDATE Attendance_Report SET status_code = CASE " +
+                "WHEN status LIKE N'%Có mặt%' OR status LIKE N'%出勤%' THEN 'PRESENT' " +
+                "WHEN status LIKE N'%Nửa ngày%' OR status LIKE N'%半天%' THEN 'HALF_DAY' " +
+                "WHEN status LIKE N'%Vắng%' OR status LIKE N'%缺勤%' THEN 'ABSENT' " +
+                "WHEN status LIKE N'%Nghỉ CN%' OR status LIKE N'%周日休%' THEN 'SUNDAY_OFF' " +
+                "WHEN status LIKE N'%Nghỉ phép%' OR status LIKE N'%请假%' THEN 'LEAVE' " +
+                "ELSE 'OTHER' END " +
+                "WHERE status_code IS NULL");
+    }
+}
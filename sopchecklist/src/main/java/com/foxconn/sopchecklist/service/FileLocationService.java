@@ -0,0 +1,93 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.StoredFileLocation;
+import com.foxconn.sopchecklist.repository.StoredFileLocationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of which FTP root each /files/... path is stored under.
+ * Written by the storage services on upload; paths uploaded before the index existed are recorded
+ * the first time FilesController finds them by probing.
+ */
+@Service
+public class FileLocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileLocationService.class);
+
+    private static final int MAX_PATH_LENGTH = 400;
+    private static final int MAX_CACHED = 50000;
+
+    private final StoredFileLocationRepository repository;
+    private final Map<String, String> rootByPath = new ConcurrentHashMap<>();
+
+    public FileLocationService(StoredFileLocationRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * FTP root of a path (decoded, without the /files/ prefix), or null if unknown.
+     */
+    public String findRoot(String path) {
+        if (path == null || path.length() > MAX_PATH_LENGTH) return null;
+        String root = rootByPath.get(path);
+        if (root != null) return root;
+        try {
+            root = repository.findByPath(path).map(StoredFileLocation::getRootDir).orElse(null);
+        } catch (Exception e) {
+            logger.warn("File location lookup failed for {}: {}", path, e.getMessage());
+            return null;
+        }
+        if (root != null) cache(path, root);
+        return root;
+    }
+
+    public void record(String path, String rootDir) {
+        if (path == null || rootDir == null || path.length() > MAX_PATH_LENGTH) return;
+        if (rootDir.equals(rootByPath.get(path))) return;
+        try {
+            StoredFileLocation location = repository.findByPath(path).orElseGet(StoredFileLocation::new);
+            if (!rootDir.equals(location.getRootDir())) {
+                location.setPath(path);
+                location.setRootDir(rootDir);
+                repository.save(location);
+            }
+            cache(path, rootDir);
+        } catch (Exception e) {
+            // A concurrent insert of the same path is fine: the other writer recorded it
+            logger.debug("Could not record file location {} -> {}: {}", path, rootDir, e.getMessage());
+        }
+    }
+
+    public void remove(String path) {
+        if (path == null) return;
+        rootByPath.remove(path);
+        if (path.length() > MAX_PATH_LENGTH) return;
+        try {
+            repository.deleteByPath(path);
+        } catch (Exception e) {
+            logger.warn("Could not remove file location {}: {}", path, e.getMessage());
+        }
+    }
+
+    public void recordUrl(String url, String rootDir) {
+        if (url == null || !url.startsWith("/files/")) return;
+        record(url.substring("/files/".length()), rootDir);
+    }
+
+    public void removeUrl(String url) {
+        if (url == null || !url.startsWith("/files/")) return;
+        remove(url.substring("/files/".length()));
+    }
+
+    private void cache(String path, String root) {
+        if (rootByPath.size() >= MAX_CACHED) {
+            rootByPath.clear();
+        }
+        rootByPath.put(path, root);
+    }
+}
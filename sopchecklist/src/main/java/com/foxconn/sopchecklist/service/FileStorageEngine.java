@@ -0,0 +1,213 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.service.serviceImpl.FtpStorageBackend;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.CountingInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Single write/delete path for uploaded files of every bucket.
+ * Names are sanitized here, the content is hashed (SHA-256) while it streams to the backend,
+ * and the download cache and root index are kept in step with each change.
+ */
+@Service
+public class FileStorageEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileStorageEngine.class);
+
+    private final StorageBackend backend;
+    private final FtpContentCache contentCache;
+    private final FileLocationService fileLocationService;
+    private final Map<StorageBucket, String> rootDirs = new EnumMap<>(StorageBucket.class);
+
+    public FileStorageEngine(StorageBackend backend,
+                             FtpContentCache contentCache,
+                             FileLocationService fileLocationService,
+                             @Value("${ftp.upload-dir:uploads_fitsops}") String sopRoot,
+                             @Value("${ftp.checklist-upload-dir:upload_fitchecklist}") String checklistRoot,
+                             @Value("${ftp.improvement-upload-dir:upload_fitimprovement}") String improvementRoot) {
+        this.backend = backend;
+        this.contentCache = contentCache;
+        this.fileLocationService = fileLocationService;
+        rootDirs.put(StorageBucket.SOP, sopRoot);
+        rootDirs.put(StorageBucket.CHECKLIST, checklistRoot);
+        rootDirs.put(StorageBucket.IMPROVEMENT, improvementRoot);
+    }
+
+    public String getRootDir(StorageBucket bucket) {
+        return rootDirs.get(bucket);
+    }
+
+    public StorageBackend getBackend() {
+        return backend;
+    }
+
+    public StoredFile store(StorageBucket bucket, MultipartFile file, String preferredFolderName) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IOException("Empty file");
+        }
+        try (InputStream in = file.getInputStream()) {
+            return store(bucket, in, file.getOriginalFilename(), preferredFolderName);
+        }
+    }
+
+    /**
+     * Store {@code in} as {@code <folder>/<sanitized name>} in the bucket, replacing any file of the same name.
+     * Without a usable folder name the current date is used.
+     */
+    public StoredFile store(StorageBucket bucket, InputStream in, String originalFilename,
+                            String preferredFolderName) throws IOException {
+        return storeAt(bucket, resolveRelativePath(originalFilename, preferredFolderName), in);
+    }
+
+    /**
+     * The bucket-relative path ({@code <folder>/<file>}) an upload with these names is stored under.
+     */
+    public String resolveRelativePath(String originalFilename, String preferredFolderName) {
+        String folder = sanitizeFolderName(preferredFolderName);
+        if (folder == null || folder.isEmpty()) {
+            folder = LocalDate.now().toString();
+        }
+        return folder + "/" + sanitizeFileName(originalFilename);
+    }
+
+    /**
+     * Write {@code in} to an already resolved path, e.g. one handed out by {@link #resolveRelativePath}.
+     */
+    public StoredFile storeAt(StorageBucket bucket, String relativePath, InputStream in) throws IOException {
+        String rootDir = rootDirs.get(bucket);
+
+        MessageDigest digest = sha256();
+        CountingInputStream counted = new CountingInputStream(new DigestInputStream(in, digest));
+        try {
+            backend.write(rootDir, relativePath, counted);
+        } catch (IOException e) {
+            throw new IOException(backend.getName() + " upload failed: " + e.getMessage(), e);
+        }
+
+        String url = toUrl(bucket, relativePath);
+        contentCache.invalidateUrl(url);
+        if (isRemote()) {
+            fileLocationService.recordUrl(url, rootDir);
+        }
+        StoredFile stored = new StoredFile(bucket, url, relativePath, counted.getByteCount(),
+                Hex.encodeHexString(digest.digest()));
+        logger.debug("Stored {} ({} bytes, sha256 {})", url, stored.getSize(), stored.getSha256());
+        return stored;
+    }
+
+    /**
+     * Whether files live on another host (FTP) rather than on this machine.
+     */
+    public boolean isRemote() {
+        return backend instanceof FtpStorageBackend;
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Open a stored file by its /files/... URL; null when it does not exist.
+     */
+    public InputStream open(StorageBucket bucket, String url) throws IOException {
+        String relativePath = toRelativePath(bucket, url);
+        return relativePath != null
+                ? backend.open(rootDirs.get(bucket), ContentAddressedStore.storagePath(relativePath))
+                : null;
+    }
+
+    public void deleteByUrl(StorageBucket bucket, String url) throws IOException {
+        String relativePath = toRelativePath(bucket, url);
+        // Shared blobs are released through ContentAddressedStore, never deleted per attachment
+        if (relativePath == null || ContentAddressedStore.isContentAddressed(url)) return;
+        contentCache.invalidateUrl(url);
+        fileLocationService.removeUrl(url);
+        backend.delete(rootDirs.get(bucket), relativePath);
+    }
+
+    public String toUrl(StorageBucket bucket, String relativePath) {
+        return bucket.isRootInUrl()
+                ? "/files/" + rootDirs.get(bucket) + "/" + relativePath
+                : "/files/" + relativePath;
+    }
+
+    private String toRelativePath(StorageBucket bucket, String url) {
+        if (url == null || !url.startsWith("/files/")) return null;
+        String relative = url.substring("/files/".length());
+        if (bucket.isRootInUrl()) {
+            String prefix = rootDirs.get(bucket) + "/";
+            if (!relative.startsWith(prefix)) return null;
+            relative = relative.substring(prefix.length());
+        }
+        return relative.indexOf('/') > 0 ? relative : null;
+    }
+
+    public String sanitizeFileName(String originalFilename) {
+        String original = StringUtils.cleanPath(originalFilename != null ? originalFilename : "file");
+        int slash = original.lastIndexOf('/');
+        if (slash >= 0) {
+            original = original.substring(slash + 1);
+        }
+
+        String ext = "";
+        String base = original;
+        int dot = original.lastIndexOf('.');
+        if (dot >= 0) {
+            ext = original.substring(dot);
+            base = original.substring(0, dot);
+        }
+
+        String sanitizedBase = toAsciiContinuous(base);
+        if (sanitizedBase.isEmpty()) sanitizedBase = "file";
+        return sanitizedBase + toAsciiContinuous(ext).toLowerCase();
+    }
+
+    private String sanitizeFolderName(String raw) {
+        if (raw == null) return null;
+        String trimmed = raw.trim();
+        if (trimmed.isEmpty()) return "";
+
+        String cleaned = toAsciiContinuous(trimmed);
+        cleaned = cleaned.replaceAll("^[._-]+|[._-]+$", "");
+        if (cleaned.isEmpty()) return "";
+
+        return cleaned.length() > 100 ? cleaned.substring(0, 100) : cleaned;
+    }
+
+    private String toAsciiContinuous(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            return "";
+        }
+
+        String cleaned = input.trim()
+                .replaceAll("[<>:\"/\\\\|?*]", "")
+                .replaceAll("\\s+", "_")
+                .replaceAll("_{2,}", "_")
+                .replaceAll("^_+|_+$", "");
+
+        if (cleaned.isEmpty()) {
+            return "file";
+        }
+
+        return cleaned;
+    }
+}
@@ -0,0 +1,319 @@
+package com.foxconn.sopchecklist.service;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of logged-in FTP sessions shared by every upload/download path.
+ * Sessions are handed out already in passive + binary mode and positioned at the login home directory,
+ * so callers can keep using relative CWD exactly like before.
+ */
+@Service
+public class FtpConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(FtpConnectionPool.class);
+
+    @Value("${ftp.host:}")
+    private String ftpHost;
+
+    @Value("${ftp.port:21}")
+    private int ftpPort;
+
+    @Value("${ftp.username:}")
+    private String ftpUsername;
+
+    @Value("${ftp.password:}")
+    private String ftpPassword;
+
+    @Value("${ftp.timeout:30000}")
+    private int ftpTimeout;
+
+    @Value("${ftp.connection-timeout:30000}")
+    private int ftpConnectionTimeout;
+
+    @Value("${ftp.pool.max-size:8}")
+    private int maxSize;
+
+    @Value("${ftp.pool.borrow-timeout-ms:30000}")
+    private long borrowTimeoutMs;
+
+    // Idle sessions older than this are closed (most FTP servers drop idle control connections after ~5 minutes)
+    @Value("${ftp.pool.max-idle-ms:120000}")
+    private long maxIdleMs;
+
+    // Sessions idle longer than this are checked with NOOP before being handed out
+    @Value("${ftp.pool.validate-after-idle-ms:5000}")
+    private long validateAfterIdleMs;
+
+    private final LinkedBlockingDeque<PooledSession> idle = new LinkedBlockingDeque<>();
+    private final Map<FTPClient, PooledSession> borrowed = new ConcurrentHashMap<>();
+    private volatile Semaphore permits;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong returnCount = new AtomicLong();
+    private final AtomicLong invalidateCount = new AtomicLong();
+    private final AtomicLong createCount = new AtomicLong();
+    private final AtomicLong destroyCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong borrowTimeoutCount = new AtomicLong();
+    private final AtomicLong totalBorrowWaitNanos = new AtomicLong();
+
+    public interface FtpCallback<T> {
+        T doInFtp(FTPClient ftp) throws IOException;
+    }
+
+    /**
+     * Borrow a session, run the callback and give the session back.
+     * Any IOException marks the session as broken so it is never reused.
+     */
+    public <T> T execute(FtpCallback<T> callback) throws IOException {
+        FTPClient ftp = borrow();
+        boolean broken = true;
+        try {
+            T result = callback.doInFtp(ftp);
+            broken = false;
+            return result;
+        } finally {
+            if (broken) {
+                invalidate(ftp);
+            } else {
+                release(ftp);
+            }
+        }
+    }
+
+    public FTPClient borrow() throws IOException {
+        long start = System.nanoTime();
+        Semaphore sem = permits();
+        try {
+            if (!sem.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                borrowTimeoutCount.incrementAndGet();
+                throw new IOException("Timed out waiting for a free FTP connection (max " + maxSize + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for FTP connection", e);
+        }
+        totalBorrowWaitNanos.addAndGet(System.nanoTime() - start);
+
+        try {
+            PooledSession session;
+            while ((session = idle.pollFirst()) != null) {
+                if (isUsable(session)) {
+                    break;
+                }
+                destroy(session);
+            }
+            if (session == null) {
+                session = create();
+            }
+            borrowed.put(session.client, session);
+            borrowCount.incrementAndGet();
+            return session.client;
+        } catch (IOException | RuntimeException e) {
+            sem.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a healthy session to the pool. The working directory is reset to the login home.
+     */
+    public void release(FTPClient ftp) {
+        if (ftp == null) return;
+        PooledSession session = borrowed.remove(ftp);
+        if (session == null) return;
+        returnCount.incrementAndGet();
+        try {
+            if (ftp.isConnected() && ftp.changeWorkingDirectory(session.home)) {
+                session.lastUsedNanos = System.nanoTime();
+                idle.offerFirst(session);
+            } else {
+                destroy(session);
+            }
+        } catch (Exception e) {
+            destroy(session);
+        } finally {
+            permits().release();
+        }
+    }
+
+    /**
+     * Drop a session that failed mid-operation (broken data connection, aborted transfer...).
+     */
+    public void invalidate(FTPClient ftp) {
+        if (ftp == null) return;
+        PooledSession session = borrowed.remove(ftp);
+        if (session == null) return;
+        invalidateCount.incrementAndGet();
+        try {
+            destroy(session);
+        } finally {
+            permits().release();
+        }
+    }
+
+    /**
+     * CWD back to the directory the session logged into, for callers probing several roots in one borrow.
+     */
+    public boolean restoreHome(FTPClient ftp) throws IOException {
+        PooledSession session = borrowed.get(ftp);
+        return ftp.changeWorkingDirectory(session != null ? session.home : "/");
+    }
+
+    // Keep-alive: close sessions idle too long and NOOP the others so the server does not drop them.
+    // Sessions are checked one at a time under a permit, so a session being checked counts against maxSize
+    // and borrowers keep getting the other idle sessions instead of creating new ones.
+    @Scheduled(fixedDelayString = "${ftp.pool.keepalive-interval-ms:60000}")
+    public void evictIdle() {
+        Semaphore sem = permits();
+        for (int remaining = idle.size(); remaining > 0; remaining--) {
+            if (!sem.tryAcquire()) return;
+            try {
+                // Least recently used first; checked sessions go back to the front
+                PooledSession session = idle.pollLast();
+                if (session == null) return;
+                long idleMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - session.lastUsedNanos);
+                if (idleMs > maxIdleMs || !sendNoop(session.client)) {
+                    destroy(session);
+                } else {
+                    idle.offerFirst(session);
+                }
+            } finally {
+                sem.release();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long borrows = borrowCount.get();
+        stats.put("maxSize", maxSize);
+        stats.put("active", borrowed.size());
+        stats.put("idle", idle.size());
+        stats.put("borrowed", borrows);
+        stats.put("returned", returnCount.get());
+        stats.put("invalidated", invalidateCount.get());
+        stats.put("created", createCount.get());
+        stats.put("destroyed", destroyCount.get());
+        stats.put("validationFailures", validationFailureCount.get());
+        stats.put("borrowTimeouts", borrowTimeoutCount.get());
+        stats.put("avgBorrowWaitMs", borrows == 0 ? 0.0
+                : TimeUnit.NANOSECONDS.toMicros(totalBorrowWaitNanos.get()) / 1000.0 / borrows);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PooledSession session;
+        while ((session = idle.pollFirst()) != null) {
+            destroy(session);
+        }
+    }
+
+    private Semaphore permits() {
+        Semaphore sem = permits;
+        if (sem == null) {
+            synchronized (this) {
+                if (permits == null) {
+                    permits = new Semaphore(Math.max(1, maxSize), true);
+                }
+                sem = permits;
+            }
+        }
+        return sem;
+    }
+
+    private boolean isUsable(PooledSession session) {
+        if (!session.client.isConnected()) {
+            return false;
+        }
+        long idleMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - session.lastUsedNanos);
+        if (idleMs > maxIdleMs) {
+            return false;
+        }
+        if (idleMs > validateAfterIdleMs) {
+            return sendNoop(session.client);
+        }
+        return true;
+    }
+
+    private boolean sendNoop(FTPClient ftp) {
+        try {
+            if (ftp.sendNoOp()) {
+                return true;
+            }
+        } catch (Exception e) {
+            logger.debug("FTP NOOP failed: {}", e.getMessage());
+        }
+        validationFailureCount.incrementAndGet();
+        return false;
+    }
+
+    private PooledSession create() throws IOException {
+        FTPClient ftp = new FTPClient();
+        try {
+            ftp.setConnectTimeout(ftpConnectionTimeout);
+            ftp.setDefaultTimeout(ftpTimeout);
+            ftp.setDataTimeout(Duration.ofMillis(ftpTimeout));
+            ftp.setControlEncoding("UTF-8");
+            ftp.connect(ftpHost, ftpPort);
+            if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
+                throw new IOException("FTP server refused connection: " + ftp.getReplyString());
+            }
+            ftp.setSoTimeout(ftpTimeout);
+            if (!ftp.login(ftpUsername, ftpPassword)) {
+                throw new IOException("FTP login failed");
+            }
+            ftp.enterLocalPassiveMode();
+            ftp.setFileType(FTP.BINARY_FILE_TYPE);
+            String home = ftp.printWorkingDirectory();
+            createCount.incrementAndGet();
+            return new PooledSession(ftp, home != null ? home : "/");
+        } catch (IOException e) {
+            disconnectQuietly(ftp);
+            throw e;
+        }
+    }
+
+    private void destroy(PooledSession session) {
+        destroyCount.incrementAndGet();
+        disconnectQuietly(session.client);
+    }
+
+    private void disconnectQuietly(FTPClient ftp) {
+        if (ftp.isConnected()) {
+            try { ftp.logout(); } catch (Exception ignored) {}
+            try { ftp.disconnect(); } catch (Exception ignored) {}
+        }
+    }
+
+    private static final class PooledSession {
+        private final FTPClient client;
+        private final String home;
+        private volatile long lastUsedNanos;
+
+        private PooledSession(FTPClient client, String home) {
+            this.client = client;
+            this.home = home;
+            this.lastUsedNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.foxconn.sopchecklist.service;
+
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Read-through disk cache for files served from FTP under /files/**.
+ * Entries are keyed by the decoded path after /files/, evicted least-recently-used once the total size
+ * exceeds ftp.cache.max-bytes, and revalidated against the FTP MDTM timestamp. When the FTP server cannot be
+ * asked (outage, timeout), entries keep being served and are revalidated again later.
+ * The index lives in memory only; the cache directory is emptied on startup.
+ */
+@Service
+public class FtpContentCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(FtpContentCache.class);
+
+    // remoteLastModified result when the FTP server could not answer; not a reason to evict
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    @Value("${ftp.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ftp.cache.dir:ftp-cache}")
+    private String cacheDir;
+
+    @Value("${ftp.cache.max-bytes:2147483648}")
+    private long maxBytes;
+
+    // Larger files are streamed from FTP without being cached
+    @Value("${ftp.cache.max-file-bytes:209715200}")
+    private long maxFileBytes;
+
+    // Hits younger than this are served without asking the FTP server for MDTM
+    @Value("${ftp.cache.revalidate-after-ms:60000}")
+    private long revalidateAfterMs;
+
+    private final FtpConnectionPool ftpPool;
+
+    private Path root;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+    // Bumped on every invalidation so downloads that started before it are not published
+    private final AtomicLong invalidationEpoch = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+    private final AtomicLong revalidationCount = new AtomicLong();
+    private final AtomicLong revalidationErrorCount = new AtomicLong();
+    private final AtomicLong storeCount = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    public FtpContentCache(FtpConnectionPool ftpPool) {
+        this.ftpPool = ftpPool;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+        try {
+            root = Paths.get(cacheDir).toAbsolutePath().normalize();
+            Files.createDirectories(root);
+            try (Stream<Path> files = Files.list(root)) {
+                files.forEach(this::deleteQuietly);
+            }
+            logger.info("FTP content cache at {} (max {} bytes)", root, maxBytes);
+        } catch (IOException e) {
+            logger.warn("FTP content cache disabled, cannot use {}: {}", cacheDir, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * A cached copy of a remote file.
+     */
+    public static final class Entry {
+        private final String key;
+        private final String rootDir;
+        private final String relativePath;
+        private final Path file;
+        private final long size;
+        private final long lastModified;
+        private volatile long validatedAt;
+
+        private Entry(String key, String rootDir, String relativePath, Path file, long size, long lastModified) {
+            this.key = key;
+            this.rootDir = rootDir;
+            this.relativePath = relativePath;
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.validatedAt = System.currentTimeMillis();
+        }
+
+        public String getKey() { return key; }
+        public String getRootDir() { return rootDir; }
+        public Path getFile() { return file; }
+        public long getSize() { return size; }
+        public long getLastModified() { return lastModified; }
+    }
+
+    /**
+     * Look up a fresh entry. Entries not validated recently are checked against the FTP MDTM first;
+     * a changed or vanished remote file drops the entry and counts as a miss. If the check itself fails the entry
+     * is served as is and checked again after another ftp.cache.revalidate-after-ms.
+     */
+    public Entry get(String key) {
+        if (!enabled || key == null) return null;
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null || !Files.exists(entry.file)) {
+            if (entry != null) remove(key, entry);
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.validatedAt > revalidateAfterMs) {
+            revalidationCount.incrementAndGet();
+            long remote = remoteLastModified(entry);
+            if (remote == UNKNOWN) {
+                revalidationErrorCount.incrementAndGet();
+            } else if (remote != entry.lastModified) {
+                staleCount.incrementAndGet();
+                remove(key, entry);
+                missCount.incrementAndGet();
+                return null;
+            }
+            entry.validatedAt = System.currentTimeMillis();
+        }
+        hitCount.incrementAndGet();
+        return entry;
+    }
+
+    public void recordServed(long bytes) {
+        bytesServed.addAndGet(bytes);
+    }
+
+    /**
+     * Whether a download of this size and timestamp may be copied into the cache.
+     */
+    public boolean accepts(long size, long lastModified) {
+        return enabled && lastModified > 0 && size >= 0 && size <= maxFileBytes && size <= maxBytes;
+    }
+
+    /**
+     * Wrap a full-file download so the bytes are copied into the cache as they are streamed to the client.
+     * The entry is only published when exactly {@code size} bytes went through.
+     */
+    public InputStream tee(String key, String rootDir, String relativePath, long size, long lastModified, InputStream source) {
+        if (!accepts(size, lastModified)) return source;
+        long epoch = invalidationEpoch.get();
+        Path temp = root.resolve(UUID.randomUUID() + ".part");
+        OutputStream out;
+        try {
+            out = Files.newOutputStream(temp);
+        } catch (IOException e) {
+            logger.debug("Cannot create cache file for {}: {}", key, e.getMessage());
+            return source;
+        }
+        return new FilterInputStream(source) {
+            private long written;
+            private boolean failed;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) copy(new byte[]{(byte) b}, 0, 1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) copy(b, off, n);
+                return n;
+            }
+
+            private void copy(byte[] b, int off, int len) {
+                if (failed) return;
+                try {
+                    out.write(b, off, len);
+                    written += len;
+                } catch (IOException e) {
+                    failed = true;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    try { out.close(); } catch (IOException e) { failed = true; }
+                    if (!failed && written == size && epoch == invalidationEpoch.get()) {
+                        publish(key, rootDir, relativePath, temp, size, lastModified);
+                    } else {
+                        deleteQuietly(temp);
+                    }
+                }
+            }
+        };
+    }
+
+    public void invalidate(String key) {
+        if (!enabled || key == null) return;
+        invalidationEpoch.incrementAndGet();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+            if (entry != null) totalBytes -= entry.size;
+        }
+        if (entry != null) {
+            invalidationCount.incrementAndGet();
+            deleteQuietly(entry.file);
+        }
+    }
+
+    /**
+     * Invalidate by stored URL (/files/...), as returned by the storage services.
+     */
+    public void invalidateUrl(String url) {
+        if (url == null || !url.startsWith("/files/")) return;
+        invalidate(url.substring("/files/".length()));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        stats.put("enabled", enabled);
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("stale", staleCount.get());
+        stats.put("revalidations", revalidationCount.get());
+        stats.put("revalidationErrors", revalidationErrorCount.get());
+        stats.put("stores", storeCount.get());
+        stats.put("evictions", evictionCount.get());
+        stats.put("invalidations", invalidationCount.get());
+        stats.put("bytesServed", bytesServed.get());
+        return stats;
+    }
+
+    private void publish(String key, String rootDir, String relativePath, Path temp, long size, long lastModified) {
+        Path target = root.resolve(UUID.randomUUID() + ".bin");
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            return;
+        }
+        Entry entry = new Entry(key, rootDir, relativePath, target, size, lastModified);
+        List<Entry> dropped = new ArrayList<>();
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                totalBytes -= previous.size;
+                dropped.add(previous);
+            }
+            totalBytes += size;
+            Iterator<Entry> it = entries.values().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Entry eldest = it.next();
+                if (eldest == entry) continue;
+                it.remove();
+                totalBytes -= eldest.size;
+                dropped.add(eldest);
+                evictionCount.incrementAndGet();
+            }
+        }
+        storeCount.incrementAndGet();
+        for (Entry old : dropped) {
+            deleteQuietly(old.file);
+        }
+    }
+
+    private void remove(String key, Entry expected) {
+        boolean removed;
+        synchronized (this) {
+            removed = entries.remove(key, expected);
+            if (removed) totalBytes -= expected.size;
+        }
+        if (removed) deleteQuietly(expected.file);
+    }
+
+    /**
+     * Remote MDTM in epoch millis; -1 when the server reports the file missing (550), {@link #UNKNOWN} when it
+     * could not be asked or gave any other answer.
+     */
+    private long remoteLastModified(Entry entry) {
+        String path = (entry.rootDir == null || entry.rootDir.isEmpty())
+                ? entry.relativePath
+                : entry.rootDir + "/" + entry.relativePath;
+        try {
+            return ftpPool.execute(ftp -> {
+                Instant instant = ftp.mdtmInstant(path);
+                if (instant != null) return instant.toEpochMilli();
+                return ftp.getReplyCode() == FTPReply.FILE_UNAVAILABLE ? -1L : UNKNOWN;
+            });
+        } catch (Exception e) {
+            logger.debug("MDTM revalidation failed for {}, serving the cached copy: {}", path, e.getMessage());
+            return UNKNOWN;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try { Files.deleteIfExists(path); } catch (Exception ignored) {}
+    }
+}
@@ -0,0 +1,152 @@
+package com.foxconn.sopchecklist.service;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+
+/**
+ * Opens files on the FTP server as streaming resources backed by a pooled session.
+ */
+@Service
+public class FtpDownloadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FtpDownloadService.class);
+
+    private final FtpConnectionPool ftpPool;
+
+    public FtpDownloadService(FtpConnectionPool ftpPool) {
+        this.ftpPool = ftpPool;
+    }
+
+    /**
+     * Decides which part of a file to send once its size and modification time are known.
+     * Returns null for the whole file.
+     */
+    public interface RangeSelector {
+        ByteRange select(long size, long lastModified);
+
+        /**
+         * Whether the client's copy is current, so nothing needs to be retrieved.
+         */
+        default boolean notModified(long size, long lastModified) {
+            return false;
+        }
+    }
+
+    public FtpFileResource open(String rootDir, String relativePath) throws IOException {
+        return open(rootDir, relativePath, null);
+    }
+
+    /**
+     * Open {@code relativePath} under {@code rootDir}, optionally starting at a byte range chosen by {@code rangeSelector}.
+     * Returns null when the directory or file does not exist; the session is then returned to the pool, as it is
+     * for a file the selector reports not modified.
+     * The caller owns the returned resource and must read or {@link FtpFileResource#discard() discard} it.
+     */
+    public FtpFileResource open(String rootDir, String relativePath, RangeSelector rangeSelector) throws IOException {
+        if (relativePath == null || relativePath.isEmpty()) return null;
+        String[] parts = relativePath.split("/");
+        String fileName = parts[parts.length - 1];
+        if (fileName == null || fileName.trim().isEmpty()) return null;
+
+        FTPClient ftp = ftpPool.borrow();
+        boolean handedOff = false;
+        try {
+            if (rootDir != null && !rootDir.isEmpty() && !ftp.changeWorkingDirectory(rootDir)) {
+                logger.warn("Cannot change to FTP root dir: {}", rootDir);
+                return null;
+            }
+            for (int i = 0; i < parts.length - 1; i++) {
+                String dirName = parts[i];
+                if (dirName == null || dirName.trim().isEmpty()) continue;
+                if (!ftp.changeWorkingDirectory(dirName)) {
+                    logger.debug("Subdir not found under {}: {} (path: {})", rootDir, dirName, relativePath);
+                    return null;
+                }
+            }
+
+            long size = remoteSize(ftp, fileName);
+            long lastModified = size >= 0 ? remoteLastModified(ftp, fileName) : -1;
+            if (rangeSelector != null && size >= 0 && rangeSelector.notModified(size, lastModified)) {
+                return FtpFileResource.notModified(fileName, size, lastModified);
+            }
+            ByteRange range = rangeSelector != null && size >= 0 ? rangeSelector.select(size, lastModified) : null;
+            if (range != null && !range.isSatisfiable()) {
+                return FtpFileResource.unsatisfiable(fileName, size, lastModified);
+            }
+
+            InputStream in = null;
+            if (range != null && range.getStart() > 0) {
+                ftp.setRestartOffset(range.getStart());
+                in = ftp.retrieveFileStream(fileName);
+                if (in == null) {
+                    // Server rejected REST: fall back to sending the whole file
+                    logger.debug("FTP REST {} rejected for {}: {}", range.getStart(), relativePath, ftp.getReplyString());
+                    ftp.setRestartOffset(0);
+                    range = null;
+                }
+            }
+            if (in == null) {
+                in = ftp.retrieveFileStream(fileName);
+            }
+            if (in == null) {
+                logger.debug("File not found. Root: {}, path: {}, reply: {}", rootDir, relativePath, ftp.getReplyString());
+                return null;
+            }
+            handedOff = true;
+            return new FtpFileResource(ftpPool, ftp, in, fileName, size, lastModified, range);
+        } catch (IOException | RuntimeException e) {
+            ftpPool.invalidate(ftp);
+            handedOff = true;
+            throw e;
+        } finally {
+            if (!handedOff) {
+                ftpPool.release(ftp);
+            }
+        }
+    }
+
+    /**
+     * Size of a file in the current directory from the SIZE reply, falling back to MLST; -1 if unknown.
+     */
+    private long remoteSize(FTPClient ftp, String fileName) {
+        try {
+            String reply = ftp.getSize(fileName);
+            if (reply != null) {
+                return Long.parseLong(reply.trim());
+            }
+        } catch (Exception e) {
+            logger.debug("FTP SIZE failed for {}: {}", fileName, e.getMessage());
+        }
+        try {
+            FTPFile file = ftp.mlistFile(fileName);
+            if (file != null && file.getSize() >= 0) {
+                return file.getSize();
+            }
+        } catch (Exception e) {
+            logger.debug("FTP MLST failed for {}: {}", fileName, e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Modification time from the MDTM reply in epoch millis; -1 if the server does not support it.
+     */
+    private long remoteLastModified(FTPClient ftp, String fileName) {
+        try {
+            Instant instant = ftp.mdtmInstant(fileName);
+            if (instant != null) {
+                return instant.toEpochMilli();
+            }
+        } catch (Exception e) {
+            logger.debug("FTP MDTM failed for {}: {}", fileName, e.getMessage());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,235 @@
+package com.foxconn.sopchecklist.service;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A remote FTP file exposed as a one-shot Resource.
+ * The data connection is piped straight to the response, so heap use does not depend on the file size.
+ * Closing the stream finishes the transfer (completePendingCommand) and hands the session back to the pool.
+ * When a byte range was requested the transfer starts at the FTP REST offset and stops after the range.
+ * A transfer that stops early (range before EOF, client gone) is cancelled with ABOR; the session goes back to
+ * the pool once the server has acknowledged it and is only dropped when the abort fails.
+ */
+public class FtpFileResource extends AbstractResource {
+
+    private static final Logger logger = LoggerFactory.getLogger(FtpFileResource.class);
+
+    // How long to wait for the replies to an aborted transfer before giving up on the session
+    private static final int ABORT_REPLY_TIMEOUT_MS = 2000;
+
+    private final FtpConnectionPool pool;
+    private final FTPClient ftp;
+    private final InputStream dataStream;
+    private final String fileName;
+    private final long totalLength;
+    private final long lastModified;
+    private final ByteRange range;
+    private final AtomicBoolean consumed = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private boolean notModified;
+
+    FtpFileResource(FtpConnectionPool pool, FTPClient ftp, InputStream dataStream, String fileName,
+                    long totalLength, long lastModified, ByteRange range) {
+        this.pool = pool;
+        this.ftp = ftp;
+        this.dataStream = dataStream;
+        this.fileName = fileName;
+        this.totalLength = totalLength;
+        this.lastModified = lastModified;
+        this.range = range;
+    }
+
+    /**
+     * Placeholder for a file that exists but whose requested range lies outside it; holds no session.
+     */
+    static FtpFileResource unsatisfiable(String fileName, long totalLength, long lastModified) {
+        FtpFileResource resource = new FtpFileResource(null, null, null, fileName, totalLength, lastModified,
+                ByteRange.unsatisfiable());
+        resource.consumed.set(true);
+        resource.closed.set(true);
+        return resource;
+    }
+
+    /**
+     * Placeholder for a file the client already has (conditional request); holds no session.
+     */
+    static FtpFileResource notModified(String fileName, long totalLength, long lastModified) {
+        FtpFileResource resource = new FtpFileResource(null, null, null, fileName, totalLength, lastModified, null);
+        resource.consumed.set(true);
+        resource.closed.set(true);
+        resource.notModified = true;
+        return resource;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("FTP stream for " + fileName + " has already been read");
+        }
+        long length = contentLength();
+        // The server keeps sending after a range that stops before the end of the file
+        boolean stopsEarly = range != null && totalLength >= 0 && range.getEnd() < totalLength - 1;
+        return new FilterInputStream(dataStream) {
+            private long remaining = length;
+            private boolean eof;
+
+            @Override
+            public int read() throws IOException {
+                if (length >= 0 && remaining <= 0) return -1;
+                int b = super.read();
+                if (b < 0) eof = true; else remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (length >= 0) {
+                    if (remaining <= 0) return -1;
+                    len = (int) Math.min(len, remaining);
+                }
+                int n = super.read(b, off, len);
+                if (n < 0) eof = true; else remaining -= n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                byte[] buffer = new byte[(int) Math.min(8192, Math.max(1, n))];
+                long skipped = 0;
+                while (skipped < n) {
+                    int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                    if (r < 0) break;
+                    skipped += r;
+                }
+                return skipped;
+            }
+
+            @Override
+            public void close() {
+                finish(!stopsEarly && (eof || (length >= 0 && remaining <= 0)));
+            }
+        };
+    }
+
+    /**
+     * Release the session without reading, e.g. when the response is abandoned.
+     */
+    public void discard() {
+        finish(false);
+    }
+
+    private void finish(boolean fullyRead) {
+        if (!closed.compareAndSet(false, true)) return;
+        try { dataStream.close(); } catch (Exception ignored) {}
+        if (!fullyRead) {
+            abort();
+            return;
+        }
+        try {
+            if (ftp.completePendingCommand()) {
+                pool.release(ftp);
+            } else {
+                logger.warn("FTP transfer of {} did not complete cleanly: {}", fileName, ftp.getReplyString());
+                pool.invalidate(ftp);
+            }
+        } catch (Exception e) {
+            logger.warn("FTP completePendingCommand failed for {}: {}", fileName, e.getMessage());
+            pool.invalidate(ftp);
+        }
+    }
+
+    /**
+     * Cancel a transfer that was not read to the end: ABOR, then read the remaining reply (the server answers
+     * both the cut transfer and ABOR). If either reply does not arrive in time the control connection is out of
+     * step and the session is dropped.
+     */
+    private void abort() {
+        try {
+            int soTimeout = ftp.getSoTimeout();
+            ftp.setSoTimeout(ABORT_REPLY_TIMEOUT_MS);
+            try {
+                ftp.abort();
+                ftp.completePendingCommand();
+            } finally {
+                ftp.setSoTimeout(soTimeout);
+            }
+            pool.release(ftp);
+        } catch (Exception e) {
+            logger.debug("FTP abort of {} failed, dropping the session: {}", fileName, e.getMessage());
+            pool.invalidate(ftp);
+        }
+    }
+
+    /**
+     * Length of the body this resource will produce: the range length, or the whole file.
+     */
+    @Override
+    public long contentLength() {
+        if (range != null && range.isSatisfiable()) {
+            return range.getLength();
+        }
+        return totalLength;
+    }
+
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    @Override
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * The range being served, or null for the whole file.
+     */
+    public ByteRange getRange() {
+        return range;
+    }
+
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    public boolean isRangeUnsatisfiable() {
+        return range != null && !range.isSatisfiable();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public String getFilename() {
+        return fileName;
+    }
+
+    @Override
+    public String getDescription() {
+        return "FTP file [" + fileName + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return this == other;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+}
@@ -1,5 +1,6 @@
 package com.foxconn.sopchecklist.service;
 
+import com.foxconn.sopchecklist.config.AuthenticatedUserCache;
 import com.foxconn.sopchecklist.entity.Group;
 import com.foxconn.sopchecklist.repository.GroupRepository;
 import org.springframework.stereotype.Service;
@@ -11,9 +12,14 @@ import java.util.List;
 public class GroupService {
 
     private final GroupRepository repository;
+    private final RecipientDirectory recipientDirectory;
+    private final AuthenticatedUserCache principalCache;
 
-    public GroupService(GroupRepository repository) {
+    public GroupService(GroupRepository repository, RecipientDirectory recipientDirectory,
+                        AuthenticatedUserCache principalCache) {
         this.repository = repository;
+        this.recipientDirectory = recipientDirectory;
+        this.principalCache = principalCache;
     }
 
     public List<Group> findAll() {
@@ -31,7 +37,9 @@ public class GroupService {
             throw new DuplicateNameException(body.getName());
         }
         body.setId(null);
-        return repository.save(body);
+        Group created = repository.save(body);
+        recipientDirectory.groupChanged(created.getId());
+        return created;
     }
 
     @Transactional
@@ -44,11 +52,16 @@ public class GroupService {
         }
         current.setName(body.getName());
         current.setDescription(body.getDescription());
-        return repository.save(current);
+        Group saved = repository.save(current);
+        recipientDirectory.groupChanged(saved.getId());
+        principalCache.clear();
+        return saved;
     }
 
     public void delete(Long id) {
         repository.deleteById(id);
+        recipientDirectory.groupChanged(id);
+        principalCache.clear();
     }
 
     private void validate(Group body) {
@@ -3,9 +3,13 @@ package com.foxconn.sopchecklist.service;
 import com.foxconn.sopchecklist.entity.CronMailAll;
 import com.foxconn.sopchecklist.entity.ChecklistDetail;
 
+import java.util.List;
+
 public interface MailChecklistService {
     
     CronMailAll queueChecklistDetailMail(ChecklistDetail detail);
 
     CronMailAll queueChecklistReminderMail(ChecklistDetail detail);
+
+    List<CronMailAll> queueChecklistReminderMails(List<ChecklistDetail> details);
 }
\ No newline at end of file
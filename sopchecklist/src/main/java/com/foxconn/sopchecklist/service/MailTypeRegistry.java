@@ -0,0 +1,130 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.TypeCronMail;
+import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry of mail types (type_cron_mail), loaded at startup.
+ * Lookups by name or id are answered from memory; a missing type is created once, in its own transaction,
+ * with the unique type_name deciding between concurrent creators. Edits through TypeCronMailService reload it.
+ */
+@Service
+public class MailTypeRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailTypeRegistry.class);
+
+    private final TypeCronMailRepository repository;
+    private final TimeService timeService;
+    private final TransactionTemplate requiresNew;
+
+    private final Map<String, TypeCronMail> byName = new ConcurrentHashMap<>();
+    private final Map<Long, TypeCronMail> byId = new ConcurrentHashMap<>();
+
+    public MailTypeRegistry(TypeCronMailRepository repository, TimeService timeService,
+                            PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.timeService = timeService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+            logger.info("Loaded {} mail types", byName.size());
+        } catch (Exception e) {
+            logger.warn("Could not load mail types, they will be loaded on demand: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read every type from the database.
+     */
+    public synchronized void reload() {
+        Map<String, TypeCronMail> names = new ConcurrentHashMap<>();
+        Map<Long, TypeCronMail> ids = new ConcurrentHashMap<>();
+        for (TypeCronMail type : repository.findAll()) {
+            if (type.getTypeName() == null || type.getId() == null) continue;
+            names.put(type.getTypeName(), type);
+            ids.put(type.getId(), type);
+        }
+        byName.clear();
+        byName.putAll(names);
+        byId.clear();
+        byId.putAll(ids);
+    }
+
+    /**
+     * The type with this name, or null if it does not exist.
+     */
+    public TypeCronMail find(String typeName) {
+        if (typeName == null) return null;
+        TypeCronMail type = byName.get(typeName);
+        if (type != null) return type;
+        // Possibly created by another node since the last reload
+        type = repository.findByTypeName(typeName);
+        if (type != null) remember(type);
+        return type;
+    }
+
+    public TypeCronMail findById(Long id) {
+        if (id == null) return null;
+        TypeCronMail type = byId.get(id);
+        if (type != null) return type;
+        type = repository.findById(id).orElse(null);
+        if (type != null) remember(type);
+        return type;
+    }
+
+    public String nameOf(Long id) {
+        TypeCronMail type = findById(id);
+        return type != null ? type.getTypeName() : null;
+    }
+
+    /**
+     * The type with this name, created with {@code description} if it does not exist yet.
+     * The insert commits on its own so a rollback of the caller cannot leave a cached id behind.
+     */
+    public TypeCronMail getOrCreate(String typeName, String description) {
+        TypeCronMail type = find(typeName);
+        if (type != null) return type;
+        synchronized (this) {
+            type = byName.get(typeName);
+            if (type != null) return type;
+            try {
+                type = requiresNew.execute(status -> {
+                    TypeCronMail created = new TypeCronMail();
+                    created.setTypeName(typeName);
+                    created.setDescription(description);
+                    created.setEnabled(true);
+                    created.setCreatedAt(timeService.nowVietnam());
+                    created.setUpdatedAt(timeService.nowVietnam());
+                    return repository.save(created);
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Another node inserted it first
+                type = repository.findByTypeName(typeName);
+                if (type == null) throw e;
+            }
+            remember(type);
+            return type;
+        }
+    }
+
+    private void remember(TypeCronMail type) {
+        byName.put(type.getTypeName(), type);
+        byId.put(type.getId(), type);
+    }
+}
@@ -0,0 +1,312 @@
+package com.foxconn.sopchecklist.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory directory used to turn implementer / responsible strings into mail recipients.
+ * Users are indexed by id, email, manv and lower-cased full name; groups by id and name with their members.
+ * The directory is an immutable snapshot swapped on change: UsersService and GroupService refresh the
+ * affected user or group after commit, and a periodic full reload picks up changes made outside the app.
+ */
+@Service
+public class RecipientDirectory {
+
+    private static final Logger logger = LoggerFactory.getLogger(RecipientDirectory.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private volatile Snapshot snapshot;
+
+    public RecipientDirectory(@Qualifier("mainJdbcTemplate") JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private static final class Person {
+        private final Integer id;
+        private final String fullName;
+        private final String email;
+        private final String manv;
+        private final boolean active;
+
+        private Person(Integer id, String fullName, String email, String manv, String status) {
+            this.id = id;
+            this.fullName = fullName;
+            this.email = email;
+            this.manv = manv;
+            this.active = status == null || "ACTIVE".equalsIgnoreCase(status);
+        }
+
+        private boolean hasEmail() {
+            return email != null && !email.trim().isEmpty();
+        }
+    }
+
+    private static final class Snapshot {
+        private final Map<Integer, Person> users;
+        private final Map<Long, String> groups;
+        private final Map<Long, List<Integer>> members;
+
+        private final Map<String, Person> byEmail = new HashMap<>();
+        private final Map<String, Person> byManv = new HashMap<>();
+        private final Map<String, Person> byFullName = new HashMap<>();
+        private final Map<String, Long> groupsByName = new HashMap<>();
+
+        private Snapshot(Map<Integer, Person> users, Map<Long, String> groups, Map<Long, List<Integer>> members) {
+            this.users = users;
+            this.groups = groups;
+            this.members = members;
+            // Ascending ids, so the first match wins like the old findAll() scan
+            for (Person p : new TreeMap<>(users).values()) {
+                if (p.email != null) byEmail.putIfAbsent(p.email.trim().toLowerCase(), p);
+                if (p.manv != null) byManv.putIfAbsent(p.manv.trim().toLowerCase(), p);
+                if (p.fullName != null && p.active && p.hasEmail()) {
+                    byFullName.putIfAbsent(p.fullName.toLowerCase(), p);
+                }
+            }
+            for (Map.Entry<Long, String> g : new TreeMap<>(groups).entrySet()) {
+                if (g.getValue() != null) groupsByName.putIfAbsent(g.getValue().trim().toLowerCase(), g.getKey());
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            logger.warn("Recipient directory not loaded, will retry on first use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Re-read all users, groups and memberships.
+     */
+    @Scheduled(fixedDelayString = "${mail.directory.reload-ms:600000}", initialDelayString = "${mail.directory.reload-ms:600000}")
+    public synchronized void reload() {
+        Map<Integer, Person> users = new HashMap<>();
+        jdbcTemplate.query("SELECT userid, full_name, email, manv, status FROM Users", rs -> {
+            Person p = readPerson(rs);
+            users.put(p.id, p);
+        });
+        Map<Long, String> groups = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM [groups]", rs -> {
+            groups.put(rs.getLong("id"), rs.getString("name"));
+        });
+        Map<Long, List<Integer>> members = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, group_id FROM user_groups ORDER BY group_id, user_id", rs -> {
+            members.computeIfAbsent(rs.getLong("group_id"), k -> new ArrayList<>()).add(rs.getInt("user_id"));
+        });
+        snapshot = new Snapshot(users, groups, members);
+        logger.debug("Recipient directory loaded: {} users, {} groups", users.size(), groups.size());
+    }
+
+    /**
+     * Refresh one user and their memberships, after the current transaction commits.
+     */
+    public void userChanged(Integer userId) {
+        if (userId == null) return;
+        afterCommit(() -> refreshUser(userId));
+    }
+
+    /**
+     * Refresh one group and its members, after the current transaction commits.
+     */
+    public void groupChanged(Long groupId) {
+        if (groupId == null) return;
+        afterCommit(() -> refreshGroup(groupId));
+    }
+
+    /**
+     * Comma-separated recipients for an implementer / responsible value:
+     * group:&lt;id&gt;, user:&lt;id&gt;, group name, email, manv, then full name.
+     * Groups resolve to their active members; an unknown email is used as is. Returns null when nothing matches.
+     */
+    public String resolveEmails(String implementer) {
+        if (implementer == null) return null;
+        String name = implementer.trim();
+        if (name.isEmpty()) return null;
+        Snapshot s = current();
+
+        String lower = name.toLowerCase();
+        // Handle encoded identifiers: group:<id>, user:<id>
+        try {
+            if (lower.startsWith("group:")) {
+                Long gid = Long.parseLong(lower.substring("group:".length()).trim());
+                if (s.groups.containsKey(gid)) {
+                    return String.join(",", groupEmails(s, gid, true));
+                }
+            } else if (lower.startsWith("user:")) {
+                Integer uid = Integer.parseInt(lower.substring("user:".length()).trim());
+                Person p = s.users.get(uid);
+                if (p != null && p.hasEmail()) return p.email;
+            }
+        } catch (NumberFormatException ignore) { }
+
+        // 1) Nếu trùng tên group -> lấy toàn bộ email user trong group
+        Long groupId = s.groupsByName.get(lower);
+        if (groupId != null) {
+            return String.join(",", groupEmails(s, groupId, true));
+        }
+
+        // 2) Nếu giống email -> gửi cho đúng user đó; không có trong bảng Users vẫn gửi thẳng chuỗi này
+        if (name.contains("@")) {
+            Person p = s.byEmail.get(lower);
+            return p != null && p.email != null ? p.email : name;
+        }
+
+        // 3) Thử theo mã nhân viên (manv)
+        Person byManv = s.byManv.get(lower);
+        if (byManv != null && byManv.email != null) return byManv.email;
+
+        // 4) Fallback: theo fullName
+        Person byName = s.byFullName.get(lower);
+        return byName != null ? byName.email : null;
+    }
+
+    /**
+     * Human-readable name for an implementer value: the user's full name or the group name, else the value itself.
+     */
+    public String displayName(String implementer) {
+        if (implementer == null || implementer.trim().isEmpty()) return "-";
+        Snapshot s = current();
+        try {
+            if (implementer.startsWith("user:")) {
+                Person p = s.users.get(Integer.parseInt(implementer.substring(5)));
+                if (p != null && p.fullName != null) return p.fullName;
+            }
+            if (implementer.startsWith("group:")) {
+                String group = s.groups.get(Long.parseLong(implementer.substring(6)));
+                if (group != null) return group;
+            }
+        } catch (NumberFormatException ignore) { }
+        if (implementer.contains("@")) {
+            Person p = s.byEmail.get(implementer.trim().toLowerCase());
+            if (p != null && p.fullName != null) return p.fullName;
+        }
+        return implementer;
+    }
+
+    public String userEmail(Integer userId) {
+        if (userId == null) return null;
+        Person p = current().users.get(userId);
+        return p != null ? p.email : null;
+    }
+
+    /**
+     * Emails of a group's members, optionally only the active ones. Empty for an unknown group.
+     */
+    public List<String> groupEmails(Long groupId, boolean activeOnly) {
+        if (groupId == null) return Collections.emptyList();
+        return groupEmails(current(), groupId, activeOnly);
+    }
+
+    private static List<String> groupEmails(Snapshot s, Long groupId, boolean activeOnly) {
+        List<Integer> ids = s.members.getOrDefault(groupId, Collections.emptyList());
+        return ids.stream()
+                .map(s.users::get)
+                .filter(p -> p != null && p.hasEmail() && (!activeOnly || p.active))
+                .map(p -> p.email)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    private Snapshot current() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) reload();
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    private synchronized void refreshUser(Integer userId) {
+        Snapshot s = snapshot;
+        if (s == null) return;
+        List<Person> rows = jdbcTemplate.query("SELECT userid, full_name, email, manv, status FROM Users WHERE userid = ?",
+                (rs, rowNum) -> readPerson(rs), userId);
+        List<Long> groupIds = jdbcTemplate.queryForList("SELECT group_id FROM user_groups WHERE user_id = ?", Long.class, userId);
+
+        Map<Integer, Person> users = new HashMap<>(s.users);
+        Map<Long, List<Integer>> members = new HashMap<>();
+        for (Map.Entry<Long, List<Integer>> e : s.members.entrySet()) {
+            List<Integer> ids = new ArrayList<>(e.getValue());
+            ids.remove(userId);
+            if (!ids.isEmpty()) members.put(e.getKey(), ids);
+        }
+        if (rows.isEmpty()) {
+            users.remove(userId);
+        } else {
+            users.put(userId, rows.get(0));
+            for (Long gid : groupIds) {
+                List<Integer> ids = members.computeIfAbsent(gid, k -> new ArrayList<>());
+                ids.add(userId);
+                Collections.sort(ids);
+            }
+        }
+        snapshot = new Snapshot(users, s.groups, members);
+    }
+
+    private synchronized void refreshGroup(Long groupId) {
+        Snapshot s = snapshot;
+        if (s == null) return;
+        List<String> names = jdbcTemplate.queryForList("SELECT name FROM [groups] WHERE id = ?", String.class, groupId);
+        Map<Long, String> groups = new HashMap<>(s.groups);
+        Map<Long, List<Integer>> members = new HashMap<>(s.members);
+        if (names.isEmpty()) {
+            groups.remove(groupId);
+            members.remove(groupId);
+        } else {
+            groups.put(groupId, names.get(0));
+            List<Integer> ids = jdbcTemplate.queryForList(
+                    "SELECT user_id FROM user_groups WHERE group_id = ? ORDER BY user_id", Integer.class, groupId);
+            members.put(groupId, ids);
+        }
+        snapshot = new Snapshot(s.users, groups, members);
+    }
+
+    private void afterCommit(Runnable refresh) {
+        Runnable safe = () -> {
+            try {
+                refresh.run();
+            } catch (Exception e) {
+                // The next full reload catches up
+                logger.warn("Recipient directory refresh failed: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    safe.run();
+                }
+            });
+        } else {
+            safe.run();
+        }
+    }
+
+    private static Person readPerson(ResultSet rs) throws SQLException {
+        return new Person(rs.getInt("userid"), rs.getString("full_name"), rs.getString("email"),
+                rs.getString("manv"), rs.getString("status"));
+    }
+}
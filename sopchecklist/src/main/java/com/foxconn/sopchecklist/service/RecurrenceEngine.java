@@ -0,0 +1,136 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.TimeRepeatChecklist;
+import com.foxconn.sopchecklist.repository.TimeRepeatChecklistRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Occurrences of repeating checklists. The k-th occurrence is startAt + k * number units, always counted from
+ * startAt, so month and year steps clamp to the end of shorter months without drifting (31 Jan, 28 Feb, 31 Mar).
+ * The next occurrence after a given time is found arithmetically from the elapsed units, with no stepping loop.
+ * Repeat rules (Time_Repeat_Checklist) are cached in memory.
+ */
+@Service
+public class RecurrenceEngine {
+
+    private final TimeRepeatChecklistRepository repeatRepository;
+
+    @Value("${checklist.generator.repeat-cache-ms:600000}")
+    private long repeatCacheMs;
+
+    private volatile Map<Long, Rule> rules = Collections.emptyMap();
+    private volatile long rulesLoadedAt;
+
+    /**
+     * A valid repeat rule: every {@code number} {@code unit}s.
+     */
+    public static final class Rule {
+        private final int number;
+        private final ChronoUnit unit;
+
+        public Rule(int number, ChronoUnit unit) {
+            this.number = Math.max(1, number);
+            this.unit = unit;
+        }
+
+        public int getNumber() { return number; }
+        public ChronoUnit getUnit() { return unit; }
+    }
+
+    public RecurrenceEngine(TimeRepeatChecklistRepository repeatRepository) {
+        this.repeatRepository = repeatRepository;
+    }
+
+    /**
+     * The rule for a repeat id; null for no id, an unknown id or a rule without a valid number and unit.
+     * Rules are reloaded in full when the cache expires or an unknown id shows up (at most once a second).
+     */
+    public Rule rule(Long repeatId) {
+        if (repeatId == null) return null;
+        Map<Long, Rule> current = rules;
+        boolean expired = System.currentTimeMillis() - rulesLoadedAt > repeatCacheMs;
+        if (expired || !current.containsKey(repeatId)) {
+            if (!expired && System.currentTimeMillis() - rulesLoadedAt < 1000) {
+                return current.get(repeatId);
+            }
+            current = reload();
+        }
+        return current.get(repeatId);
+    }
+
+    /**
+     * Re-read every repeat rule; called after rules are created or deleted.
+     */
+    public synchronized Map<Long, Rule> reload() {
+        Map<Long, Rule> loaded = new HashMap<>();
+        for (TimeRepeatChecklist r : repeatRepository.findAll()) {
+            Rule rule = toRule(r);
+            if (rule != null) loaded.put(r.getId(), rule);
+        }
+        rules = loaded;
+        rulesLoadedAt = System.currentTimeMillis();
+        return loaded;
+    }
+
+    public static Rule toRule(TimeRepeatChecklist r) {
+        if (r == null || r.getNumber() == null || r.getUnit() == null) return null;
+        ChronoUnit unit;
+        switch (r.getUnit().toLowerCase(Locale.ROOT)) {
+            case "day": unit = ChronoUnit.DAYS; break;
+            case "week": unit = ChronoUnit.WEEKS; break;
+            case "month": unit = ChronoUnit.MONTHS; break;
+            case "year": unit = ChronoUnit.YEARS; break;
+            default: return null;
+        }
+        return new Rule(r.getNumber(), unit);
+    }
+
+    /**
+     * The k-th occurrence (k = 0 is startAt).
+     */
+    public static LocalDateTime occurrence(LocalDateTime startAt, Rule rule, long k) {
+        return startAt.plus(k * rule.number, rule.unit);
+    }
+
+    /**
+     * The first occurrence strictly after {@code after}; startAt itself when {@code after} is before it.
+     */
+    public static LocalDateTime nextAfter(LocalDateTime startAt, Rule rule, LocalDateTime after) {
+        return occurrence(startAt, rule, indexAfter(startAt, rule, after));
+    }
+
+    /**
+     * {@code count} consecutive occurrences, starting with the first one strictly after {@code after}.
+     */
+    public static List<LocalDateTime> nextAfter(LocalDateTime startAt, Rule rule, LocalDateTime after, int count) {
+        long k = indexAfter(startAt, rule, after);
+        List<LocalDateTime> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(occurrence(startAt, rule, k + i));
+        }
+        return result;
+    }
+
+    /**
+     * Index of the first occurrence strictly after {@code after}. Whole units elapsed since startAt give the index
+     * directly for days and weeks; for months and years end-of-month clamping can put the estimate one step off,
+     * which the two checks correct.
+     */
+    private static long indexAfter(LocalDateTime startAt, Rule rule, LocalDateTime after) {
+        if (after.isBefore(startAt)) return 0;
+        long k = rule.unit.between(startAt, after) / rule.number;
+        while (k > 0 && occurrence(startAt, rule, k).isAfter(after)) k--;
+        while (!occurrence(startAt, rule, k).isAfter(after)) k++;
+        return k;
+    }
+}
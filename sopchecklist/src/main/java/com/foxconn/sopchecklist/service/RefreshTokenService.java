@@ -13,6 +13,8 @@ public interface RefreshTokenService {
     
     void revokeAllByUserId(Integer userId);
     
+    void revoke(String token, Integer userId);
+    
     void updateLastUsed(String token);
     
     void cleanupExpiredTokens();
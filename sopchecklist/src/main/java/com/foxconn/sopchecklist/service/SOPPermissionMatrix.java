@@ -0,0 +1,212 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.Group;
+import com.foxconn.sopchecklist.entity.SOPDocumentPermission;
+import com.foxconn.sopchecklist.entity.SOPPermission;
+import com.foxconn.sopchecklist.entity.Users;
+import com.foxconn.sopchecklist.repository.SOPDocumentPermissionRepository;
+import com.foxconn.sopchecklist.repository.SOPPermissionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user view of the SOP permission tables.
+ * The global (sop_permission) and per-SOP / per-document (sopdocument_permissions) rows that apply to a user,
+ * directly or through one of their groups, are loaded in two queries and folded into bitmasks, so every
+ * rights check afterwards is a map lookup. Compiled grants are cached per user and rebuilt when the user's
+ * groups or admin role change, when a permission table is saved, or after the cache TTL.
+ */
+@Service
+public class SOPPermissionMatrix {
+
+    public static final int VIEW = 1;
+    public static final int EDIT = 1 << 1;
+    public static final int DELETE = 1 << 2;
+    public static final int CREATE = 1 << 3;
+    public static final int ALL = VIEW | EDIT | DELETE | CREATE;
+
+    private final SOPPermissionRepository globalPermissionRepository;
+    private final SOPDocumentPermissionRepository permissionRepository;
+
+    @Value("${sop.permission-cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    private final Map<Integer, UserGrants> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    public SOPPermissionMatrix(SOPPermissionRepository globalPermissionRepository,
+                               SOPDocumentPermissionRepository permissionRepository) {
+        this.globalPermissionRepository = globalPermissionRepository;
+        this.permissionRepository = permissionRepository;
+    }
+
+    /**
+     * Compiled rights of one user. Admins hold every right on everything.
+     */
+    public static final class UserGrants {
+        private static final UserGrants NONE = new UserGrants(false, Collections.emptySet(), 0,
+                Collections.emptyMap(), Collections.emptyMap(), 0, 0);
+
+        private final boolean admin;
+        private final Set<Long> groupIds;
+        private final int global;
+        private final Map<Long, Integer> bySop;
+        private final Map<Integer, Integer> byDocument;
+        private final long generation;
+        private final long compiledAt;
+
+        private UserGrants(boolean admin, Set<Long> groupIds, int global,
+                           Map<Long, Integer> bySop, Map<Integer, Integer> byDocument,
+                           long generation, long compiledAt) {
+            this.admin = admin;
+            this.groupIds = groupIds;
+            this.global = global;
+            this.bySop = bySop;
+            this.byDocument = byDocument;
+            this.generation = generation;
+            this.compiledAt = compiledAt;
+        }
+
+        public boolean isAdmin() { return admin; }
+
+        /** Rights granted for all SOPs (sop_permission). */
+        public int globalRights() { return global; }
+
+        /** Rights granted on this SOP itself, ignoring admin and global grants. */
+        public int sopRights(Long sopId) {
+            return sopId == null ? 0 : bySop.getOrDefault(sopId, 0);
+        }
+
+        /** Rights granted on this document itself, ignoring admin, SOP and global grants. */
+        public int documentRights(Integer documentId) {
+            return documentId == null ? 0 : byDocument.getOrDefault(documentId, 0);
+        }
+
+        /** Effective rights on a SOP: admin, global or SOP grants. */
+        public int effectiveSopRights(Long sopId) {
+            return admin ? ALL : global | sopRights(sopId);
+        }
+
+        /** Effective rights on a document: admin, document or owning SOP grants. */
+        public int effectiveDocumentRights(Long sopId, Integer documentId) {
+            return admin ? ALL : documentRights(documentId) | sopRights(sopId);
+        }
+
+        public boolean canView(Long sopId) { return (effectiveSopRights(sopId) & VIEW) != 0; }
+        public boolean canEdit(Long sopId) { return (effectiveSopRights(sopId) & EDIT) != 0; }
+        public boolean canDelete(Long sopId) { return (effectiveSopRights(sopId) & DELETE) != 0; }
+        public boolean canCreate(Long sopId) { return (effectiveSopRights(sopId) & CREATE) != 0; }
+
+        public boolean canViewDocument(Long sopId, Integer documentId) {
+            return (effectiveDocumentRights(sopId, documentId) & VIEW) != 0;
+        }
+    }
+
+    /**
+     * Compiled grants for a user; empty grants for null.
+     */
+    public UserGrants forUser(Users user) {
+        if (user == null || user.getUserID() == null) return UserGrants.NONE;
+        boolean admin = isAdmin(user);
+        Set<Long> groupIds = groupIds(user);
+
+        UserGrants cached = cache.get(user.getUserID());
+        if (cached != null && cached.generation == generation.get()
+                && cached.admin == admin && cached.groupIds.equals(groupIds)
+                && System.currentTimeMillis() - cached.compiledAt < ttlMs) {
+            return cached;
+        }
+
+        UserGrants compiled = admin ? adminGrants(groupIds) : compile(user.getUserID(), groupIds);
+        // A save during compilation bumps the generation; such a result is served once but not kept
+        if (compiled.generation == generation.get() && ttlMs > 0) {
+            cache.put(user.getUserID(), compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Drop every compiled matrix; called after any permission table is saved.
+     */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+
+    public void invalidateUser(Integer userId) {
+        if (userId != null) cache.remove(userId);
+    }
+
+    /**
+     * view / edit / delete / create flags, as returned by the "my permissions" endpoints.
+     */
+    public static Map<String, Boolean> toMap(int rights) {
+        Map<String, Boolean> result = new HashMap<>();
+        result.put("view", (rights & VIEW) != 0);
+        result.put("edit", (rights & EDIT) != 0);
+        result.put("delete", (rights & DELETE) != 0);
+        result.put("create", (rights & CREATE) != 0);
+        return result;
+    }
+
+    private UserGrants adminGrants(Set<Long> groupIds) {
+        return new UserGrants(true, groupIds, ALL, Collections.emptyMap(), Collections.emptyMap(),
+                generation.get(), System.currentTimeMillis());
+    }
+
+    private UserGrants compile(Integer userId, Set<Long> groupIds) {
+        long gen = generation.get();
+        long compiledAt = System.currentTimeMillis();
+        Long uid = userId.longValue();
+        List<Long> groups = new ArrayList<>(groupIds);
+
+        List<SOPPermission> globalRows = groups.isEmpty()
+                ? globalPermissionRepository.findByUserId(uid)
+                : globalPermissionRepository.findByUserIdOrGroupIdIn(uid, groups);
+        int global = 0;
+        for (SOPPermission p : globalRows) {
+            global |= bits(p.isView(), p.isEdit(), p.isDel(), p.isCreate());
+        }
+
+        List<SOPDocumentPermission> rows = groups.isEmpty()
+                ? permissionRepository.findByUserId(uid)
+                : permissionRepository.findByUserIdOrGroupIdIn(uid, groups);
+        Map<Long, Integer> bySop = new HashMap<>();
+        Map<Integer, Integer> byDocument = new HashMap<>();
+        for (SOPDocumentPermission p : rows) {
+            int b = bits(p.isView(), p.isEdit(), p.isDel(), p.isCreate());
+            if (b == 0) continue;
+            if (p.getSopId() != null) bySop.merge(p.getSopId(), b, (x, y) -> x | y);
+            if (p.getDocumentId() != null) byDocument.merge(p.getDocumentId(), b, (x, y) -> x | y);
+        }
+        return new UserGrants(false, groupIds, global, bySop, byDocument, gen, compiledAt);
+    }
+
+    private static int bits(boolean view, boolean edit, boolean del, boolean create) {
+        return (view ? VIEW : 0) | (edit ? EDIT : 0) | (del ? DELETE : 0) | (create ? CREATE : 0);
+    }
+
+    private static boolean isAdmin(Users user) {
+        return user.getRoles() != null && user.getRoles().stream().anyMatch(r -> "ADMIN".equalsIgnoreCase(r.getName()));
+    }
+
+    private static Set<Long> groupIds(Users user) {
+        Set<Long> ids = new TreeSet<>();
+        if (user.getGroups() != null) {
+            for (Group g : user.getGroups()) {
+                if (g.getId() != null) ids.add(g.getId());
+            }
+        }
+        return ids;
+    }
+}
@@ -1,8 +1,10 @@
 package com.foxconn.sopchecklist.service;
 
+import com.foxconn.sopchecklist.dto.SOPDTO;
 import com.foxconn.sopchecklist.entity.SOPs;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface SOPsService {
@@ -13,6 +15,26 @@ public interface SOPsService {
     List<SOPs> findAll();
     Page<SOPs> search(String q, Pageable pageable);
     Page<SOPs> list(Pageable pageable);
+
+    /**
+     * Page of SOPs the user may view through their own or their groups' SOP grants (global grants not included).
+     */
+    Page<SOPs> listVisible(Integer userId, List<Long> groupIds, Pageable pageable);
+
+    /**
+     * Number of SOPs visible to the user like {@link #listVisible}; all SOPs when visibleTo is null.
+     */
+    long countVisible(Integer visibleTo, List<Long> groupIds);
+
+    /**
+     * Keyset page after (createdAt, id); visibleTo limits it like {@link #listVisible} when not null.
+     */
+    List<SOPs> listAfter(LocalDateTime createdAt, Long id, Integer visibleTo, List<Long> groupIds, int limit);
+
+    /**
+     * List rows (names, document count) for the given SOP ids, in the same order; unknown ids are skipped.
+     */
+    List<SOPDTO> listRows(List<Long> ids);
     
 
     boolean existsByName(String name);
@@ -0,0 +1,196 @@
+package com.foxconn.sopchecklist.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs scheduled jobs at most once at a time: a run is skipped while the previous one is still going on this node,
+ * and, with scheduler.lock.enabled, while another node holds the job's lease in scheduler_lock. Leases use the
+ * database clock (UTC, as are the run times stored with them), are taken and released in their own transactions (so they are visible at once even when the job
+ * runs inside a transaction) and expire after lockAtMostFor if a node dies mid-run. Releasing keeps the lease until
+ * lockAtLeastFor after the start, so a cron job firing a little later on another node does not run again.
+ * Jobs that write use {@link #runInTransaction}, so their transaction commits before the lease is released and a
+ * failed commit is recorded as a failed run; callers must not be transactional themselves.
+ */
+@Service
+public class ScheduledJobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledJobRunner.class);
+
+    private static final String ACQUIRE_SQL =
+            "UPDATE scheduler_lock SET locked_until = DATEADD(millisecond, ?, SYSUTCDATETIME()), " +
+            "locked_at = SYSUTCDATETIME(), locked_by = ? " +
+            "WHERE job_name = ? AND (locked_until IS NULL OR locked_until <= SYSUTCDATETIME())";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO scheduler_lock (job_name, locked_until, locked_at, locked_by, run_count) " +
+            "VALUES (?, DATEADD(millisecond, ?, SYSUTCDATETIME()), SYSUTCDATETIME(), ?, 0)";
+
+    private static final String RELEASE_SQL =
+            "UPDATE scheduler_lock SET locked_until = CASE WHEN DATEADD(millisecond, ?, locked_at) > SYSUTCDATETIME() " +
+            "THEN DATEADD(millisecond, ?, locked_at) ELSE SYSUTCDATETIME() END, " +
+            "last_started_at = locked_at, last_finished_at = SYSUTCDATETIME(), last_duration_ms = ?, last_outcome = ?, last_error = ?, " +
+            "last_node = ?, run_count = COALESCE(run_count, 0) + 1 " +
+            "WHERE job_name = ? AND locked_by = ?";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNew;
+    private final TransactionTemplate transactional;
+    private final TimeService timeService;
+    private final String node = ManagementFactory.getRuntimeMXBean().getName();
+
+    @Value("${scheduler.lock.enabled:true}")
+    private boolean clusterLock;
+
+    private final Map<String, JobState> states = new ConcurrentHashMap<>();
+
+    /**
+     * What this node knows about a job: whether it is running here, its last local run and how often runs were skipped.
+     */
+    public static final class JobState {
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong skippedRunning = new AtomicLong();
+        private final AtomicLong skippedLocked = new AtomicLong();
+        private volatile LocalDateTime lastStartedAt;
+        private volatile Long lastDurationMs;
+        private volatile String lastOutcome;
+        private volatile String lastError;
+
+        public boolean isRunning() { return running.get(); }
+        public long getRuns() { return runs.get(); }
+        public long getSkippedRunning() { return skippedRunning.get(); }
+        public long getSkippedLocked() { return skippedLocked.get(); }
+        public LocalDateTime getLastStartedAt() { return lastStartedAt; }
+        public Long getLastDurationMs() { return lastDurationMs; }
+        public String getLastOutcome() { return lastOutcome; }
+        public String getLastError() { return lastError; }
+    }
+
+    public ScheduledJobRunner(@Qualifier("mainJdbcTemplate") JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              TimeService timeService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.timeService = timeService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactional = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Run the task unless the job is already running here or leased by another node.
+     * Returns whether it ran; exceptions from the task are recorded and rethrown.
+     */
+    public boolean run(String job, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+        JobState state = states.computeIfAbsent(job, k -> new JobState());
+        if (!state.running.compareAndSet(false, true)) {
+            state.skippedRunning.incrementAndGet();
+            logger.warn("Scheduled job {} skipped: previous run still in progress", job);
+            return false;
+        }
+        try {
+            if (clusterLock && !acquire(job, lockAtMostFor)) {
+                state.skippedLocked.incrementAndGet();
+                logger.debug("Scheduled job {} skipped: leased by another node", job);
+                return false;
+            }
+
+            LocalDateTime startedAt = timeService.nowVietnam();
+            long started = System.nanoTime();
+            String outcome = "SUCCESS";
+            String error = null;
+            try {
+                task.run();
+                return true;
+            } catch (RuntimeException | Error e) {
+                outcome = "FAILED";
+                error = e.getClass().getSimpleName() + ": " + e.getMessage();
+                throw e;
+            } finally {
+                long durationMs = (System.nanoTime() - started) / 1_000_000;
+                state.runs.incrementAndGet();
+                state.lastStartedAt = startedAt;
+                state.lastDurationMs = durationMs;
+                state.lastOutcome = outcome;
+                state.lastError = error;
+                if (clusterLock) {
+                    release(job, lockAtLeastFor, durationMs, outcome, error);
+                }
+            }
+        } finally {
+            state.running.set(false);
+        }
+    }
+
+    /**
+     * Like {@link #run}, with the task in its own transaction that commits (or rolls back) while the lease is held.
+     */
+    public boolean runInTransaction(String job, Duration lockAtMostFor, Duration lockAtLeastFor, Runnable task) {
+        return run(job, lockAtMostFor, lockAtLeastFor, () -> transactional.executeWithoutResult(status -> task.run()));
+    }
+
+    /**
+     * Per-node state of every job that has been triggered here, by job name.
+     */
+    public Map<String, JobState> localStates() {
+        return new TreeMap<>(states);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public boolean isClusterLock() {
+        return clusterLock;
+    }
+
+    private boolean acquire(String job, Duration lockAtMostFor) {
+        int leaseMs = (int) Math.min(lockAtMostFor.toMillis(), Integer.MAX_VALUE);
+        try {
+            Boolean acquired = requiresNew.execute(status -> {
+                if (jdbcTemplate.update(ACQUIRE_SQL, leaseMs, node, job) > 0) return true;
+                try {
+                    return jdbcTemplate.update(INSERT_SQL, job, leaseMs, node) > 0;
+                } catch (DataIntegrityViolationException e) {
+                    // Row exists and its lease is still held
+                    return false;
+                }
+            });
+            return Boolean.TRUE.equals(acquired);
+        } catch (RuntimeException e) {
+            logger.error("Scheduled job {} skipped: could not take its lease: {}", job, e.getMessage());
+            return false;
+        }
+    }
+
+    private void release(String job, Duration lockAtLeastFor, long durationMs, String outcome, String error) {
+        int holdMs = (int) Math.min(lockAtLeastFor.toMillis(), Integer.MAX_VALUE);
+        String lastError = error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        try {
+            requiresNew.executeWithoutResult(status -> jdbcTemplate.update(RELEASE_SQL, holdMs, holdMs,
+                    durationMs, outcome, lastError, node, job, node));
+        } catch (RuntimeException e) {
+            // The lease runs out by itself after lockAtMostFor
+            logger.error("Scheduled job {}: could not release its lease: {}", job, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.foxconn.sopchecklist.service;
+
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index over the searchable text of SOPs, SOP documents, checklist details and improvements.
+ * Text is folded (lower case, Vietnamese diacritics removed, đ to d) and split into word tokens; every query token
+ * must match, the last one as a prefix. Hits are ranked by field-weighted TF-IDF. Kept up to date by
+ * {@link SearchIndexer}.
+ */
+@Component
+public class SearchIndex {
+
+    public static final String SOP = "SOP";
+    public static final String SOP_DOCUMENT = "SOP_DOCUMENT";
+    public static final String CHECKLIST_DETAIL = "CHECKLIST_DETAIL";
+    public static final String IMPROVEMENT = "IMPROVEMENT";
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int MAX_TITLE_LENGTH = 200;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** term -> (document -> weighted term frequency) */
+    private final NavigableMap<String, Map<Key, Float>> postings = new TreeMap<>();
+    private final Map<Key, Entry> documents = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    /** Removals seen while a rebuild runs, so the rebuild does not bring back rows deleted after it read them */
+    private final Map<Key, Long> tombstones = new HashMap<>();
+    private int rebuilds;
+
+    /**
+     * Identity of an indexed row: entity type and id.
+     */
+    public static final class Key {
+        private final String type;
+        private final Long id;
+
+        public Key(String type, Long id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        public String getType() { return type; }
+        public Long getId() { return id; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return type.equals(other.type) && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id);
+        }
+    }
+
+    /**
+     * One row to index: weighted text fields, a display title and the owning row (SOP of a document,
+     * checklist of a detail), if any.
+     */
+    public static final class Document {
+        private final Key key;
+        private final String title;
+        private final Long parentId;
+        private final Map<String, Float> fields = new LinkedHashMap<>();
+
+        public Document(String type, Long id, String title, Long parentId) {
+            this.key = new Key(type, id);
+            this.title = title;
+            this.parentId = parentId;
+        }
+
+        public Document field(String text, float weight) {
+            if (text != null && !text.isBlank()) fields.merge(text, weight, Float::sum);
+            return this;
+        }
+    }
+
+    /**
+     * A ranked match.
+     */
+    public static final class Hit {
+        private final String type;
+        private final Long id;
+        private final Long parentId;
+        private final String title;
+        private final double score;
+
+        private Hit(Key key, Entry entry, double score) {
+            this.type = key.type;
+            this.id = key.id;
+            this.parentId = entry.parentId;
+            this.title = entry.title;
+            this.score = score;
+        }
+
+        public String getType() { return type; }
+        public Long getId() { return id; }
+        public Long getParentId() { return parentId; }
+        public String getTitle() { return title; }
+        public double getScore() { return score; }
+    }
+
+    private static final class Entry {
+        private final String title;
+        private final Long parentId;
+        private final Set<String> terms;
+        private final float length;
+        private final long stamp;
+
+        private Entry(String title, Long parentId, Set<String> terms, float length, long stamp) {
+            this.title = title;
+            this.parentId = parentId;
+            this.terms = terms;
+            this.length = length;
+            this.stamp = stamp;
+        }
+    }
+
+    /**
+     * Lower-case, strip combining marks (so "Kiểm tra" and "kiem tra" match) and map đ to d.
+     */
+    public static String fold(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").replace('đ', 'd');
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(fold(text))) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Add or replace a row.
+     */
+    public void put(Document document) {
+        putIfUnchangedSince(document, Long.MAX_VALUE);
+    }
+
+    /**
+     * Add or replace a row read from the database at {@code since} (a {@link #mark()} taken before the read),
+     * unless it was put or removed after that; those changes are newer than the row that was read.
+     * Returns whether the row was put.
+     */
+    public boolean putIfUnchangedSince(Document document, long since) {
+        Map<String, Float> weights = new HashMap<>();
+        float length = 0;
+        for (Map.Entry<String, Float> field : document.fields.entrySet()) {
+            for (String token : tokenize(field.getKey())) {
+                weights.merge(token, field.getValue(), Float::sum);
+                length += field.getValue();
+            }
+        }
+        String title = document.title;
+        if (title != null && title.length() > MAX_TITLE_LENGTH) title = title.substring(0, MAX_TITLE_LENGTH);
+        Entry entry = new Entry(title, document.parentId, weights.keySet(), length, sequence.incrementAndGet());
+
+        lock.writeLock().lock();
+        try {
+            if (since != Long.MAX_VALUE) {
+                Entry current = documents.get(document.key);
+                Long removedAt = tombstones.get(document.key);
+                if ((current != null && current.stamp > since) || (removedAt != null && removedAt > since)) return false;
+            }
+            removeLocked(document.key);
+            if (weights.isEmpty()) return true;
+            documents.put(document.key, entry);
+            for (Map.Entry<String, Float> w : weights.entrySet()) {
+                postings.computeIfAbsent(w.getKey(), t -> new HashMap<>()).put(document.key, w.getValue());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    public void remove(String type, Long id) {
+        if (type == null || id == null) return;
+        lock.writeLock().lock();
+        try {
+            Key key = new Key(type, id);
+            removeLocked(key);
+            if (rebuilds > 0) tombstones.put(key, sequence.incrementAndGet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Start a rebuild: removals are remembered until {@link #endRebuild()}. Returns the mark to pass to
+     * {@link #removeStale}.
+     */
+    public long beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            rebuilds++;
+            return sequence.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            if (--rebuilds == 0) tombstones.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Current position in the update sequence; rows put after it are newer than the mark.
+     */
+    public long mark() {
+        return sequence.get();
+    }
+
+    /**
+     * Drop rows of a type that were not put since the mark, i.e. rows a rebuild did not see.
+     */
+    public int removeStale(String type, long mark) {
+        lock.writeLock().lock();
+        try {
+            List<Key> stale = new ArrayList<>();
+            for (Map.Entry<Key, Entry> e : documents.entrySet()) {
+                if (e.getKey().type.equals(type) && e.getValue().stamp <= mark) stale.add(e.getKey());
+            }
+            stale.forEach(this::removeLocked);
+            return stale.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * All rows matching the query, best first. Restricted to the given types unless types is null or empty.
+     */
+    public List<Hit> search(String query, Collection<String> types) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) return new ArrayList<>();
+
+        lock.readLock().lock();
+        try {
+            int total = Math.max(documents.size(), 1);
+            Map<Key, Double> scores = null;
+            for (int i = 0; i < tokens.size(); i++) {
+                boolean prefix = i == tokens.size() - 1;
+                Map<Key, Double> tokenScores = scoreToken(tokens.get(i), prefix, total, types);
+                if (scores == null) {
+                    scores = tokenScores;
+                } else {
+                    Map<Key, Double> merged = new HashMap<>();
+                    for (Map.Entry<Key, Double> e : scores.entrySet()) {
+                        Double s = tokenScores.get(e.getKey());
+                        if (s != null) merged.put(e.getKey(), e.getValue() + s);
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) break;
+            }
+
+            List<Hit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Key, Double> e : scores.entrySet()) {
+                Entry entry = documents.get(e.getKey());
+                double norm = Math.sqrt(Math.max(entry.length, 1f));
+                hits.add(new Hit(e.getKey(), entry, e.getValue() / norm));
+            }
+            hits.sort(Comparator.comparingDouble(Hit::getScore).reversed()
+                    .thenComparing(Hit::getType).thenComparing(Hit::getId, Comparator.reverseOrder()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Key, Double> scoreToken(String token, boolean prefix, int total, Collection<String> types) {
+        Map<Key, Double> scores = new HashMap<>();
+        Map<String, Map<Key, Float>> matches = prefix
+                ? postings.subMap(token, true, token + Character.MAX_VALUE, false)
+                : (postings.containsKey(token) ? Map.of(token, postings.get(token)) : Map.of());
+        for (Map.Entry<String, Map<Key, Float>> term : matches.entrySet()) {
+            // Exact matches outrank prefix-only matches of the last token
+            double boost = term.getKey().equals(token) ? 1.0 : 0.5;
+            double idf = Math.log(1.0 + (double) total / term.getValue().size());
+            for (Map.Entry<Key, Float> posting : term.getValue().entrySet()) {
+                if (types != null && !types.isEmpty() && !types.contains(posting.getKey().type)) continue;
+                scores.merge(posting.getKey(), boost * idf * posting.getValue(), Math::max);
+            }
+        }
+        return scores;
+    }
+
+    private void removeLocked(Key key) {
+        Entry old = documents.remove(key);
+        if (old == null) return;
+        for (String term : old.terms) {
+            Map<Key, Float> docs = postings.get(term);
+            if (docs == null) continue;
+            docs.remove(key);
+            if (docs.isEmpty()) postings.remove(term);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.foxconn.sopchecklist.service;
+
+import com.foxconn.sopchecklist.entity.ChecklistDetail;
+import com.foxconn.sopchecklist.entity.Improvements;
+import com.foxconn.sopchecklist.entity.SOPDocuments;
+import com.foxconn.sopchecklist.entity.SOPs;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitInsertEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Feeds {@link SearchIndex}: committed inserts, updates and deletes of SOPs, SOP documents, checklist details and
+ * improvements are applied as Hibernate post-commit events, and {@link #rebuild()} re-reads every row (at startup
+ * and on demand). Bulk JPQL/SQL updates bypass the events; writers that insert with JDBC hand their rows to
+ * {@link #indexAfterCommit(Collection)}, anything else is only picked up by a rebuild.
+ */
+@Component
+public class SearchIndexer implements PostCommitInsertEventListener, PostCommitUpdateEventListener, PostCommitDeleteEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexer.class);
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final SearchIndex index;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Value("${search.index.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    private volatile boolean ready;
+
+    public SearchIndexer(SearchIndex index, EntityManagerFactory entityManagerFactory) {
+        this.index = index;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COMMIT_INSERT, this);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, this);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) return;
+        Thread thread = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                logger.error("Search index rebuild failed: {}", e.getMessage(), e);
+            }
+        }, "search-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Re-index every row and drop entries for rows that no longer exist. Searches keep working meanwhile.
+     * Returns the number of rows indexed per type.
+     */
+    public synchronized Map<String, Integer> rebuild() {
+        long started = System.currentTimeMillis();
+        long mark = index.beginRebuild();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try {
+            counts.put(SearchIndex.SOP, reindex(-1L,
+                    "SELECT s.id, s.name FROM SOPs s WHERE s.id > :after ORDER BY s.id",
+                    row -> new SearchIndex.Document(SearchIndex.SOP, (Long) row[0], (String) row[1], null)
+                            .field((String) row[1], 3f)));
+            counts.put(SearchIndex.SOP_DOCUMENT, reindex(-1,
+                    "SELECT d.documentID, d.title, d.description, s.id FROM SOPDocuments d LEFT JOIN d.sop s WHERE d.documentID > :after ORDER BY d.documentID",
+                    row -> new SearchIndex.Document(SearchIndex.SOP_DOCUMENT, ((Integer) row[0]).longValue(), (String) row[1], (Long) row[3])
+                            .field((String) row[1], 3f).field((String) row[2], 1f)));
+            counts.put(SearchIndex.CHECKLIST_DETAIL, reindex(-1L,
+                    "SELECT c.id, c.taskName, c.workContent, c.note, c.abnormalInfo, c.checklist.id FROM ChecklistDetail c WHERE c.id > :after ORDER BY c.id",
+                    row -> checklistDetailDocument((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4], (Long) row[5])));
+            counts.put(SearchIndex.IMPROVEMENT, reindex(-1,
+                    "SELECT i.improvementID, i.issueDescription, i.actionPlan FROM Improvements i WHERE i.improvementID > :after ORDER BY i.improvementID",
+                    row -> improvementDocument(((Integer) row[0]).longValue(), (String) row[1], (String) row[2])));
+            for (String type : counts.keySet()) {
+                index.removeStale(type, mark);
+            }
+        } finally {
+            index.endRebuild();
+        }
+        ready = true;
+        logger.info("Search index rebuilt in {} ms: {}", System.currentTimeMillis() - started, counts);
+        return counts;
+    }
+
+    /**
+     * Whether a full rebuild has completed, i.e. the index holds every row. Until then callers that must not
+     * miss rows should query the database instead.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Index checklist details written without Hibernate (JDBC batches), once the current transaction commits;
+     * right away when there is none. The details must carry their generated ids.
+     */
+    public void indexAfterCommit(Collection<ChecklistDetail> details) {
+        if (details.isEmpty()) return;
+        List<ChecklistDetail> copy = new ArrayList<>(details);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    copy.forEach(SearchIndexer.this::apply);
+                }
+            });
+        } else {
+            copy.forEach(this::apply);
+        }
+    }
+
+    /**
+     * Page through a JPQL projection by id and put every row; the first column must be the id, of the same type
+     * as the starting value. Rows changed or deleted by a committed write after their batch was read are skipped.
+     */
+    private int reindex(Object after, String jpql, Function<Object[], SearchIndex.Document> mapper) {
+        int count = 0;
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            while (true) {
+                long readAt = index.mark();
+                List<Object[]> rows = em.createQuery(jpql, Object[].class)
+                        .setParameter("after", after)
+                        .setMaxResults(REBUILD_BATCH_SIZE)
+                        .getResultList();
+                if (rows.isEmpty()) break;
+                for (Object[] row : rows) {
+                    index.putIfUnchangedSince(mapper.apply(row), readAt);
+                }
+                count += rows.size();
+                after = rows.get(rows.size() - 1)[0];
+                em.clear();
+                if (rows.size() < REBUILD_BATCH_SIZE) break;
+            }
+        } finally {
+            em.close();
+        }
+        return count;
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        apply(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        apply(event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof SOPs) {
+            index.remove(SearchIndex.SOP, ((SOPs) entity).getId());
+        } else if (entity instanceof SOPDocuments) {
+            Integer id = ((SOPDocuments) entity).getDocumentID();
+            if (id != null) index.remove(SearchIndex.SOP_DOCUMENT, id.longValue());
+        } else if (entity instanceof ChecklistDetail) {
+            index.remove(SearchIndex.CHECKLIST_DETAIL, ((ChecklistDetail) entity).getId());
+        } else if (entity instanceof Improvements) {
+            Integer id = ((Improvements) entity).getImprovementID();
+            if (id != null) index.remove(SearchIndex.IMPROVEMENT, id.longValue());
+        }
+    }
+
+    @Override
+    public void onPostInsertCommitFailed(PostInsertEvent event) {
+        // Rolled back: nothing was indexed
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        // Rolled back: the index still holds the committed text
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        // Rolled back: the row stays indexed
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        Class<?> type = persister.getMappedClass();
+        return type == SOPs.class || type == SOPDocuments.class || type == ChecklistDetail.class || type == Improvements.class;
+    }
+
+    // Still abstract in Hibernate 5.6; only called through requiresPostCommitHandling
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    private void apply(Object entity) {
+        try {
+            if (entity instanceof SOPs) {
+                SOPs sop = (SOPs) entity;
+                if (sop.getId() == null) return;
+                index.put(new SearchIndex.Document(SearchIndex.SOP, sop.getId(), sop.getName(), null)
+                        .field(sop.getName(), 3f));
+            } else if (entity instanceof SOPDocuments) {
+                SOPDocuments doc = (SOPDocuments) entity;
+                if (doc.getDocumentID() == null) return;
+                Long sopId = doc.getSop() != null ? doc.getSop().getId() : null;
+                index.put(new SearchIndex.Document(SearchIndex.SOP_DOCUMENT, doc.getDocumentID().longValue(), doc.getTitle(), sopId)
+                        .field(doc.getTitle(), 3f).field(doc.getDescription(), 1f));
+            } else if (entity instanceof ChecklistDetail) {
+                ChecklistDetail d = (ChecklistDetail) entity;
+                if (d.getId() == null) return;
+                Long checklistId = d.getChecklist() != null ? d.getChecklist().getId() : null;
+                index.put(checklistDetailDocument(d.getId(), d.getTaskName(), d.getWorkContent(), d.getNote(), d.getAbnormalInfo(), checklistId));
+            } else if (entity instanceof Improvements) {
+                Improvements i = (Improvements) entity;
+                if (i.getImprovementID() == null) return;
+                index.put(improvementDocument(i.getImprovementID().longValue(), i.getIssueDescription(), i.getActionPlan()));
+            }
+        } catch (Exception e) {
+            // Never fail the committed transaction's caller; the next rebuild catches up
+            logger.warn("Could not index {}: {}", entity.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
+    private static SearchIndex.Document checklistDetailDocument(Long id, String taskName, String workContent,
+                                                                String note, String abnormalInfo, Long checklistId) {
+        return new SearchIndex.Document(SearchIndex.CHECKLIST_DETAIL, id, taskName, checklistId)
+                .field(taskName, 3f).field(workContent, 1f).field(note, 1f).field(abnormalInfo, 1f);
+    }
+
+    private static SearchIndex.Document improvementDocument(Long id, String issueDescription, String actionPlan) {
+        return new SearchIndex.Document(SearchIndex.IMPROVEMENT, id, issueDescription, null)
+                .field(issueDescription, 2f).field(actionPlan, 1f);
+    }
+}
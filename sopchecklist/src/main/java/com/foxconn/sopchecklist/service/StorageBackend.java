@@ -0,0 +1,26 @@
+package com.foxconn.sopchecklist.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Where stored files physically live (FTP server, local disk, memory).
+ * Paths are a bucket root directory plus a "/"-separated path below it; names are already sanitized by
+ * {@link FileStorageEngine}. A write must never leave a half-written file under the final name.
+ */
+public interface StorageBackend {
+
+    String getName();
+
+    void write(String rootDir, String relativePath, InputStream in) throws IOException;
+
+    /**
+     * Returns null when the file does not exist. The caller closes the stream.
+     */
+    InputStream open(String rootDir, String relativePath) throws IOException;
+
+    /**
+     * Returns false when there was nothing to delete.
+     */
+    boolean delete(String rootDir, String relativePath) throws IOException;
+}
@@ -0,0 +1,22 @@
+package com.foxconn.sopchecklist.service;
+
+/**
+ * Logical storage areas. Each bucket maps to its own root directory (ftp.upload-dir,
+ * ftp.checklist-upload-dir, ftp.improvement-upload-dir).
+ */
+public enum StorageBucket {
+    SOP(false),
+    CHECKLIST(false),
+    // Improvement URLs carry the root directory: /files/<root>/<folder>/<file>
+    IMPROVEMENT(true);
+
+    private final boolean rootInUrl;
+
+    StorageBucket(boolean rootInUrl) {
+        this.rootInUrl = rootInUrl;
+    }
+
+    public boolean isRootInUrl() {
+        return rootInUrl;
+    }
+}
@@ -0,0 +1,41 @@
+package com.foxconn.sopchecklist.service;
+
+/**
+ * Result of a write through {@link FileStorageEngine}.
+ */
+public final class StoredFile {
+
+    private final StorageBucket bucket;
+    private final String url;
+    private final String relativePath;
+    private final long size;
+    private final String sha256;
+
+    public StoredFile(StorageBucket bucket, String url, String relativePath, long size, String sha256) {
+        this.bucket = bucket;
+        this.url = url;
+        this.relativePath = relativePath;
+        this.size = size;
+        this.sha256 = sha256;
+    }
+
+    public StorageBucket getBucket() {
+        return bucket;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getRelativePath() {
+        return relativePath;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+}
@@ -1,44 +1,152 @@
 package com.foxconn.sopchecklist.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Database-synchronised clock. SQL Server's SYSUTCDATETIME() is sampled every time.sync-interval-ms and
+ * pinned to System.nanoTime, so nowUtc()/nowVietnam() are answered from memory.
+ * The sample is taken at the midpoint of the query round trip. Times handed out never go backwards,
+ * even when a resync pulls the clock back slightly.
+ */
 @Service
 public class TimeService {
 
+    private static final Logger logger = LoggerFactory.getLogger(TimeService.class);
+
     private final JdbcTemplate jdbcTemplate;
     private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
 
+    @Value("${time.sync-interval-ms:60000}")
+    private long syncIntervalMs;
+
+    private volatile Sample sample;
+    private final AtomicLong lastIssuedMicros = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile long offsetMicros;
+    private volatile long driftMicros;
+    private volatile long roundTripMicros;
+    private volatile long lastSyncAt;
+    private volatile long lastAttemptNanos;
+    private final AtomicLong syncCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
     public TimeService(@Qualifier("mainJdbcTemplate") JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
-    public LocalDateTime nowUtc() {
-        try {
-            return jdbcTemplate.queryForObject("SELECT SYSUTCDATETIME()", (rs, rowNum) -> rs.getObject(1, LocalDateTime.class));
-        } catch (Exception e) {
-            return LocalDateTime.now();
+    /**
+     * Database time at a known System.nanoTime reading.
+     */
+    private static final class Sample {
+        private final long epochMicros;
+        private final long nanoTime;
+
+        private Sample(long epochMicros, long nanoTime) {
+            this.epochMicros = epochMicros;
+            this.nanoTime = nanoTime;
+        }
+
+        private long microsAt(long nanos) {
+            return epochMicros + (nanos - nanoTime) / 1000;
         }
     }
 
+    public LocalDateTime nowUtc() {
+        Sample current = currentSample();
+        long micros = current != null
+                ? current.microsAt(System.nanoTime())
+                : toMicros(Instant.now());
+        long issued = lastIssuedMicros.accumulateAndGet(micros, Math::max);
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(issued, 1_000_000L),
+                (int) Math.floorMod(issued, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
 
     public LocalDateTime nowVietnam() {
+        return nowUtc().atZone(ZoneOffset.UTC).withZoneSameInstant(VIETNAM_ZONE).toLocalDateTime();
+    }
+
+    /**
+     * Re-sample the database clock.
+     */
+    @Scheduled(fixedDelayString = "${time.sync-interval-ms:60000}", initialDelayString = "${time.sync-interval-ms:60000}")
+    public void sync() {
+        lastAttemptNanos = System.nanoTime();
         try {
+            long before = System.nanoTime();
             LocalDateTime utcTime = jdbcTemplate.queryForObject("SELECT SYSUTCDATETIME()", (rs, rowNum) -> rs.getObject(1, LocalDateTime.class));
-            if (utcTime != null) {
-                return utcTime.atZone(ZoneId.of("UTC")).withZoneSameInstant(VIETNAM_ZONE).toLocalDateTime();
+            long after = System.nanoTime();
+            if (utcTime == null) {
+                failureCount.incrementAndGet();
+                return;
             }
+            Sample fresh = new Sample(toMicros(utcTime.toInstant(ZoneOffset.UTC)), before + (after - before) / 2);
+            Sample previous = sample;
+            if (previous != null) {
+                // How far the in-memory clock had wandered from the database since the last sample
+                driftMicros = fresh.epochMicros - previous.microsAt(fresh.nanoTime);
+            }
+            offsetMicros = fresh.epochMicros - toMicros(Instant.now());
+            roundTripMicros = (after - before) / 1000;
+            lastSyncAt = System.currentTimeMillis();
+            sample = fresh;
+            syncCount.incrementAndGet();
         } catch (Exception e) {
+            failureCount.incrementAndGet();
+            logger.warn("Database clock sync failed, keeping {}: {}",
+                    sample != null ? "last sample" : "local clock", e.getMessage());
         }
-        return ZonedDateTime.now(VIETNAM_ZONE).toLocalDateTime();
     }
-}
-
 
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("source", sample != null ? "database" : "local");
+        stats.put("syncIntervalMs", syncIntervalMs);
+        stats.put("lastSyncAt", lastSyncAt > 0 ? Instant.ofEpochMilli(lastSyncAt).atZone(VIETNAM_ZONE).toLocalDateTime() : null);
+        // Database minus local wall clock
+        stats.put("offsetMs", offsetMicros / 1000.0);
+        // Correction applied by the last sync
+        stats.put("driftMs", driftMicros / 1000.0);
+        stats.put("roundTripMs", roundTripMicros / 1000.0);
+        stats.put("syncs", syncCount.get());
+        stats.put("failures", failureCount.get());
+        stats.put("nowVietnam", nowVietnam());
+        stats.put("localVietnam", ZonedDateTime.now(VIETNAM_ZONE).toLocalDateTime());
+        return stats;
+    }
 
+    private Sample currentSample() {
+        Sample current = sample;
+        long now = System.nanoTime();
+        boolean stale = current == null || now - current.nanoTime > 3 * syncIntervalMs * 1_000_000L;
+        // Not synced yet, or the scheduled sync has stalled; while the database is down retry once per interval
+        if (stale && (lastAttemptNanos == 0 || now - lastAttemptNanos > syncIntervalMs * 1_000_000L)) {
+            synchronized (this) {
+                if (sample == current && (lastAttemptNanos == 0 || System.nanoTime() - lastAttemptNanos > syncIntervalMs * 1_000_000L)) {
+                    sync();
+                }
+            }
+            current = sample;
+        }
+        return current;
+    }
 
+    private static long toMicros(Instant instant) {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000);
+    }
+}
@@ -0,0 +1,519 @@
+package com.foxconn.sopchecklist.service;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Asynchronous ingest for uploads to a remote backend (storage.async.enabled).
+ * The request thread only copies the multipart body into the local spool and hashes it; a bounded worker pool
+ * then replicates the file through {@link FileStorageEngine} with exponential-backoff retries.
+ * Until replication finishes the download endpoints serve the spooled copy. Every spool file has a small
+ * .meta sidecar, so uploads that were acknowledged but not yet replicated are picked up again after a restart.
+ * Off by default: the spool is local to the node, so on a multi-node deployment another node cannot serve a file
+ * until it has been replicated. Enable it only when a single node serves uploads and downloads.
+ */
+@Service
+public class UploadSpoolService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UploadSpoolService.class);
+
+    // Spool files of uploads still being received have no task yet; leave them alone for a while
+    private static final long ORPHAN_GRACE_MS = 15 * 60 * 1000L;
+
+    @Value("${storage.async.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.async.spool-dir:upload-spool}")
+    private String spoolDir;
+
+    @Value("${storage.async.workers:4}")
+    private int workers;
+
+    @Value("${storage.async.queue-capacity:500}")
+    private int queueCapacity;
+
+    // Quick retries before a task is parked as FAILED and left to the periodic sweep
+    @Value("${storage.async.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${storage.async.retry-delay-ms:2000}")
+    private long retryDelayMs;
+
+    @Value("${storage.async.max-retry-delay-ms:300000}")
+    private long maxRetryDelayMs;
+
+    // How long finished tasks stay visible to the status endpoint
+    @Value("${storage.async.retain-ms:3600000}")
+    private long retainMs;
+
+    private final FileStorageEngine storageEngine;
+    private final FtpContentCache contentCache;
+    private final ContentAddressedStore contentStore;
+
+    private boolean active;
+    private Path root;
+    private ThreadPoolExecutor workerPool;
+    private ScheduledExecutorService retryScheduler;
+
+    private final Map<String, UploadTask> tasks = new ConcurrentHashMap<>();
+    // Newest unfinished task per /files/ key; downloads of that key are served from its spool file
+    private final Map<String, UploadTask> pendingByKey = new ConcurrentHashMap<>();
+    // Serialises replication of the same key so an older upload can never land after a newer one
+    private final Object[] keyLocks = new Object[64];
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong replicatedCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong spoolHitCount = new AtomicLong();
+
+    public UploadSpoolService(FileStorageEngine storageEngine, FtpContentCache contentCache,
+                              ContentAddressedStore contentStore) {
+        this.storageEngine = storageEngine;
+        this.contentCache = contentCache;
+        this.contentStore = contentStore;
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        // Local and in-memory writes are fast enough to stay on the request thread
+        if (!enabled || !storageEngine.isRemote()) return;
+        try {
+            root = Paths.get(spoolDir).toAbsolutePath().normalize();
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            logger.warn("Async uploads disabled, cannot use spool dir {}: {}", spoolDir, e.getMessage());
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        workerPool = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "upload-replicator-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "upload-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        active = true;
+        recover();
+        logger.info("Async uploads spooled at {} ({} workers)", root, workers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!active) return;
+        // Unfinished uploads stay in the spool and are recovered on the next start
+        retryScheduler.shutdownNow();
+        workerPool.shutdown();
+        try {
+            workerPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Accept an upload. When async ingest is active the file is spooled and the task returned as PENDING;
+     * otherwise it is stored synchronously and returned as DONE. Either way the URL is final.
+     */
+    public UploadTask submit(StorageBucket bucket, MultipartFile file, String preferredFolderName) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IOException("Empty file");
+        }
+        boolean dedup = contentStore.isEnabled(bucket);
+        String relativePath = storageEngine.resolveRelativePath(file.getOriginalFilename(), preferredFolderName);
+        String id = UUID.randomUUID().toString();
+        if (!active) {
+            if (dedup) {
+                return registerCompleted(UploadTask.completed(id, contentStore.store(bucket, file)));
+            }
+            try (InputStream in = file.getInputStream()) {
+                return registerCompleted(UploadTask.completed(id, storageEngine.storeAt(bucket, relativePath, in)));
+            }
+        }
+
+        Path data = root.resolve(id + ".bin");
+        MessageDigest digest = FileStorageEngine.sha256();
+        long size;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            size = Files.copy(in, data);
+        } catch (IOException e) {
+            deleteQuietly(data);
+            throw e;
+        }
+        String sha256 = Hex.encodeHexString(digest.digest());
+        String url = storageEngine.toUrl(bucket, relativePath);
+        if (dedup) {
+            // Known content needs no transfer at all
+            StoredFile existing = contentStore.attachExisting(bucket, sha256, size, file.getOriginalFilename());
+            if (existing != null) {
+                deleteQuietly(data);
+                return registerCompleted(UploadTask.completed(id, existing));
+            }
+            relativePath = ContentAddressedStore.blobPath(sha256);
+            url = contentStore.urlFor(bucket, sha256, file.getOriginalFilename());
+        }
+        UploadTask task = new UploadTask(id, bucket, relativePath, url, data, size, sha256, System.currentTimeMillis());
+        try {
+            writeMeta(task);
+        } catch (IOException e) {
+            deleteQuietly(data);
+            throw e;
+        }
+
+        register(task);
+        contentCache.invalidateUrl(task.getUrl());
+        acceptedCount.incrementAndGet();
+        enqueue(task);
+        return task;
+    }
+
+    public UploadTask find(String id) {
+        return id != null ? tasks.get(id) : null;
+    }
+
+    /**
+     * The spooled, not yet replicated upload for a path below /files/, or null.
+     */
+    public UploadTask findPending(String key) {
+        if (!active || key == null) return null;
+        UploadTask task = pendingByKey.get(key);
+        if (task == null || task.isFinished() || !Files.isRegularFile(task.getSpoolFile())) return null;
+        spoolHitCount.incrementAndGet();
+        return task;
+    }
+
+    /**
+     * Drop a pending upload for {@code url}, e.g. because the file is being deleted.
+     * Returns true when the upload was dropped before it reached the backend.
+     */
+    public boolean cancel(String url) {
+        if (!active || url == null || !url.startsWith("/files/")) return false;
+        String key = url.substring("/files/".length());
+        UploadTask task = pendingByKey.remove(key);
+        if (task == null) return false;
+        task.cancel();
+        // Wait out a replication already in flight so the caller's delete is not overtaken by it
+        synchronized (lockFor(key)) {
+            if (!task.isFinished()) {
+                finish(task, UploadTask.Status.CANCELLED);
+            }
+            return task.getStatus() == UploadTask.Status.CANCELLED;
+        }
+    }
+
+    public Map<String, Object> describe(UploadTask task) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("id", task.getId());
+        status.put("url", task.getUrl());
+        status.put("bucket", task.getBucket());
+        status.put("status", task.getStatus());
+        status.put("size", task.getSize());
+        status.put("bytesTransferred", task.getBytesTransferred());
+        status.put("progress", task.getSize() > 0 ? (double) task.getBytesTransferred() / task.getSize() : 1.0);
+        status.put("sha256", task.getSha256());
+        status.put("attempts", task.getAttempts());
+        status.put("lastError", task.getLastError());
+        status.put("createdAt", task.getCreatedAt());
+        status.put("completedAt", task.getCompletedAt() > 0 ? task.getCompletedAt() : null);
+        return status;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", active);
+        Map<UploadTask.Status, Integer> byStatus = new LinkedHashMap<>();
+        for (UploadTask.Status status : UploadTask.Status.values()) {
+            byStatus.put(status, 0);
+        }
+        for (UploadTask task : tasks.values()) {
+            byStatus.merge(task.getStatus(), 1, Integer::sum);
+        }
+        stats.put("tasks", byStatus);
+        stats.put("queued", workerPool != null ? workerPool.getQueue().size() : 0);
+        stats.put("accepted", acceptedCount.get());
+        stats.put("replicated", replicatedCount.get());
+        stats.put("retries", retryCount.get());
+        stats.put("failures", failedCount.get());
+        stats.put("spoolHits", spoolHitCount.get());
+        return stats;
+    }
+
+    /**
+     * Forget old finished tasks, re-queue parked failures and tasks the full queue turned away,
+     * and delete spool files that no task refers to any more.
+     */
+    @Scheduled(fixedDelayString = "${storage.async.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        for (UploadTask task : tasks.values()) {
+            if (task.isFinished() && now - task.getCompletedAt() > retainMs) {
+                tasks.remove(task.getId(), task);
+            }
+        }
+        // Synchronous uploads only leave finished tasks behind
+        if (!active) return;
+        for (UploadTask task : tasks.values()) {
+            if (task.isFinished()) {
+                continue;
+            } else if (task.isCancelled()) {
+                if (task.getStatus() != UploadTask.Status.UPLOADING) {
+                    finish(task, UploadTask.Status.CANCELLED);
+                }
+            } else if (task.getStatus() == UploadTask.Status.FAILED) {
+                if (now - task.getLastAttemptAt() > maxRetryDelayMs) {
+                    task.markRetry(task.getLastError());
+                    enqueue(task);
+                }
+            } else if (task.getStatus() == UploadTask.Status.PENDING && !task.queued.get()) {
+                enqueue(task);
+            }
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                UploadTask task = dot > 0 ? tasks.get(name.substring(0, dot)) : null;
+                if ((task == null || task.isFinished()) && isOlderThan(file, now - ORPHAN_GRACE_MS)) {
+                    deleteQuietly(file);
+                }
+            });
+        } catch (IOException e) {
+            logger.debug("Spool sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Keep a finished upload's status available to GET /api/storage/uploads/{id} until the sweep forgets it.
+     */
+    private UploadTask registerCompleted(UploadTask task) {
+        tasks.put(task.getId(), task);
+        return task;
+    }
+
+    private void register(UploadTask task) {
+        tasks.put(task.getId(), task);
+        UploadTask previous = pendingByKey.put(task.getKey(), task);
+        if (previous != null) {
+            cancelTask(previous);
+        }
+    }
+
+    private void cancelTask(UploadTask task) {
+        task.cancel();
+        // A queued or running task notices the flag itself; a parked failure has nobody to do that
+        if (task.getStatus() == UploadTask.Status.FAILED) {
+            finish(task, UploadTask.Status.CANCELLED);
+        }
+    }
+
+    private void enqueue(UploadTask task) {
+        if (!task.queued.compareAndSet(false, true)) return;
+        try {
+            workerPool.execute(() -> replicate(task));
+        } catch (RejectedExecutionException e) {
+            // Queue full: the file is safe in the spool and the sweep submits it later
+            task.queued.set(false);
+            logger.warn("Upload queue full, deferring {}", task.getUrl());
+        }
+    }
+
+    private void replicate(UploadTask task) {
+        task.queued.set(false);
+        synchronized (lockFor(task.getKey())) {
+            if (task.isFinished()) return;
+            if (task.isCancelled()) {
+                finish(task, UploadTask.Status.CANCELLED);
+                return;
+            }
+            task.startAttempt();
+            try (InputStream in = new ProxyInputStream(Files.newInputStream(task.getSpoolFile())) {
+                @Override
+                protected void afterRead(int n) {
+                    if (n > 0) task.addTransferred(n);
+                }
+            }) {
+                if (ContentAddressedStore.isContentAddressed(task.getUrl())) {
+                    contentStore.awaitCollection(task.getBucket(), task.getSha256());
+                }
+                StoredFile stored = storageEngine.storeAt(task.getBucket(), task.getRelativePath(), in);
+                if (stored.getSize() != task.getSize() || !stored.getSha256().equals(task.getSha256())) {
+                    throw new IOException("Checksum mismatch after upload (" + stored.getSize() + " bytes, sha256 "
+                            + stored.getSha256() + ")");
+                }
+                if (ContentAddressedStore.isContentAddressed(task.getUrl())) {
+                    contentStore.registerBlob(task.getBucket(), task.getSha256(), task.getSize(),
+                            task.getUrl().substring(task.getUrl().lastIndexOf('/') + 1));
+                }
+                replicatedCount.incrementAndGet();
+                logger.info("Replicated {} ({} bytes, attempt {})", task.getUrl(), task.getSize(), task.getAttempts());
+                // Even if cancelled meanwhile the bytes did land; the canceller deletes them after us
+                finish(task, UploadTask.Status.DONE);
+            } catch (Exception e) {
+                onFailure(task, e);
+            }
+        }
+    }
+
+    private Object lockFor(String key) {
+        return keyLocks[Math.floorMod(key.hashCode(), keyLocks.length)];
+    }
+
+    private void onFailure(UploadTask task, Exception e) {
+        String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        if (task.isCancelled()) {
+            finish(task, UploadTask.Status.CANCELLED);
+            return;
+        }
+        if (task.getAttempts() % maxAttempts == 0) {
+            failedCount.incrementAndGet();
+            task.markFailed(error);
+            logger.error("Upload of {} failed after {} attempts, kept in spool: {}", task.getUrl(), task.getAttempts(), error);
+            return;
+        }
+        retryCount.incrementAndGet();
+        task.markRetry(error);
+        int exponent = Math.min((task.getAttempts() - 1) % maxAttempts, 20);
+        long delay = Math.min(retryDelayMs << exponent, maxRetryDelayMs);
+        logger.warn("Upload of {} failed (attempt {}), retrying in {} ms: {}", task.getUrl(), task.getAttempts(), delay, error);
+        task.queued.set(true);
+        try {
+            retryScheduler.schedule(() -> {
+                task.queued.set(false);
+                enqueue(task);
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException rejected) {
+            task.queued.set(false);
+        }
+    }
+
+    private void finish(UploadTask task, UploadTask.Status status) {
+        task.markFinished(status);
+        pendingByKey.remove(task.getKey(), task);
+        // A download may still be reading the spool file; the sweep removes it if the delete fails now
+        deleteQuietly(task.getSpoolFile());
+        deleteQuietly(metaFile(task.getId()));
+    }
+
+    private void recover() {
+        List<UploadTask> recovered = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.filter(file -> file.getFileName().toString().endsWith(".meta")).forEach(meta -> {
+                try {
+                    UploadTask task = readMeta(meta);
+                    if (task != null) {
+                        recovered.add(task);
+                    } else {
+                        deleteQuietly(meta);
+                    }
+                } catch (Exception e) {
+                    logger.warn("Cannot recover spooled upload {}: {}", meta, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Cannot scan upload spool {}: {}", root, e.getMessage());
+        }
+        // Oldest first, so a later upload of the same URL supersedes an earlier one
+        recovered.sort(Comparator.comparingLong(UploadTask::getCreatedAt));
+        for (UploadTask task : recovered) {
+            register(task);
+            enqueue(task);
+            logger.info("Recovered spooled upload {}", task.getUrl());
+        }
+    }
+
+    private Path metaFile(String id) {
+        return root.resolve(id + ".meta");
+    }
+
+    private void writeMeta(UploadTask task) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty("bucket", task.getBucket().name());
+        meta.setProperty("relativePath", task.getRelativePath());
+        meta.setProperty("url", task.getUrl());
+        meta.setProperty("size", Long.toString(task.getSize()));
+        meta.setProperty("sha256", task.getSha256());
+        meta.setProperty("createdAt", Long.toString(task.getCreatedAt()));
+        Path temp = root.resolve(task.getId() + ".meta.part");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            meta.store(out, null);
+        }
+        Files.move(temp, metaFile(task.getId()), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private UploadTask readMeta(Path metaPath) throws IOException {
+        String name = metaPath.getFileName().toString();
+        String id = name.substring(0, name.length() - ".meta".length());
+        Path data = root.resolve(id + ".bin");
+        if (!Files.isRegularFile(data)) return null;
+        Properties meta = new Properties();
+        try (InputStream in = Files.newInputStream(metaPath)) {
+            meta.load(in);
+        }
+        StorageBucket bucket = StorageBucket.valueOf(meta.getProperty("bucket"));
+        String relativePath = meta.getProperty("relativePath");
+        long size = Long.parseLong(meta.getProperty("size"));
+        if (Files.size(data) != size) return null;
+        String url = meta.getProperty("url", storageEngine.toUrl(bucket, relativePath));
+        return new UploadTask(id, bucket, relativePath, url, data, size,
+                meta.getProperty("sha256"), Long.parseLong(meta.getProperty("createdAt")));
+    }
+
+    private boolean isOlderThan(Path file, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) return;
+        try { Files.deleteIfExists(path); } catch (Exception ignored) {}
+    }
+}
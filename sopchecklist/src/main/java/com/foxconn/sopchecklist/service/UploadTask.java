@@ -0,0 +1,121 @@
+package com.foxconn.sopchecklist.service;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An upload accepted into the local spool and waiting to be replicated to the storage backend.
+ */
+public class UploadTask {
+
+    public enum Status {
+        PENDING,
+        UPLOADING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final StorageBucket bucket;
+    private final String relativePath;
+    private final String url;
+    private final Path spoolFile;
+    private final long size;
+    private final String sha256;
+    private final long createdAt;
+
+    private volatile Status status = Status.PENDING;
+    private volatile int attempts;
+    private volatile String lastError;
+    private volatile long lastAttemptAt;
+    private volatile long completedAt;
+    // Set when a newer upload to the same URL or a delete overtook this one
+    private volatile boolean cancelled;
+    private final AtomicLong bytesTransferred = new AtomicLong();
+    final AtomicBoolean queued = new AtomicBoolean();
+
+    UploadTask(String id, StorageBucket bucket, String relativePath, String url, Path spoolFile,
+               long size, String sha256, long createdAt) {
+        this.id = id;
+        this.bucket = bucket;
+        this.relativePath = relativePath;
+        this.url = url;
+        this.spoolFile = spoolFile;
+        this.size = size;
+        this.sha256 = sha256;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * A synchronous upload, reported in the same shape as a spooled one.
+     */
+    static UploadTask completed(String id, StoredFile stored) {
+        long now = System.currentTimeMillis();
+        UploadTask task = new UploadTask(id, stored.getBucket(), stored.getRelativePath(), stored.getUrl(), null,
+                stored.getSize(), stored.getSha256(), now);
+        task.attempts = 1;
+        task.bytesTransferred.set(stored.getSize());
+        task.lastAttemptAt = now;
+        task.markFinished(Status.DONE);
+        return task;
+    }
+
+    public String getId() { return id; }
+    public StorageBucket getBucket() { return bucket; }
+    public String getRelativePath() { return relativePath; }
+    public String getUrl() { return url; }
+    public Path getSpoolFile() { return spoolFile; }
+    public long getSize() { return size; }
+    public String getSha256() { return sha256; }
+    public long getCreatedAt() { return createdAt; }
+    public Status getStatus() { return status; }
+    public int getAttempts() { return attempts; }
+    public String getLastError() { return lastError; }
+    public long getLastAttemptAt() { return lastAttemptAt; }
+    public long getCompletedAt() { return completedAt; }
+    public long getBytesTransferred() { return bytesTransferred.get(); }
+    public boolean isCancelled() { return cancelled; }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.CANCELLED;
+    }
+
+    /**
+     * Path below /files/ the upload will be served under.
+     */
+    public String getKey() {
+        return url.substring("/files/".length());
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    void startAttempt() {
+        attempts++;
+        lastAttemptAt = System.currentTimeMillis();
+        bytesTransferred.set(0);
+        status = Status.UPLOADING;
+    }
+
+    void addTransferred(long bytes) {
+        bytesTransferred.addAndGet(bytes);
+    }
+
+    void markRetry(String error) {
+        lastError = error;
+        status = Status.PENDING;
+    }
+
+    void markFailed(String error) {
+        lastError = error;
+        status = Status.FAILED;
+    }
+
+    void markFinished(Status finalStatus) {
+        completedAt = System.currentTimeMillis();
+        status = finalStatus;
+    }
+}
@@ -4,14 +4,15 @@ import com.foxconn.sopchecklist.entity.AttendanceReport;
 import com.foxconn.sopchecklist.entity.UserAttendance;
 import com.foxconn.sopchecklist.repository.UserAttendanceRepository;
 import com.foxconn.sopchecklist.service.AttendanceReportService;
+import com.foxconn.sopchecklist.service.ScheduledJobRunner;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -25,6 +26,9 @@ public class AttendanceAutoGenerateScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(AttendanceAutoGenerateScheduler.class);
 
+    @Autowired
+    private ScheduledJobRunner jobRunner;
+
     @Autowired
     private UserAttendanceRepository userAttendanceRepository;
 
@@ -36,8 +40,11 @@ public class AttendanceAutoGenerateScheduler {
 
     // Chạy mỗi ngày lúc 00:05 theo giờ Việt Nam
     @Scheduled(cron = "0 5 0 * * ?", zone = "Asia/Ho_Chi_Minh")
-    @Transactional
     public void generateDailyAttendance() {
+        jobRunner.runInTransaction("attendance-auto-generate", Duration.ofHours(1), Duration.ofMinutes(5), this::generateAttendance);
+    }
+
+    private void generateAttendance() {
         LocalDate today = getToday();
         log.info("=== AttendanceAutoGenerateScheduler: Starting daily attendance generation for date: {} ===", today);
 
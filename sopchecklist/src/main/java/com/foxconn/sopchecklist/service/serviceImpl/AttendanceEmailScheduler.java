@@ -5,14 +5,15 @@ import com.foxconn.sopchecklist.entity.MailRecipientAll;
 import com.foxconn.sopchecklist.service.AttendanceEmailService;
 import com.foxconn.sopchecklist.service.CronMailAllSendService;
 import com.foxconn.sopchecklist.service.MailRecipientAllService;
+import com.foxconn.sopchecklist.service.ScheduledJobRunner;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.LinkedHashSet;
@@ -34,6 +35,9 @@ import java.util.stream.Collectors;
 public class AttendanceEmailScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(AttendanceEmailScheduler.class);
+
+    @Autowired
+    private ScheduledJobRunner jobRunner;
     
     // Cache để lưu stats của lần gửi cuối cùng theo ngày
     private final Map<LocalDate, AttendanceEmailService.AttendanceStats> lastSentStatsCache = new ConcurrentHashMap<>();
@@ -56,8 +60,11 @@ public class AttendanceEmailScheduler {
      * Cron expression: "0 30 8 * * ?" = giây phút giờ ngày tháng thứ
      */
     @Scheduled(cron = "0 30 8 * * ?", zone = "Asia/Ho_Chi_Minh")
-    @Transactional
     public void sendDailyAttendanceEmail() {
+        jobRunner.runInTransaction("attendance-email-morning", Duration.ofHours(1), Duration.ofMinutes(5), this::sendMorningEmail);
+    }
+
+    private void sendMorningEmail() {
         LocalDate today = getToday();
         log.info("=== AttendanceEmailScheduler: Starting daily attendance email (8:30 AM) for date: {} ===", today);
 
@@ -85,8 +92,11 @@ public class AttendanceEmailScheduler {
      * Cron expression: "0 30 13 * * ?" = giây phút giờ ngày tháng thứ
      */
     @Scheduled(cron = "0 30 13 * * ?", zone = "Asia/Ho_Chi_Minh")
-    @Transactional
     public void sendAfternoonAttendanceEmailIfChanged() {
+        jobRunner.runInTransaction("attendance-email-afternoon", Duration.ofHours(1), Duration.ofMinutes(5), this::sendAfternoonEmailIfChanged);
+    }
+
+    private void sendAfternoonEmailIfChanged() {
         LocalDate today = getToday();
         log.info("=== AttendanceEmailScheduler: Checking for changes (1:30 PM) for date: {} ===", today);
 
@@ -2,162 +2,336 @@ package com.foxconn.sopchecklist.service.serviceImpl;
 
 import com.foxconn.sopchecklist.entity.ChecklistDetail;
 import com.foxconn.sopchecklist.entity.Checklists;
-import com.foxconn.sopchecklist.entity.TimeRepeatChecklist;
-import com.foxconn.sopchecklist.repository.ChecklistDetailRepository;
-import com.foxconn.sopchecklist.repository.ChecklistsRepository;
-import com.foxconn.sopchecklist.repository.TimeRepeatChecklistRepository;
 import com.foxconn.sopchecklist.service.MailChecklistService;
+import com.foxconn.sopchecklist.service.RecurrenceEngine;
+import com.foxconn.sopchecklist.service.ScheduledJobRunner;
+import com.foxconn.sopchecklist.service.SearchIndexer;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
+/**
+ * Generates checklist details for due occurrences.
+ * One query loads the active, started checklists whose stored next occurrence (next_occurrence_at) has come, with
+ * their implementers and latest detail; occurrences come from {@link RecurrenceEngine}; existing (checklist,
+ * implementer, scheduledAt) keys are read in one set query per chunk of checklists; new details are inserted with JDBC batching, and each checklist's next occurrence is
+ * stored back. Checklists without a stored next occurrence (created before the column existed) are planned once
+ * from their latest detail.
+ */
 @Component
 public class ChecklistDetailScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(ChecklistDetailScheduler.class);
 
     @Autowired
-    private ChecklistsRepository checklistsRepository;
+    private ScheduledJobRunner jobRunner;
 
-    @Autowired
-    private ChecklistDetailRepository detailRepository;
+    // Stays well below SQL Server's 2100 parameters per statement
+    private static final int IN_CHUNK = 1000;
+
+    private static final String CANDIDATES_SQL =
+            "SELECT c.id, c.task_name, c.work_content, c.start_at, c.repeat_id, c.due_in_days, c.schedule_updated_at, c.next_occurrence_at, " +
+            "       ci.implementer, last_detail.scheduled_at AS last_scheduled_at, last_detail.created_at AS last_created_at " +
+            "FROM Checklists c " +
+            "JOIN Checklist_Implementers ci ON ci.checklist_id = c.id " +
+            "OUTER APPLY (SELECT TOP 1 d.scheduled_at, d.created_at FROM Checklist_Details d " +
+            "             WHERE d.checklist_id = c.id ORDER BY d.scheduled_at DESC) last_detail " +
+            "WHERE c.status = 'ACTIVE' AND c.start_at IS NOT NULL AND c.start_at <= ? " +
+            "  AND (c.next_occurrence_at <= ? OR (c.next_occurrence_at IS NULL AND (c.repeat_id IS NOT NULL " +
+            "       OR NOT EXISTS (SELECT 1 FROM Checklist_Details d0 WHERE d0.checklist_id = c.id)))) " +
+            "  AND ci.implementer IS NOT NULL AND LTRIM(RTRIM(ci.implementer)) <> '' " +
+            "ORDER BY c.id";
+
+    // Only moves the stored next occurrence if the schedule was not reset meanwhile
+    private static final String UPDATE_NEXT_SQL =
+            "UPDATE Checklists SET next_occurrence_at = ? WHERE id = ? " +
+            "AND (next_occurrence_at = ? OR (next_occurrence_at IS NULL AND ? IS NULL))";
+
+    // The NOT EXISTS guard keeps the batch idempotent if another node inserted the same key meanwhile
+    private static final String INSERT_SQL =
+            "INSERT INTO Checklist_Details (checklist_id, task_name, work_content, implementer, scheduled_at, created_at, deadline_at, status) " +
+            "SELECT ?, ?, ?, ?, ?, ?, ?, 'IN_PROGRESS' " +
+            "WHERE NOT EXISTS (SELECT 1 FROM Checklist_Details WITH (UPDLOCK, HOLDLOCK) " +
+            "                  WHERE checklist_id = ? AND implementer = ? AND scheduled_at = ?)";
 
     @Autowired
-    private TimeRepeatChecklistRepository repeatRepository;
+    private RecurrenceEngine recurrenceEngine;
 
     @Autowired
     private TimeService timeService;
-    
+
+    @Autowired
+    private SearchIndexer searchIndexer;
+
     @Autowired
     private MailChecklistService mailChecklistService;
-    
+
+    @Autowired
+    @Qualifier("mainJdbcTemplate")
+    private JdbcTemplate jdbcTemplate;
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Value("${checklist.generator.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * An active checklist whose start time has passed, with its implementers and latest detail.
+     */
+    private static final class Candidate {
+        private Long id;
+        private String taskName;
+        private String workContent;
+        private LocalDateTime startAt;
+        private Long repeatId;
+        private Integer dueInDays;
+        private LocalDateTime scheduleUpdatedAt;
+        private LocalDateTime nextOccurrenceAt;
+        private LocalDateTime plannedNextOccurrenceAt;
+        private LocalDateTime lastScheduledAt;
+        private LocalDateTime lastCreatedAt;
+        private final List<String> implementers = new ArrayList<>();
+    }
+
     // Chạy mỗi 5 phút để sinh checklist detail nếu đến hạn
     @Scheduled(fixedDelay = 300000)
-    @Transactional(readOnly = false)
     public void generateDetailsBySchedule() {
+        jobRunner.runInTransaction("checklist-detail-generator", Duration.ofMinutes(30), Duration.ofMinutes(4), this::generateDueDetails);
+    }
+
+    private void generateDueDetails() {
         LocalDateTime now = timeService.nowVietnam();
         try {
-            entityManager.clear();
-            List<Checklists> all = checklistsRepository.findAll();
-            log.info("ChecklistDetailScheduler: Found {} checklists at {}", all.size(), now);
-            
-            for (Checklists cl : all) {
-                Checklists freshChecklist = checklistsRepository.findById(cl.getId()).orElse(cl);
-                log.info("Processing checklist: id={}, taskName={}, status={}, startAt={}, repeatId={}", 
-                    freshChecklist.getId(), freshChecklist.getTaskName(), freshChecklist.getStatus(), 
-                    freshChecklist.getStartAt(), freshChecklist.getRepeatId());
-                if (!"ACTIVE".equals(freshChecklist.getStatus())) {
-                    log.info("Skipping checklist {} (status: {})", freshChecklist.getId(), freshChecklist.getStatus());
-                    continue;
-                }
-                if (freshChecklist.getStartAt() == null || freshChecklist.getImplementers() == null || freshChecklist.getImplementers().isEmpty()) {
-                    log.info("Skipping checklist {} (missing startAt or implementers)", freshChecklist.getId());
-                    continue;
-                }
-
-                boolean noRepeat = (freshChecklist.getRepeatId() == null);
-
-                if (noRepeat) {
-                    LocalDateTime target = freshChecklist.getStartAt();
-                    if (target != null && !target.isAfter(now)) {
-                        for (String imp : freshChecklist.getImplementers()) {
-                            if (imp == null || imp.trim().isEmpty()) continue;
-                            if (detailRepository.existsByChecklistAndImplementerAndScheduledAt(freshChecklist, imp, target)) continue;
-                            ChecklistDetail d = new ChecklistDetail();
-                            d.setChecklist(freshChecklist);
-                            d.setTaskName(freshChecklist.getTaskName());
-                            d.setWorkContent(freshChecklist.getWorkContent());
-                            d.setImplementer(imp);
-                            d.setScheduledAt(target);
-                            d.setCreatedAt(now);
-                            Integer due = freshChecklist.getDueInDays();
-                            if (due != null && due > 0) {
-                                d.setDeadlineAt(target.plusDays(due));
-                            }
-                            detailRepository.save(d);
-                            // Enqueue mail for the newly created checklist detail
-                            try { mailChecklistService.queueChecklistDetailMail(d); } catch (Exception ignore) {}
-                            log.info("Generated checklist detail (no-repeat): checklist={}, implementer={}, scheduledAt={}", freshChecklist.getId(), imp, target);
-                        }
-                    }
-                    // Không xử lý tiếp vòng lặp cho checklist không lặp
-                    continue;
-                }
-
-                // Checklist có lặp: tính lần kế tiếp theo bản ghi gần nhất hoặc startAt nếu chưa có
-                // Nếu có thay đổi startAt hoặc repeatId, tính từ thời gian mới
-                LocalDateTime nextOccurrence = detailRepository.findTopByChecklistOrderByScheduledAtDesc(freshChecklist)
-                        .map(last -> {
-                            // Kiểm tra xem có thay đổi về thời gian bắt đầu hoặc lặp lại không
-                            if (freshChecklist.getScheduleUpdatedAt() != null && 
-                                freshChecklist.getScheduleUpdatedAt().isAfter(last.getCreatedAt())) {
-                                log.info("Checklist {} schedule has been updated after last detail creation, recalculating from new startAt: {}", 
-                                    freshChecklist.getId(), freshChecklist.getStartAt());
-                                return freshChecklist.getStartAt();
-                            }
-                            return computeNextOccurrence(last.getScheduledAt(), freshChecklist.getRepeatId());
-                        })
-                        .orElse(freshChecklist.getStartAt());
-
-                while (nextOccurrence != null && !nextOccurrence.isAfter(now)) {
-                    for (String imp : freshChecklist.getImplementers()) {
-                        if (imp == null || imp.trim().isEmpty()) continue;
-                        if (detailRepository.existsByChecklistAndImplementerAndScheduledAt(freshChecklist, imp, nextOccurrence)) continue;
-                        ChecklistDetail d = new ChecklistDetail();
-                        d.setChecklist(freshChecklist);
-                        d.setTaskName(freshChecklist.getTaskName());
-                        d.setWorkContent(freshChecklist.getWorkContent());
-                        d.setImplementer(imp);
-                        d.setScheduledAt(nextOccurrence);
-                        d.setCreatedAt(now);
-                        // deadline = scheduled_at + due_in_days (ưu tiên theo thời điểm phải làm)
-                        Integer due = freshChecklist.getDueInDays();
-                        if (due != null && due > 0) {
-                            d.setDeadlineAt(nextOccurrence.plusDays(due));
-                        }
-                        detailRepository.save(d);
-                        // Enqueue mail for the newly created checklist detail
-                        try { mailChecklistService.queueChecklistDetailMail(d); } catch (Exception ignore) {}
-                        log.info("Generated checklist detail: checklist={}, implementer={}, scheduledAt={}", freshChecklist.getId(), imp, nextOccurrence);
-                    }
-
-                    nextOccurrence = computeNextOccurrence(nextOccurrence, freshChecklist.getRepeatId());
-                }
+            long started = System.currentTimeMillis();
+            List<Candidate> candidates = loadCandidates(now);
+            List<ChecklistDetail> planned = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                plan(candidate, now, planned);
+            }
+            if (planned.isEmpty()) {
+                storeNextOccurrences(candidates);
+                log.info("ChecklistDetailScheduler: {} started checklists, nothing due at {}", candidates.size(), now);
+                return;
+            }
+
+            Map<String, Long> existing = findExistingKeys(planned);
+            List<ChecklistDetail> toInsert = new ArrayList<>();
+            for (ChecklistDetail d : planned) {
+                if (!existing.containsKey(key(d))) toInsert.add(d);
+            }
+            List<ChecklistDetail> created = insert(toInsert, existing);
+            storeNextOccurrences(candidates);
+            // JDBC inserts fire no Hibernate events; index the new details once they are committed
+            searchIndexer.indexAfterCommit(created);
+
+            for (ChecklistDetail d : created) {
+                // Enqueue mail for the newly created checklist detail
+                try { mailChecklistService.queueChecklistDetailMail(d); } catch (Exception ignore) {}
             }
+            log.info("ChecklistDetailScheduler: {} started checklists, {} due occurrences, {} details created in {} ms",
+                    candidates.size(), planned.size(), created.size(), System.currentTimeMillis() - started);
         } catch (Exception ex) {
             log.error("ChecklistDetailScheduler error: {}", ex.getMessage(), ex);
         }
     }
 
-    private LocalDateTime computeNextOccurrence(LocalDateTime base, Long repeatId) {
-        if (repeatId == null) return base; // nếu không có lặp, tạo một lần duy nhất tại startAt
-        TimeRepeatChecklist r = repeatRepository.findById(repeatId).orElse(null);
-        if (r == null || r.getNumber() == null || r.getUnit() == null) return base;
-        int n = Math.max(1, r.getNumber());
-        String unit = r.getUnit().toLowerCase();
-        switch (unit) {
-            case "day":
-                return base.plusDays(n);
-            case "week":
-                return base.plusWeeks(n);
-            case "month":
-                return base.plusMonths(n);
-            case "year":
-                return base.plusYears(n);
-            default:
-                return base;
+    private List<Candidate> loadCandidates(LocalDateTime now) {
+        Map<Long, Candidate> byId = new LinkedHashMap<>();
+        jdbcTemplate.query(CANDIDATES_SQL, rs -> {
+            long id = rs.getLong("id");
+            Candidate c = byId.get(id);
+            if (c == null) {
+                c = new Candidate();
+                c.id = id;
+                c.taskName = rs.getString("task_name");
+                c.workContent = rs.getString("work_content");
+                c.startAt = rs.getObject("start_at", LocalDateTime.class);
+                long repeatId = rs.getLong("repeat_id");
+                c.repeatId = rs.wasNull() ? null : repeatId;
+                int due = rs.getInt("due_in_days");
+                c.dueInDays = rs.wasNull() ? null : due;
+                c.scheduleUpdatedAt = rs.getObject("schedule_updated_at", LocalDateTime.class);
+                c.nextOccurrenceAt = rs.getObject("next_occurrence_at", LocalDateTime.class);
+                c.lastScheduledAt = rs.getObject("last_scheduled_at", LocalDateTime.class);
+                c.lastCreatedAt = rs.getObject("last_created_at", LocalDateTime.class);
+                byId.put(id, c);
+            }
+            c.implementers.add(rs.getString("implementer"));
+        }, Timestamp.valueOf(now), Timestamp.valueOf(now));
+        return new ArrayList<>(byId.values());
+    }
+
+    /**
+     * Append the details that should exist for this checklist up to {@code now} and note its next occurrence
+     * after that (null for a one-off checklist or a missing repeat rule).
+     */
+    private void plan(Candidate c, LocalDateTime now, List<ChecklistDetail> out) {
+        RecurrenceEngine.Rule rule = recurrenceEngine.rule(c.repeatId);
+        LocalDateTime nextOccurrence;
+        if (c.nextOccurrenceAt != null) {
+            nextOccurrence = c.nextOccurrenceAt;
+        } else if (c.repeatId == null || c.lastScheduledAt == null) {
+            // Checklist không lặp hoặc chưa có bản ghi: bắt đầu từ startAt
+            nextOccurrence = c.startAt;
+        } else if (c.scheduleUpdatedAt != null && c.lastCreatedAt != null && c.scheduleUpdatedAt.isAfter(c.lastCreatedAt)) {
+            // Nếu có thay đổi startAt hoặc repeatId sau bản ghi gần nhất, tính từ thời gian mới
+            log.info("Checklist {} schedule has been updated after last detail creation, recalculating from new startAt: {}",
+                    c.id, c.startAt);
+            nextOccurrence = c.startAt;
+        } else {
+            // Lần kế tiếp sau bản ghi gần nhất
+            nextOccurrence = rule != null ? RecurrenceEngine.nextAfter(c.startAt, rule, c.lastScheduledAt) : null;
+        }
+
+        while (nextOccurrence != null && !nextOccurrence.isAfter(now)) {
+            for (String imp : c.implementers) {
+                out.add(newDetail(c, imp, nextOccurrence, now));
+            }
+            nextOccurrence = rule != null ? RecurrenceEngine.nextAfter(c.startAt, rule, nextOccurrence) : null;
+        }
+        c.plannedNextOccurrenceAt = nextOccurrence;
+    }
+
+    /**
+     * Store each candidate's next occurrence, in one batch.
+     */
+    private void storeNextOccurrences(List<Candidate> candidates) {
+        List<Candidate> changed = new ArrayList<>();
+        for (Candidate c : candidates) {
+            if (!Objects.equals(c.nextOccurrenceAt, c.plannedNextOccurrenceAt)) changed.add(c);
+        }
+        if (changed.isEmpty()) return;
+        jdbcTemplate.batchUpdate(UPDATE_NEXT_SQL, changed, batchSize, (ps, c) -> {
+            setTimestamp(ps, 1, c.plannedNextOccurrenceAt);
+            ps.setLong(2, c.id);
+            setTimestamp(ps, 3, c.nextOccurrenceAt);
+            setTimestamp(ps, 4, c.nextOccurrenceAt);
+        });
+    }
+
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value != null) {
+            ps.setTimestamp(index, Timestamp.valueOf(value));
+        } else {
+            ps.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    private ChecklistDetail newDetail(Candidate c, String implementer, LocalDateTime scheduledAt, LocalDateTime now) {
+        ChecklistDetail d = new ChecklistDetail();
+        d.setChecklist(entityManager.getReference(Checklists.class, c.id));
+        d.setTaskName(c.taskName);
+        d.setWorkContent(c.workContent);
+        d.setImplementer(implementer);
+        d.setScheduledAt(scheduledAt);
+        d.setCreatedAt(now);
+        // deadline = scheduled_at + due_in_days (ưu tiên theo thời điểm phải làm)
+        if (c.dueInDays != null && c.dueInDays > 0) {
+            d.setDeadlineAt(scheduledAt.plusDays(c.dueInDays));
+        }
+        return d;
+    }
+
+    /**
+     * Ids of the details that already exist for the planned keys, by {@link #key}.
+     * Reads every detail of the planned checklists from the earliest planned occurrence on, a chunk of checklists at a time.
+     */
+    private Map<String, Long> findExistingKeys(List<ChecklistDetail> planned) {
+        Map<Long, LocalDateTime> earliestByChecklist = new LinkedHashMap<>();
+        for (ChecklistDetail d : planned) {
+            earliestByChecklist.merge(d.getChecklist().getId(), d.getScheduledAt(),
+                    (a, b) -> a.isBefore(b) ? a : b);
         }
+        List<Long> ids = new ArrayList<>(earliestByChecklist.keySet());
+        Map<String, Long> existing = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + IN_CHUNK));
+            LocalDateTime earliest = null;
+            for (Long id : chunk) {
+                LocalDateTime t = earliestByChecklist.get(id);
+                if (earliest == null || t.isBefore(earliest)) earliest = t;
+            }
+            List<Object> args = new ArrayList<>(chunk);
+            args.add(Timestamp.valueOf(earliest));
+            jdbcTemplate.query(
+                    "SELECT id, checklist_id, implementer, scheduled_at FROM Checklist_Details " +
+                    "WHERE checklist_id IN (" + String.join(",", Collections.nCopies(chunk.size(), "?")) + ") " +
+                    "AND scheduled_at >= ?",
+                    rs -> {
+                        existing.put(key(rs.getLong("checklist_id"), rs.getString("implementer"),
+                                rs.getObject("scheduled_at", LocalDateTime.class)), rs.getLong("id"));
+                    },
+                    args.toArray());
+        }
+        return existing;
+    }
+
+    /**
+     * Batch-insert the details and return those this run actually created, with their generated ids.
+     */
+    private List<ChecklistDetail> insert(List<ChecklistDetail> details, Map<String, Long> existingBefore) {
+        if (details.isEmpty()) return Collections.emptyList();
+        jdbcTemplate.batchUpdate(INSERT_SQL, details, batchSize, (ps, d) -> {
+            Timestamp scheduledAt = Timestamp.valueOf(d.getScheduledAt());
+            ps.setLong(1, d.getChecklist().getId());
+            ps.setString(2, d.getTaskName());
+            ps.setString(3, d.getWorkContent());
+            ps.setString(4, d.getImplementer());
+            ps.setTimestamp(5, scheduledAt);
+            ps.setTimestamp(6, Timestamp.valueOf(d.getCreatedAt()));
+            if (d.getDeadlineAt() != null) {
+                ps.setTimestamp(7, Timestamp.valueOf(d.getDeadlineAt()));
+            } else {
+                ps.setNull(7, Types.TIMESTAMP);
+            }
+            ps.setLong(8, d.getChecklist().getId());
+            ps.setString(9, d.getImplementer());
+            ps.setTimestamp(10, scheduledAt);
+        });
+
+        // Generated ids are not returned by a batch; read them back with the same set query
+        Map<String, Long> after = findExistingKeys(details);
+        List<ChecklistDetail> created = new ArrayList<>();
+        for (ChecklistDetail d : details) {
+            Long id = after.get(key(d));
+            if (id != null && !existingBefore.containsKey(key(d))) {
+                d.setId(id);
+                created.add(d);
+                log.info("Generated checklist detail: checklist={}, implementer={}, scheduledAt={}",
+                        d.getChecklist().getId(), d.getImplementer(), d.getScheduledAt());
+            }
+        }
+        return created;
+    }
+
+    private static String key(ChecklistDetail d) {
+        return key(d.getChecklist().getId(), d.getImplementer(), d.getScheduledAt());
+    }
+
+    private static String key(Long checklistId, String implementer, LocalDateTime scheduledAt) {
+        return checklistId + "|" + implementer + "|" + scheduledAt;
     }
-}
\ No newline at end of file
+}
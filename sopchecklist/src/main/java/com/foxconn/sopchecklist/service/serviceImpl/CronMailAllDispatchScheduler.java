@@ -1,27 +1,97 @@
 package com.foxconn.sopchecklist.service.serviceImpl;
 
-import com.foxconn.sopchecklist.entity.TypeCronMail;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
+import com.foxconn.sopchecklist.service.ScheduledJobRunner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Scheduler để gửi mail từ bảng cron_mail_all
  * Hỗ trợ nhiều loại mail khác nhau (SIGNUP, SOP, CHECKLISTDONE, etc.)
+ *
+ * Pending rows are claimed in batches of mail.dispatch.batch-size under a lease (status SENDING, lease_owner,
+ * lease_until), skipping rows another node holds locked, so several instances can dispatch side by side.
+ * A lease left behind by a crashed node expires and the row is claimed again; that counts as a retry, and a row
+ * whose retries are used up while SENDING is marked failed. Each SP call has a query timeout
+ * (mail.dispatch.send-timeout-ms) and is only started if it can finish before the batch's lease runs out; rows
+ * that cannot are handed back as PENDING, so an expired lease is never sent twice by two nodes.
+ * Each batch is sent from a pool of mail.dispatch.workers threads and its outcome written back in one JDBC batch.
+ * Batches follow each other until the queue is drained; {@link #wakeUp()} starts a drain right away.
  */
 @Component
 public class CronMailAllDispatchScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(CronMailAllDispatchScheduler.class);
 
+    @Autowired
+    private ScheduledJobRunner jobRunner;
+
+    private static final int EMAIL_MAX_LEN = 2000;
+    private static final int SUBJECT_MAX_LEN = 2000;
+    // Body is NVARCHAR(MAX) in table, but keep it reasonable for email HTML
+    private static final int BODY_MAX_LEN = 100000;
+
+    private static final String CLAIM_SQL =
+            "WITH next_batch AS (" +
+            "  SELECT TOP (?) id, type_id, mailto, mailcc, mailbcc, subject, body, status, lease_owner, lease_until " +
+            "  FROM cron_mail_all WITH (ROWLOCK, UPDLOCK, READPAST) " +
+            "  WHERE ISNULL(retry_count,0) < 3 " +
+            "    AND (status = 'PENDING' OR (status = 'SENDING' AND lease_until < SYSDATETIME())) " +
+            "  ORDER BY id) " +
+            "UPDATE next_batch SET retry_count = ISNULL(retry_count,0) + (CASE WHEN status = 'SENDING' THEN 1 ELSE 0 END), " +
+            "  status = 'SENDING', lease_owner = ?, lease_until = DATEADD(millisecond, ?, SYSDATETIME()) " +
+            "OUTPUT inserted.id, inserted.type_id, inserted.mailto, inserted.mailcc, inserted.mailbcc, inserted.subject, inserted.body";
+
+    // Expired leases whose retries are used up would otherwise stay SENDING forever
+    private static final String EXPIRE_SQL =
+            "UPDATE cron_mail_all SET status='failed', last_error = 'Lease expired while sending', lease_owner=NULL, lease_until=NULL " +
+            "WHERE status = 'SENDING' AND lease_until < SYSDATETIME() AND ISNULL(retry_count,0) >= 3";
+
+    // Only the lease holder may settle a row, so a node whose lease expired cannot overwrite a newer claim
+    private static final String SENT_SQL =
+            "UPDATE cron_mail_all SET status='sent', last_error=NULL, lease_owner=NULL, lease_until=NULL " +
+            "WHERE id = ? AND lease_owner = ?";
+
+    private static final String FAILED_SQL =
+            "UPDATE cron_mail_all SET status='failed', retry_count = ISNULL(retry_count,0) + 1, last_error = LEFT(?, 1000), " +
+            "lease_owner=NULL, lease_until=NULL WHERE id = ? AND lease_owner = ?";
+
+    // Not attempted before the lease ran short: back to the queue without using a retry
+    private static final String RELEASE_SQL =
+            "UPDATE cron_mail_all SET status='PENDING', lease_owner=NULL, lease_until=NULL WHERE id = ? AND lease_owner = ?";
+
+    // Time kept between the last SP call's timeout and the end of the lease
+    private static final long LEASE_MARGIN_MS = 5000;
+
     // DB chính
     @Autowired
     @org.springframework.beans.factory.annotation.Qualifier("mainJdbcTemplate")
@@ -33,219 +103,391 @@ public class CronMailAllDispatchScheduler {
     private JdbcTemplate mailJdbcTemplate;
 
     @Autowired
-    private TypeCronMailRepository typeCronMailRepository;
+    private MailTypeRegistry mailTypeRegistry;
 
     @Value("${mail.spExec:EXEC dbo.sp_MailWaiting_ITSystem_Insert @MailTo=?, @MailCC=?, @MailBCC=?, @Subject=?, @Body=?}")
     private String spExec;
 
-    // Run every 5 minutes
-    @Scheduled(fixedDelay = 300000)
+    @Value("${mail.dispatch.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.dispatch.workers:4}")
+    private int workers;
+
+    // Must comfortably cover sending one batch
+    @Value("${mail.dispatch.lease-ms:300000}")
+    private long leaseMs;
+
+    // Query timeout of one SP call; kept well below the lease
+    @Value("${mail.dispatch.send-timeout-ms:30000}")
+    private long sendTimeoutMs;
+
+    private final String owner = ownerId();
+
+    private ThreadPoolExecutor senderPool;
+    private ExecutorService drainExecutor;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean signalled = new AtomicBoolean();
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong claimedCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong wakeUpCount = new AtomicLong();
+    private volatile long lastDrainAt;
+    private volatile String lastError;
+
+    /**
+     * A claimed row and the outcome of sending it.
+     */
+    private static final class Claimed {
+        private Long id;
+        private Long typeId;
+        private String to;
+        private String cc;
+        private String bcc;
+        private String subject;
+        private String body;
+        private boolean sent;
+        private boolean deferred;
+        private String error;
+        private long leaseDeadline;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int size = Math.max(1, workers);
+        senderPool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "mail-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        drainExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (sendTimeoutMs <= 0 || sendTimeoutMs + LEASE_MARGIN_MS >= leaseMs) {
+            long capped = Math.max(1000, (leaseMs - LEASE_MARGIN_MS) / 2);
+            log.warn("mail.dispatch.send-timeout-ms={} does not fit in the lease of {} ms, using {} ms", sendTimeoutMs, leaseMs, capped);
+            sendTimeoutMs = capped;
+        }
+        log.info("CronMailAllDispatch ready: owner={}, batchSize={}, workers={}, leaseMs={}, sendTimeoutMs={}",
+                owner, batchSize, size, leaseMs, sendTimeoutMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Rows claimed by an interrupted batch are picked up again once their lease expires
+        drainExecutor.shutdownNow();
+        senderPool.shutdown();
+        try {
+            senderPool.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Safety net for mail enqueued without a wake-up, and for expired leases.
+    // The poll drains on the scheduling thread so its lease covers the drain; if a drain is already running here
+    // it is only asked for one more pass.
+    @Scheduled(fixedDelayString = "${mail.dispatch.poll-interval-ms:60000}")
     public void dispatchPendingMails() {
-        dispatchOnce();
+        jobRunner.run("mail-dispatch-poll", Duration.ofMinutes(5), Duration.ofSeconds(30), this::pollDrain);
+    }
+
+    private void pollDrain() {
+        signalled.set(true);
+        if (draining.compareAndSet(false, true)) {
+            drainLoop();
+        }
+    }
+
+    /**
+     * Ask for a drain as soon as possible. Inside a transaction the drain starts after commit, so the new rows are visible.
+     * Signals arriving while a drain runs are coalesced into one more pass.
+     */
+    public void wakeUp() {
+        wakeUpCount.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    signal();
+                }
+            });
+        } else {
+            signal();
+        }
+    }
+
+    private void signal() {
+        signalled.set(true);
+        if (draining.compareAndSet(false, true)) {
+            try {
+                drainExecutor.execute(this::drainLoop);
+            } catch (Exception e) {
+                draining.set(false);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        try {
+            while (signalled.getAndSet(false)) {
+                drain();
+            }
+        } finally {
+            draining.set(false);
+        }
+        // A signal that arrived between the last check and releasing the flag
+        if (signalled.get()) signal();
     }
 
     // Exposed for manual triggering/testing
     public String dispatchOnce() {
-        int total = 0, sent = 0, failed = 0;
         try {
-            // Get all pending mail from cron_mail_all with retry_count < 3
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
-                "SELECT * FROM cron_mail_all WHERE status='PENDING' AND ISNULL(retry_count,0) < 3"
-            );
-            
-            total = rows.size();
-            if (total == 0) {
-                return "total=0, sent=0, failed=0";
-            }
+            int[] totals = drain();
+            return "total=" + totals[0] + ", sent=" + totals[1] + ", failed=" + totals[2];
+        } catch (Exception ex) {
+            log.error("Error in dispatchPendingMails: {}", ex.getMessage());
+            return "error=" + ex.getMessage();
+        }
+    }
 
-            for (Map<String, Object> r : rows) {
-                // Use Number.longValue() to be safe across drivers (Integer, BigDecimal, Long)
-                Number idNum = (Number) r.get("id");
-                Long id = idNum != null ? idNum.longValue() : null;
-                String to = (String) r.get("mailto");
-                String cc = (String) r.get("mailcc");
-                String bcc = (String) r.get("mailbcc");
-                String subject = (String) r.get("subject");
-                String body = (String) r.get("body");
-                Number typeNum = (Number) r.get("type_id");
-                Long typeId = typeNum != null ? typeNum.longValue() : null;
-
-                try {
-                    // Validate required fields
-                    if (to == null || to.trim().isEmpty()) {
-                        jdbcTemplate.update(
-                            "UPDATE cron_mail_all SET status='failed', retry_count = ISNULL(retry_count,0) + 1, last_error = 'Missing MailTo' WHERE id = ?",
-                            id
-                        );
-                        failed++;
-                        continue;
-                    }
-                    if (subject == null) subject = "";
-                    if (body == null) body = "";
-                    // to is already validated above, so it can't be null here
-                    if (cc == null) cc = "";
-                    if (bcc == null) bcc = "";
-
-                    // Get type name for logging
-                    String typeName = "UNKNOWN";
-                    if (typeId != null) {
-                        try {
-                            TypeCronMail type = typeCronMailRepository.findById(typeId).orElse(null);
-                            if (type != null) {
-                                typeName = type.getTypeName();
-                            }
-                        } catch (Exception e) {
-                            log.warn("Could not fetch type name for typeId: {}", typeId);
-                        }
-                    }
-                    
-                    // Truncate fields to prevent "String or binary data would be truncated" error
-                    // Based on entity definition in CronMailAll:
-                    // - mailto, mailcc, mailbcc: NVARCHAR(2000)
-                    // - subject: NVARCHAR(2000)
-                    // - body: NVARCHAR(MAX)
-                    // Email addresses are stored as CSV (comma-separated), so we need to truncate to fit column size.
-                    int originalToLen = to.length();
-                    int originalCcLen = cc.length();
-                    int originalBccLen = bcc.length();
-                    int originalSubjectLen = subject.length();
-                    int originalBodyLen = body.length();
-                    
-                    // Truncate to 2000 chars for email fields (matching entity definition NVARCHAR(2000))
-                    // This supports ~80-100 email addresses (avg 20-25 chars each + commas)
-                    int emailMaxLen = 2000;
-                    if (to.length() > emailMaxLen) {
-                        log.warn("Truncating MailTo from {} to max {} chars for mail id={}", originalToLen, emailMaxLen, id);
-                        // Always truncate at a comma to avoid cutting email addresses in half
-                        int lastComma = to.lastIndexOf(',', emailMaxLen);
-                        if (lastComma > 0 && lastComma >= emailMaxLen - 100) {
-                            // Only truncate at comma if it's within reasonable distance from maxLen
-                            to = to.substring(0, lastComma);
-                            log.warn("MailTo truncated to {} chars (at comma position {})", to.length(), lastComma);
-                        } else {
-                            // If no comma found nearby, truncate at maxLen
-                            to = to.substring(0, emailMaxLen);
-                            log.warn("MailTo truncated to {} chars (no comma found within range)", to.length());
-                        }
-                    }
-                    // Final safety check: ensure it doesn't exceed 2000 (absolute max for NVARCHAR(2000))
-                    if (to.length() > 2000) {
-                        log.error("MailTo still exceeds 2000 chars after truncation: {}, forcing truncation", to.length());
-                        int lastComma = to.lastIndexOf(',', 2000);
-                        to = lastComma > 0 ? to.substring(0, lastComma) : to.substring(0, 2000);
-                    }
-                    if (cc.length() > emailMaxLen) {
-                        log.warn("Truncating MailCC from {} to max {} chars for mail id={}", originalCcLen, emailMaxLen, id);
-                        int lastComma = cc.lastIndexOf(',', emailMaxLen);
-                        if (lastComma > 0 && lastComma >= emailMaxLen - 100) {
-                            cc = cc.substring(0, lastComma);
-                            log.warn("MailCC truncated to {} chars (at comma position {})", cc.length(), lastComma);
-                        } else {
-                            cc = cc.substring(0, emailMaxLen);
-                            log.warn("MailCC truncated to {} chars (no comma found within range)", cc.length());
-                        }
-                    }
-                    if (cc.length() > 2000) {
-                        int lastComma = cc.lastIndexOf(',', 2000);
-                        cc = lastComma > 0 ? cc.substring(0, lastComma) : cc.substring(0, 2000);
-                    }
-                    if (bcc.length() > emailMaxLen) {
-                        log.warn("Truncating MailBCC from {} to max {} chars for mail id={}", originalBccLen, emailMaxLen, id);
-                        int lastComma = bcc.lastIndexOf(',', emailMaxLen);
-                        if (lastComma > 0 && lastComma >= emailMaxLen - 100) {
-                            bcc = bcc.substring(0, lastComma);
-                            log.warn("MailBCC truncated to {} chars (at comma position {})", bcc.length(), lastComma);
-                        } else {
-                            bcc = bcc.substring(0, emailMaxLen);
-                            log.warn("MailBCC truncated to {} chars (no comma found within range)", bcc.length());
-                        }
-                    }
-                    if (bcc.length() > 2000) {
-                        int lastComma = bcc.lastIndexOf(',', 2000);
-                        bcc = lastComma > 0 ? bcc.substring(0, lastComma) : bcc.substring(0, 2000);
-                    }
-                    // Truncate Subject to 2000 chars (matching entity definition NVARCHAR(2000))
-                    int subjectMaxLen = 2000;
-                    if (subject.length() > subjectMaxLen) {
-                        log.warn("Truncating Subject from {} to {} chars for mail id={}", originalSubjectLen, subjectMaxLen, id);
-                        subject = subject.substring(0, subjectMaxLen);
-                    }
-                    // Final safety check: ensure it doesn't exceed 2000
-                    if (subject.length() > 2000) {
-                        log.error("Subject still exceeds 2000 chars after truncation: {}, forcing truncation", subject.length());
-                        subject = subject.substring(0, 2000);
-                    }
-                    // Body is NVARCHAR(MAX) in table, so no strict limit needed, but keep reasonable for email HTML
-                    // Using 100000 chars as a safe limit (most email systems handle this size)
-                    int bodyMaxLen = 100000;
-                    if (body.length() > bodyMaxLen) {
-                        log.warn("Truncating Body from {} to {} chars for mail id={}", originalBodyLen, bodyMaxLen, id);
-                        body = body.substring(0, bodyMaxLen);
-                    }
-                    
-                    // Final validation: ensure all fields are within safe limits before calling stored procedure
-                    if (to.length() > 2000 || cc.length() > 2000 || bcc.length() > 2000 || subject.length() > 2000) {
-                        log.error("CRITICAL: Field lengths exceed 2000 before SP call! id={}, toLen={}, ccLen={}, bccLen={}, subjectLen={}",
-                            id, to.length(), cc.length(), bcc.length(), subject.length());
-                        // Force truncate to 2000
-                        if (to.length() > 2000) {
-                            int lastComma = to.lastIndexOf(',', 2000);
-                            to = lastComma > 0 ? to.substring(0, lastComma) : to.substring(0, 2000);
-                        }
-                        if (cc.length() > 2000) {
-                            int lastComma = cc.lastIndexOf(',', 2000);
-                            cc = lastComma > 0 ? cc.substring(0, lastComma) : cc.substring(0, 2000);
-                        }
-                        if (bcc.length() > 2000) {
-                            int lastComma = bcc.lastIndexOf(',', 2000);
-                            bcc = lastComma > 0 ? bcc.substring(0, lastComma) : bcc.substring(0, 2000);
-                        }
-                        if (subject.length() > 2000) {
-                            subject = subject.substring(0, 2000);
-                        }
-                    }
-                    
-                    log.info("CronMailAllDispatch call: id={}, type={}, toLen={}, ccLen={}, bccLen={}, subjectLen={}, bodyLen={}",
-                        id, typeName, to.length(), cc.length(), bcc.length(), subject.length(), body.length());
-                    
-                    // Log email count for debugging
-                    int emailCount = to.isEmpty() ? 0 : to.split(",").length;
-                    log.info("MailTo contains {} email addresses", emailCount);
-                    
-                    // Log first part of email list for debugging (avoid logging full list which may be long)
-                    String toPreview = to.length() > 150 ? to.substring(0, 150) + "..." : to;
-                    log.debug("MailTo preview (first 150 chars): {}", toPreview);
-
-                    // Call stored procedure to send mail
-                    try {
-                        mailJdbcTemplate.update(spExec, to, cc, bcc, subject, body);
-                        log.info("Stored procedure call succeeded for mail id={}", id);
-                    } catch (Exception spEx) {
-                        log.error("Stored procedure call failed for mail id={}. Field lengths: toLen={}, ccLen={}, bccLen={}, subjectLen={}, bodyLen={}",
-                            id, to.length(), cc.length(), bcc.length(), subject.length(), body.length());
-                        log.error("Error message: {}", spEx.getMessage());
-                        throw spEx; // Re-throw to be caught by outer catch block
-                    }
-                    
-                    // Update status in main DB
-                    jdbcTemplate.update("UPDATE cron_mail_all SET status='sent', last_error=NULL WHERE id = ?", id);
-                    sent++;
-                } catch (Exception ex) {
-                    // Mark as failed and increase retry count
-                    jdbcTemplate.update(
-                        "UPDATE cron_mail_all SET status='failed', retry_count = ISNULL(retry_count,0) + 1, last_error = LEFT(?, 1000) WHERE id = ?",
-                        ex.getMessage(), id
-                    );
-                    failed++;
-                    log.error("Failed to send cron_mail_all id={}: {}", id, ex.getMessage());
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("owner", owner);
+        stats.put("batchSize", batchSize);
+        stats.put("workers", senderPool.getCorePoolSize());
+        stats.put("activeWorkers", senderPool.getActiveCount());
+        stats.put("draining", draining.get());
+        stats.put("batches", batchCount.get());
+        stats.put("claimed", claimedCount.get());
+        stats.put("sent", sentCount.get());
+        stats.put("failed", failedCount.get());
+        stats.put("wakeUps", wakeUpCount.get());
+        stats.put("lastDrainAt", lastDrainAt > 0 ? new Date(lastDrainAt) : null);
+        stats.put("lastError", lastError);
+        return stats;
+    }
+
+    /**
+     * Claim and send batches until a claim comes back short. Returns {total, sent, failed}.
+     */
+    private int[] drain() {
+        int[] totals = new int[3];
+        lastDrainAt = System.currentTimeMillis();
+        try {
+            expireExhausted();
+            while (true) {
+                List<Claimed> batch = claim();
+                if (batch.isEmpty()) break;
+                sendBatch(batch);
+                settle(batch);
+                for (Claimed c : batch) {
+                    if (c.deferred) continue;
+                    totals[0]++;
+                    totals[c.sent ? 1 : 2]++;
                 }
+                if (batch.size() < batchSize) break;
             }
+            lastError = null;
         } catch (Exception ex) {
+            lastError = ex.getMessage();
             log.error("Error in dispatchPendingMails: {}", ex.getMessage());
-            return "error=" + ex.getMessage();
+            throw ex;
+        }
+        if (totals[0] > 0) {
+            log.info("CronMailAllDispatch: total={}, sent={}, failed={}", totals[0], totals[1], totals[2]);
         }
-        return "total=" + total + ", sent=" + sent + ", failed=" + failed;
+        return totals;
+    }
+
+    private void expireExhausted() {
+        int expired = jdbcTemplate.update(EXPIRE_SQL);
+        if (expired > 0) {
+            failedCount.addAndGet(expired);
+            log.warn("CronMailAllDispatch: {} mails failed after their last lease expired", expired);
+        }
+    }
+
+    private List<Claimed> claim() {
+        // Taken before the claim, so the local deadline is never later than the lease in the database
+        long leaseDeadline = System.currentTimeMillis() + leaseMs;
+        List<Claimed> batch = jdbcTemplate.query(CLAIM_SQL, (rs, rowNum) -> {
+            Claimed c = new Claimed();
+            // Use Number.longValue() to be safe across drivers (Integer, BigDecimal, Long)
+            Number idNum = (Number) rs.getObject("id");
+            c.id = idNum != null ? idNum.longValue() : null;
+            Number typeNum = (Number) rs.getObject("type_id");
+            c.typeId = typeNum != null ? typeNum.longValue() : null;
+            c.to = rs.getString("mailto");
+            c.cc = rs.getString("mailcc");
+            c.bcc = rs.getString("mailbcc");
+            c.subject = rs.getString("subject");
+            c.body = rs.getString("body");
+            c.leaseDeadline = leaseDeadline;
+            return c;
+        }, Math.max(1, batchSize), owner, leaseMs);
+        if (!batch.isEmpty()) {
+            batchCount.incrementAndGet();
+            claimedCount.addAndGet(batch.size());
+        }
+        return batch;
+    }
+
+    private void sendBatch(List<Claimed> batch) {
+        Map<Long, String> typeNames = typeNames(batch);
+        List<Callable<Void>> sends = new ArrayList<>(batch.size());
+        for (Claimed c : batch) {
+            sends.add(() -> {
+                send(c, typeNames.getOrDefault(c.typeId, "UNKNOWN"));
+                return null;
+            });
+        }
+        try {
+            senderPool.invokeAll(sends);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Claimed c : batch) {
+                if (!c.sent && c.error == null) c.error = "Interrupted";
+            }
+        }
+    }
+
+    private Map<Long, String> typeNames(List<Claimed> batch) {
+        Map<Long, String> names = new HashMap<>();
+        for (Claimed c : batch) {
+            if (c.typeId == null || names.containsKey(c.typeId)) continue;
+            try {
+                String name = mailTypeRegistry.nameOf(c.typeId);
+                if (name != null) names.put(c.typeId, name);
+            } catch (Exception e) {
+                log.warn("Could not fetch type name for typeId: {}", c.typeId);
+            }
+        }
+        return names;
+    }
+
+    private void send(Claimed c, String typeName) {
+        Long id = c.id;
+        if (System.currentTimeMillis() + sendTimeoutMs + LEASE_MARGIN_MS > c.leaseDeadline) {
+            // The call might outlive the lease and another node would send the row again
+            c.deferred = true;
+            return;
+        }
+        try {
+            // Validate required fields
+            if (c.to == null || c.to.trim().isEmpty()) {
+                c.error = "Missing MailTo";
+                return;
+            }
+            // Truncate fields to prevent "String or binary data would be truncated" error
+            // mailto, mailcc, mailbcc, subject are NVARCHAR(2000) in CronMailAll.
+            // Email addresses are stored as CSV, so cut at a comma to avoid splitting an address.
+            String to = truncateCsv(c.to, "MailTo", id);
+            String cc = truncateCsv(c.cc != null ? c.cc : "", "MailCC", id);
+            String bcc = truncateCsv(c.bcc != null ? c.bcc : "", "MailBCC", id);
+            String subject = c.subject != null ? c.subject : "";
+            if (subject.length() > SUBJECT_MAX_LEN) {
+                log.warn("Truncating Subject from {} to {} chars for mail id={}", subject.length(), SUBJECT_MAX_LEN, id);
+                subject = subject.substring(0, SUBJECT_MAX_LEN);
+            }
+            String body = c.body != null ? c.body : "";
+            if (body.length() > BODY_MAX_LEN) {
+                log.warn("Truncating Body from {} to {} chars for mail id={}", body.length(), BODY_MAX_LEN, id);
+                body = body.substring(0, BODY_MAX_LEN);
+            }
+
+            log.info("CronMailAllDispatch call: id={}, type={}, toLen={}, ccLen={}, bccLen={}, subjectLen={}, bodyLen={}, recipients={}",
+                id, typeName, to.length(), cc.length(), bcc.length(), subject.length(), body.length(), to.split(",").length);
+
+            // Call stored procedure to send mail
+            try {
+                callSp(to, cc, bcc, subject, body);
+            } catch (Exception spEx) {
+                log.error("Stored procedure call failed for mail id={}. Field lengths: toLen={}, ccLen={}, bccLen={}, subjectLen={}, bodyLen={}",
+                    id, to.length(), cc.length(), bcc.length(), subject.length(), body.length());
+                throw spEx;
+            }
+            c.sent = true;
+        } catch (Exception ex) {
+            c.error = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+            log.error("Failed to send cron_mail_all id={}: {}", id, c.error);
+        }
+    }
+
+    /**
+     * Call the mail SP with a query timeout, so a hung mail database cannot hold the call past the lease.
+     */
+    private void callSp(String to, String cc, String bcc, String subject, String body) {
+        int timeoutSeconds = (int) Math.max(1, sendTimeoutMs / 1000);
+        mailJdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(spExec);
+            ps.setQueryTimeout(timeoutSeconds);
+            ps.setString(1, to);
+            ps.setString(2, cc);
+            ps.setString(3, bcc);
+            ps.setString(4, subject);
+            ps.setString(5, body);
+            return ps;
+        });
     }
-}
 
+    /**
+     * Cut a CSV address list to the column size, at a comma when one is within 100 chars of the limit.
+     */
+    private static String truncateCsv(String value, String field, Long id) {
+        if (value.length() <= EMAIL_MAX_LEN) return value;
+        int lastComma = value.lastIndexOf(',', EMAIL_MAX_LEN);
+        String truncated = lastComma > 0 && lastComma >= EMAIL_MAX_LEN - 100
+                ? value.substring(0, lastComma)
+                : value.substring(0, EMAIL_MAX_LEN);
+        log.warn("Truncating {} from {} to {} chars for mail id={}", field, value.length(), truncated.length(), id);
+        return truncated;
+    }
+
+    /**
+     * Write the batch's outcome back in JDBC batches.
+     */
+    private void settle(List<Claimed> batch) {
+        List<Object[]> sent = new ArrayList<>();
+        List<Object[]> failed = new ArrayList<>();
+        List<Object[]> deferred = new ArrayList<>();
+        for (Claimed c : batch) {
+            if (c.deferred) {
+                deferred.add(new Object[]{c.id, owner});
+            } else if (c.sent) {
+                sent.add(new Object[]{c.id, owner});
+            } else {
+                failed.add(new Object[]{c.error, c.id, owner});
+            }
+        }
+        if (!sent.isEmpty()) {
+            jdbcTemplate.batchUpdate(SENT_SQL, sent);
+            sentCount.addAndGet(sent.size());
+        }
+        if (!failed.isEmpty()) {
+            jdbcTemplate.batchUpdate(FAILED_SQL, failed);
+            failedCount.addAndGet(failed.size());
+        }
+        if (!deferred.isEmpty()) {
+            jdbcTemplate.batchUpdate(RELEASE_SQL, deferred);
+            log.warn("CronMailAllDispatch: {} mails handed back, the lease ran short before they were sent", deferred.size());
+        }
+    }
 
+    private static String ownerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "node";
+        }
+        String id = host + ":" + UUID.randomUUID().toString().substring(0, 8);
+        return id.length() > 64 ? id.substring(id.length() - 64) : id;
+    }
+}
@@ -0,0 +1,109 @@
+package com.foxconn.sopchecklist.service.serviceImpl;
+
+import com.foxconn.sopchecklist.service.FtpConnectionPool;
+import com.foxconn.sopchecklist.service.FtpDownloadService;
+import com.foxconn.sopchecklist.service.FtpFileResource;
+import com.foxconn.sopchecklist.service.StorageBackend;
+import org.apache.commons.net.ftp.FTPClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+
+/**
+ * Files on the FTP server, one top-level directory per bucket root.
+ * Uploads go to a temp name in the target directory and are renamed (RNFR/RNTO) once STOR succeeded,
+ * so readers never pick up a partial upload under the final name.
+ */
+public class FtpStorageBackend implements StorageBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(FtpStorageBackend.class);
+
+    private final FtpConnectionPool ftpPool;
+    private final FtpDownloadService ftpDownloadService;
+
+    public FtpStorageBackend(FtpConnectionPool ftpPool, FtpDownloadService ftpDownloadService) {
+        this.ftpPool = ftpPool;
+        this.ftpDownloadService = ftpDownloadService;
+    }
+
+    @Override
+    public String getName() {
+        return "FTP";
+    }
+
+    @Override
+    public void write(String rootDir, String relativePath, InputStream in) throws IOException {
+        int slash = relativePath.lastIndexOf('/');
+        String folder = slash > 0 ? relativePath.substring(0, slash) : "";
+        String fileName = relativePath.substring(slash + 1);
+        String temp = "." + UUID.randomUUID() + ".part";
+
+        ftpPool.execute(ftp -> {
+            changeOrMakeDirectories(ftp, rootDir);
+            changeOrMakeDirectories(ftp, folder.split("/"));
+
+            if (!ftp.storeFile(temp, in)) {
+                String reply = ftp.getReplyString();
+                try { ftp.deleteFile(temp); } catch (Exception ignored) {}
+                throw new IOException("FTP storeFile failed: " + reply);
+            }
+            if (!ftp.rename(temp, fileName)) {
+                // Some servers refuse RNTO onto an existing file
+                ftp.deleteFile(fileName);
+                if (!ftp.rename(temp, fileName)) {
+                    String reply = ftp.getReplyString();
+                    try { ftp.deleteFile(temp); } catch (Exception ignored) {}
+                    throw new IOException("FTP rename failed: " + reply);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public InputStream open(String rootDir, String relativePath) throws IOException {
+        FtpFileResource resource = ftpDownloadService.open(rootDir, relativePath);
+        return resource != null ? resource.getInputStream() : null;
+    }
+
+    @Override
+    public boolean delete(String rootDir, String relativePath) throws IOException {
+        int slash = relativePath.lastIndexOf('/');
+        String folder = slash > 0 ? relativePath.substring(0, slash) : "";
+        String fileName = relativePath.substring(slash + 1);
+
+        return ftpPool.execute(ftp -> {
+            if (rootDir != null && !rootDir.isEmpty() && !ftp.changeWorkingDirectory(rootDir)) {
+                return false;
+            }
+            for (String part : folder.split("/")) {
+                if (part == null || part.isEmpty()) continue;
+                if (!ftp.changeWorkingDirectory(part)) {
+                    return false;
+                }
+            }
+            boolean deleted = ftp.deleteFile(fileName);
+            if (!deleted) {
+                logger.debug("FTP delete of {}/{} refused: {}", rootDir, relativePath, ftp.getReplyString());
+            }
+            return deleted;
+        });
+    }
+
+    private void changeOrMakeDirectories(FTPClient ftp, String... directories) throws IOException {
+        for (String dir : directories) {
+            if (dir == null || dir.isEmpty()) continue;
+            if (!ftp.changeWorkingDirectory(dir)) {
+                if (!ftp.makeDirectory(dir)) {
+                    throw new IOException("Could not create FTP directory: " + dir + " - " + ftp.getReplyString());
+                }
+                if (!ftp.changeWorkingDirectory(dir)) {
+                    throw new IOException("Could not CWD into FTP directory: " + dir + " - " + ftp.getReplyString());
+                }
+            }
+        }
+    }
+}
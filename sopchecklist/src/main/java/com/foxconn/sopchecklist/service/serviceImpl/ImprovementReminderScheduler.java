@@ -1,19 +1,20 @@
 package com.foxconn.sopchecklist.service.serviceImpl;
 
+import com.foxconn.sopchecklist.entity.ImprovementStatus;
 import com.foxconn.sopchecklist.entity.Improvements;
 import com.foxconn.sopchecklist.entity.TypeCronMail;
 import com.foxconn.sopchecklist.repository.ImprovementsRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
-import com.foxconn.sopchecklist.repository.CronMailAllRepository;
 import com.foxconn.sopchecklist.service.MailImprovementReminderService;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
+import com.foxconn.sopchecklist.service.ScheduledJobRunner;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -26,6 +27,9 @@ public class ImprovementReminderScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(ImprovementReminderScheduler.class);
 
+    @Autowired
+    private ScheduledJobRunner jobRunner;
+
     @Autowired
     private ImprovementsRepository improvementsRepository;
 
@@ -36,115 +40,53 @@ public class ImprovementReminderScheduler {
     private TimeService timeService;
 
     @Autowired
-    private TypeCronMailRepository typeCronMailRepository;
-
-    @Autowired
-    private CronMailAllRepository cronMailAllRepository;
+    private MailTypeRegistry mailTypeRegistry;
 
     // Chạy mỗi ngày lúc 8:00 sáng và 2:00 chiều
     @Scheduled(cron = "0 0 8,14 * * ?", zone = "Asia/Ho_Chi_Minh")
-    @Transactional
     public void checkAndSendReminders() {
+        jobRunner.runInTransaction("improvement-reminder", Duration.ofHours(1), Duration.ofMinutes(5), this::queueDueReminders);
+    }
+
+    private void queueDueReminders() {
         LocalDateTime now = timeService.nowVietnam();
         log.info("=== ImprovementReminderScheduler: Starting reminder check at {} ===", now);
         
         try {
             // Lấy typeId của IMPROVEMENT_REMINDER để kiểm tra mail đã gửi
-            TypeCronMail reminderType = typeCronMailRepository.findByTypeName("IMPROVEMENT_REMINDER");
+            TypeCronMail reminderType = mailTypeRegistry.find("IMPROVEMENT_REMINDER");
             Long reminderTypeId = reminderType != null ? reminderType.getId() : null;
             
             if (reminderTypeId == null) {
                 log.warn("ImprovementReminderScheduler: IMPROVEMENT_REMINDER type not found, will create on first send");
             }
             
-            // Lấy tất cả improvement chưa hoàn thành
-            List<Improvements> allImprovements = improvementsRepository.findAll();
-            log.info("Found {} total improvements in database", allImprovements.size());
+            // Chỉ lấy improvement chưa hoàn thành, đã đến hạn, có người phụ trách hoặc phối hợp
+            // và chưa được nhắc trong 24 giờ gần đây (type chưa tồn tại thì chưa có mail nào)
+            LocalDateTime twentyFourHoursAgo = now.minusHours(24);
+            List<Improvements> dueImprovements = improvementsRepository.findDueForReminder(
+                    ImprovementStatus.OPEN, now, reminderTypeId != null ? reminderTypeId : -1L, twentyFourHoursAgo);
+            log.info("Found {} improvements due for a reminder", dueImprovements.size());
             
             int reminderCount = 0;
-            int skippedCount = 0;
-            for (Improvements improvement : allImprovements) {
+            int failedCount = 0;
+            for (Improvements improvement : dueImprovements) {
                 Integer improvementId = improvement.getImprovementID();
-                String category = improvement.getCategory();
-                
-                // Kiểm tra điều kiện:
-                // 1. Có plannedDueAt (thời gian dự kiến hoàn thành)
-                if (improvement.getPlannedDueAt() == null) {
-                    log.debug("Skip improvement ID {}: No plannedDueAt", improvementId);
-                    skippedCount++;
-                    continue;
-                }
-                
-                LocalDateTime plannedDueAt = improvement.getPlannedDueAt();
-                // 2. plannedDueAt đã qua (<= hiện tại)
-                if (plannedDueAt.isAfter(now)) {
-                    log.debug("Skip improvement ID {}: Not yet due (plannedDueAt: {}, now: {})", 
-                            improvementId, plannedDueAt, now);
-                    skippedCount++;
-                    continue; // Chưa đến hạn
-                }
-                
-                // 3. Status không phải DONE hoặc COMPLETED
-                String status = improvement.getStatus();
-                if (status != null) {
-                    String statusUpper = status.toUpperCase();
-                    if (statusUpper.equals("DONE") || statusUpper.equals("COMPLETED") || 
-                        statusUpper.contains("HOÀN THÀNH") || statusUpper.contains("HOAN THANH")) {
-                        log.debug("Skip improvement ID {}: Already completed (status: {})", improvementId, status);
-                        skippedCount++;
-                        continue; // Đã hoàn thành
-                    }
-                }
-                
-                // 4. Có người phụ trách (responsible) hoặc người phối hợp (collaborators)
-                boolean hasResponsible = improvement.getResponsible() != null && !improvement.getResponsible().isEmpty();
-                boolean hasCollaborators = improvement.getCollaborators() != null && !improvement.getCollaborators().isEmpty();
-                if (!hasResponsible && !hasCollaborators) {
-                    log.debug("Skip improvement ID {}: No responsible or collaborators", improvementId);
-                    skippedCount++;
-                    continue; // Không có người phụ trách và cũng không có người phối hợp
-                }
-                
-                // 5. Kiểm tra xem đã gửi reminder cho improvement này chưa
-                // Chỉ gửi lại sau 24 giờ để tránh spam
-                // Chỉ kiểm tra nếu type đã tồn tại trong database
-                boolean shouldSkipDueToRecentSend = false;
-                if (reminderTypeId != null) {
-                    LocalDateTime twentyFourHoursAgo = now.minusHours(24);
-                    List<com.foxconn.sopchecklist.entity.CronMailAll> recentReminders = 
-                            cronMailAllRepository.findReminderMailsByTypeIdAndReferenceIdAndCreatedAtAfter(
-                                    reminderTypeId, improvementId.longValue(), twentyFourHoursAgo);
-                    
-                    if (!recentReminders.isEmpty()) {
-                        // Đã gửi reminder trong 24 giờ gần đây, bỏ qua để tránh spam
-                        shouldSkipDueToRecentSend = true;
-                        skippedCount++;
-                        log.debug("Skip improvement ID {}: Already sent {} reminder(s) in last 24 hours", 
-                                improvementId, recentReminders.size());
-                    }
-                } else {
-                    log.debug("Type IMPROVEMENT_REMINDER not found yet - will be created on first send for improvement ID {}", improvementId);
-                }
-                
-                if (shouldSkipDueToRecentSend) {
-                    continue;
-                }
-                
-                // Gửi mail nhắc nhở
                 try {
                     log.info(">>> Sending reminder for improvement ID: {}, category: '{}', status: '{}', plannedDueAt: {}", 
-                            improvementId, category, status, plannedDueAt);
+                            improvementId, improvement.getCategory(), improvement.getStatus(), improvement.getPlannedDueAt());
                     mailReminderService.queueImprovementReminderMail(improvement);
                     reminderCount++;
                     log.info("✓ Successfully queued reminder mail for improvement ID: {}", improvementId);
                 } catch (Exception e) {
+                    failedCount++;
                     log.error("✗ Failed to queue reminder mail for improvement ID: {} - {}", 
                             improvementId, e.getMessage(), e);
                 }
             }
             
-            log.info("=== ImprovementReminderScheduler: Completed. Sent {} reminders, skipped {} improvements ===", 
-                    reminderCount, skippedCount);
+            log.info("=== ImprovementReminderScheduler: Completed. Sent {} reminders, {} failed ===", 
+                    reminderCount, failedCount);
             
         } catch (Exception ex) {
             log.error("ImprovementReminderScheduler error: {}", ex.getMessage(), ex);
@@ -0,0 +1,43 @@
+package com.foxconn.sopchecklist.service.serviceImpl;
+
+import com.foxconn.sopchecklist.service.StorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Heap-only backend for local development and tests (storage.backend=memory). Nothing survives a restart.
+ */
+public class InMemoryStorageBackend implements StorageBackend {
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void write(String rootDir, String relativePath, InputStream in) throws IOException {
+        // Fully read before the put, so readers never see a partial file
+        files.put(key(rootDir, relativePath), in.readAllBytes());
+    }
+
+    @Override
+    public InputStream open(String rootDir, String relativePath) {
+        byte[] content = files.get(key(rootDir, relativePath));
+        return content != null ? new ByteArrayInputStream(content) : null;
+    }
+
+    @Override
+    public boolean delete(String rootDir, String relativePath) {
+        return files.remove(key(rootDir, relativePath)) != null;
+    }
+
+    private String key(String rootDir, String relativePath) {
+        return (rootDir != null ? rootDir : "") + "/" + relativePath;
+    }
+}
@@ -0,0 +1,74 @@
+package com.foxconn.sopchecklist.service.serviceImpl;
+
+import com.foxconn.sopchecklist.service.StorageBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Files on local disk below file.upload-dir. Each bucket root maps to a directory through {@code rootDirs};
+ * roots without a mapping get a sub-directory of the same name.
+ * Content is written to a temp file next to the target and moved into place.
+ */
+public class LocalStorageBackend implements StorageBackend {
+
+    private final Path baseDir;
+    private final Map<String, Path> rootDirs;
+
+    public LocalStorageBackend(Path baseDir, Map<String, Path> rootDirs) {
+        this.baseDir = baseDir.toAbsolutePath().normalize();
+        this.rootDirs = rootDirs;
+    }
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public void write(String rootDir, String relativePath, InputStream in) throws IOException {
+        Path target = resolve(rootDir, relativePath);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + UUID.randomUUID() + ".part");
+        try {
+            Files.copy(in, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String rootDir, String relativePath) throws IOException {
+        Path file = resolve(rootDir, relativePath);
+        return Files.isRegularFile(file) ? Files.newInputStream(file) : null;
+    }
+
+    @Override
+    public boolean delete(String rootDir, String relativePath) throws IOException {
+        return Files.deleteIfExists(resolve(rootDir, relativePath));
+    }
+
+    private Path resolve(String rootDir, String relativePath) throws IOException {
+        Path root = rootDirs.get(rootDir);
+        if (root == null) {
+            root = rootDir == null || rootDir.isEmpty() ? baseDir : baseDir.resolve(rootDir);
+        }
+        root = root.toAbsolutePath().normalize();
+        Path file = root.resolve(relativePath).normalize();
+        if (!file.startsWith(root) || !file.startsWith(baseDir)) {
+            throw new IOException("Invalid path");
+        }
+        return file;
+    }
+}
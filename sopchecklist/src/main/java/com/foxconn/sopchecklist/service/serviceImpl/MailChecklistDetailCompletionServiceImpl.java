@@ -2,18 +2,14 @@ package com.foxconn.sopchecklist.service.serviceImpl;
 
 import com.foxconn.sopchecklist.entity.ChecklistDetail;
 import com.foxconn.sopchecklist.entity.CronMailAll;
-import com.foxconn.sopchecklist.entity.Group;
 import com.foxconn.sopchecklist.entity.MailRecipientAll;
 import com.foxconn.sopchecklist.entity.TypeCronMail;
-import com.foxconn.sopchecklist.entity.Users;
-import com.foxconn.sopchecklist.entity.UserStatus;
 import com.foxconn.sopchecklist.repository.ChecklistDetailRepository;
 import com.foxconn.sopchecklist.repository.CronMailAllRepository;
-import com.foxconn.sopchecklist.repository.GroupRepository;
 import com.foxconn.sopchecklist.repository.MailRecipientAllRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
-import com.foxconn.sopchecklist.repository.UsersRepository;
 import com.foxconn.sopchecklist.service.MailChecklistDetailCompletionService;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
+import com.foxconn.sopchecklist.service.RecipientDirectory;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -26,11 +22,10 @@ import java.util.stream.Collectors;
 public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDetailCompletionService {
 
     private final ChecklistDetailRepository checklistDetailRepository;
-    private final GroupRepository groupRepository;
-    private final UsersRepository usersRepository;
+    private final RecipientDirectory recipientDirectory;
     private final CronMailAllRepository cronMailAllRepository;
     private final MailRecipientAllRepository mailRecipientAllRepository;
-    private final TypeCronMailRepository typeCronMailRepository;
+    private final MailTypeRegistry mailTypeRegistry;
     private final TimeService timeService;
 
     @Value("${app.public.url:http://10.228.64.77:3000}")
@@ -40,18 +35,16 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
     private String appBackendUrl;
 
     public MailChecklistDetailCompletionServiceImpl(ChecklistDetailRepository checklistDetailRepository,
-                                                   GroupRepository groupRepository,
-                                                   UsersRepository usersRepository,
+                                                   RecipientDirectory recipientDirectory,
                                                    CronMailAllRepository cronMailAllRepository,
                                                    MailRecipientAllRepository mailRecipientAllRepository,
-                                                   TypeCronMailRepository typeCronMailRepository,
+                                                   MailTypeRegistry mailTypeRegistry,
                                                    TimeService timeService) {
         this.checklistDetailRepository = checklistDetailRepository;
-        this.groupRepository = groupRepository;
-        this.usersRepository = usersRepository;
+        this.recipientDirectory = recipientDirectory;
         this.cronMailAllRepository = cronMailAllRepository;
         this.mailRecipientAllRepository = mailRecipientAllRepository;
-        this.typeCronMailRepository = typeCronMailRepository;
+        this.mailTypeRegistry = mailTypeRegistry;
         this.timeService = timeService;
     }
 
@@ -87,7 +80,7 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
         String task = safe(d.getTaskName());
         String content = safe(d.getWorkContent());
-        String implementer = getImplementerDisplay(d.getImplementer());
+        String implementer = recipientDirectory.displayName(d.getImplementer());
         String completed = d.getLastEditedAt() != null ? d.getLastEditedAt().format(fmt) : "";
         String deadline = d.getDeadlineAt() != null ? d.getDeadlineAt().format(fmt) : "";
         String note = safe(d.getNote());
@@ -153,49 +146,6 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
         body.append("</tr>");
     }
 
-    private String getImplementerDisplay(String implementer) {
-        if (implementer == null || implementer.trim().isEmpty()) {
-            return "-";
-        }
-        
-        // Nếu là user:ID format, tìm user thật
-        if (implementer.startsWith("user:")) {
-            try {
-                String userId = implementer.substring(5);
-                Users user = usersRepository.findById(Integer.parseInt(userId)).orElse(null);
-                if (user != null && user.getFullName() != null) {
-                    return user.getFullName();
-                }
-            } catch (Exception e) {
-                // Ignore parsing errors
-            }
-        }
-        
-        // Nếu là group:ID format, tìm group thật
-        if (implementer.startsWith("group:")) {
-            try {
-                String groupId = implementer.substring(6);
-                Group group = groupRepository.findById(Long.parseLong(groupId)).orElse(null);
-                if (group != null && group.getName() != null) {
-                    return group.getName();
-                }
-            } catch (Exception e) {
-                // Ignore parsing errors
-            }
-        }
-        
-        // Nếu là email, tìm user theo email
-        if (implementer.contains("@")) {
-            Users user = usersRepository.findByEmail(implementer).orElse(null);
-            if (user != null && user.getFullName() != null) {
-                return user.getFullName();
-            }
-        }
-        
-        // Fallback: trả về implementer gốc
-        return implementer;
-    }
-
     private String getAttachedFilesInfo(ChecklistDetail d) {
         if (d.getFiles() == null || d.getFiles().isEmpty()) {
             return null;
@@ -233,7 +183,7 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
      * Gửi mail cho người thực hiện (implementer)
      */
     private void sendMailToImplementer(String subject, String body, ChecklistDetail detail) {
-        String implementerEmail = resolveImplementerEmail(detail.getImplementer());
+        String implementerEmail = recipientDirectory.resolveEmails(detail.getImplementer());
         if (implementerEmail != null && !implementerEmail.trim().isEmpty()) {
             createMailRecord("CHECKLISTDONE_IMPLEMENTER", subject, body, implementerEmail, "", "", detail.getId());
         }
@@ -280,16 +230,7 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
     private void createMailRecord(String typeName, String subject, String body, String toCsv, String ccCsv, String bccCsv, Long referenceId) {
         try {
             // Tìm hoặc tạo TypeCronMail
-            TypeCronMail type = typeCronMailRepository.findByTypeName(typeName);
-            if (type == null) {
-                type = new TypeCronMail();
-                type.setTypeName(typeName);
-                type.setDescription("Mail type: " + typeName);
-                type.setEnabled(true);
-                type.setCreatedAt(timeService.nowVietnam());
-                type.setUpdatedAt(timeService.nowVietnam());
-                type = typeCronMailRepository.save(type);
-            }
+            TypeCronMail type = mailTypeRegistry.getOrCreate(typeName, "Mail type: " + typeName);
 
             CronMailAll mail = new CronMailAll();
             mail.setTypeId(type.getId());
@@ -310,74 +251,6 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
         }
     }
 
-    /**
-     * Lấy email của người thực hiện từ implementer string
-     */
-    private String resolveImplementerEmail(String implementer) {
-        if (implementer == null) return null;
-        String name = implementer.trim();
-        if (name.isEmpty()) return null;
-
-        String lower = name.toLowerCase();
-        // Handle encoded identifiers: group:<id>, user:<id>
-        try {
-            if (lower.startsWith("group:")) {
-                String idStr = lower.substring("group:".length()).trim();
-                Long gid = Long.parseLong(idStr);
-                Group grpById = groupRepository.findById(gid).orElse(null);
-                if (grpById != null && grpById.getUsers() != null) {
-                    return grpById.getUsers().stream()
-                            .filter(this::isActiveUser)
-                            .map(Users::getEmail)
-                            .filter(e -> e != null && !e.trim().isEmpty())
-                            .distinct()
-                            .collect(Collectors.joining(","));
-                }
-            } else if (lower.startsWith("user:")) {
-                String idStr = lower.substring("user:".length()).trim();
-                Integer uid = Integer.parseInt(idStr);
-                Users uById = usersRepository.findById(uid).orElse(null);
-                if (uById != null && uById.getEmail() != null && !uById.getEmail().trim().isEmpty()) {
-                    return uById.getEmail();
-                }
-            }
-        } catch (Exception ignore) { }
-
-        // 1) Nếu trùng tên group -> lấy toàn bộ email user trong group
-        Group grp = groupRepository.findByNameIgnoreCase(name).orElse(null);
-        if (grp != null && grp.getUsers() != null) {
-            return grp.getUsers().stream()
-                    .filter(this::isActiveUser)
-                    .map(Users::getEmail)
-                    .filter(e -> e != null && !e.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.joining(","));
-        }
-
-        // 2) Nếu giống email -> gửi cho đúng user đó
-        if (name.contains("@")) {
-            Users uByEmail = usersRepository.findByEmail(name).orElse(null);
-            if (uByEmail != null && uByEmail.getEmail() != null) return uByEmail.getEmail();
-            // Không có trong bảng Users, vẫn gửi thẳng vào mailTo chuỗi này
-            return name;
-        }
-
-        // 3) Thử theo mã nhân viên (manv)
-        Users uByManv = usersRepository.findByManv(name).orElse(null);
-        if (uByManv != null && uByManv.getEmail() != null) return uByManv.getEmail();
-
-        // 4) Fallback: tìm theo fullName (duyệt danh sách)
-        List<Users> all = usersRepository.findAll();
-        String fromName = all.stream()
-                .filter(this::isActiveUser)
-                .filter(u -> u.getFullName() != null && u.getFullName().equalsIgnoreCase(name))
-                .map(Users::getEmail)
-                .filter(e -> e != null && !e.trim().isEmpty())
-                .findFirst()
-                .orElse(null);
-        return fromName;
-    }
-
     /**
      * Lấy recipients từ mail_recipient_all theo checklist_id
      */
@@ -419,8 +292,4 @@ public class MailChecklistDetailCompletionServiceImpl implements MailChecklistDe
                 .replace("\"", "&quot;")
                 .replace("'", "&#39;");
     }
-
-    private boolean isActiveUser(Users user) {
-        return user != null && (user.getStatus() == null || user.getStatus() == UserStatus.ACTIVE);
-    }
 }
@@ -2,45 +2,51 @@ package com.foxconn.sopchecklist.service.serviceImpl;
 
 import com.foxconn.sopchecklist.entity.CronMailAll;
 import com.foxconn.sopchecklist.entity.ChecklistDetail;
-import com.foxconn.sopchecklist.entity.Group;
 import com.foxconn.sopchecklist.entity.TypeCronMail;
-import com.foxconn.sopchecklist.entity.Users;
-import com.foxconn.sopchecklist.entity.UserStatus;
 import com.foxconn.sopchecklist.repository.CronMailAllRepository;
-import com.foxconn.sopchecklist.repository.GroupRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
-import com.foxconn.sopchecklist.repository.UsersRepository;
 import com.foxconn.sopchecklist.service.MailChecklistService;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
+import com.foxconn.sopchecklist.service.RecipientDirectory;
 import com.foxconn.sopchecklist.service.TimeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class MailChecklistServiceImpl implements MailChecklistService {
 
+    private static final Logger log = LoggerFactory.getLogger(MailChecklistServiceImpl.class);
+
+    private static final int SAVE_CHUNK = 100;
+
     private final CronMailAllRepository mailRepository;
-    private final GroupRepository groupRepository;
-    private final UsersRepository usersRepository;
-    private final TypeCronMailRepository typeCronMailRepository;
+    private final RecipientDirectory recipientDirectory;
+    private final MailTypeRegistry mailTypeRegistry;
     private final TimeService timeService;
+    private final TransactionTemplate requiresNew;
 
     @Value("${app.public.url:http://10.228.64.77:3000}")
     private String appPublicUrl;
 
     public MailChecklistServiceImpl(CronMailAllRepository mailRepository,
-                                    GroupRepository groupRepository,
-                                    UsersRepository usersRepository,
-                                    TypeCronMailRepository typeCronMailRepository,
-                                    TimeService timeService) {
+                                    RecipientDirectory recipientDirectory,
+                                    MailTypeRegistry mailTypeRegistry,
+                                    TimeService timeService,
+                                    PlatformTransactionManager transactionManager) {
         this.mailRepository = mailRepository;
-        this.groupRepository = groupRepository;
-        this.usersRepository = usersRepository;
-        this.typeCronMailRepository = typeCronMailRepository;
+        this.recipientDirectory = recipientDirectory;
+        this.mailTypeRegistry = mailTypeRegistry;
         this.timeService = timeService;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     @Override
@@ -48,19 +54,9 @@ public class MailChecklistServiceImpl implements MailChecklistService {
         if (detail == null) return null;
         
         // Tìm type cho checklist mail
-        TypeCronMail checklistType = typeCronMailRepository.findByTypeName("CHECKLIST");
-        if (checklistType == null) {
-            // Nếu chưa có type CHECKLIST, tạo mới
-            checklistType = new TypeCronMail();
-            checklistType.setTypeName("CHECKLIST");
-            checklistType.setDescription("Mail thông báo checklist");
-            checklistType.setEnabled(true);
-            checklistType.setCreatedAt(timeService.nowVietnam());
-            checklistType.setUpdatedAt(timeService.nowVietnam());
-            checklistType = typeCronMailRepository.save(checklistType);
-        }
+        TypeCronMail checklistType = mailTypeRegistry.getOrCreate("CHECKLIST", "Mail thông báo checklist");
         
-        String toCsv = resolveRecipients(detail.getImplementer());
+        String toCsv = recipientDirectory.resolveEmails(detail.getImplementer());
         if (toCsv == null || toCsv.trim().isEmpty()) {
             // Không có người nhận, vẫn ghi hàng đợi để thấy lỗi
             toCsv = "";
@@ -89,36 +85,66 @@ public class MailChecklistServiceImpl implements MailChecklistService {
         if (detail == null) return null;
 
         // Lấy/khởi tạo type CHECKLIST (dùng chung với mail từ biểu tượng chuông)
-        TypeCronMail checklistType = typeCronMailRepository.findByTypeName("CHECKLIST");
-        if (checklistType == null) {
-            checklistType = new TypeCronMail();
-            checklistType.setTypeName("CHECKLIST");
-            checklistType.setDescription("Mail thông báo checklist");
-            checklistType.setEnabled(true);
-            checklistType.setCreatedAt(timeService.nowVietnam());
-            checklistType.setUpdatedAt(timeService.nowVietnam());
-            checklistType = typeCronMailRepository.save(checklistType);
+        TypeCronMail checklistType = mailTypeRegistry.getOrCreate("CHECKLIST", "Mail thông báo checklist");
+        return mailRepository.save(buildReminderMail(detail, checklistType.getId()));
+    }
+
+    /**
+     * Queue one reminder per detail. Mails are saved in chunks, each in its own transaction; when a chunk fails
+     * its mails are saved one by one, so a bad detail only loses its own reminder. Returns the saved mails.
+     */
+    @Override
+    public List<CronMailAll> queueChecklistReminderMails(List<ChecklistDetail> details) {
+        if (details == null || details.isEmpty()) return new ArrayList<>();
+
+        TypeCronMail checklistType = mailTypeRegistry.getOrCreate("CHECKLIST", "Mail thông báo checklist");
+        List<CronMailAll> mails = new ArrayList<>(details.size());
+        for (ChecklistDetail detail : details) {
+            try {
+                mails.add(buildReminderMail(detail, checklistType.getId()));
+            } catch (Exception ex) {
+                log.error("Could not build reminder mail for checklist detail {}: {}", detail.getId(), ex.getMessage());
+            }
         }
 
-        String toCsv = resolveRecipients(detail.getImplementer());
-        if (toCsv == null) toCsv = "";
+        List<CronMailAll> saved = new ArrayList<>(mails.size());
+        for (int i = 0; i < mails.size(); i += SAVE_CHUNK) {
+            List<CronMailAll> chunk = mails.subList(i, Math.min(i + SAVE_CHUNK, mails.size()));
+            try {
+                saved.addAll(requiresNew.execute(status -> mailRepository.saveAll(chunk)));
+            } catch (Exception chunkEx) {
+                log.warn("Saving {} reminder mails failed ({}), retrying one by one", chunk.size(), chunkEx.getMessage());
+                for (CronMailAll mail : chunk) {
+                    // The failed chunk may have assigned ids before rolling back
+                    mail.setId(null);
+                    try {
+                        saved.add(requiresNew.execute(status -> mailRepository.save(mail)));
+                    } catch (Exception ex) {
+                        log.error("Could not queue reminder mail for checklist detail {}: {}", mail.getReferenceId(), ex.getMessage());
+                    }
+                }
+            }
+        }
+        return saved;
+    }
 
-        String subject = buildReminderSubject(detail);
-        String body = buildReminderBody(detail);
+    private CronMailAll buildReminderMail(ChecklistDetail detail, Long typeId) {
+        String toCsv = recipientDirectory.resolveEmails(detail.getImplementer());
+        if (toCsv == null) toCsv = "";
 
         CronMailAll mail = new CronMailAll();
-        mail.setTypeId(checklistType.getId());
+        mail.setTypeId(typeId);
         mail.setMailTo(toCsv);
         mail.setMailCC("");
         mail.setMailBCC("");
-        mail.setSubject(subject);
-        mail.setBody(body);
+        mail.setSubject(buildReminderSubject(detail));
+        mail.setBody(buildReminderBody(detail));
         mail.setStatus("PENDING");
         mail.setRetryCount(0);
         mail.setLastError(null);
         mail.setReferenceId(detail.getId());
         mail.setCreatedAt(timeService.nowVietnam());
-        return mailRepository.save(mail);
+        return mail;
     }
 
     private String buildReminderSubject(ChecklistDetail d) {
@@ -130,7 +156,7 @@ public class MailChecklistServiceImpl implements MailChecklistService {
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
         String task = safe(d.getTaskName());
         String content = safe(d.getWorkContent());
-        String implementer = getImplementerDisplay(d.getImplementer());
+        String implementer = recipientDirectory.displayName(d.getImplementer());
         String created = d.getCreatedAt() != null ? d.getCreatedAt().format(fmt) : "";
         String deadline = d.getDeadlineAt() != null ? d.getDeadlineAt().format(fmt) : "";
 
@@ -160,71 +186,6 @@ public class MailChecklistServiceImpl implements MailChecklistService {
         return body.toString();
     }
 
-    private String resolveRecipients(String implementer) {
-        if (implementer == null) return null;
-        String name = implementer.trim();
-        if (name.isEmpty()) return null;
-
-        String lower = name.toLowerCase();
-        // Handle encoded identifiers: group:<id>, user:<id>
-        try {
-            if (lower.startsWith("group:")) {
-                String idStr = lower.substring("group:".length()).trim();
-                Long gid = Long.parseLong(idStr);
-                Group grpById = groupRepository.findById(gid).orElse(null);
-                if (grpById != null && grpById.getUsers() != null) {
-                    return grpById.getUsers().stream()
-                            .filter(this::isActiveUser)
-                            .map(Users::getEmail)
-                            .filter(e -> e != null && !e.trim().isEmpty())
-                            .distinct()
-                            .collect(Collectors.joining(","));
-                }
-            } else if (lower.startsWith("user:")) {
-                String idStr = lower.substring("user:".length()).trim();
-                Integer uid = Integer.parseInt(idStr);
-                Users uById = usersRepository.findById(uid).orElse(null);
-                if (uById != null && uById.getEmail() != null && !uById.getEmail().trim().isEmpty()) {
-                    return uById.getEmail();
-                }
-            }
-        } catch (Exception ignore) { }
-
-        // 1) Nếu trùng tên group -> lấy toàn bộ email user trong group
-        Group grp = groupRepository.findByNameIgnoreCase(name).orElse(null);
-        if (grp != null && grp.getUsers() != null) {
-            return grp.getUsers().stream()
-                    .filter(this::isActiveUser)
-                    .map(Users::getEmail)
-                    .filter(e -> e != null && !e.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.joining(","));
-        }
-
-        // 2) Nếu giống email -> gửi cho đúng user đó
-        if (name.contains("@")) {
-            Users uByEmail = usersRepository.findByEmail(name).orElse(null);
-            if (uByEmail != null && uByEmail.getEmail() != null) return uByEmail.getEmail();
-            // Không có trong bảng Users, vẫn gửi thẳng vào mailTo chuỗi này
-            return name;
-        }
-
-        // 3) Thử theo mã nhân viên (manv)
-        Users uByManv = usersRepository.findByManv(name).orElse(null);
-        if (uByManv != null && uByManv.getEmail() != null) return uByManv.getEmail();
-
-        // 4) Fallback: tìm theo fullName (duyệt danh sách)
-        List<Users> all = usersRepository.findAll();
-        String fromName = all.stream()
-                .filter(this::isActiveUser)
-                .filter(u -> u.getFullName() != null && u.getFullName().equalsIgnoreCase(name))
-                .map(Users::getEmail)
-                .filter(e -> e != null && !e.trim().isEmpty())
-                .findFirst()
-                .orElse(null);
-        return fromName;
-    }
-
     private String buildSubject(ChecklistDetail d) {
         String task = d.getTaskName() != null ? d.getTaskName() : "Checklist";
         return "Thông báo checklist mới / 通知新清单: " + task;
@@ -234,7 +195,7 @@ public class MailChecklistServiceImpl implements MailChecklistService {
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
         String task = safe(d.getTaskName());
         String content = safe(d.getWorkContent());
-        String implementer = getImplementerDisplay(d.getImplementer());
+        String implementer = recipientDirectory.displayName(d.getImplementer());
         String created = d.getCreatedAt() != null ? d.getCreatedAt().format(fmt) : "";
         String deadline = d.getDeadlineAt() != null ? d.getDeadlineAt().format(fmt) : "";
 
@@ -275,49 +236,6 @@ public class MailChecklistServiceImpl implements MailChecklistService {
         body.append("<td style=\"border:1px solid #ddd;padding:8px;\">").append(escapeHtml(value)).append("</td>");
         body.append("</tr>");
     }
-
-    private String getImplementerDisplay(String implementer) {
-        if (implementer == null || implementer.trim().isEmpty()) {
-            return "-";
-        }
-        
-        // Nếu là user:ID format, tìm user thật
-        if (implementer.startsWith("user:")) {
-            try {
-                String userId = implementer.substring(5);
-                Users user = usersRepository.findById(Integer.parseInt(userId)).orElse(null);
-                if (user != null && user.getFullName() != null) {
-                    return user.getFullName();
-                }
-            } catch (Exception e) {
-                // Ignore parsing errors
-            }
-        }
-        
-        // Nếu là group:ID format, tìm group thật
-        if (implementer.startsWith("group:")) {
-            try {
-                String groupId = implementer.substring(6);
-                Group group = groupRepository.findById(Long.parseLong(groupId)).orElse(null);
-                if (group != null && group.getName() != null) {
-                    return group.getName();
-                }
-            } catch (Exception e) {
-                // Ignore parsing errors
-            }
-        }
-        
-        // Nếu là email, tìm user theo email
-        if (implementer.contains("@")) {
-            Users user = usersRepository.findByEmail(implementer).orElse(null);
-            if (user != null && user.getFullName() != null) {
-                return user.getFullName();
-            }
-        }
-        
-        // Fallback: trả về implementer gốc
-        return implementer;
-    }
     
     private String getStatusDisplay(String status) {
         if (status == null) return "Chưa xác định / 未确定";
@@ -345,8 +263,4 @@ public class MailChecklistServiceImpl implements MailChecklistService {
                 .replace("\"", "&quot;")
                 .replace("'", "&#39;");
     }
-
-    private boolean isActiveUser(Users user) {
-        return user != null && (user.getStatus() == null || user.getStatus() == UserStatus.ACTIVE);
-    }
 }
\ No newline at end of file
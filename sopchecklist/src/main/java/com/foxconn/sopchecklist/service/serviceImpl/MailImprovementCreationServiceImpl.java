@@ -2,18 +2,14 @@ package com.foxconn.sopchecklist.service.serviceImpl;
 
 import com.foxconn.sopchecklist.entity.ChecklistDetail;
 import com.foxconn.sopchecklist.entity.CronMailAll;
-import com.foxconn.sopchecklist.entity.Group;
 import com.foxconn.sopchecklist.entity.Improvements;
 import com.foxconn.sopchecklist.entity.MailRecipientAll;
 import com.foxconn.sopchecklist.entity.TypeCronMail;
-import com.foxconn.sopchecklist.entity.Users;
-import com.foxconn.sopchecklist.entity.UserStatus;
 import com.foxconn.sopchecklist.repository.CronMailAllRepository;
-import com.foxconn.sopchecklist.repository.GroupRepository;
 import com.foxconn.sopchecklist.repository.MailRecipientAllRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
-import com.foxconn.sopchecklist.repository.UsersRepository;
 import com.foxconn.sopchecklist.service.MailImprovementCreationService;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
+import com.foxconn.sopchecklist.service.RecipientDirectory;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -25,27 +21,24 @@ import java.util.stream.Collectors;
 @Service
 public class MailImprovementCreationServiceImpl implements MailImprovementCreationService {
 
-    private final GroupRepository groupRepository;
-    private final UsersRepository usersRepository;
+    private final RecipientDirectory recipientDirectory;
     private final CronMailAllRepository cronMailAllRepository;
     private final MailRecipientAllRepository mailRecipientAllRepository;
-    private final TypeCronMailRepository typeCronMailRepository;
+    private final MailTypeRegistry mailTypeRegistry;
     private final TimeService timeService;
 
     @Value("${app.public.url:http://10.228.64.77:3000}")
     private String appPublicUrl;
 
-    public MailImprovementCreationServiceImpl(GroupRepository groupRepository,
-                                              UsersRepository usersRepository,
+    public MailImprovementCreationServiceImpl(RecipientDirectory recipientDirectory,
                                               CronMailAllRepository cronMailAllRepository,
                                               MailRecipientAllRepository mailRecipientAllRepository,
-                                              TypeCronMailRepository typeCronMailRepository,
+                                              MailTypeRegistry mailTypeRegistry,
                                               TimeService timeService) {
-        this.groupRepository = groupRepository;
-        this.usersRepository = usersRepository;
+        this.recipientDirectory = recipientDirectory;
         this.cronMailAllRepository = cronMailAllRepository;
         this.mailRecipientAllRepository = mailRecipientAllRepository;
-        this.typeCronMailRepository = typeCronMailRepository;
+        this.mailTypeRegistry = mailTypeRegistry;
         this.timeService = timeService;
     }
 
@@ -141,7 +134,7 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
         List<String> responsibleList = improvement.getResponsible();
         if (responsibleList != null && !responsibleList.isEmpty()) {
             for (String responsible : responsibleList) {
-                String email = resolveResponsibleEmail(responsible);
+                String email = recipientDirectory.resolveEmails(responsible);
                 if (email != null && !email.trim().isEmpty()) {
                     if (emailCsv.length() > 0) emailCsv.append(",");
                     emailCsv.append(email);
@@ -154,7 +147,7 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
         List<String> collaboratorsList = improvement.getCollaborators();
         if (collaboratorsList != null && !collaboratorsList.isEmpty()) {
             for (String collaborator : collaboratorsList) {
-                String email = resolveResponsibleEmail(collaborator);
+                String email = recipientDirectory.resolveEmails(collaborator);
                 if (email != null && !email.trim().isEmpty()) {
                     if (ccCsv.length() > 0) ccCsv.append(",");
                     ccCsv.append(email);
@@ -176,64 +169,10 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
     private String getResponsibleDisplay(List<String> responsibleList) {
         if (responsibleList == null || responsibleList.isEmpty()) return "";
         return responsibleList.stream()
-                .map(this::getImplementerDisplay)
+                .map(recipientDirectory::displayName)
                 .collect(Collectors.joining(", "));
     }
 
-    private String resolveResponsibleEmail(String responsible) {
-        if (responsible == null) return null;
-        String name = responsible.trim();
-        if (name.isEmpty()) return null;
-        String lower = name.toLowerCase();
-        try {
-            if (lower.startsWith("group:")) {
-                Long gid = Long.parseLong(lower.substring("group:".length()).trim());
-                Group grp = groupRepository.findById(gid).orElse(null);
-                if (grp != null && grp.getUsers() != null) {
-                    return grp.getUsers().stream()
-                            .filter(this::isActiveUser)
-                            .map(Users::getEmail)
-                            .filter(e -> e != null && !e.trim().isEmpty())
-                            .distinct()
-                            .collect(Collectors.joining(","));
-                }
-            } else if (lower.startsWith("user:")) {
-                Integer uid = Integer.parseInt(lower.substring("user:".length()).trim());
-                Users u = usersRepository.findById(uid).orElse(null);
-                if (u != null && u.getEmail() != null && !u.getEmail().trim().isEmpty()) return u.getEmail();
-            }
-        } catch (Exception ignore) {}
-
-        Group grpByName = groupRepository.findByNameIgnoreCase(name).orElse(null);
-        if (grpByName != null && grpByName.getUsers() != null) {
-            return grpByName.getUsers().stream()
-                    .filter(this::isActiveUser)
-                    .map(Users::getEmail)
-                    .filter(e -> e != null && !e.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.joining(","));
-        }
-
-        if (name.contains("@")) {
-            Users uByEmail = usersRepository.findByEmail(name).orElse(null);
-            if (uByEmail != null && uByEmail.getEmail() != null) return uByEmail.getEmail();
-            return name;
-        }
-
-        Users uByManv = usersRepository.findByManv(name).orElse(null);
-        if (uByManv != null && uByManv.getEmail() != null) return uByManv.getEmail();
-
-        List<Users> all = usersRepository.findAll();
-        String fromName = all.stream()
-                .filter(this::isActiveUser)
-                .filter(u -> u.getFullName() != null && u.getFullName().equalsIgnoreCase(name))
-                .map(Users::getEmail)
-                .filter(e -> e != null && !e.trim().isEmpty())
-                .findFirst()
-                .orElse(null);
-        return fromName;
-    }
-
     private String buildSubject(ChecklistDetail d) {
         String task = d.getTaskName() != null ? d.getTaskName() : "Checklist";
         return "Thông báo phát sinh cải thiện / 通知产生改善: " + task;
@@ -243,7 +182,7 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
         DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
         String task = safe(d.getTaskName());
         String content = safe(d.getWorkContent());
-        String implementer = getImplementerDisplay(d.getImplementer());
+        String implementer = recipientDirectory.displayName(d.getImplementer());
         String abnormalInfo = safe(d.getAbnormalInfo());
         String created = i.getCreatedAt() != null ? i.getCreatedAt().format(fmt) : "";
 
@@ -284,7 +223,7 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
     }
 
     private void sendToImplementer(String subject, String body, ChecklistDetail detail) {
-        String implementerCsv = resolveResponsibleEmail(detail.getImplementer());
+        String implementerCsv = recipientDirectory.resolveEmails(detail.getImplementer());
         if (implementerCsv != null && !implementerCsv.trim().isEmpty()) {
             createMailRecord("IMPROVEMENT_IMPLEMENTER", subject, body, implementerCsv, "", "", detail.getId());
         }
@@ -311,16 +250,7 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
 
     private void createMailRecord(String typeName, String subject, String body, String toCsv, String ccCsv, String bccCsv, Long referenceId) {
         try {
-            TypeCronMail type = typeCronMailRepository.findByTypeName(typeName);
-            if (type == null) {
-                type = new TypeCronMail();
-                type.setTypeName(typeName);
-                type.setDescription("Mail type: " + typeName);
-                type.setEnabled(true);
-                type.setCreatedAt(timeService.nowVietnam());
-                type.setUpdatedAt(timeService.nowVietnam());
-                type = typeCronMailRepository.save(type);
-            }
+            TypeCronMail type = mailTypeRegistry.getOrCreate(typeName, "Mail type: " + typeName);
 
             CronMailAll mail = new CronMailAll();
             mail.setTypeId(type.getId());
@@ -364,27 +294,6 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
         }
     }
 
-    private String getImplementerDisplay(String implementer) {
-        if (implementer == null || implementer.trim().isEmpty()) return "-";
-        if (implementer.startsWith("user:")) {
-            try {
-                Integer uid = Integer.parseInt(implementer.substring(5));
-                Users u = usersRepository.findById(uid).orElse(null);
-                if (u != null && u.getFullName() != null) return u.getFullName();
-            } catch (Exception ignore) {}
-        }
-        if (implementer.startsWith("group:")) {
-            try {
-                Long gid = Long.parseLong(implementer.substring(6));
-                Group g = groupRepository.findById(gid).orElse(null);
-                if (g != null && g.getName() != null) return g.getName();
-            } catch (Exception ignore) {}
-        }
-        Users byEmail = implementer.contains("@") ? usersRepository.findByEmail(implementer).orElse(null) : null;
-        if (byEmail != null && byEmail.getFullName() != null) return byEmail.getFullName();
-        return implementer;
-    }
-
     private static void row(StringBuilder body, String name, String value) {
         body.append("<tr>");
         body.append("<td style=\"border:1px solid #ddd;padding:8px;background:#f5f5f5;\">").append(name).append("</td>");
@@ -401,10 +310,6 @@ public class MailImprovementCreationServiceImpl implements MailImprovementCreati
                 .replace("\"", "&quot;")
                 .replace("'", "&#39;");
     }
-
-    private boolean isActiveUser(Users user) {
-        return user != null && (user.getStatus() == null || user.getStatus() == UserStatus.ACTIVE);
-    }
 }
 
 
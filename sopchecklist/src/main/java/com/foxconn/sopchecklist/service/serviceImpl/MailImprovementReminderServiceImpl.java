@@ -1,16 +1,12 @@
 package com.foxconn.sopchecklist.service.serviceImpl;
 
 import com.foxconn.sopchecklist.entity.CronMailAll;
-import com.foxconn.sopchecklist.entity.Group;
 import com.foxconn.sopchecklist.entity.Improvements;
 import com.foxconn.sopchecklist.entity.TypeCronMail;
-import com.foxconn.sopchecklist.entity.Users;
-import com.foxconn.sopchecklist.entity.UserStatus;
 import com.foxconn.sopchecklist.repository.CronMailAllRepository;
-import com.foxconn.sopchecklist.repository.GroupRepository;
-import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
-import com.foxconn.sopchecklist.repository.UsersRepository;
 import com.foxconn.sopchecklist.service.MailImprovementReminderService;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
+import com.foxconn.sopchecklist.service.RecipientDirectory;
 import com.foxconn.sopchecklist.service.TimeService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -22,24 +18,21 @@ import java.util.stream.Collectors;
 @Service
 public class MailImprovementReminderServiceImpl implements MailImprovementReminderService {
 
-    private final GroupRepository groupRepository;
-    private final UsersRepository usersRepository;
+    private final RecipientDirectory recipientDirectory;
     private final CronMailAllRepository cronMailAllRepository;
-    private final TypeCronMailRepository typeCronMailRepository;
+    private final MailTypeRegistry mailTypeRegistry;
     private final TimeService timeService;
 
     @Value("${app.public.url:http://10.228.64.77:3000}")
     private String appPublicUrl;
 
-    public MailImprovementReminderServiceImpl(GroupRepository groupRepository,
-                                             UsersRepository usersRepository,
+    public MailImprovementReminderServiceImpl(RecipientDirectory recipientDirectory,
                                              CronMailAllRepository cronMailAllRepository,
-                                             TypeCronMailRepository typeCronMailRepository,
+                                             MailTypeRegistry mailTypeRegistry,
                                              TimeService timeService) {
-        this.groupRepository = groupRepository;
-        this.usersRepository = usersRepository;
+        this.recipientDirectory = recipientDirectory;
         this.cronMailAllRepository = cronMailAllRepository;
-        this.typeCronMailRepository = typeCronMailRepository;
+        this.mailTypeRegistry = mailTypeRegistry;
         this.timeService = timeService;
     }
 
@@ -118,7 +111,7 @@ public class MailImprovementReminderServiceImpl implements MailImprovementRemind
         List<String> responsibleList = improvement.getResponsible();
         if (responsibleList != null && !responsibleList.isEmpty()) {
             for (String responsible : responsibleList) {
-                String email = resolveResponsibleEmail(responsible);
+                String email = recipientDirectory.resolveEmails(responsible);
                 if (email != null && !email.trim().isEmpty()) {
                     if (emailCsv.length() > 0) emailCsv.append(",");
                     emailCsv.append(email);
@@ -131,7 +124,7 @@ public class MailImprovementReminderServiceImpl implements MailImprovementRemind
         List<String> collaboratorsList = improvement.getCollaborators();
         if (collaboratorsList != null && !collaboratorsList.isEmpty()) {
             for (String collaborator : collaboratorsList) {
-                String email = resolveResponsibleEmail(collaborator);
+                String email = recipientDirectory.resolveEmails(collaborator);
                 if (email != null && !email.trim().isEmpty()) {
                     if (ccCsv.length() > 0) ccCsv.append(",");
                     ccCsv.append(email);
@@ -152,16 +145,7 @@ public class MailImprovementReminderServiceImpl implements MailImprovementRemind
 
     private void createMailRecord(String typeName, String subject, String body, String toCsv, String ccCsv, String bccCsv, Long referenceId) {
         try {
-            TypeCronMail type = typeCronMailRepository.findByTypeName(typeName);
-            if (type == null) {
-                type = new TypeCronMail();
-                type.setTypeName(typeName);
-                type.setDescription("Mail type: " + typeName);
-                type.setEnabled(true);
-                type.setCreatedAt(timeService.nowVietnam());
-                type.setUpdatedAt(timeService.nowVietnam());
-                type = typeCronMailRepository.save(type);
-            }
+            TypeCronMail type = mailTypeRegistry.getOrCreate(typeName, "Mail type: " + typeName);
 
             CronMailAll mail = new CronMailAll();
             mail.setTypeId(type.getId());
@@ -179,60 +163,6 @@ public class MailImprovementReminderServiceImpl implements MailImprovementRemind
         } catch (Exception ignored) {}
     }
 
-    private String resolveResponsibleEmail(String responsible) {
-        if (responsible == null) return null;
-        String name = responsible.trim();
-        if (name.isEmpty()) return null;
-        String lower = name.toLowerCase();
-        try {
-            if (lower.startsWith("group:")) {
-                Long gid = Long.parseLong(lower.substring("group:".length()).trim());
-                Group grp = groupRepository.findById(gid).orElse(null);
-                if (grp != null && grp.getUsers() != null) {
-                    return grp.getUsers().stream()
-                            .filter(this::isActiveUser)
-                            .map(Users::getEmail)
-                            .filter(e -> e != null && !e.trim().isEmpty())
-                            .distinct()
-                            .collect(Collectors.joining(","));
-                }
-            } else if (lower.startsWith("user:")) {
-                Integer uid = Integer.parseInt(lower.substring("user:".length()).trim());
-                Users u = usersRepository.findById(uid).orElse(null);
-                if (u != null && u.getEmail() != null && !u.getEmail().trim().isEmpty()) return u.getEmail();
-            }
-        } catch (Exception ignore) {}
-
-        Group grpByName = groupRepository.findByNameIgnoreCase(name).orElse(null);
-        if (grpByName != null && grpByName.getUsers() != null) {
-            return grpByName.getUsers().stream()
-                    .filter(this::isActiveUser)
-                    .map(Users::getEmail)
-                    .filter(e -> e != null && !e.trim().isEmpty())
-                    .distinct()
-                    .collect(Collectors.joining(","));
-        }
-
-        if (name.contains("@")) {
-            Users uByEmail = usersRepository.findByEmail(name).orElse(null);
-            if (uByEmail != null && uByEmail.getEmail() != null) return uByEmail.getEmail();
-            return name;
-        }
-
-        Users uByManv = usersRepository.findByManv(name).orElse(null);
-        if (uByManv != null && uByManv.getEmail() != null) return uByManv.getEmail();
-
-        List<Users> all = usersRepository.findAll();
-        String fromName = all.stream()
-                .filter(this::isActiveUser)
-                .filter(u -> u.getFullName() != null && u.getFullName().equalsIgnoreCase(name))
-                .map(Users::getEmail)
-                .filter(e -> e != null && !e.trim().isEmpty())
-                .findFirst()
-                .orElse(null);
-        return fromName;
-    }
-
     private String getStatusDisplay(String status) {
         if (status == null || status.trim().isEmpty()) return "";
         String statusUpper = status.toUpperCase();
@@ -249,27 +179,8 @@ public class MailImprovementReminderServiceImpl implements MailImprovementRemind
     private String getResponsibleDisplay(List<String> responsibleList) {
         if (responsibleList == null || responsibleList.isEmpty()) return "-";
         List<String> displayNames = responsibleList.stream()
-            .map(resp -> {
-                if (resp == null || resp.trim().isEmpty()) return null;
-                if (resp.startsWith("user:")) {
-                    try {
-                        Integer uid = Integer.parseInt(resp.substring(5));
-                        Users u = usersRepository.findById(uid).orElse(null);
-                        if (u != null && u.getFullName() != null) return u.getFullName();
-                    } catch (Exception ignore) {}
-                }
-                if (resp.startsWith("group:")) {
-                    try {
-                        Long gid = Long.parseLong(resp.substring(6));
-                        Group g = groupRepository.findById(gid).orElse(null);
-                        if (g != null && g.getName() != null) return g.getName();
-                    } catch (Exception ignore) {}
-                }
-                Users byEmail = resp.contains("@") ? usersRepository.findByEmail(resp).orElse(null) : null;
-                if (byEmail != null && byEmail.getFullName() != null) return byEmail.getFullName();
-                return resp;
-            })
-            .filter(name -> name != null)
+            .filter(resp -> resp != null && !resp.trim().isEmpty())
+            .map(recipientDirectory::displayName)
             .collect(Collectors.toList());
         return displayNames.isEmpty() ? "-" : String.join(", ", displayNames);
     }
@@ -290,9 +201,5 @@ public class MailImprovementReminderServiceImpl implements MailImprovementRemind
                 .replace("\"", "&quot;")
                 .replace("'", "&#39;");
     }
-
-    private boolean isActiveUser(Users user) {
-        return user != null && (user.getStatus() == null || user.getStatus() == UserStatus.ACTIVE);
-    }
 }
 
@@ -73,6 +73,11 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
         refreshTokenRepository.revokeAllByUserId(userId);
     }
 
+    @Override
+    public void revoke(String token, Integer userId) {
+        refreshTokenRepository.revokeByTokenAndUserId(token, userId);
+    }
+
     @Override
     public void updateLastUsed(String token) {
         refreshTokenRepository.updateLastUsed(token, timeService.nowVietnam());
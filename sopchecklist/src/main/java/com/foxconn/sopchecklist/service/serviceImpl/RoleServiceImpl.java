@@ -1,5 +1,6 @@
 package com.foxconn.sopchecklist.service.serviceImpl;
 
+import com.foxconn.sopchecklist.config.AuthenticatedUserCache;
 import com.foxconn.sopchecklist.entity.Role;
 import com.foxconn.sopchecklist.repository.RoleRepository;
 import com.foxconn.sopchecklist.service.RoleService;
@@ -13,6 +14,9 @@ public class RoleServiceImpl implements RoleService {
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private AuthenticatedUserCache principalCache;
+
     @Override
     public Role findById(Long id) {
         return roleRepository.findById(id).orElse(null);
@@ -25,17 +29,22 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     public Role save(Role role) {
-        return roleRepository.save(role);
+        Role saved = roleRepository.save(role);
+        principalCache.clear();
+        return saved;
     }
 
     @Override
     public Role update(Role role) {
-        return roleRepository.save(role);
+        Role saved = roleRepository.save(role);
+        principalCache.clear();
+        return saved;
     }
 
     @Override
     public void delete(Long id) {
         roleRepository.deleteById(id);
+        principalCache.clear();
     }
 
     @Override
@@ -1,13 +1,23 @@
 package com.foxconn.sopchecklist.service.serviceImpl;
 
+import com.foxconn.sopchecklist.dto.SOPDTO;
 import com.foxconn.sopchecklist.entity.SOPs;
 import com.foxconn.sopchecklist.repository.SOPsRepository;
 import com.foxconn.sopchecklist.service.SOPsService;
+import com.foxconn.sopchecklist.service.SearchIndex;
+import com.foxconn.sopchecklist.service.SearchIndexer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class SOPsServiceImpl implements SOPsService {
@@ -15,6 +25,12 @@ public class SOPsServiceImpl implements SOPsService {
     @Autowired
     private SOPsRepository sopsRepository;
 
+    @Autowired
+    private SearchIndex searchIndex;
+
+    @Autowired
+    private SearchIndexer searchIndexer;
+
     @Override
     public SOPs findById(Long id) {
         return sopsRepository.findById(id).orElse(null);
@@ -44,13 +60,33 @@ public class SOPsServiceImpl implements SOPsService {
         return sopsRepository.findAll();
     }
 
+    /**
+     * Ranked, accent-insensitive name search through the search index; only the requested page is loaded.
+     * Query words match whole words of the name, the last one as a prefix ("kiem tr" finds "Kiểm tra"), not
+     * arbitrary substrings inside a word.
+     * Until the index has been built once, falls back to a plain name LIKE query.
+     */
     @Override
     public Page<SOPs> search(String q, Pageable pageable) {
-        boolean hasQ = q != null && !q.isBlank();
-        if (hasQ) {
-            return sopsRepository.findByNameContainingIgnoreCase(q, pageable);
+        if (q == null || SearchIndex.tokenize(q).isEmpty()) {
+            return sopsRepository.findAll(pageable);
         }
-        return sopsRepository.findAll(pageable);
+        if (!searchIndexer.isReady()) {
+            return sopsRepository.findByNameContainingIgnoreCase(q.trim(), pageable);
+        }
+        List<Long> ids = searchIndex.search(q, List.of(SearchIndex.SOP)).stream()
+                .map(SearchIndex.Hit::getId).collect(Collectors.toList());
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        List<Long> pageIds = ids.subList(from, to);
+        Map<Long, SOPs> byId = sopsRepository.findAllById(pageIds).stream()
+                .collect(Collectors.toMap(SOPs::getId, Function.identity()));
+        List<SOPs> content = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            SOPs sop = byId.get(id);
+            if (sop != null) content.add(sop);
+        }
+        return new PageImpl<>(content, pageable, ids.size());
     }
 
     @Override
@@ -58,6 +94,46 @@ public class SOPsServiceImpl implements SOPsService {
         return sopsRepository.findAll(pageable);
     }
 
+    @Override
+    public Page<SOPs> listVisible(Integer userId, List<Long> groupIds, Pageable pageable) {
+        return sopsRepository.findVisible(userId.longValue(), groupsOrNone(groupIds), pageable);
+    }
+
+    @Override
+    public long countVisible(Integer visibleTo, List<Long> groupIds) {
+        if (visibleTo == null) {
+            return sopsRepository.count();
+        }
+        return sopsRepository.countVisible(visibleTo.longValue(), groupsOrNone(groupIds));
+    }
+
+    @Override
+    public List<SOPs> listAfter(LocalDateTime createdAt, Long id, Integer visibleTo, List<Long> groupIds, int limit) {
+        Pageable first = PageRequest.of(0, Math.max(limit, 1));
+        if (visibleTo == null) {
+            return sopsRepository.findAfter(createdAt, id, first);
+        }
+        return sopsRepository.findVisibleAfter(visibleTo.longValue(), groupsOrNone(groupIds), createdAt, id, first);
+    }
+
+    @Override
+    public List<SOPDTO> listRows(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) return new ArrayList<>();
+        Map<Long, SOPDTO> rows = sopsRepository.findListRows(ids).stream()
+                .collect(Collectors.toMap(SOPDTO::getId, Function.identity()));
+        List<SOPDTO> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            SOPDTO row = rows.get(id);
+            if (row != null) ordered.add(row);
+        }
+        return ordered;
+    }
+
+    // "IN ()" is not valid SQL; -1 never matches a group id
+    private static List<Long> groupsOrNone(List<Long> groupIds) {
+        return groupIds == null || groupIds.isEmpty() ? List.of(-1L) : groupIds;
+    }
+
     @Override
     public boolean existsByName(String name) {
         return sopsRepository.existsByNameIgnoreCase(name);
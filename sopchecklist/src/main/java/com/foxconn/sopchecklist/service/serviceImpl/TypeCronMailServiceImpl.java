@@ -2,6 +2,7 @@ package com.foxconn.sopchecklist.service.serviceImpl;
 
 import com.foxconn.sopchecklist.entity.TypeCronMail;
 import com.foxconn.sopchecklist.repository.TypeCronMailRepository;
+import com.foxconn.sopchecklist.service.MailTypeRegistry;
 import com.foxconn.sopchecklist.service.TimeService;
 import com.foxconn.sopchecklist.service.TypeCronMailService;
 import org.springframework.stereotype.Service;
@@ -13,10 +14,12 @@ public class TypeCronMailServiceImpl implements TypeCronMailService {
 
     private final TypeCronMailRepository repository;
     private final TimeService timeService;
+    private final MailTypeRegistry mailTypeRegistry;
 
-    public TypeCronMailServiceImpl(TypeCronMailRepository repository, TimeService timeService) {
+    public TypeCronMailServiceImpl(TypeCronMailRepository repository, TimeService timeService, MailTypeRegistry mailTypeRegistry) {
         this.repository = repository;
         this.timeService = timeService;
+        this.mailTypeRegistry = mailTypeRegistry;
     }
 
     @Override
@@ -31,7 +34,7 @@ public class TypeCronMailServiceImpl implements TypeCronMailService {
 
     @Override
     public TypeCronMail findByTypeName(String typeName) {
-        return repository.findByTypeName(typeName);
+        return mailTypeRegistry.find(typeName);
     }
 
     @Override
@@ -42,7 +45,9 @@ public class TypeCronMailServiceImpl implements TypeCronMailService {
         if (typeCronMail.getUpdatedAt() == null) {
             typeCronMail.setUpdatedAt(timeService.nowVietnam());
         }
-        return repository.save(typeCronMail);
+        TypeCronMail saved = repository.save(typeCronMail);
+        mailTypeRegistry.reload();
+        return saved;
     }
 
     @Override
@@ -52,12 +57,16 @@ public class TypeCronMailServiceImpl implements TypeCronMailService {
         existing.setDescription(typeCronMail.getDescription());
         existing.setEnabled(typeCronMail.getEnabled());
         existing.setUpdatedAt(timeService.nowVietnam());
-        return repository.save(existing);
+        TypeCronMail saved = repository.save(existing);
+        // Renames must drop the old name from the registry
+        mailTypeRegistry.reload();
+        return saved;
     }
 
     @Override
     public void delete(Long id) {
         repository.deleteById(id);
+        mailTypeRegistry.reload();
     }
 }
 
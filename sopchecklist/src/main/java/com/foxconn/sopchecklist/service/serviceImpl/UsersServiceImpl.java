@@ -1,14 +1,19 @@
 package com.foxconn.sopchecklist.service.serviceImpl;
 
+import com.foxconn.sopchecklist.config.AuthenticatedUserCache;
+import com.foxconn.sopchecklist.config.JwtAuthenticationFilter;
 import com.foxconn.sopchecklist.entity.Users;
 import com.foxconn.sopchecklist.entity.Role;
 import com.foxconn.sopchecklist.entity.Group;
 import com.foxconn.sopchecklist.repository.UsersRepository;
+import com.foxconn.sopchecklist.service.RecipientDirectory;
 import com.foxconn.sopchecklist.service.UsersService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import java.util.List;
 import java.util.Set;
 
@@ -18,6 +23,12 @@ public class UsersServiceImpl implements UsersService {
     @Autowired
     private UsersRepository usersRepository;
 
+    @Autowired
+    private RecipientDirectory recipientDirectory;
+
+    @Autowired
+    private AuthenticatedUserCache principalCache;
+
     @Override
     public Users findById(Integer id) {
         return usersRepository.findById(id).orElse(null);
@@ -25,17 +36,25 @@ public class UsersServiceImpl implements UsersService {
 
     @Override
     public Users save(Users user) {
-        return usersRepository.save(user);
+        Users saved = usersRepository.save(user);
+        recipientDirectory.userChanged(saved.getUserID());
+        principalCache.evictUser(saved.getUserID());
+        return saved;
     }
 
     @Override
     public Users update(Users user) {
-        return usersRepository.save(user);
+        Users saved = usersRepository.save(user);
+        recipientDirectory.userChanged(saved.getUserID());
+        principalCache.evictUser(saved.getUserID());
+        return saved;
     }
 
     @Override
     public void delete(Integer id) {
         usersRepository.deleteById(id);
+        recipientDirectory.userChanged(id);
+        principalCache.evictUser(id);
     }
 
     @Override
@@ -132,6 +151,15 @@ public class UsersServiceImpl implements UsersService {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             if (authentication == null || authentication.getName() == null) return null;
 
+            // Already resolved by JwtAuthenticationFilter for this request
+            RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                Object user = attributes.getAttribute(JwtAuthenticationFilter.CURRENT_USER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+                if (user instanceof Users && authentication.getName().equals(((Users) user).getManv())) {
+                    return (Users) user;
+                }
+            }
+
             return usersRepository.findByManv(authentication.getName()).orElse(null);
         } catch (Exception e) {
             return null;